@@ -31,6 +31,7 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.io.BufferedRandomOutputStream;
+import com.mucommander.commons.io.ParallelBlockOutputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 
 
@@ -248,6 +249,23 @@ public abstract class Archiver {
      * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
      */
     public static Archiver getArchiver(AbstractFile file, int format) throws IOException, UnsupportedFileOperationException {
+        return getArchiver(file, format, 1);
+    }
+
+    /**
+     * Returns an Archiver for the specified format that uses the given {@link AbstractFile} to write entries to, and
+     * compresses them with the given number of threads. See {@link #getArchiver(AbstractFile, int)} and
+     * {@link #getArchiver(OutputStream, int, int)} for more information.
+     *
+     * @param file the AbstractFile which the returned Archiver will write entries to
+     * @param format an archive format
+     * @param nbThreads the number of threads compressing the entries
+     * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
+     * null if the specified format is not valid.
+     * @throws IOException if the file cannot be opened for write, or if an error occurred while intializing the archiver
+     * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
+     */
+    public static Archiver getArchiver(AbstractFile file, int format, int nbThreads) throws IOException, UnsupportedFileOperationException {
         OutputStream out = null;
 
         if(file.isFileOperationSupported(FileOperation.RANDOM_WRITE_FILE)) {
@@ -267,7 +285,7 @@ public abstract class Archiver {
         if(out==null)
             out = new BufferedOutputStream(file.getOutputStream());
 
-        return getArchiver(out, format);
+        return getArchiver(out, format, nbThreads);
     }
 
 
@@ -283,6 +301,30 @@ public abstract class Archiver {
      * @throws IOException if an error occurred while intializing the archiver
      */
     public static Archiver getArchiver(OutputStream out, int format) throws IOException {
+        return getArchiver(out, format, 1);
+    }
+
+    /**
+     * Returns an Archiver for the specified format that uses the given <code>OutputStream</code> to write entries to,
+     * and compresses them with the given number of threads. See {@link #getArchiver(OutputStream, int)} for more
+     * information.
+     *
+     * <p>With more than one thread, the data is split in blocks that are compressed concurrently: Gzip data is a single
+     * DEFLATE stream, Bzip2 and XZ data are made of concatenated streams, and the entries of Zip archives are
+     * compressed while the next ones are being written. All of them can be read by regular decompressors.
+     * Uncompressed Tar archives are not affected by the number of threads.</p>
+     *
+     * @param out the OutputStream which the returned Archiver will write entries to
+     * @param format an archive format
+     * @param nbThreads the number of threads compressing the entries
+     * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
+     * null if the specified format is not valid.
+     * @throws IOException if an error occurred while intializing the archiver
+     */
+    public static Archiver getArchiver(OutputStream out, int format, int nbThreads) throws IOException {
+        if(nbThreads>1)
+            return getParallelArchiver(out, format, nbThreads);
+
         Archiver archiver;
 
         switch(format) {
@@ -320,6 +362,64 @@ public abstract class Archiver {
         return archiver;
     }
 
+    /**
+     * Returns an Archiver for the specified format that compresses entries with the given number of threads.
+     */
+    private static Archiver getParallelArchiver(OutputStream out, int format, int nbThreads) throws IOException {
+        Archiver archiver;
+
+        switch(format) {
+            case ZIP_FORMAT:
+                archiver = new ZipArchiver(out, nbThreads);
+                break;
+            case GZ_FORMAT:
+                archiver = new SingleFileArchiver(new ParallelGzipOutputStream(out, nbThreads));
+                break;
+            case BZ2_FORMAT:
+                archiver = new SingleFileArchiver(createParallelBzip2OutputStream(out, nbThreads));
+                break;
+            case XZ_FORMAT:
+                archiver = new SingleFileArchiver(createParallelXzOutputStream(out, nbThreads));
+                break;
+            case TAR_FORMAT:
+                archiver = new TarArchiver(out);
+                break;
+            case TAR_GZ_FORMAT:
+                archiver = new TarArchiver(new ParallelGzipOutputStream(out, nbThreads));
+                break;
+            case TAR_BZ2_FORMAT:
+                archiver = new TarArchiver(createParallelBzip2OutputStream(out, nbThreads));
+                break;
+            case TAR_XZ_FORMAT:
+                archiver = new TarArchiver(createParallelXzOutputStream(out, nbThreads));
+                break;
+
+            default:
+                return null;
+        }
+
+        archiver.setFormat(format);
+
+        return archiver;
+    }
+
+    /**
+     * Creates and returns a Bzip2 <code>OutputStream</code> that compresses blocks of data with the given number of
+     * threads, each of them as a separate Bzip2 stream.
+     */
+    private static OutputStream createParallelBzip2OutputStream(OutputStream out, int nbThreads) {
+        return new ParallelBlockOutputStream(out, new Bzip2BlockCompressor(), Bzip2BlockCompressor.BLOCK_SIZE, nbThreads);
+    }
+
+    /**
+     * Creates and returns a XZ <code>OutputStream</code> that compresses blocks of data with the given number of
+     * threads, each of them as a separate XZ stream. The number of threads is limited by the available memory.
+     */
+    private static OutputStream createParallelXzOutputStream(OutputStream out, int nbThreads) {
+        return new ParallelBlockOutputStream(out, new XzBlockCompressor(), XzBlockCompressor.BLOCK_SIZE,
+                XzBlockCompressor.getMaxThreads(nbThreads));
+    }
+
     /**
      * Creates and returns a Bzip2 <code>OutputStream</code> using the given <code>OutputStream</code> as the underlying
      * stream.
@@ -390,6 +490,18 @@ public abstract class Archiver {
     public static boolean formatSupportsComment(int format) {
         return format==ZIP_FORMAT;
     }
+
+
+    /**
+     * Returns true if the specified archive format compresses its entries, which can then be compressed by several
+     * threads.
+     *
+     * @param format an archive format
+     * @see #getArchiver(AbstractFile, int, int)
+     */
+    public static boolean formatSupportsThreads(int format) {
+        return format!=TAR_FORMAT;
+    }
 	
 	
     //////////////////////
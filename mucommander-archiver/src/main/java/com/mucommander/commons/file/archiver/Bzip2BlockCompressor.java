@@ -0,0 +1,46 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
+import com.mucommander.commons.io.ParallelBlockOutputStream;
+
+/**
+ * A {@link ParallelBlockOutputStream.BlockCompressor} that compresses each block as a separate Bzip2 stream, like
+ * pbzip2 does. Bzip2 decompressors read concatenated streams as a single one.
+ */
+class Bzip2BlockCompressor implements ParallelBlockOutputStream.BlockCompressor {
+
+    /** Size of the blocks, slightly smaller than the largest Bzip2 block (900 KB) so that each of them usually fits in
+     * a single Bzip2 block once run-length encoded */
+    final static int BLOCK_SIZE = 900000 - 1000;
+
+    @Override
+    public byte[] compress(byte[] block, int length, byte[] previousBlock, boolean last) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        try (CBZip2OutputStream bzip2 = (CBZip2OutputStream)Archiver.createBzip2OutputStream(compressed)) {
+            bzip2.write(block, 0, length);
+        }
+
+        return compressed.toByteArray();
+    }
+}
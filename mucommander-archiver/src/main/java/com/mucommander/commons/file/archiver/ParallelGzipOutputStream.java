@@ -0,0 +1,125 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.mucommander.commons.io.DeflateBlockCompressor;
+import com.mucommander.commons.io.ParallelBlockOutputStream;
+
+/**
+ * ParallelGzipOutputStream writes a Gzip stream whose data is compressed by several threads. The output is a single
+ * standard Gzip member that any Gzip decompressor can read.
+ *
+ * <p>The data is compressed in blocks by a {@link DeflateBlockCompressor}, the CRC and the size of the uncompressed
+ * data being computed while the data is written.</p>
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+    /** Gzip header: magic number, DEFLATE compression method, no flag, no modification time, no extra flag and
+     * unknown OS, as written by {@link java.util.zip.GZIPOutputStream} */
+    private final static byte[] HEADER = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    /** The underlying stream */
+    private final OutputStream out;
+
+    /** Compresses the data and writes it to the underlying stream */
+    private final ParallelBlockOutputStream blocks;
+
+    /** CRC of the uncompressed data */
+    private final CRC32 crc = new CRC32();
+
+    /** Number of uncompressed bytes */
+    private long size;
+
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelGzipOutputStream</code> and writes the Gzip header to the given stream.
+     *
+     * @param out the underlying stream
+     * @param nbThreads the number of compression threads
+     * @throws IOException if the header could not be written
+     */
+    ParallelGzipOutputStream(OutputStream out, int nbThreads) throws IOException {
+        this.out = out;
+
+        out.write(HEADER);
+        blocks = new ParallelBlockOutputStream(out, new DeflateBlockCompressor(Deflater.DEFAULT_COMPRESSION),
+                DeflateBlockCompressor.BLOCK_SIZE, nbThreads);
+    }
+
+    /**
+     * Writes the given value to the underlying stream as 4 bytes in little-endian order.
+     */
+    private void writeInt(long value) throws IOException {
+        out.write((int)value & 0xff);
+        out.write((int)(value >> 8) & 0xff);
+        out.write((int)(value >> 16) & 0xff);
+        out.write((int)(value >> 24) & 0xff);
+    }
+
+
+    ////////////////////////////////
+    // OutputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        blocks.write(b);
+        crc.update(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        blocks.write(b, off, len);
+        crc.update(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        blocks.flush();
+    }
+
+    /**
+     * Ends the compressed data, writes the Gzip trailer and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        closed = true;
+
+        try {
+            blocks.endStream();
+            blocks.runInOrder(() -> {
+                writeInt(crc.getValue());
+                writeInt(size);
+            });
+        }
+        finally {
+            blocks.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.tukaani.xz.BasicArrayCache;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import com.mucommander.commons.io.ParallelBlockOutputStream;
+
+/**
+ * A {@link ParallelBlockOutputStream.BlockCompressor} that compresses each block as a separate XZ stream. XZ
+ * decompressors read concatenated streams as a single one, as required by the XZ specification.
+ */
+class XzBlockCompressor implements ParallelBlockOutputStream.BlockCompressor {
+
+    /** Size of the blocks, which is the dictionary size of the default preset */
+    final static int BLOCK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Returns the number of threads that can compress blocks without using more than half of the memory available to
+     * the JVM, between 1 and the given number of threads.
+     *
+     * @param nbThreads the requested number of threads
+     * @return the number of threads to use
+     */
+    static int getMaxThreads(int nbThreads) {
+        // Memory used by each thread: the encoder, the block and its compressed data
+        long memoryPerThread = new LZMA2Options().getEncoderMemoryUsage() * 1024L + 2L * BLOCK_SIZE;
+        long maxThreads = Runtime.getRuntime().maxMemory() / 2 / memoryPerThread;
+
+        return (int)Math.max(1, Math.min(nbThreads, maxThreads));
+    }
+
+    @Override
+    public byte[] compress(byte[] block, int length, byte[] previousBlock, boolean last) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        try (XZOutputStream xz = new XZOutputStream(compressed, new LZMA2Options(), BasicArrayCache.getInstance())) {
+            xz.write(block, 0, length);
+        }
+
+        return compressed.toByteArray();
+    }
+}
@@ -47,9 +47,17 @@ class ZipArchiver extends Archiver {
 
 
     protected ZipArchiver(OutputStream outputStream) {
+        this(outputStream, 1);
+    }
+
+    /**
+     * Creates a new ZipArchiver whose entries are compressed with the given number of threads.
+     */
+    protected ZipArchiver(OutputStream outputStream, int nbThreads) {
         super(outputStream);
 
         this.zos = new ZipOutputStream(outputStream);
+        zos.setThreads(nbThreads);
     }
 
 
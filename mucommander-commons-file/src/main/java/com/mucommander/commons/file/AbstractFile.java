@@ -623,11 +623,23 @@ public abstract class AbstractFile implements FileAttributes {
      * @return a string representation of this file's permissions
      */
     public String getPermissionsString() {
-        FilePermissions permissions = getPermissions();
+        return getPermissionsString(getPermissions(), isSymlink(), isDirectory());
+    }
+
+    /**
+     * Returns a string representation of the given permissions, for a file with the given type. See
+     * {@link #getPermissionsString()} for the format of the returned string.
+     *
+     * @param permissions the file's permissions
+     * @param isSymlink <code>true</code> if the file is a symbolic link
+     * @param isDirectory <code>true</code> if the file is a directory
+     * @return a string representation of the given permissions
+     */
+    protected static String getPermissionsString(FilePermissions permissions, boolean isSymlink, boolean isDirectory) {
         int supportedPerms = permissions.getMask().getIntValue();
 
         String s = "";
-        s += isSymlink()?'l':isDirectory()?'d':'-';
+        s += isSymlink?'l':isDirectory?'d':'-';
 
         int perms = permissions.getIntValue();
 
@@ -0,0 +1,154 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mucommander.commons.file.archive.ArchiveFormatProvider;
+import com.mucommander.commons.file.filter.AbstractExtensionFilter;
+import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
+import com.mucommander.commons.file.filter.FilenameFilter;
+
+/**
+ * Finds the {@link ArchiveFormatProvider} that matches a filename, the way testing the filename against the
+ * {@link ArchiveFormatProvider#getFilenameFilter() filter} of each provider in turn would.
+ *
+ * <p>The extensions of the providers that use an {@link ExtensionFilenameFilter} are indexed in a hash table, so that
+ * a filename is matched with one lookup per dot it contains rather than one comparison per registered extension.
+ * The filters of other providers are tested the usual way. When several providers match a filename, the one that was
+ * registered first is returned.</p>
+ *
+ * <p>Instances are immutable: a new matcher is created each time the registered providers change.</p>
+ */
+class ArchiveFormatMatcher {
+
+    /** The providers, in the order they were registered */
+    private final ArchiveFormatProvider[] providers;
+
+    /** Maps the extensions of case-sensitive filters onto the index of the first provider that matches them */
+    private final Map<String, Integer> caseSensitiveExtensions = new HashMap<>();
+
+    /** Maps the lower-cased extensions of case-insensitive filters onto the index of the first provider that matches them */
+    private final Map<String, Integer> caseInsensitiveExtensions = new HashMap<>();
+
+    /** The indexes of the providers whose filter cannot be indexed, in increasing order */
+    private final int[] otherFilterIndexes;
+
+    /** The filters of the providers, retrieved once */
+    private final FilenameFilter[] filters;
+
+    /**
+     * Creates a new matcher for the given providers.
+     *
+     * @param providers the registered providers, in the order they were registered
+     */
+    ArchiveFormatMatcher(ArchiveFormatProvider[] providers) {
+        this.providers = providers;
+        this.filters = new FilenameFilter[providers.length];
+
+        List<Integer> otherIndexes = new ArrayList<>();
+        for (int i = 0; i < providers.length; i++) {
+            FilenameFilter filter = providers[i].getFilenameFilter();
+            filters[i] = filter;
+
+            // Subclasses may override accept(), their extensions can't be trusted
+            if (filter.getClass() != ExtensionFilenameFilter.class || !index(i, (ExtensionFilenameFilter) filter))
+                otherIndexes.add(i);
+        }
+
+        otherFilterIndexes = otherIndexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Indexes the extensions of the given filter. Extensions that do not start with a dot cannot be looked up from
+     * the dots of a filename, in which case nothing is indexed and the filter must be tested the usual way.
+     *
+     * @return <code>true</code> if the extensions of the filter have been indexed
+     */
+    private boolean index(int providerIndex, AbstractExtensionFilter filter) {
+        String[] extensions = filter.getExtensions();
+        for (String extension : extensions) {
+            if (!extension.startsWith("."))
+                return false;
+        }
+
+        boolean caseSensitive = filter.isCaseSensitive();
+        for (String extension : extensions) {
+            if (caseSensitive)
+                caseSensitiveExtensions.putIfAbsent(extension, providerIndex);
+            else
+                caseInsensitiveExtensions.putIfAbsent(toLowerCase(extension), providerIndex);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the first provider that matches the given filename, <code>null</code> if there is none.
+     *
+     * @param filename the filename to match
+     * @return the first provider that matches the given filename, <code>null</code> if there is none
+     */
+    ArchiveFormatProvider getProvider(String filename) {
+        int bestIndex = Integer.MAX_VALUE;
+
+        int dotPos = filename.indexOf('.');
+        if (dotPos != -1) {
+            String lowerCaseFilename = caseInsensitiveExtensions.isEmpty() ? null : toLowerCase(filename);
+            for (; dotPos != -1; dotPos = filename.indexOf('.', dotPos + 1)) {
+                bestIndex = Math.min(bestIndex, lookup(caseSensitiveExtensions, filename, dotPos));
+                if (lowerCaseFilename != null)
+                    bestIndex = Math.min(bestIndex, lookup(caseInsensitiveExtensions, lowerCaseFilename, dotPos));
+            }
+        }
+
+        // Filters that could not be indexed only need to be tested if they were registered before the best match
+        for (int index : otherFilterIndexes) {
+            if (index >= bestIndex)
+                break;
+            if (filters[index].accept(filename)) {
+                bestIndex = index;
+                break;
+            }
+        }
+
+        return bestIndex == Integer.MAX_VALUE ? null : providers[bestIndex];
+    }
+
+    private static int lookup(Map<String, Integer> extensions, String filename, int dotPos) {
+        if (extensions.isEmpty())
+            return Integer.MAX_VALUE;
+
+        Integer index = extensions.get(filename.substring(dotPos));
+        return index == null ? Integer.MAX_VALUE : index;
+    }
+
+    /**
+     * Lower-cases the given string character by character, the way {@link AbstractExtensionFilter} compares
+     * case-insensitive extensions.
+     */
+    private static String toLowerCase(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+}
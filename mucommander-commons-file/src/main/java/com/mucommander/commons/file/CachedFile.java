@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -30,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.FilenameFilter;
 import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.commons.file.protocol.local.LocalFileAttributes;
 import com.mucommander.commons.runtime.JavaVersion;
 
 /**
@@ -41,6 +44,8 @@ import com.mucommander.commons.runtime.JavaVersion;
  * <p>The values are retrieved and cached only when the 'cached methods' are called for the first time; they are
  * not preemptively retrieved in the constructor, so using this class has no negative impact on performance,
  * except for the small extra CPU cost added by proxying the methods and the extra RAM used to store cached values.
+ * The exception are the children of a local folder returned by the <code>ls</code> methods of this class: their
+ * attributes are read in bulk along with the listing (see {@link LocalFile#ls(FilenameFilter, List)}).
  *
  * <p>Once the values are retrieved and cached, they never change: the same value will always be returned once a method
  * has been called for the first time. That means if the underlying file changes (e.g. its size or date has changed),
@@ -182,9 +187,19 @@ public class CachedFile extends ProxyFile {
      * @param recursiveInstances if true, AbstractFile instances returned by this class will be wrapped into CachedFile instances
      */
     public CachedFile(AbstractFile file, boolean recursiveInstances) {
+        this(file, recursiveInstances, null);
+    }
+
+    /**
+     * Creates a new CachedFile instance around the specified AbstractFile, with the attributes that were just read
+     * along with the listing of its parent folder.
+     */
+    private CachedFile(AbstractFile file, boolean recursiveInstances, LocalFileAttributes attributes) {
         super(file);
 
         this.recurseInstances = recursiveInstances;
+
+        setPrefetchedAttributes(attributes);
     }
 
 
@@ -195,6 +210,66 @@ public class CachedFile extends ProxyFile {
         return Stream.of(files).map(file -> new CachedFile(file, true)).toArray(CachedFile[]::new);
     }
 
+    /**
+     * Lists the underlying file and creates a CachedFile instance for each of its children. The attributes of the
+     * children of a local folder are read in bulk along with the listing.
+     */
+    private AbstractFile[] lsCachedFiles(FilenameFilter filter) throws IOException {
+        if(!(file instanceof LocalFile))
+            return createCachedFiles(file.ls(filter));
+
+        List<LocalFileAttributes> attributes = new ArrayList<>();
+        AbstractFile files[] = ((LocalFile)file).ls(filter, attributes);
+        AbstractFile cachedFiles[] = new CachedFile[files.length];
+        for(int i=0; i<files.length; i++)
+            cachedFiles[i] = new CachedFile(files[i], true, attributes.get(i));
+
+        return cachedFiles;
+    }
+
+
+    /**
+     * Caches the attributes that were read in bulk by {@link LocalFile#ls(FilenameFilter, List)}, if any. Permissions, owner and group
+     * are left to be retrieved on demand if they are not part of the given attributes.
+     */
+    private void setPrefetchedAttributes(LocalFileAttributes attributes) {
+        if(attributes==null)
+            return;
+
+        exists = attributes.exists();
+        existsSet = true;
+
+        isDirectory = attributes.isDirectory();
+        isDirectorySet = true;
+
+        isSymlink = attributes.isSymlink();
+        isSymlinkSet = true;
+
+        isHidden = attributes.isHidden();
+        isHiddenSet = true;
+
+        getDate = attributes.getDate();
+        getDateSet = true;
+
+        getSize = attributes.getSize();
+        getSizeSet = true;
+
+        if(attributes.getPermissions()!=null) {
+            getPermissions = attributes.getPermissions();
+            getPermissionsSet = true;
+        }
+
+        if(attributes.getOwner()!=null) {
+            getOwner = attributes.getOwner();
+            getOwnerSet = true;
+        }
+
+        if(attributes.getGroup()!=null) {
+            getGroup = attributes.getGroup();
+            getGroupSet = true;
+        }
+    }
+
 
     /**
      * Pre-fetches values of {@link #isDirectory}, {@link #exists} and {@link #isHidden} for the given local file,
@@ -384,7 +459,8 @@ public class CachedFile extends ProxyFile {
     @Override
     public String getPermissionsString() {
         if(!getPermissionsStringSet) {
-            getPermissionsString = file.getPermissionsString();
+            // Build the string from the cached values rather than letting the file query them all over again
+            getPermissionsString = getPermissionsString(getPermissions(), isSymlink(), isDirectory());
             getPermissionsStringSet = true;
         }
 
@@ -477,33 +553,27 @@ public class CachedFile extends ProxyFile {
     @Override
     public AbstractFile[] ls() throws IOException, UnsupportedFileOperationException {
         // Don't cache ls() result but create a CachedFile instance around each of the files if recursion is enabled
-        AbstractFile files[] = file.ls();
-
         if(recurseInstances)
-            return createCachedFiles(files);
+            return lsCachedFiles(null);
 
-        return files;
+        return file.ls();
     }
 
     @Override
     public AbstractFile[] ls(FileFilter filter) throws IOException, UnsupportedFileOperationException {
         // Don't cache ls() result but create a CachedFile instance around each of the files if recursion is enabled
-        AbstractFile files[] = file.ls(filter);
-
         if(recurseInstances)
-            return createCachedFiles(files);
+            return filter==null?lsCachedFiles(null):filter.filter(lsCachedFiles(null));
 
-        return files;
+        return file.ls(filter);
     }
 
     @Override
     public AbstractFile[] ls(FilenameFilter filter) throws IOException, UnsupportedFileOperationException {
         // Don't cache ls() result but create a CachedFile instance around each of the files if recursion is enabled
-        AbstractFile files[] = file.ls(filter);
-
         if(recurseInstances)
-            return createCachedFiles(files);
+            return lsCachedFiles(filter);
 
-        return files;
+        return file.ls(filter);
     }
 }
@@ -20,13 +20,13 @@ package com.mucommander.commons.file;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -106,8 +106,11 @@ public class FileFactory {
     /** Array of registered FileProtocolMapping instances, for quicker access */
     private static ArchiveFormatProvider[] archiveFormatProviders = new ArchiveFormatProvider[0];
 
+    /** Matches filenames against the registered archive formats, recreated when they change */
+    private static volatile ArchiveFormatMatcher archiveFormatMatcher = new ArchiveFormatMatcher(archiveFormatProviders);
+
     /** Contains a FilePool instance for each registered scheme */
-    private static final HashMap<String, FilePool> FILE_POOL_MAP = new HashMap<String, FilePool>();
+    private static final Map<String, FilePool> FILE_POOL_MAP = new ConcurrentHashMap<String, FilePool>();
 
     /** System temp directory */
     private static final AbstractFile TEMP_DIRECTORY;
@@ -270,6 +273,7 @@ public class FileFactory {
     private static void updateArchiveFormatProviderArray() {
         archiveFormatProviders = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
         archiveFormatProvidersV.toArray(archiveFormatProviders);
+        archiveFormatMatcher = new ArchiveFormatMatcher(archiveFormatProviders);
     }
 
     /**
@@ -284,11 +288,7 @@ public class FileFactory {
         if(filename == null)
             return null;
 
-        for (ArchiveFormatProvider provider : archiveFormatProviders) {
-            if (provider.getFilenameFilter().accept(filename))
-                return provider;
-        }
-        return null;
+        return archiveFormatMatcher.getProvider(filename);
     }
 
     /**
@@ -542,6 +542,50 @@ public class FileFactory {
         return currentFile;
     }
 
+    /**
+     * Creates and returns an instance of AbstractFile for a direct child of the given parent, as done by
+     * {@link #getFile(FileURL, AbstractFile, Map)} but without resolving each of the ancestors of the child: only its
+     * filename is tested against the registered archive formats. This is meant to be called by
+     * {@link AbstractFile#ls()} implementations for each of the listed files.
+     *
+     * <p>The parent must be a file of the protocol, and not an entry of an archive. As with
+     * {@link #getFile(FileURL, AbstractFile, Map)}, any pooled instance of a child that isn't an archive is replaced
+     * with the new, more up-to-date, one.</p>
+     *
+     * @param childURL the URL of the child, whose path is that of the parent followed by the child's filename
+     * @param parent the file to use as the created file's parent
+     * @param instantiationParams parameters used to instantiate the file
+     * @return an instance of {@link AbstractFile} for the given child
+     * @throws java.io.IOException if something went wrong during file creation.
+     */
+    public static AbstractFile getChildFile(FileURL childURL, AbstractFile parent, Map<String, Object> instantiationParams) throws IOException {
+        String protocol = childURL.getScheme();
+        FilePool filePool = FILE_POOL_MAP.get(protocol.toLowerCase());
+
+        // Local paths under Windows are adjusted while resolving them, search results are never pooled
+        if (filePool == null || (OsFamily.WINDOWS.isCurrent() && LocalFile.SCHEMA.equals(protocol)))
+            return getFile(childURL, parent, instantiationParams);
+
+        AbstractFile child;
+        if (isArchiveFilename(childURL.getFilename())) {
+            // Same as getFile(): the archive file is pooled once it exists, and its cached instance reused
+            child = filePool.get(childURL);
+            if (child == null) {
+                child = wrapArchive(createRawFile(childURL, defaultAuthenticator, instantiationParams));
+                if (child.exists())
+                    filePool.put(childURL, child);
+            }
+        }
+        else {
+            child = createRawFile(childURL, defaultAuthenticator, instantiationParams);
+            filePool.put(child.getURL(), child);
+        }
+
+        child.setParent(parent);
+
+        return child;
+    }
+
     private static AbstractFile createRawFile(FileURL fileURL, Authenticator authenticator, Map<String, Object> instantiationParams) throws IOException {
         String scheme = fileURL.getScheme().toLowerCase();
 
@@ -16,6 +16,8 @@
  */
 package com.mucommander.commons.file;
 
+import java.util.Set;
+
 /**
  * This class is an implementation of {@link ProxyFile} that provides an interface
  * for detecting changes to the content of the specified file.
@@ -36,6 +38,20 @@ public abstract class MonitoredFile extends ProxyFile {
      */
     public abstract boolean isChanged(boolean periodicCheck);
 
+    /**
+     * Returns the names of the children of this file that have been created, deleted or modified, as detected by the
+     * last call to {@link #isChanged(boolean)} that returned {@code true}. This allows the changes to be applied to a
+     * listing of this file's children without listing them all again.
+     *
+     * <p>This implementation returns {@code null}, meaning that the changed children are not known.</p>
+     *
+     * @return the names of the changed children, or {@code null} if they are not known, in which case the children of
+     * this file should be listed again
+     */
+    public Set<String> getChangedChildren() {
+        return null;
+    }
+
     /**
      * Start watching for changes to the content of this file.
      */
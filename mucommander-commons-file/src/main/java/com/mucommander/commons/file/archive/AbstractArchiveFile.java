@@ -32,9 +32,12 @@ import com.mucommander.commons.file.filter.FilenameFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.tree.DefaultMutableTreeNode;
 import java.io.IOException;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 import java.util.WeakHashMap;
 
@@ -62,7 +65,9 @@ import java.util.WeakHashMap;
  * ones at the top level but also the ones nested one of several levels below. Using this list of entries, it creates
  * a tree to map the structure of the archive and list the content of any particular directory within the archive.
  * This tree is recreated (<code>getEntryIterator()</code> is called again) only if the archive file has changed, i.e.
- * if its date has changed since the tree was created.</p>
+ * if its date has changed since the tree was created. When an {@link ArchiveEntryCache} is in use and the format
+ * supports it (see {@link #isEntryCacheSupported()}), the entries are also persisted so that the archive does not need
+ * to be read again when browsed by another instance, as long as its size and date are unchanged.</p>
  *
  * <p>Files returned by the <code>ls()</code> are {@link AbstractArchiveEntryFile} instances which use an {@link ArchiveEntry}
  * object to retrieve the entry's attributes. In turn, these <code>AbstractArchiveEntryFile</code> instances query the
@@ -124,16 +129,42 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         archiveEntryFiles = new WeakHashMap<ArchiveEntry, AbstractArchiveEntryFile>();
 
         long start = System.currentTimeMillis();
+        ArchiveEntryCache cache = isEntryCacheSupported()?ArchiveEntryCache.getInstance():null;
+        if(cache!=null) {
+            List<ArchiveEntry> cachedEntries = cache.get(this);
+            if(cachedEntries!=null) {
+                for(ArchiveEntry entry : cachedEntries)
+                    treeRoot.addArchiveEntry(entry);
+
+                LOGGER.info("entries tree loaded from cache in "+(System.currentTimeMillis()-start)+" ms");
+
+                this.entryTreeRoot = treeRoot;
+                declareEntriesTreeUpToDate();
+                return;
+            }
+        }
+
+        // Attributes the entries will be cached against, retrieved before the archive is read in case it changes
+        long size = getSize();
+        long date = getDate();
+        List<ArchiveEntry> entriesToCache = cache==null?null:new ArrayList<ArchiveEntry>();
+
         try (ArchiveEntryIterator entries = getEntryIterator()) {
             ArchiveEntry entry;
-            while((entry=entries.nextEntry())!=null)
+            while((entry=entries.nextEntry())!=null) {
                 treeRoot.addArchiveEntry(entry);
+                if(entriesToCache!=null)
+                    entriesToCache.add(entry);
+            }
 
             LOGGER.info("entries tree created in "+(System.currentTimeMillis()-start)+" ms");
 
             this.entryTreeRoot = treeRoot;
             declareEntriesTreeUpToDate();
         }
+
+        if(entriesToCache!=null)
+            cache.put(this, size, date, entriesToCache);
     }
 
     /**
@@ -184,11 +215,10 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     protected void removeFromEntriesTree(ArchiveEntry entry) throws IOException, UnsupportedFileOperationException {
         checkEntriesTree();
-        DefaultMutableTreeNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
+        ArchiveEntryNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
 
         if(entryNode!=null) {
-            DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
-            parentNode.remove(entryNode);
+            entryNode.getParent().remove(entryNode);
         }
     }
 
@@ -215,7 +245,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         if(!entryFile.isBrowsable())
             throw new IOException();
 
-        DefaultMutableTreeNode matchNode = entryTreeRoot.findEntryNode(entryFile.getEntry().getPath());
+        ArchiveEntryNode matchNode = entryTreeRoot.findEntryNode(entryFile.getEntry().getPath());
         if(matchNode==null)
             throw new IOException();
 
@@ -228,7 +258,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
      * underlying file protocol.
      */
-    private AbstractFile[] ls(DefaultMutableTreeNode treeNode, AbstractFile parentFile, FilenameFilter filenameFilter, FileFilter fileFilter) throws IOException, UnsupportedFileOperationException {
+    private AbstractFile[] ls(ArchiveEntryNode treeNode, AbstractFile parentFile, FilenameFilter filenameFilter, FileFilter fileFilter) throws IOException, UnsupportedFileOperationException {
         AbstractFile files[];
         int nbChildren = treeNode.getChildCount();
 
@@ -237,14 +267,14 @@ public abstract class AbstractArchiveFile extends ProxyFile {
             files = new AbstractFile[nbChildren];
 
             for(int c=0; c<nbChildren; c++) {
-                files[c] = getArchiveEntryFile((ArchiveEntry)(((DefaultMutableTreeNode)treeNode.getChildAt(c)).getUserObject()), parentFile);
+                files[c] = getArchiveEntryFile(treeNode.getChildAt(c).getEntry(), parentFile);
             }
         }
         // Use provided FilenameFilter and temporarily store created entry files that match the filter in a Vector
         else {
             Vector<AbstractFile> filesV = new Vector<AbstractFile>();
             for(int c=0; c<nbChildren; c++) {
-                ArchiveEntry entry = (ArchiveEntry)(((DefaultMutableTreeNode)treeNode.getChildAt(c)).getUserObject());
+                ArchiveEntry entry = treeNode.getChildAt(c).getEntry();
                 if(!filenameFilter.accept(entry.getName()))
                     continue;
 
@@ -335,7 +365,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * underlying file protocol.
      */
     public AbstractFile getArchiveEntryFile(String entryPath) throws IOException, UnsupportedFileOperationException {
-        DefaultMutableTreeNode entryNode = getArchiveEntryNode(entryPath);
+        ArchiveEntryNode entryNode = getArchiveEntryNode(entryPath);
 
         if (entryNode==null) {
             int depth = ArchiveEntry.getDepth(entryPath);
@@ -370,7 +400,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
      * underlying file protocol.
      */
-    public DefaultMutableTreeNode getArchiveEntryNode(String entryPath) throws IOException, UnsupportedFileOperationException {
+    public ArchiveEntryNode getArchiveEntryNode(String entryPath) throws IOException, UnsupportedFileOperationException {
         // Make sure the entries tree is created and up-to-date
         checkEntriesTree();
 
@@ -388,16 +418,58 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * @param entryNode tree node corresponding to the entry for which to return a file
      * @return an {@link AbstractFile} instance corresponding to the given entry node
      */
-    protected AbstractFile getArchiveEntryFile(DefaultMutableTreeNode entryNode) throws IOException {
-        DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
+    protected AbstractFile getArchiveEntryFile(ArchiveEntryNode entryNode) throws IOException {
+        ArchiveEntryNode parentNode = entryNode.getParent();
         return getArchiveEntryFile(
-                (ArchiveEntry)entryNode.getUserObject(),
+                entryNode.getEntry(),
                 parentNode==entryTreeRoot
                     ?this
                     :getArchiveEntryFile(parentNode)
         );
     }
 
+    /**
+     * Returns <code>true</code> if the entries of this archive can be stored in the {@link ArchiveEntryCache}, so that
+     * the archive does not need to be read again to list its entries the next time it is browsed.
+     * This method returns <code>false</code>: it must be overridden by implementations whose
+     * {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} method is able to read the entries created by
+     * {@link #readCachedEntry(DataInput)}, i.e. does not rely on the entries' {@link ArchiveEntry#getEntryObject()
+     * entry object} or on state that is only available after the archive has been listed.
+     *
+     * @return <code>true</code> if the entries of this archive can be cached
+     */
+    protected boolean isEntryCacheSupported() {
+        return false;
+    }
+
+    /**
+     * Writes the given entry to the {@link ArchiveEntryCache}. The entry's path is stored by the cache, this method
+     * writes all the other attributes that are needed to recreate the entry with {@link #readCachedEntry(DataInput)}.
+     * This implementation writes the attributes that are common to all entries, and must be overridden by archives
+     * whose entries carry additional information.
+     *
+     * @param entry the entry to write
+     * @param out the output to write the entry to
+     * @throws IOException if an I/O error occurred
+     */
+    protected void writeCachedEntry(ArchiveEntry entry, DataOutput out) throws IOException {
+        ArchiveEntryCache.writeAttributes(entry, out);
+    }
+
+    /**
+     * Reads an entry that was written to the {@link ArchiveEntryCache} by {@link #writeCachedEntry(ArchiveEntry, DataOutput)}.
+     * The path of the returned entry is set by the cache.
+     *
+     * @param in the input to read the entry from
+     * @return the entry that was read
+     * @throws IOException if an I/O error occurred
+     */
+    protected ArchiveEntry readCachedEntry(DataInput in) throws IOException {
+        ArchiveEntry entry = new ArchiveEntry();
+        ArchiveEntryCache.readAttributes(entry, in);
+        return entry;
+    }
+
     public String getPassword() {
         return password;
     }
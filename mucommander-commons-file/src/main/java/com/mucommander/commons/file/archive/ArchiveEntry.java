@@ -96,7 +96,16 @@ public class ArchiveEntry extends SimpleFileAttributes {
      * @return this entry's filename
      */
     public String getName() {
-        String path = getPath();
+        return getName(getPath());
+    }
+
+    /**
+     * Extracts the filename from the specified entry path and returns it.
+     *
+     * @param path the entry path from which to extract the filename
+     * @return the filename of the given entry path
+     */
+    public static String getName(String path) {
         int len = path.length();
         // Remove trailing '/' if any
         if(path.charAt(len-1)=='/')
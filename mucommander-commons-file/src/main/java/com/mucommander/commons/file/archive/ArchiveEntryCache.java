@@ -0,0 +1,383 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import com.mucommander.commons.file.FilePermissions;
+import com.mucommander.commons.file.SimpleFilePermissions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent cache of archive listings, which spares archives from being parsed again when they are browsed after
+ * their {@link AbstractArchiveFile} instance has been garbage collected, or after muCommander has been restarted.
+ *
+ * <p>Each listing is stored in its own file within the cache folder, named after a hash of the archive's URL. Along
+ * with the entries, the file records the archive's URL, size and date, and the listing is discarded if any of them
+ * does not match the archive anymore. The cache folder is bounded in size: when a listing is stored, the listings
+ * that were least recently used are deleted until the folder fits within the allowed size again.</p>
+ *
+ * <p>The cache is disabled until {@link #setInstance(ArchiveEntryCache)} is called. Only archives whose
+ * {@link AbstractArchiveFile#isEntryCacheSupported()} method returns <code>true</code> are cached, as the entries
+ * of other formats carry state that cannot be persisted.</p>
+ */
+public class ArchiveEntryCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryCache.class);
+
+    /** Magic number that starts cache files: 'muAC' */
+    private final static int MAGIC = 0x6D754143;
+
+    /** Version of the cache file format, to be incremented whenever the format changes */
+    private final static int VERSION = 1;
+
+    /** Extension of cache files */
+    private final static String EXTENSION = ".entries";
+
+    /** Bits of the flags that store boolean entry attributes */
+    private final static int DIRECTORY = 1;
+    private final static int EXISTS = 2;
+    private final static int SYMLINK = 4;
+
+    /** The cache in use, <code>null</code> if the cache is disabled */
+    private static volatile ArchiveEntryCache instance;
+
+    /** Folder in which listings are stored */
+    private final File folder;
+
+    /** Maximum total size of the listings, in bytes */
+    private final long maxSize;
+
+    /**
+     * Creates a new cache that stores listings in the given folder, up to the given total size.
+     * The folder is created if it does not exist.
+     *
+     * @param folder the folder in which listings are stored
+     * @param maxSize maximum total size of the listings, in bytes
+     */
+    public ArchiveEntryCache(File folder, long maxSize) {
+        this.folder = folder;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache that is used by archive files, <code>null</code> if archive listings are not cached.
+     *
+     * @return the cache that is used by archive files, <code>null</code> if listings are not cached
+     */
+    public static ArchiveEntryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sets the cache that is used by archive files. Passing <code>null</code> disables the cache.
+     *
+     * @param cache the cache that is used by archive files, <code>null</code> to disable the cache
+     */
+    public static void setInstance(ArchiveEntryCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * Returns the folder in which listings are stored.
+     *
+     * @return the folder in which listings are stored
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns the maximum total size of the listings, in bytes.
+     *
+     * @return the maximum total size of the listings, in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the cached entries of the given archive, <code>null</code> if the archive's listing is not in the
+     * cache or if the archive has changed since the listing was stored. Errors are not reported: the cache is merely
+     * bypassed when it cannot be read.
+     *
+     * @param archive the archive whose entries are requested
+     * @return the entries of the archive, <code>null</code> if they are not cached
+     */
+    public List<ArchiveEntry> get(AbstractArchiveFile archive) {
+        String url = getKey(archive);
+        File file = getFile(url);
+        if(!file.exists())
+            return null;
+
+        List<ArchiveEntry> entries;
+        try {
+            entries = read(file, url, archive);
+        }
+        catch(IOException | RuntimeException e) {
+            LOGGER.info("failed to read cached listing of {}", url, e);
+            entries = null;
+        }
+
+        if(entries==null) {
+            // The listing is either stale or corrupt, it will be replaced once the archive has been listed
+            file.delete();
+            return null;
+        }
+
+        // Mark the listing as recently used
+        file.setLastModified(System.currentTimeMillis());
+
+        return entries;
+    }
+
+    /**
+     * Reads the listing stored in the given file, returning <code>null</code> if it does not belong to the given
+     * archive or if the archive has changed since it was stored.
+     */
+    private static List<ArchiveEntry> read(File file, String url, AbstractArchiveFile archive) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt()!=MAGIC || in.readInt()!=VERSION
+                    || !in.readUTF().equals(url)
+                    || !in.readUTF().equals(archive.getClass().getName())
+                    || in.readLong()!=archive.getSize()
+                    || in.readLong()!=archive.getDate()) {
+                LOGGER.debug("discarding stale listing of {}", url);
+                return null;
+            }
+
+            int nbEntries = in.readInt();
+            List<ArchiveEntry> entries = new ArrayList<>(nbEntries);
+            String previousPath = "";
+            for(int i=0; i<nbEntries; i++) {
+                // Paths are stored as the number of characters they share with the previous path, followed by the rest
+                String path = previousPath.substring(0, in.readUnsignedShort()) + in.readUTF();
+                ArchiveEntry entry = archive.readCachedEntry(in);
+                entry.setPath(path);
+                entries.add(entry);
+                previousPath = path;
+            }
+
+            return entries;
+        }
+    }
+
+    /**
+     * Stores the given entries as the listing of the given archive, replacing any previous listing of the archive,
+     * and evicts the least recently used listings if the cache has grown too large. Errors are not reported: the
+     * listing is merely not cached when it cannot be written.
+     *
+     * @param archive the archive the entries belong to
+     * @param size size of the archive file at the time the entries were read
+     * @param date date of the archive file at the time the entries were read
+     * @param entries the entries of the archive, in the order they were listed
+     */
+    public void put(AbstractArchiveFile archive, long size, long date, List<ArchiveEntry> entries) {
+        String url = getKey(archive);
+        File file = getFile(url);
+        File tmpFile = null;
+        try {
+            folder.mkdirs();
+            tmpFile = File.createTempFile("listing", ".tmp", folder);
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(url);
+                out.writeUTF(archive.getClass().getName());
+                out.writeLong(size);
+                out.writeLong(date);
+
+                out.writeInt(entries.size());
+                String previousPath = "";
+                for(ArchiveEntry entry : entries) {
+                    String path = entry.getPath();
+                    int prefixLength = getCommonPrefixLength(previousPath, path);
+                    out.writeShort(prefixLength);
+                    out.writeUTF(path.substring(prefixLength));
+                    archive.writeCachedEntry(entry, out);
+                    previousPath = path;
+                }
+            }
+
+            if(tmpFile.length()>maxSize) {
+                LOGGER.debug("listing of {} exceeds the cache size", url);
+                return;
+            }
+
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmpFile = null;
+        }
+        catch(IOException | RuntimeException e) {
+            LOGGER.info("failed to cache listing of {}", url, e);
+            return;
+        }
+        finally {
+            if(tmpFile!=null)
+                tmpFile.delete();
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used listings until the total size of the cache folder does not exceed the maximum
+     * size.
+     */
+    private void evict() {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if(files==null)
+            return;
+
+        long totalSize = 0;
+        long[] lastModified = new long[files.length];
+        for(int i=0; i<files.length; i++) {
+            totalSize += files[i].length();
+            lastModified[i] = files[i].lastModified();
+        }
+
+        if(totalSize<=maxSize)
+            return;
+
+        Integer[] byLastUse = new Integer[files.length];
+        for(int i=0; i<files.length; i++)
+            byLastUse[i] = i;
+        Arrays.sort(byLastUse, Comparator.comparingLong(i -> lastModified[i]));
+
+        for(int i=0; i<files.length && totalSize>maxSize; i++) {
+            File file = files[byLastUse[i]];
+            long length = file.length();
+            if(file.delete())
+                totalSize -= length;
+        }
+    }
+
+    /**
+     * Returns the key under which the listing of the given archive is stored: its URL, without credentials.
+     */
+    private static String getKey(AbstractArchiveFile archive) {
+        return archive.getURL().toString(false);
+    }
+
+    /**
+     * Returns the file in which the listing stored under the given key is stored.
+     */
+    private File getFile(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length*2 + EXTENSION.length());
+            for(byte b : digest)
+                name.append(Character.forDigit((b>>4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+            return new File(folder, name.append(EXTENSION).toString());
+        }
+        catch(NoSuchAlgorithmException e) {
+            // SHA-1 is available on all Java platforms
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of leading characters the given strings have in common, capped to what can be stored in an
+     * unsigned short.
+     */
+    private static int getCommonPrefixLength(String s1, String s2) {
+        int max = Math.min(0xFFFF, Math.min(s1.length(), s2.length()));
+        int i = 0;
+        while(i<max && s1.charAt(i)==s2.charAt(i))
+            i++;
+
+        return i;
+    }
+
+    /**
+     * Writes the attributes that are common to all entries, except for the path which is stored by the cache itself.
+     * This method is meant to be used by {@link AbstractArchiveFile#writeCachedEntry(ArchiveEntry, DataOutput)}
+     * implementations.
+     *
+     * @param entry the entry whose attributes to write
+     * @param out the output to write the attributes to
+     * @throws IOException if an I/O error occurred
+     * @see #readAttributes(ArchiveEntry, DataInput)
+     */
+    public static void writeAttributes(ArchiveEntry entry, DataOutput out) throws IOException {
+        out.writeByte((entry.isDirectory()?DIRECTORY:0) | (entry.exists()?EXISTS:0) | (entry.isSymlink()?SYMLINK:0));
+        out.writeLong(entry.getDate());
+        out.writeLong(entry.getSize());
+
+        FilePermissions permissions = entry.getPermissions();
+        out.writeShort(permissions.getIntValue());
+        out.writeShort(permissions.getMask().getIntValue());
+
+        writeString(entry.getOwner(), out);
+        writeString(entry.getGroup(), out);
+        writeString(entry.getLinkTarget(), out);
+    }
+
+    /**
+     * Reads the attributes written by {@link #writeAttributes(ArchiveEntry, DataOutput)} into the given entry.
+     * This method is meant to be used by {@link AbstractArchiveFile#readCachedEntry(DataInput)} implementations.
+     *
+     * @param entry the entry whose attributes to set
+     * @param in the input to read the attributes from
+     * @throws IOException if an I/O error occurred
+     */
+    public static void readAttributes(ArchiveEntry entry, DataInput in) throws IOException {
+        int flags = in.readUnsignedByte();
+        entry.setDirectory((flags & DIRECTORY)!=0);
+        entry.setExists((flags & EXISTS)!=0);
+        entry.setSymlink((flags & SYMLINK)!=0);
+        entry.setDate(in.readLong());
+        entry.setSize(in.readLong());
+
+        int permissions = in.readUnsignedShort();
+        entry.setPermissions(new SimpleFilePermissions(permissions, in.readUnsignedShort()));
+
+        entry.setOwner(readString(in));
+        entry.setGroup(readString(in));
+        entry.setLinkTarget(readString(in));
+    }
+
+    private static void writeString(String s, DataOutput out) throws IOException {
+        out.writeBoolean(s!=null);
+        if(s!=null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean()?in.readUTF():null;
+    }
+}
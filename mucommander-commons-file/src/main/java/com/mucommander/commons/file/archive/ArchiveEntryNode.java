@@ -0,0 +1,179 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A node of an {@link ArchiveEntryTree}, holding an {@link ArchiveEntry} and the nodes of the entries it contains.
+ *
+ * <p>Children are stored in an array, in the order they were added. Nodes with more than a handful of children
+ * also index them by name in a hash map, so that looking up a child takes constant time regardless of the number of
+ * entries a directory contains.</p>
+ */
+public class ArchiveEntryNode {
+
+    /** Number of children above which children are indexed by name */
+    private final static int INDEX_THRESHOLD = 8;
+
+    private final static ArchiveEntryNode[] NO_CHILDREN = new ArchiveEntryNode[0];
+
+    /** The entry this node corresponds to, <code>null</code> for the root node */
+    private ArchiveEntry entry;
+
+    /** The node that contains this one, <code>null</code> for the root node and for nodes that have been removed */
+    private ArchiveEntryNode parent;
+
+    /** Child nodes, only the first <code>nbChildren</code> elements are used */
+    private ArchiveEntryNode[] children = NO_CHILDREN;
+    private int nbChildren;
+
+    /** Child nodes indexed by name, <code>null</code> until the number of children exceeds the threshold */
+    private HashMap<String, ArchiveEntryNode> childrenByName;
+
+    /**
+     * Creates a new node for the given entry.
+     *
+     * @param entry the entry the node corresponds to, <code>null</code> for a root node
+     */
+    public ArchiveEntryNode(ArchiveEntry entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * Returns the entry this node corresponds to, <code>null</code> if this node is a root node.
+     *
+     * @return the entry this node corresponds to
+     */
+    public ArchiveEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Sets the entry this node corresponds to.
+     *
+     * @param entry the entry this node corresponds to
+     */
+    public void setEntry(ArchiveEntry entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * Returns the node that contains this one, <code>null</code> if this node is a root node.
+     *
+     * @return the node that contains this one
+     */
+    public ArchiveEntryNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the number of direct children of this node.
+     *
+     * @return the number of direct children of this node
+     */
+    public int getChildCount() {
+        return nbChildren;
+    }
+
+    /**
+     * Returns the child at the given index, in the order children were added.
+     *
+     * @param index index of the child, between 0 and {@link #getChildCount()}-1
+     * @return the child at the given index
+     */
+    public ArchiveEntryNode getChildAt(int index) {
+        if(index>=nbChildren)
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        return children[index];
+    }
+
+    /**
+     * Returns the direct child with the given name, <code>null</code> if this node has no such child.
+     * The name must not contain any separator character.
+     *
+     * @param name name of the child to look up
+     * @return the child with the given name, <code>null</code> if there is none
+     */
+    public ArchiveEntryNode getChild(String name) {
+        if(childrenByName!=null)
+            return childrenByName.get(name);
+
+        for(int i=0; i<nbChildren; i++) {
+            if(getName(children[i]).equals(name))
+                return children[i];
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds the given node as the last child of this node. The node must not already be a child of this node, nor have
+     * the same name as one of its children.
+     *
+     * @param child the node to add
+     */
+    public void add(ArchiveEntryNode child) {
+        if(nbChildren==children.length)
+            children = Arrays.copyOf(children, Math.max(4, nbChildren + (nbChildren>>1)));
+        children[nbChildren++] = child;
+        child.parent = this;
+
+        if(childrenByName!=null)
+            childrenByName.put(getName(child), child);
+        else if(nbChildren>INDEX_THRESHOLD) {
+            childrenByName = new HashMap<>(nbChildren*2);
+            for(int i=0; i<nbChildren; i++)
+                childrenByName.put(getName(children[i]), children[i]);
+        }
+    }
+
+    /**
+     * Removes the given node from the children of this node. This method has no effect if the given node is not a
+     * child of this node.
+     *
+     * @param child the node to remove
+     */
+    public void remove(ArchiveEntryNode child) {
+        for(int i=0; i<nbChildren; i++) {
+            if(children[i]==child) {
+                System.arraycopy(children, i+1, children, i, nbChildren-i-1);
+                children[--nbChildren] = null;
+                child.parent = null;
+
+                if(childrenByName!=null)
+                    childrenByName.remove(getName(child));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the name under which the given node is indexed, i.e. its entry's name without trailing separator.
+     */
+    private static String getName(ArchiveEntryNode node) {
+        return ArchiveEntry.getName(node.entry.getPath());
+    }
+
+    @Override
+    public String toString() {
+        return entry==null?"":entry.getPath();
+    }
+}
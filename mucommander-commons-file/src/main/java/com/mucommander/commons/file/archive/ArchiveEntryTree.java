@@ -18,30 +18,33 @@
 
 package com.mucommander.commons.file.archive;
 
-import com.mucommander.commons.file.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.tree.DefaultMutableTreeNode;
-
 /**
  * Stores archive entries and organizes them in a tree structure that maps entries in the way they are organized
  * inside the archive. An instance of <code>ArchiveEntryTree</code> also acts as the root node: all entry nodes
  * are children of it (direct or indirect).
  *
+ * <p>Nodes index their children by name (see {@link ArchiveEntryNode}), so adding or looking up an entry takes time
+ * proportional to its depth rather than to the number of entries of its parent folders: the tree of an archive is
+ * built in linear time, even when the archive is flat and contains a large number of entries.</p>
+ *
  * @author Maxence Bernard
  */
-public class ArchiveEntryTree extends DefaultMutableTreeNode {
+public class ArchiveEntryTree extends ArchiveEntryNode {
     private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryTree.class);
 
     /**
      * Creates a new empty tree.
      */
     public ArchiveEntryTree() {
+        super(null);
     }
 
     /**
-     * Adds the given entry to the archive tree, creating parent nodes as necessary.
+     * Adds the given entry to the archive tree, creating parent nodes as necessary. If the tree already contains an
+     * entry with the same path, the existing entry is replaced by the given one.
      *
      * @param entry the entry to add to the tree
      */
@@ -49,35 +52,18 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
         String entryPath = entry.getPath();
         int entryDepth = entry.getDepth();
         int slashPos = 0;
-        DefaultMutableTreeNode node = this;
+        ArchiveEntryNode node = this;
         for(int d=1; d<=entryDepth; d++) {
-            if(d==entryDepth && !entry.isDirectory()) {
-                // Create a leaf node for the entry
-                entry.setExists(true);      // the entry has to exist
-                node.add(new DefaultMutableTreeNode(entry, true));
-                break;
-            }
-
             String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
 
-            int nbChildren = node.getChildCount();
-            DefaultMutableTreeNode childNode = null;
-            boolean matchFound = false;
-            for(int c=0; c<nbChildren; c++) {
-                childNode = (DefaultMutableTreeNode)node.getChildAt(c);
-                // Path comparison is 'trailing slash insensitive'
-                if(PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found a match
-                    matchFound = true;
-                    break;
-                }
-            }
-
-            if(matchFound) {
+            // Name comparison is 'trailing slash insensitive'
+            ArchiveEntryNode childNode = node.getChild(ArchiveEntry.getName(subPath));
+            if(childNode!=null) {
                 if(d==entryDepth) {
                     LOGGER.trace("Replacing entry for node "+childNode);
                     // Replace existing entry
-                    childNode.setUserObject(entry);
+                    entry.setExists(true);      // the entry has to exist
+                    childNode.setEntry(entry);
                 }
                 else {
                     node = childNode;
@@ -87,11 +73,11 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
                 if(d==entryDepth) {
                     // Create a leaf node for the entry
                     entry.setExists(true);      // the entry has to exist
-                    node.add(new DefaultMutableTreeNode(entry, true));
+                    node.add(new ArchiveEntryNode(entry));
                 }
                 else {
                     LOGGER.trace("Creating node for "+subPath);
-                    childNode = new DefaultMutableTreeNode(new ArchiveEntry(subPath, true, entry.getDate(), 0, true), true);
+                    childNode = new ArchiveEntryNode(new ArchiveEntry(subPath, true, entry.getDate(), 0, true));
                     node.add(childNode);
                     node = childNode;
                 }
@@ -111,30 +97,16 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
      * @param entryPath the path to the entry to look up in this tree
      * @return the node that corresponds to the specified entry path
      */
-    public DefaultMutableTreeNode findEntryNode(String entryPath) {
+    public ArchiveEntryNode findEntryNode(String entryPath) {
         int entryDepth = ArchiveEntry.getDepth(entryPath);
         int slashPos = 0;
-        DefaultMutableTreeNode currentNode = this;
+        ArchiveEntryNode currentNode = this;
         for(int d=1; d<=entryDepth; d++) {
             String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
 
-            int nbChildren = currentNode.getChildCount();
-            DefaultMutableTreeNode matchNode = null;
-            for(int c=0; c<nbChildren; c++) {
-                DefaultMutableTreeNode childNode = (DefaultMutableTreeNode)currentNode.getChildAt(c);
-
-                // Path comparison is 'trailing slash insensitive'
-                if(PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found the node, let's return it
-                    matchNode = childNode;
-                    break;
-                }
-            }
-
-            if(matchNode==null)
+            currentNode = currentNode.getChild(ArchiveEntry.getName(subPath));
+            if(currentNode==null)
                 return null;    // No node maching the provided path, return null
-
-            currentNode = matchNode;
         }
 
         return currentNode;
@@ -52,6 +52,17 @@ public class ConnectionPool implements Runnable {
     private final static int MAX_CONNECTIONS_PER_REALM = 4;
 
 
+    /**
+     * Returns the maximum number of simultaneous connections that the pool opens for a given realm/credentials combo.
+     * Callers performing concurrent operations on a realm should not exceed this number, or they will block waiting
+     * for a connection to be released.
+     *
+     * @return the maximum number of simultaneous connections per realm
+     */
+    public static int getMaxConnectionsPerRealm() {
+        return MAX_CONNECTIONS_PER_REALM;
+    }
+
     public static ConnectionHandler getConnectionHandler(ConnectionHandlerFactory connectionHandlerFactory, FileURL url, boolean acquireLock) throws InterruptedIOException {
         FileURL realm = url.getRealm();
 
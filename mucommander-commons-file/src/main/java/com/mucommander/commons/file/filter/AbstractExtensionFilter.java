@@ -50,6 +50,19 @@ public class AbstractExtensionFilter extends AbstractStringCriterionFilter {
     }
 
 
+    /**
+     * Returns the extensions this filter matches.
+     *
+     * @return the extensions this filter matches
+     */
+    public String[] getExtensions() {
+        String[] result = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++)
+            result[i] = new String(extensions[i]);
+        return result;
+    }
+
+
     //////////////////////////////////////////////////
     // AbstractStringCriterionFilter implementation //
     //////////////////////////////////////////////////
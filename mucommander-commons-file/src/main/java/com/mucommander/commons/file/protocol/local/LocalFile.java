@@ -33,13 +33,18 @@ import java.nio.channels.FileChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileOwnerAttributeView;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
@@ -60,6 +65,7 @@ import com.mucommander.commons.file.MonitoredFile;
 import com.mucommander.commons.file.PermissionAccess;
 import com.mucommander.commons.file.PermissionBits;
 import com.mucommander.commons.file.PermissionType;
+import com.mucommander.commons.file.SimpleFilePermissions;
 import com.mucommander.commons.file.UnsupportedFileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.filter.FilenameFilter;
@@ -69,10 +75,14 @@ import com.mucommander.commons.file.util.Kernel32API;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.file.util.PathUtils.ResolvedDestination;
 import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.FileChannelSource;
+import com.mucommander.commons.io.FileTransferError;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.FileUtils;
 import com.mucommander.commons.io.FilteredOutputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.StreamUtils;
 import com.mucommander.commons.runtime.OsFamily;
 
 /**
@@ -160,6 +170,15 @@ public class LocalFile extends ProtocolFile {
 
     private String owner, group;
 
+    /** The attributes class that holds the most information in a single call on the current platform */
+    private final static Class<? extends BasicFileAttributes> BULK_ATTRIBUTES_CLASS =
+            IS_WINDOWS ? DosFileAttributes.class
+                    : FileSystems.getDefault().supportedFileAttributeViews().contains("posix") ? PosixFileAttributes.class
+                    : BasicFileAttributes.class;
+
+    /** Name of the user the JVM is running as, whose permissions are those reported by {@link #getPermissions()} */
+    private final static String CURRENT_USER = System.getProperty("user.name");
+
     /**
      * List of known UNIX filesystems.
      */
@@ -695,6 +714,40 @@ public class LocalFile extends ProtocolFile {
         return new LocalRandomAccessOutputStream(new RandomAccessFile(file, "rw").getChannel());
     }
 
+    /**
+     * Implementation notes: if the given <code>InputStream</code> reads from a local file (see
+     * {@link StreamUtils#getFileChannel(InputStream)}), the data is transferred from channel to channel, letting the
+     * operating system copy it without going through a heap buffer. Otherwise, the stream is copied the regular way.
+     */
+    @Override
+    public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+        if (StreamUtils.getFileChannel(in) == null) {
+            super.copyStream(in, append, length);
+            return;
+        }
+
+        FileChannel out;
+        try {
+            out = new FileOutputStream(absPath, append).getChannel();
+        }
+        catch(IOException e) {
+            throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
+        }
+
+        try {
+            StreamUtils.transferStream(in, out);
+        }
+        finally {
+            // Close channel even if transferStream() threw an IOException
+            try {
+                out.close();
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.CLOSING_DESTINATION);
+            }
+        }
+    }
+
     @Override
     public void delete() throws IOException {
         boolean ret = file.delete();
@@ -849,6 +902,24 @@ public class LocalFile extends ProtocolFile {
 
     @Override
     public AbstractFile[] ls(FilenameFilter filenameFilter) throws IOException {
+        return ls(filenameFilter, null);
+    }
+
+    /**
+     * Lists the children of this folder like {@link #ls(FilenameFilter)} and, if <code>attributes</code> is not
+     * <code>null</code>, reads the attributes of each child in bulk while the directory entry is hot. The attributes
+     * of the i-th child are added at the i-th position of the given list, <code>null</code> if they could not be read.
+     *
+     * <p>The attributes are a snapshot taken at the time of the listing: they are meant to be handed over to a
+     * {@link com.mucommander.commons.file.CachedFile} created right away, and are not retained by this file or its
+     * children, whose getters keep querying the filesystem.</p>
+     *
+     * @param filenameFilter the FilenameFilter to be used to filter out files from the list, may be <code>null</code>
+     * @param attributes the list the children's attributes are added to, <code>null</code> not to read them
+     * @return the children files that this file contains
+     * @throws IOException if this file could not be listed
+     */
+    public AbstractFile[] ls(FilenameFilter filenameFilter, List<LocalFileAttributes> attributes) throws IOException {
         File files[] = file.listFiles(filenameFilter == null ? null : new LocalFilenameFilter(filenameFilter));
 
         if (files == null)
@@ -866,12 +937,116 @@ public class LocalFile extends ProtocolFile {
 
             // Retrieves an AbstractFile (LocalFile or AbstractArchiveFile) instance that's potentially already in
             // the cache, reuse this file as the file's parent, and the already-created java.io.File instance.
-            children[i] = FileFactory.getFile(childURL, this, Collections.singletonMap("createdFile", files[i]));
+            // Only the child's filename needs to be resolved, this file's path has been resolved already.
+            children[i] = FileFactory.getChildFile(childURL, this, Collections.singletonMap("createdFile", files[i]));
+
+            if (attributes != null)
+                attributes.add(readAttributes(files[i]));
         }
 
         return children;
     }
 
+    /**
+     * Reads the attributes of the given file with a single call to the filesystem, as opposed to one call per
+     * attribute when using the <code>java.io.File</code> getters. Symbolic links need a second call to resolve the
+     * attributes of their target. Returns <code>null</code> if the attributes could not be read.
+     */
+    private static LocalFileAttributes readAttributes(File file) {
+        Path path = file.toPath();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BULK_ATTRIBUTES_CLASS, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("failed to read attributes of {}", file, e);
+            return null;
+        }
+
+        LocalFileAttributes attributes = new LocalFileAttributes();
+        attributes.setSymlink(attrs.isSymbolicLink());
+        attributes.setHidden(attrs instanceof DosFileAttributes ? ((DosFileAttributes) attrs).isHidden()
+                : file.getName().startsWith("."));
+
+        // Other attributes are those of the link's target, like the java.io.File getters report them
+        if (attrs.isSymbolicLink()) {
+            try {
+                attrs = Files.readAttributes(path, BULK_ATTRIBUTES_CLASS);
+            } catch (IOException | RuntimeException e) {
+                // Broken link
+                return attributes;
+            }
+        }
+
+        attributes.setExists(true);
+        attributes.setDirectory(attrs.isDirectory());
+        attributes.setDate(attrs.lastModifiedTime().toMillis());
+        attributes.setSize(attrs.size());
+
+        if (attrs instanceof PosixFileAttributes) {
+            PosixFileAttributes posixAttrs = (PosixFileAttributes) attrs;
+            attributes.setOwner(posixAttrs.owner().getName());
+            attributes.setGroup(posixAttrs.group().getName());
+            attributes.setPermissions(getCurrentUserPermissions(posixAttrs, attributes.getOwner()));
+        } else if (attrs instanceof DosFileAttributes) {
+            // Under Windows, files are always readable and 'executable', and writable unless they are read-only
+            // (the read-only attribute is ignored for directories)
+            int userPerms = PermissionType.READ.toInt() | PermissionType.EXECUTE.toInt();
+            if (attrs.isDirectory() || !((DosFileAttributes) attrs).isReadOnly())
+                userPerms |= PermissionType.WRITE.toInt();
+            attributes.setPermissions(new SimpleFilePermissions(userPerms << 6, LocalFilePermissions.MASK));
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Returns the permissions of the current user on a file with the given POSIX attributes, the way
+     * {@link #getPermissions()} reports them, <code>null</code> if they can't be told from the mode bits alone.
+     */
+    private static FilePermissions getCurrentUserPermissions(PosixFileAttributes attrs, String owner) {
+        if (CURRENT_USER == null)
+            return null;
+
+        Set<PosixFilePermission> permissions = attrs.permissions();
+        int userPerms;
+        if ("root".equals(CURRENT_USER)) {
+            // The superuser can read and write anything, and execute folders and files that anyone can execute
+            userPerms = PermissionType.READ.toInt() | PermissionType.WRITE.toInt();
+            if (attrs.isDirectory() || permissions.contains(PosixFilePermission.OWNER_EXECUTE)
+                    || permissions.contains(PosixFilePermission.GROUP_EXECUTE)
+                    || permissions.contains(PosixFilePermission.OTHERS_EXECUTE))
+                userPerms |= PermissionType.EXECUTE.toInt();
+        } else if (CURRENT_USER.equals(owner)) {
+            userPerms = getPermissionBits(permissions, PosixFilePermission.OWNER_READ,
+                    PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+        } else {
+            // The group bits apply if the user is a member of the file's group, the others bits otherwise: finding
+            // out about the user's groups is not worth it, the filesystem is asked later unless both agree
+            userPerms = getPermissionBits(permissions, PosixFilePermission.GROUP_READ,
+                    PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE);
+            if (userPerms != getPermissionBits(permissions, PosixFilePermission.OTHERS_READ,
+                    PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE))
+                return null;
+        }
+
+        return new SimpleFilePermissions(userPerms << 6, LocalFilePermissions.MASK);
+    }
+
+    /**
+     * Returns the read, write and execute bits of the given permission set, for the given permission types.
+     */
+    private static int getPermissionBits(Set<PosixFilePermission> permissions, PosixFilePermission read,
+            PosixFilePermission write, PosixFilePermission execute) {
+        int bits = 0;
+        if (permissions.contains(read))
+            bits |= PermissionType.READ.toInt();
+        if (permissions.contains(write))
+            bits |= PermissionType.WRITE.toInt();
+        if (permissions.contains(execute))
+            bits |= PermissionType.EXECUTE.toInt();
+        return bits;
+    }
+
     @Override
     public boolean isHidden() {
         return file.isHidden();
@@ -961,7 +1136,7 @@ public class LocalFile extends ProtocolFile {
      * <code>InterruptibleChannel</code> and allow a thread waiting for an I/O to be gracefully interrupted using
      * <code>Thread#interrupt()</code>.
      */
-    public static class LocalRandomAccessInputStream extends RandomAccessInputStream {
+    public static class LocalRandomAccessInputStream extends RandomAccessInputStream implements FileChannelSource {
 
         private final FileChannel channel;
         private final ByteBuffer bb;
@@ -1012,6 +1187,11 @@ public class LocalFile extends ProtocolFile {
             return channel.position();
         }
 
+        @Override
+        public FileChannel getFileChannel() {
+            return channel;
+        }
+
         public long getLength() throws IOException {
             return channel.size();
         }
@@ -1034,11 +1214,16 @@ public class LocalFile extends ProtocolFile {
      * </p>
      *
      */
-    public static class LocalInputStream extends FilterInputStream {
+    public static class LocalInputStream extends FilterInputStream implements FileChannelSource {
 
         public LocalInputStream(FileChannel channel) {
             super(new LocalRandomAccessInputStream(channel));
         }
+
+        @Override
+        public FileChannel getFileChannel() {
+            return ((LocalRandomAccessInputStream)in).getFileChannel();
+        }
     }
 
     /**
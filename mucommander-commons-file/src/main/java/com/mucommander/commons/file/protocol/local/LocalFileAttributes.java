@@ -0,0 +1,58 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.local;
+
+import com.mucommander.commons.file.SimpleFileAttributes;
+
+/**
+ * Attributes of a {@link LocalFile} that were read in bulk when its parent folder was listed, see
+ * {@link LocalFile#ls(com.mucommander.commons.file.filter.FilenameFilter, java.util.List)}.
+ *
+ * <p>On top of the regular attributes, the 'hidden' attribute is also provided. The permissions, owner and group
+ * attributes are <code>null</code> when they could not be retrieved along with the other attributes, in which case
+ * they have to be queried on the file.</p>
+ */
+public class LocalFileAttributes extends SimpleFileAttributes {
+
+    /** Hidden attribute */
+    private boolean hidden;
+
+    /**
+     * Creates a new LocalFileAttributes instance with unspecified/null attribute values.
+     */
+    public LocalFileAttributes() {
+    }
+
+    /**
+     * Returns <code>true</code> if the file is hidden.
+     *
+     * @return <code>true</code> if the file is hidden
+     */
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    /**
+     * Sets the file's hidden attribute.
+     *
+     * @param hidden <code>true</code> if the file is hidden
+     */
+    public void setHidden(boolean hidden) {
+        this.hidden = hidden;
+    }
+}
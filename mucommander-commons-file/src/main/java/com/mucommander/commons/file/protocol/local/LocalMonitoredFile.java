@@ -24,6 +24,8 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +46,8 @@ public class LocalMonitoredFile extends ModificationDateBasedMonitoredFile {
 
     private WatchService watchService;
     private WatchKey watchKey;
+    /** Names of the children reported by the last detected changes, null if they are not known */
+    private Set<String> changedChildren;
 
     private static WatchEvent.Kind<?>[] kinds = new WatchEvent.Kind<?>[] {
         StandardWatchEventKinds.ENTRY_CREATE,
@@ -95,19 +99,40 @@ public class LocalMonitoredFile extends ModificationDateBasedMonitoredFile {
             // the modification date of the file as it appears to be faster
             // than getting events from WatchService on macOS
             if (!periodicCheck && super.isChanged(false)) {
+                changedChildren = null;
                 return true;
             }
             WatchKey watchKey = watchService.poll();
-            if (watchKey != null) {
-                watchKey.reset();
-                return true;
+            if (watchKey == null) {
+                return false;
             }
-            return false;
+
+            // Collect the names of the changed children from all the pending events
+            Set<String> names = new HashSet<>();
+            do {
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    // Events may have been lost, in which case the changed children are not known
+                    if (names == null || event.kind() == StandardWatchEventKinds.OVERFLOW || event.context() == null) {
+                        names = null;
+                        continue;
+                    }
+                    names.add(event.context().toString());
+                }
+                watchKey.reset();
+            } while ((watchKey = watchService.poll()) != null);
+
+            changedChildren = names;
+            return true;
         } catch (Exception e) {
+            changedChildren = null;
             LOGGER.warn("unable to check changes in {}", this);
             LOGGER.error("exception while polling WatchService", e);
             return false;
         }
     }
 
+    @Override
+    public Set<String> getChangedChildren() {
+        return changedChildren;
+    }
 }
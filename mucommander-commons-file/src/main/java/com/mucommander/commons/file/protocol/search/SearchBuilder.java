@@ -43,6 +43,7 @@ public interface SearchBuilder {
     SearchBuilder matchCaseInsensitive(List<Pair<String, String>> properties);
     SearchBuilder matchRegex(List<Pair<String, String>> properties);
     SearchBuilder searchText(List<Pair<String, String>> properties);
+    SearchBuilder searchTextThreads(List<Pair<String, String>> properties);
     SearchBuilder searchSize(List<Pair<String, String>> properties);
     SearchJob build();
 }
@@ -210,6 +210,7 @@ public class SearchFile extends ProtocolFile implements SearchListener {
                 .matchCaseInsensitive(properties)
                 .matchRegex(properties)
                 .searchText(properties)
+                .searchTextThreads(properties)
                 .searchSize(properties)
                 .build();
         search.start();
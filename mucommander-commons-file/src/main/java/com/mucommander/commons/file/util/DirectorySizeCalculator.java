@@ -0,0 +1,535 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.protocol.FileProtocols;
+
+/**
+ * This class calculates the combined size of the files contained in folders, recursively.
+ *
+ * <p>Subfolders are processed in parallel by a shared fork/join pool, idle threads stealing the subfolders that other
+ * threads have yet to process. Local folders are walked with the <code>java.nio</code> API, which retrieves the
+ * attributes of each file in a single call, and files that have several hard links are counted only once per
+ * calculation when the file system exposes their inode. Other folders are listed with {@link AbstractFile#ls()},
+ * the number of folders listed concurrently being capped for each protocol so as not to overload servers.</p>
+ *
+ * <p>The sizes of all the folders that have been processed are cached along with their date, and reused as long as
+ * their date does not change. As the date of a folder only reflects changes of its direct children,
+ * {@link #invalidate(AbstractFile)} should be called when a change is known to have happened in a folder. The sizes of
+ * folders that contain files with several hard links are not cached, as they depend on the other folders that are part
+ * of the same calculation.</p>
+ *
+ * <p>Symbolic links are counted as files, but neither followed nor included in the size. This class is thread-safe.</p>
+ */
+public class DirectorySizeCalculator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySizeCalculator.class);
+
+    /** Maximum number of folder sizes that are cached by each instance */
+    public static final int MAX_CACHED_FOLDERS = 50000;
+
+    /** Maximum number of folders that are listed at once for protocols that have no specific limit */
+    private static final int DEFAULT_MAX_CONCURRENT_LISTINGS = 4;
+
+    /** Maximum number of folders that are listed at once, for protocols that need a specific limit */
+    private static final Map<String, Integer> MAX_CONCURRENT_LISTINGS = Map.of(
+            FileProtocols.FTP, 2,
+            FileProtocols.HTTP, 2,
+            FileProtocols.HTTPS, 2);
+
+    /** Permits to list folders, for each protocol */
+    private static final Map<String, Semaphore> listingPermits = new ConcurrentHashMap<>();
+
+    /** Attributes retrieved for local files when the file system supports the 'unix' attribute view */
+    private static final String UNIX_ATTRIBUTES = "unix:size,isDirectory,isSymbolicLink,lastModifiedTime,nlink,dev,ino";
+
+    /** True if the inode of local files can be retrieved to recognize hard links */
+    private static final boolean UNIX_ATTRIBUTES_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /** Pool the folders are processed in, listing folders is mostly I/O bound so more threads than processors are used */
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private static final DirectorySizeCalculator allFilesCalculator = new DirectorySizeCalculator(true);
+    private static final DirectorySizeCalculator visibleFilesCalculator = new DirectorySizeCalculator(false);
+
+    /** True if hidden files are included */
+    private final boolean includeHidden;
+
+    /** Sizes of the processed folders, least recently used first */
+    private final Map<String, DirectorySize> cache = Collections.synchronizedMap(new LinkedHashMap<String, DirectorySize>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DirectorySize> eldest) {
+            return size() > MAX_CACHED_FOLDERS;
+        }
+    });
+
+    private DirectorySizeCalculator(boolean includeHidden) {
+        this.includeHidden = includeHidden;
+    }
+
+    /**
+     * Returns the shared instance that includes hidden files or not, depending on the given parameter.
+     * The instances have caches of their own.
+     *
+     * @param includeHidden true to include hidden files, false to ignore them
+     * @return the shared instance
+     */
+    public static DirectorySizeCalculator getInstance(boolean includeHidden) {
+        return includeHidden ? allFilesCalculator : visibleFilesCalculator;
+    }
+
+    /**
+     * Returns the cached size of the given folder, <code>null</code> if it has not been calculated or if the date of
+     * the folder has changed since.
+     *
+     * @param folder a folder
+     * @return the cached size of the folder, <code>null</code> if there is none
+     */
+    public DirectorySize getCachedSize(AbstractFile folder) {
+        return getCachedSize(getKey(folder), folder.getDate());
+    }
+
+    private DirectorySize getCachedSize(String key, long date) {
+        DirectorySize size = cache.get(key);
+        return size != null && size.date == date ? size : null;
+    }
+
+    /**
+     * Starts calculating the size of the given folder in the shared pool, and returns the task doing so.
+     * The calculation stops as soon as possible once <code>cancelled</code> returns <code>true</code>, in which case
+     * the task returns the size calculated so far.
+     *
+     * @param folder the folder to calculate the size of
+     * @param progress the progress of the calculation, updated as files are processed
+     * @param cancelled tells whether the calculation has been cancelled, may be called from several threads
+     * @return the task calculating the size of the folder
+     */
+    public ForkJoinTask<DirectorySize> submit(AbstractFile folder, Progress progress, BooleanSupplier cancelled) {
+        Calculation calculation = new Calculation(progress, cancelled);
+        Object fileObject = folder.getUnderlyingFileObject();
+        FolderTask task = fileObject instanceof File ?
+                new LocalFolderTask(calculation, ((File)fileObject).toPath(), folder.getDate())
+                : new RemoteFolderTask(calculation, folder);
+
+        return pool.submit(task);
+    }
+
+    /**
+     * Calculates the size of the given folder in the shared pool, and waits for the calculation to complete.
+     *
+     * @param folder the folder to calculate the size of
+     * @param progress the progress of the calculation, updated as files are processed
+     * @param cancelled tells whether the calculation has been cancelled, may be called from several threads
+     * @return the size of the folder, or the size calculated so far if the calculation has been cancelled
+     * @see #submit(AbstractFile, Progress, BooleanSupplier)
+     */
+    public DirectorySize calculate(AbstractFile folder, Progress progress, BooleanSupplier cancelled) {
+        return submit(folder, progress, cancelled).join();
+    }
+
+    /**
+     * Removes the cached sizes of the given folder and of its ancestors, whose sizes depend on it.
+     * This method should be called when the contents of the folder are known to have changed.
+     *
+     * @param folder the folder that has changed
+     */
+    public static void invalidate(AbstractFile folder) {
+        for (AbstractFile file = folder; file != null; file = file.getParent()) {
+            String key = getKey(file);
+            allFilesCalculator.cache.remove(key);
+            visibleFilesCalculator.cache.remove(key);
+        }
+    }
+
+    /**
+     * Returns the key of the given folder in the cache: the absolute path of local folders, the URL of other ones.
+     */
+    private static String getKey(AbstractFile folder) {
+        Object fileObject = folder.getUnderlyingFileObject();
+        if (fileObject instanceof File)
+            return ((File)fileObject).getAbsolutePath();
+
+        return folder.getURL().toString(false);
+    }
+
+    private static Semaphore getListingPermits(String scheme) {
+        return listingPermits.computeIfAbsent(scheme,
+                s -> new Semaphore(MAX_CONCURRENT_LISTINGS.getOrDefault(s, DEFAULT_MAX_CONCURRENT_LISTINGS)));
+    }
+
+
+    /**
+     * Size of a folder: the combined size of the files it contains recursively, and their number.
+     */
+    public static class DirectorySize {
+        /** Date of the folder when its size was calculated */
+        private final long date;
+        private final long size;
+        private final long nbFiles;
+        private final long nbFolders;
+
+        private DirectorySize(long date, long size, long nbFiles, long nbFolders) {
+            this.date = date;
+            this.size = size;
+            this.nbFiles = nbFiles;
+            this.nbFolders = nbFolders;
+        }
+
+        /**
+         * Returns the combined size of the files contained in the folder, in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of files (folders excluded) contained in the folder.
+         */
+        public long getNbFiles() {
+            return nbFiles;
+        }
+
+        /**
+         * Returns the number of folders contained in the folder, the folder itself excluded.
+         */
+        public long getNbFolders() {
+            return nbFolders;
+        }
+    }
+
+
+    /**
+     * Progress of a calculation, which can be read while files are being processed by several threads.
+     */
+    public static class Progress {
+        private final LongAdder size = new LongAdder();
+        private final LongAdder nbFiles = new LongAdder();
+        private final LongAdder nbFolders = new LongAdder();
+        /** Notified of each file that is processed, null if none */
+        private final Consumer<AbstractFile> fileListener;
+
+        /**
+         * Creates a new <code>Progress</code> that is not notified of the files that are processed.
+         */
+        public Progress() {
+            this(null);
+        }
+
+        /**
+         * Creates a new <code>Progress</code> that notifies the given listener of each file or folder that is processed,
+         * except those whose size was cached. The listener is called by the threads of the calculation, and local files
+         * are resolved as {@link AbstractFile} only to be passed to it.
+         *
+         * @param fileListener notified of each file or folder that is processed
+         */
+        public Progress(Consumer<AbstractFile> fileListener) {
+            this.fileListener = fileListener;
+        }
+
+        /**
+         * Notifies the file listener, if any, of the file returned by the given supplier.
+         */
+        private void nextFile(Supplier<AbstractFile> file) {
+            if (fileListener == null)
+                return;
+
+            AbstractFile nextFile = file.get();
+            if (nextFile != null)
+                fileListener.accept(nextFile);
+        }
+
+        /**
+         * Returns the combined size of the files processed so far, in bytes.
+         */
+        public long getSize() {
+            return size.sum();
+        }
+
+        /**
+         * Returns the number of files (folders excluded) processed so far.
+         */
+        public long getNbFiles() {
+            return nbFiles.sum();
+        }
+
+        /**
+         * Returns the number of folders processed so far.
+         */
+        public long getNbFolders() {
+            return nbFolders.sum();
+        }
+    }
+
+
+    /**
+     * State shared by the tasks of a calculation.
+     */
+    private static class Calculation {
+        private final Progress progress;
+        private final BooleanSupplier cancelled;
+        /** Device and inode of the files with several hard links that have been counted */
+        private final Set<List<Object>> hardLinks = ConcurrentHashMap.newKeySet();
+
+        private Calculation(Progress progress, BooleanSupplier cancelled) {
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+    }
+
+
+    /**
+     * Calculates the size of a folder, forking a task for each of its subfolders.
+     */
+    private abstract class FolderTask extends RecursiveTask<DirectorySize> {
+        private static final long serialVersionUID = 1L;
+
+        protected final Calculation calculation;
+        private final String key;
+        private final long date;
+
+        /** Combined size and number of the files directly contained in the folder */
+        protected long size;
+        protected long nbFiles;
+        /** True if the folder contains files with several hard links, recursively */
+        protected boolean hasHardLinks;
+        /** Tasks calculating the size of the subfolders */
+        protected final List<FolderTask> subfolderTasks = new ArrayList<>();
+
+        FolderTask(Calculation calculation, String key, long date) {
+            this.calculation = calculation;
+            this.key = key;
+            this.date = date;
+        }
+
+        /**
+         * Lists the folder, adding the files it contains to {@link #size} and {@link #nbFiles}, and a task to
+         * {@link #subfolderTasks} for each of its subfolders.
+         */
+        protected abstract void list() throws IOException;
+
+        /**
+         * Adds a regular file of the given size, that is not a symbolic link.
+         */
+        protected void addFile(long fileSize) {
+            nbFiles++;
+            calculation.progress.nbFiles.increment();
+            // Size can be equal to -1 if not available
+            if (fileSize > 0) {
+                size += fileSize;
+                calculation.progress.size.add(fileSize);
+            }
+        }
+
+        /**
+         * Adds a symbolic link, which is neither followed nor included in the size.
+         */
+        protected void addSymlink() {
+            nbFiles++;
+            calculation.progress.nbFiles.increment();
+        }
+
+        /**
+         * Adds a subfolder, whose cached size is used if it is still valid.
+         */
+        protected void addSubfolder(FolderTask task) {
+            calculation.progress.nbFolders.increment();
+            subfolderTasks.add(task);
+        }
+
+        @Override
+        protected DirectorySize compute() {
+            DirectorySize cachedSize = getCachedSize(key, date);
+            if (cachedSize != null) {
+                calculation.progress.size.add(cachedSize.size);
+                calculation.progress.nbFiles.add(cachedSize.nbFiles);
+                calculation.progress.nbFolders.add(cachedSize.nbFolders);
+                return cachedSize;
+            }
+
+            if (calculation.cancelled.getAsBoolean())
+                return new DirectorySize(date, 0, 0, 0);
+
+            try {
+                list();
+            } catch (IOException e) {
+                LOGGER.debug("Couldn't list " + key + ", error: " + e.getMessage());
+            }
+
+            long nbFolders = subfolderTasks.size();
+            invokeAll(subfolderTasks);
+            for (FolderTask task : subfolderTasks) {
+                DirectorySize subfolderSize = task.join();
+                size += subfolderSize.size;
+                nbFiles += subfolderSize.nbFiles;
+                nbFolders += subfolderSize.nbFolders;
+                hasHardLinks |= task.hasHardLinks;
+            }
+
+            DirectorySize directorySize = new DirectorySize(date, size, nbFiles, nbFolders);
+            // Do not cache partial sizes, nor sizes that depend on which folder counted a hard-linked file first
+            if (!hasHardLinks && !calculation.cancelled.getAsBoolean())
+                cache.put(key, directorySize);
+
+            return directorySize;
+        }
+    }
+
+
+    /**
+     * Calculates the size of a local folder, using the <code>java.nio</code> API.
+     */
+    private class LocalFolderTask extends FolderTask {
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+
+        LocalFolderTask(Calculation calculation, Path path, long date) {
+            super(calculation, path.toString(), date);
+            this.path = path;
+        }
+
+        @Override
+        protected void list() throws IOException {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    if (calculation.cancelled.getAsBoolean())
+                        return;
+
+                    try {
+                        if (!includeHidden && Files.isHidden(child))
+                            continue;
+
+                        calculation.progress.nextFile(() -> FileFactory.getFile(child.toString()));
+
+                        if (UNIX_ATTRIBUTES_SUPPORTED)
+                            addChild(child, Files.readAttributes(child, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS));
+                        else
+                            addChild(child, Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+                    } catch (IOException e) {
+                        // The file may have been deleted in the meantime
+                        LOGGER.debug("Couldn't read attributes of " + child + ", error: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private void addChild(Path child, Map<String, Object> attributes) {
+            if ((Boolean)attributes.get("isSymbolicLink")) {
+                addSymlink();
+            } else if ((Boolean)attributes.get("isDirectory")) {
+                addSubfolder(new LocalFolderTask(calculation, child, ((FileTime)attributes.get("lastModifiedTime")).toMillis()));
+            } else {
+                // Include the size of files that have several hard links only once
+                boolean alreadyCounted = false;
+                if ((Integer)attributes.get("nlink") > 1) {
+                    hasHardLinks = true;
+                    alreadyCounted = !calculation.hardLinks.add(List.of(attributes.get("dev"), attributes.get("ino")));
+                }
+                addFile(alreadyCounted ? 0 : (Long)attributes.get("size"));
+            }
+        }
+
+        private void addChild(Path child, BasicFileAttributes attributes) {
+            if (attributes.isSymbolicLink())
+                addSymlink();
+            else if (attributes.isDirectory())
+                addSubfolder(new LocalFolderTask(calculation, child, attributes.lastModifiedTime().toMillis()));
+            else
+                addFile(attributes.size());
+        }
+    }
+
+
+    /**
+     * Calculates the size of a folder that is not local, using the {@link AbstractFile} API.
+     */
+    private class RemoteFolderTask extends FolderTask {
+        private static final long serialVersionUID = 1L;
+
+        private final AbstractFile folder;
+
+        RemoteFolderTask(Calculation calculation, AbstractFile folder) {
+            super(calculation, getKey(folder), folder.getDate());
+            this.folder = folder;
+        }
+
+        @Override
+        protected void list() throws IOException {
+            AbstractFile[] children;
+            String scheme = folder.getURL().getScheme();
+            if (scheme.equals(FileProtocols.FILE)) {
+                // Archive entries
+                children = folder.ls();
+            } else {
+                Semaphore permits = getListingPermits(scheme);
+                permits.acquireUninterruptibly();
+                try {
+                    children = folder.ls();
+                } finally {
+                    permits.release();
+                }
+            }
+
+            for (AbstractFile child : children) {
+                if (calculation.cancelled.getAsBoolean())
+                    return;
+
+                if (!includeHidden && child.isHidden())
+                    continue;
+
+                calculation.progress.nextFile(() -> child);
+
+                if (child.isSymlink())
+                    addSymlink();
+                else if (child.isDirectory())
+                    addSubfolder(new RemoteFolderTask(calculation, child));
+                else
+                    addFile(child.getSize());
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package com.mucommander.commons.file.util;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
 import java.util.Locale;
@@ -49,6 +50,10 @@ import com.mucommander.commons.file.AbstractFile;
  * <li>{@link CRITERION#GROUP}: compares file groups returned by {@link AbstractFile#getGroup()}
  * </ul>
  *
+ * <p>When the same files are compared many times, like when sorting a large folder, {@link #getSortKey(AbstractFile)}
+ * can be used to compute once per file the values that are compared, including a {@link CollationKey} for the filename,
+ * and {@link #compare(SortKey, SortKey)} to compare them.
+ *
  * @author Maxence Bernard, Arik Hadas
  */
 public class FileComparator implements Comparator<AbstractFile> {
@@ -63,6 +68,10 @@ public class FileComparator implements Comparator<AbstractFile> {
     private Function<AbstractFile, String> nameFunc;
     /** Locale that is used to sort by filenames */
     private Locale locale;
+    /** Collator that compares filenames in the locale */
+    private final Collator collator;
+    /** Clones of the collator used to create collation keys, which is synchronized, one per thread */
+    private final ThreadLocal<Collator> threadCollators;
 
     public enum CRITERION {
         /** Criterion for filename comparison. */
@@ -100,6 +109,115 @@ public class FileComparator implements Comparator<AbstractFile> {
         this.directoriesFirst = directoriesFirst;
         this.nameFunc = nameFunc;
         this.locale = locale;
+        this.collator = Collator.getInstance(locale);
+        collator.setStrength(Collator.TERTIARY);
+        this.threadCollators = ThreadLocal.withInitial(() -> (Collator)collator.clone());
+    }
+
+    /**
+     * The values of a file that are compared by a FileComparator, computed once so that the file can be compared
+     * repeatedly at a lower cost. Sort keys must only be compared by the comparator that created them.
+     */
+    public static final class SortKey {
+        /** Whether the file is a directory */
+        private final boolean directory;
+        /** Value of the comparison criterion, for numeric criteria */
+        private final long value;
+        /** Value of the comparison criterion, for textual criteria */
+        private final String stringValue;
+        /** Value of the 'name' column */
+        private final String name;
+        /** Collation key of the name, null if the name is compared with the collator */
+        private final CollationKey collationKey;
+        /** Index of the first number in the name, -1 if the name contains no number */
+        private final int numberStart;
+        /** First number in the name without its leading zeros, null if the name contains no number */
+        private final String number;
+        /** Index of the file in the caller's array, -1 if not specified */
+        private final int index;
+
+        private SortKey(FileComparator comparator, AbstractFile file, boolean withCollationKey, int index) {
+            this.index = index;
+            directory = file.isDirectory();
+
+            long value = 0;
+            String stringValue = null;
+            switch(comparator.criterion) {
+            case SIZE:
+                // Consider that directories have a size of 0, file size of -1 (unavailable) is considered as
+                // enormous (max long value)
+                long fileSize = directory ? 0 : file.getSize();
+                value = fileSize==-1?Long.MAX_VALUE:fileSize;
+                break;
+            case DATE:
+                value = file.getDate();
+                break;
+            case PERMISSIONS:
+                value = file.getPermissions().getIntValue();
+                break;
+            case EXTENSION:
+                stringValue = file.getExtension();
+                break;
+            case OWNER:
+                stringValue = file.getOwner();
+                break;
+            case GROUP:
+                stringValue = file.getGroup();
+                break;
+            case NAME:
+            default:
+            }
+            this.value = value;
+            this.stringValue = stringValue;
+
+            name = comparator.nameFunc.apply(file);
+            collationKey = withCollationKey ? comparator.threadCollators.get().getCollationKey(name) : null;
+
+            Matcher m = FILENAME_WITH_NUMBER_PATTERN.matcher(name);
+            if(m.find()) {
+                numberStart = m.start();
+                number = removeLeadingZeros(m.group());
+            }
+            else {
+                numberStart = -1;
+                number = null;
+            }
+        }
+
+        /**
+         * Returns the index of the file this key was created for, as specified to
+         * {@link FileComparator#getSortKey(AbstractFile, int)}, <code>-1</code> if it was not specified.
+         *
+         * @return the index of the file this key was created for
+         */
+        public int getIndex() {
+            return index;
+        }
+    }
+
+    /**
+     * Returns the sort key of the given file, which can be compared to other keys created by this comparator with
+     * {@link #compare(SortKey, SortKey)}. The file's attributes are retrieved once by this method, so the key does not
+     * reflect later changes to the file.
+     *
+     * @param file the file for which to create a sort key
+     * @return the sort key of the file
+     */
+    public SortKey getSortKey(AbstractFile file) {
+        return getSortKey(file, -1);
+    }
+
+    /**
+     * Returns the sort key of the given file like {@link #getSortKey(AbstractFile)}, along with the index of the file
+     * in the caller's array, so that sorting the keys themselves tells in which order the files are. Keys can be
+     * created concurrently by several threads.
+     *
+     * @param file the file for which to create a sort key
+     * @param index the index of the file, returned by {@link SortKey#getIndex()}
+     * @return the sort key of the file
+     */
+    public SortKey getSortKey(AbstractFile file, int index) {
+        return new SortKey(this, file, true, index);
     }
 
 
@@ -134,7 +252,7 @@ public class FileComparator implements Comparator<AbstractFile> {
      * @param s the string from which to remove leading zeros
      * @return a string without leading zeros
      */
-    private String removeLeadingZeros(String s) {
+    private static String removeLeadingZeros(String s) {
         int len = s.length();
         int i=0;
         while(i<len && s.charAt(i)=='0')
@@ -149,63 +267,50 @@ public class FileComparator implements Comparator<AbstractFile> {
     /**
      * Compare the specified files by their names, following the contract of {@link Comparator#compare(Object, Object)}.
      *
-     * @param file1 first file to compare
-     * @param file2 second file to compare.
+     * @param key1 sort key of the first file to compare
+     * @param key2 sort key of the second file to compare.
      * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
      * than the second.
      */
-    private int compareByFilename(AbstractFile file1, AbstractFile file2) {
-        String s1 = nameFunc.apply(file1);
-        String s2 = nameFunc.apply(file2);
+    private int compareByFilename(SortKey key1, SortKey key2) {
+        String s1 = key1.name;
+        String s2 = key2.name;
 
         // Special treatment for strings that contain a number, so they are ordered by the number's value, e.g.:
         // 1 < 1a < 2 < 10, like Mac OS X Finder and Windows Explorer do.
         //
         // This special order applies only if both strings contain a number and have the same prefix. Otherwise, the general order applies.
-        Matcher m1 = FILENAME_WITH_NUMBER_PATTERN.matcher(s1);
-        if(m1.find()) {
-            Matcher m2 = FILENAME_WITH_NUMBER_PATTERN.matcher(s2);
-            if(m2.find()) {
-                // So we got two filenames that both contain a number, check if they have the same prefix
-                int start1 = m1.start();
-                int start2 = m2.start();
-
-                // Note: compare prefixes only if start indexes match, faster that way
-                if(start1==start2 && (start1==0 || s1.substring(0, start1).equals(s2.substring(0, start2)))) {
-                    String g1 = removeLeadingZeros(m1.group());
-                    String g2 = removeLeadingZeros(m2.group());
-
-                    int g1Len = g1.length();
-                    int g2Len = g2.length();
-
-                    if(g1Len!=g2Len)
-                        return g1Len - g2Len;
-
-                    int c1, c2;
-                    for (int i=0; i<g1Len && i<g2Len; i++) {
-                        c1 = g1.charAt(i);
-                        c2 = g2.charAt(i);
-                        if(c1 != c2)
-                            return c1 - c2;
-                    }
+        if(key1.number!=null && key2.number!=null) {
+            // So we got two filenames that both contain a number, check if they have the same prefix
+            int start1 = key1.numberStart;
+            int start2 = key2.numberStart;
+
+            // Note: compare prefixes only if start indexes match, faster that way
+            if(start1==start2 && (start1==0 || s1.regionMatches(0, s2, 0, start1))) {
+                String g1 = key1.number;
+                String g2 = key2.number;
+
+                int g1Len = g1.length();
+                int g2Len = g2.length();
+
+                if(g1Len!=g2Len)
+                    return g1Len - g2Len;
+
+                int c1, c2;
+                for (int i=0; i<g1Len && i<g2Len; i++) {
+                    c1 = g1.charAt(i);
+                    c2 = g2.charAt(i);
+                    if(c1 != c2)
+                        return c1 - c2;
                 }
             }
         }
 
-        var collator = Collator.getInstance(locale);
-        collator.setStrength(Collator.TERTIARY);
-        int diff = collator.compare(s1, s2);
-        if (diff == 0) {
-            // This should never happen unless the current filesystem allows a directory to have
-            // several files with different case variations of the same name.
-            // AFAIK, no OS/filesystem allows this, but just to be safe.
-
-            // Case-sensitive name comparison
-            collator.setStrength(Collator.PRIMARY);
-            diff = collator.compare(s1, s2);
-        }
+        // Note: names that are equal at the tertiary strength are also equal at any lower strength
+        if(key1.collationKey!=null && key2.collationKey!=null)
+            return key1.collationKey.compareTo(key2.collationKey);
 
-        return diff;
+        return collator.compare(s1, s2);
     }
 
 
@@ -214,9 +319,23 @@ public class FileComparator implements Comparator<AbstractFile> {
     ///////////////////////////////
     
     public int compare(AbstractFile f1, AbstractFile f2) {
+        return compare(new SortKey(this, f1, false, -1), new SortKey(this, f2, false, -1));
+    }
+
+    /**
+     * Compares the files of the specified sort keys, following the contract of
+     * {@link Comparator#compare(Object, Object)}.
+     *
+     * @param key1 sort key of the first file to compare, created by this comparator
+     * @param key2 sort key of the second file to compare, created by this comparator
+     * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
+     * than the second.
+     * @see #getSortKey(AbstractFile)
+     */
+    public int compare(SortKey key1, SortKey key2) {
         if (directoriesFirst) {
-            boolean is1Directory = f1.isDirectory();
-            boolean is2Directory = f2.isDirectory();
+            boolean is1Directory = key1.directory;
+            boolean is2Directory = key2.directory;
 
             if (is1Directory && !is2Directory)
                 return -1;	// ascending has no effect on the result (a directory is always first) so let's return
@@ -230,34 +349,21 @@ public class FileComparator implements Comparator<AbstractFile> {
         long diff = 0;
         switch(criterion) {
         case SIZE:
-            // Consider that directories have a size of 0
-            long fileSize1 = f1.isDirectory() ? 0 : f1.getSize();
-            long fileSize2 = f2.isDirectory() ? 0 : f2.getSize();
-
-            // Returns file1 size - file2 size, file size of -1 (unavailable) is considered as enormous (max long value)
-            diff = (fileSize1==-1?Long.MAX_VALUE:fileSize1)-(fileSize2==-1?Long.MAX_VALUE:fileSize2);
-            break;
         case DATE:
-            diff = f1.getDate()-f2.getDate();
-            break;
         case PERMISSIONS:
-            diff = f1.getPermissions().getIntValue() - f2.getPermissions().getIntValue();
+            diff = key1.value-key2.value;
             break;
         case EXTENSION:
-            diff = StringUtils.compareIgnoreCase(f1.getExtension(), f2.getExtension());
-            break;
         case OWNER:
-            diff = StringUtils.compareIgnoreCase(f1.getOwner(), f2.getOwner());
-            break;
         case GROUP:
-            diff = StringUtils.compareIgnoreCase(f1.getGroup(), f2.getGroup());
+            diff = StringUtils.compareIgnoreCase(key1.stringValue, key2.stringValue);
             break;
         case NAME:
         default:
         }
 
         if (diff == 0)	// If both files have the same criterion's value, compare names
-            diff = compareByFilename(f1, f2);
+            diff = compareByFilename(key1, key2);
 
         // Cast long value to int, without overflowing the int if the long value exceeds the min or max int value
         int intValue;
@@ -18,8 +18,9 @@
 
 package com.mucommander.commons.file.util;
 
-import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrength;
-import org.apache.commons.collections4.map.ReferenceMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mucommander.commons.file.AbstractFile;
 
@@ -30,17 +31,21 @@ import com.mucommander.commons.file.AbstractFile;
  * but a sensible choice is to use the {@link AbstractFile#getURL() file's URL}.
  *
  * <p>Files are stored as {@link java.lang.ref.WeakReference weak references} so they can be garbage collected
- * when they are no longer hard-referenced.</p>
+ * when they are no longer hard-referenced. The mappings of collected files are removed the next time a file is added
+ * to the pool.</p>
  *
- * <p>This class uses the {@link ReferenceMap} class part of the <code>Apache Commons Collection</code> library.
- * All accesses to the underlying map is synchronized, making this class thread-safe.</p>
+ * <p>This class is backed by a {@link ConcurrentHashMap}: lookups do not lock, so that the pool can be accessed
+ * concurrently by several threads, e.g. when searching files in parallel.</p>
  *
  * @author Maxence Bernard
  */
 public class FilePool {
 
-    /** The actual hash map */
-    protected final ReferenceMap<Object, AbstractFile> hashMap = new ReferenceMap<>(ReferenceStrength.HARD, ReferenceStrength.WEAK);
+    /** Maps keys onto weak references to the pooled files */
+    private final ConcurrentHashMap<Object, FileReference> hashMap = new ConcurrentHashMap<>();
+
+    /** Receives the references of the files that have been garbage collected */
+    private final ReferenceQueue<AbstractFile> referenceQueue = new ReferenceQueue<>();
 
     /**
      * Creates a new file pool.
@@ -48,6 +53,15 @@ public class FilePool {
     public FilePool() {
     }
 
+    /**
+     * Removes the mappings of the files that have been garbage collected.
+     */
+    private void purge() {
+        FileReference ref;
+        while((ref = (FileReference)referenceQueue.poll()) != null)
+            hashMap.remove(ref.key, ref);
+    }
+
     /**
      * Adds a new key/file mapping to the pool. If a mapping with the same key exists, it is replaced and the previous
      * value returned.
@@ -57,8 +71,11 @@ public class FilePool {
      * @return returns the file instance previously mapped onto the given key, <code>null</code> if no
      * such mapping existed
      */
-    public synchronized AbstractFile put(Object key, AbstractFile value) {
-        return hashMap.put(key, value);
+    public AbstractFile put(Object key, AbstractFile value) {
+        purge();
+
+        FileReference previous = hashMap.put(key, new FileReference(key, value, referenceQueue));
+        return previous == null ? null : previous.get();
     }
 
     /**
@@ -69,8 +86,9 @@ public class FilePool {
      * @return the {@link AbstractFile} instance mapped onto the given key if there is one,
      * <code>null</code> otherwise
      */
-    public synchronized AbstractFile get(Object key) {
-        return hashMap.get(key);
+    public AbstractFile get(Object key) {
+        FileReference ref = hashMap.get(key);
+        return ref == null ? null : ref.get();
     }
 
     /**
@@ -81,8 +99,8 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given key is used as
      * the mapping's key.
      */
-    public synchronized boolean containsKey(Object key) {
-        return hashMap.containsKey(key);
+    public boolean containsKey(Object key) {
+        return get(key) != null;
     }
 
     /**
@@ -93,16 +111,22 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given file is used as
      * the mapping's key.
      */
-    public synchronized boolean containsValue(AbstractFile file) {
-        return hashMap.containsValue(file);
+    public boolean containsValue(AbstractFile file) {
+        for (FileReference ref : hashMap.values()) {
+            AbstractFile pooledFile = ref.get();
+            if (pooledFile != null && pooledFile.equals(file))
+                return true;
+        }
+        return false;
     }
 
     /**
      * Removes all existing key/file mapping from this pool, leaving the pool in the same state as it was right after
      * its creation.
      */
-    public synchronized void clear() {
+    public void clear() {
         hashMap.clear();
+        purge();
     }
 
     /**
@@ -110,7 +134,22 @@ public class FilePool {
      *
      * @return the number of key/file mapping this pool currently contains.
      */
-    public synchronized int size() {
+    public int size() {
+        purge();
         return hashMap.size();
     }
+
+    /**
+     * A weak reference to a pooled file that knows its key, for its mapping to be removed once the file has been
+     * garbage collected.
+     */
+    private static class FileReference extends WeakReference<AbstractFile> {
+
+        private final Object key;
+
+        private FileReference(Object key, AbstractFile file, ReferenceQueue<AbstractFile> queue) {
+            super(file, queue);
+            this.key = key;
+        }
+    }
 }
@@ -0,0 +1,118 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.archive.AbstractArchiveFile;
+import com.mucommander.commons.file.archive.ArchiveFormatProvider;
+import com.mucommander.commons.file.filter.EndsWithFilenameFilter;
+import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
+import com.mucommander.commons.file.filter.FilenameFilter;
+
+/**
+ * A test case for {@link ArchiveFormatMatcher}: it must return the same provider as testing the filters of the
+ * providers in the order they were registered.
+ */
+public class ArchiveFormatMatcherTest {
+
+    private static class TestFormatProvider implements ArchiveFormatProvider {
+
+        private final FilenameFilter filter;
+
+        private TestFormatProvider(FilenameFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public AbstractArchiveFile getFile(AbstractFile file) {
+            return null;
+        }
+
+        @Override
+        public FilenameFilter getFilenameFilter() {
+            return filter;
+        }
+
+        @Override
+        public List<String> getExtensions() {
+            return Arrays.asList();
+        }
+    }
+
+    private static final ArchiveFormatProvider TAR = new TestFormatProvider(new ExtensionFilenameFilter(new String[] {".tar", ".tar.gz"}));
+    private static final ArchiveFormatProvider GZIP = new TestFormatProvider(new ExtensionFilenameFilter(new String[] {".gz", ".tgz"}));
+    private static final ArchiveFormatProvider CASE_SENSITIVE = new TestFormatProvider(new ExtensionFilenameFilter(new String[] {".Z"}, true, false));
+    private static final ArchiveFormatProvider NO_DOT = new TestFormatProvider(new ExtensionFilenameFilter(new String[] {"_backup"}));
+    private static final ArchiveFormatProvider ENDS_WITH = new TestFormatProvider(new EndsWithFilenameFilter("tgz"));
+
+    private static final ArchiveFormatProvider[] PROVIDERS = {TAR, GZIP, CASE_SENSITIVE, NO_DOT, ENDS_WITH};
+
+    /**
+     * Returns the provider that the filters of the providers match first.
+     */
+    private static ArchiveFormatProvider getProviderByFilters(ArchiveFormatProvider[] providers, String filename) {
+        for (ArchiveFormatProvider provider : providers) {
+            if (provider.getFilenameFilter().accept(filename))
+                return provider;
+        }
+        return null;
+    }
+
+    private static void assertProvider(ArchiveFormatProvider[] providers, String filename, ArchiveFormatProvider expected) {
+        ArchiveFormatProvider provider = new ArchiveFormatMatcher(providers).getProvider(filename);
+        assert provider == expected : filename;
+        assert provider == getProviderByFilters(providers, filename) : filename;
+    }
+
+    @Test
+    public void testExtensions() {
+        assertProvider(PROVIDERS, "archive.tar", TAR);
+        assertProvider(PROVIDERS, "ARCHIVE.TAR", TAR);
+        assertProvider(PROVIDERS, "archive.tar.gz", TAR);
+        assertProvider(PROVIDERS, "archive.2.Tar.Gz", TAR);
+        assertProvider(PROVIDERS, "file.gz", GZIP);
+        assertProvider(PROVIDERS, "file.txt", null);
+        assertProvider(PROVIDERS, "file", null);
+        assertProvider(PROVIDERS, ".gz", GZIP);
+        assertProvider(PROVIDERS, "file.tar.", null);
+    }
+
+    @Test
+    public void testCaseSensitiveExtension() {
+        assertProvider(PROVIDERS, "file.Z", CASE_SENSITIVE);
+        assertProvider(PROVIDERS, "file.z", null);
+    }
+
+    /**
+     * Asserts that the filters that can't be indexed are tested, in the order providers were registered.
+     */
+    @Test
+    public void testOtherFilters() {
+        assertProvider(PROVIDERS, "data_backup", NO_DOT);
+        assertProvider(PROVIDERS, "file.tgz", GZIP);
+        assertProvider(PROVIDERS, "filetgz", ENDS_WITH);
+
+        ArchiveFormatProvider[] providers = {ENDS_WITH, TAR, GZIP};
+        assertProvider(providers, "file.tgz", ENDS_WITH);
+        assertProvider(providers, "file.gz", GZIP);
+    }
+}
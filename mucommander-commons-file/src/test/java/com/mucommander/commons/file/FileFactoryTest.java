@@ -20,6 +20,7 @@ package com.mucommander.commons.file;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * A test case for {@link FileFactory}.
@@ -78,4 +79,38 @@ public class FileFactoryTest {
         assert temporaryFile1 != null;
         assert !temporaryFile1.exists();
     }
+
+    /**
+     * Tests {@link com.mucommander.commons.file.FileFactory#getChildFile(FileURL, AbstractFile, java.util.Map)}, which
+     * is used to list local folders.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testChildFiles() throws IOException {
+        AbstractFile folder = FileFactory.getTemporaryFile("childFiles", true);
+        folder.mkdir();
+        try {
+            folder.getDirectChild("file.txt").mkfile();
+            folder.getDirectChild("folder").mkdir();
+
+            AbstractFile[] children = folder.ls();
+            assert children.length == 2;
+            for (AbstractFile child : children) {
+                // The child is pooled and has the same URL and class as when resolved from its path
+                AbstractFile resolvedChild = FileFactory.getFile(child.getURL(), null, Collections.emptyMap());
+                assert resolvedChild == child;
+                assert child.getParent() == folder;
+                assert child.getURL().getParent().equals(folder.getURL());
+            }
+
+            // Listing the folder again replaces the pooled instances
+            AbstractFile[] newChildren = folder.ls();
+            assert newChildren[0] != children[0];
+            assert FileFactory.getFile(newChildren[0].getURL()) == newChildren[0];
+        }
+        finally {
+            folder.deleteRecursively();
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.SimpleFilePermissions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A test case for {@link ArchiveEntryCache}.
+ */
+public class ArchiveEntryCacheTest {
+
+    private AbstractFile archiveFile;
+    private AbstractFile cacheFolder;
+    private ArchiveEntryCache cache;
+
+    /**
+     * A read-only archive that lists a fixed set of entries, and counts how many times it is listed.
+     */
+    private static class TestArchiveFile extends AbstractROArchiveFile {
+        private int nbListings;
+
+        TestArchiveFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public ArchiveEntryIterator getEntryIterator() {
+            nbListings++;
+
+            ArchiveEntry file = new ArchiveEntry("folder/file.txt", false, 1000, 42, true);
+            file.setPermissions(new SimpleFilePermissions(0640));
+            file.setOwner("owner");
+            ArchiveEntry link = new ArchiveEntry("folder/link", false, 2000, 0, true);
+            link.setSymlink(true);
+            link.setLinkTarget("file.txt");
+
+            return new WrapperArchiveEntryIterator(Arrays.asList(new ArchiveEntry("folder/", true, 0, 0, true), file, link).iterator());
+        }
+
+        @Override
+        public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
+            throw new IOException();
+        }
+
+        @Override
+        protected boolean isEntryCacheSupported() {
+            return true;
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        archiveFile = FileFactory.getTemporaryFile(getClass().getName()+".archive", true);
+        writeArchive("content");
+
+        cacheFolder = FileFactory.getTemporaryFile(getClass().getName()+".cache", true);
+        cache = new ArchiveEntryCache(new File(cacheFolder.getAbsolutePath()), 1024*1024);
+        ArchiveEntryCache.setInstance(cache);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        ArchiveEntryCache.setInstance(null);
+
+        if(cacheFolder.exists())
+            cacheFolder.deleteRecursively();
+        archiveFile.delete();
+    }
+
+    private void writeArchive(String content) throws IOException {
+        try(OutputStream out = archiveFile.getOutputStream()) {
+            out.write(content.getBytes());
+        }
+    }
+
+    /**
+     * Asserts that an archive is not listed again once its entries have been cached, and that the cached entries
+     * have the same attributes as the listed ones.
+     */
+    @Test
+    public void testCachedListing() throws IOException {
+        TestArchiveFile archive = new TestArchiveFile(archiveFile);
+        archive.checkEntriesTree();
+        assert archive.nbListings == 1;
+
+        TestArchiveFile sameArchive = new TestArchiveFile(archiveFile);
+        sameArchive.checkEntriesTree();
+        assert sameArchive.nbListings == 0;
+
+        ArchiveEntryNode folder = sameArchive.getArchiveEntryTree().findEntryNode("folder");
+        assert folder.getEntry().isDirectory();
+        assert folder.getChildCount() == 2;
+
+        ArchiveEntry file = folder.getChildAt(0).getEntry();
+        assert file.getPath().equals("folder/file.txt");
+        assert !file.isDirectory();
+        assert file.exists();
+        assert file.getDate() == 1000;
+        assert file.getSize() == 42;
+        assert file.getPermissions().getIntValue() == 0640;
+        assert "owner".equals(file.getOwner());
+        assert file.getGroup() == null;
+
+        ArchiveEntry link = folder.getChildAt(1).getEntry();
+        assert link.getPath().equals("folder/link");
+        assert link.isSymlink();
+        assert "file.txt".equals(link.getLinkTarget());
+    }
+
+    /**
+     * Asserts that the cached entries are discarded when the archive changes.
+     */
+    @Test
+    public void testModifiedArchive() throws IOException {
+        new TestArchiveFile(archiveFile).checkEntriesTree();
+
+        writeArchive("modified content");
+
+        TestArchiveFile archive = new TestArchiveFile(archiveFile);
+        archive.checkEntriesTree();
+        assert archive.nbListings == 1;
+    }
+
+    /**
+     * Asserts that nothing is cached when the cache is disabled.
+     */
+    @Test
+    public void testDisabledCache() throws IOException {
+        ArchiveEntryCache.setInstance(null);
+
+        new TestArchiveFile(archiveFile).checkEntriesTree();
+        assert cache.get(new TestArchiveFile(archiveFile)) == null;
+    }
+
+    /**
+     * Asserts that the least recently used listings are evicted once the cache exceeds its maximum size.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        List<ArchiveEntry> entries = Arrays.asList(new ArchiveEntry("entry", false, 0, 0, true));
+        TestArchiveFile archive = new TestArchiveFile(archiveFile);
+        cache.put(archive, archive.getSize(), archive.getDate(), entries);
+
+        File[] files = cache.getFolder().listFiles();
+        assert files.length == 1;
+        long listingSize = files[0].length();
+        files[0].setLastModified(System.currentTimeMillis() - 60_000);
+
+        AbstractFile otherArchiveFile = cacheFolder.getParent().getChild(archiveFile.getName()+".other");
+        try {
+            otherArchiveFile.mkfile();
+            TestArchiveFile otherArchive = new TestArchiveFile(otherArchiveFile);
+
+            // Only one listing fits in the cache: storing the other archive's evicts the first one
+            ArchiveEntryCache smallCache = new ArchiveEntryCache(cache.getFolder(), listingSize + listingSize/2);
+            smallCache.put(otherArchive, otherArchive.getSize(), otherArchive.getDate(), entries);
+
+            assert smallCache.get(archive) == null;
+            assert smallCache.get(otherArchive).size() == 1;
+        }
+        finally {
+            otherArchiveFile.delete();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+/**
+ * Measures the time it takes to build the {@link ArchiveEntryTree} of synthetic archives of up to a million entries,
+ * either flat (all entries in the same folder) or spread over a few levels of folders. This is not a unit test: it
+ * is meant to be run manually, e.g. after a change to the tree, and prints the build time per entry for each archive
+ * size, which should remain roughly constant.
+ *
+ * <p>Usage: <code>java com.mucommander.commons.file.archive.ArchiveEntryTreeBenchmark [max entries]</code></p>
+ */
+public class ArchiveEntryTreeBenchmark {
+
+    /** Number of times each measure is repeated, the best time is retained */
+    private final static int NB_RUNS = 5;
+
+    public static void main(String[] args) {
+        int maxEntries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Warm up
+        build(maxEntries / 10, false);
+
+        System.out.println("entries\tflat (ms)\tns/entry\tnested (ms)\tns/entry");
+        for (int nbEntries = 1_000; nbEntries <= maxEntries; nbEntries *= 10) {
+            long flatTime = Long.MAX_VALUE, nestedTime = Long.MAX_VALUE;
+            for (int run = 0; run < NB_RUNS; run++) {
+                flatTime = Math.min(flatTime, build(nbEntries, false));
+                nestedTime = Math.min(nestedTime, build(nbEntries, true));
+            }
+
+            System.out.println(nbEntries
+                    + "\t" + flatTime / 1_000_000 + "\t" + flatTime / nbEntries
+                    + "\t" + nestedTime / 1_000_000 + "\t" + nestedTime / nbEntries);
+        }
+    }
+
+    /**
+     * Returns the time in nanoseconds it takes to build the tree of an archive with the given number of entries.
+     * Entries are created as the tree is built, the way archive files iterate over their entries.
+     */
+    private static long build(int nbEntries, boolean nested) {
+        System.gc();
+
+        long start = System.nanoTime();
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for (int i = 0; i < nbEntries; i++) {
+            String path = nested
+                    ? "root/" + (i % 100) + "/" + (i / 100 % 100) + "/file" + i + ".dat"
+                    : "root/file" + i + ".dat";
+            tree.addArchiveEntry(new ArchiveEntry(path, false, 0, i, false));
+        }
+
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link ArchiveEntryTree}.
+ */
+public class ArchiveEntryTreeTest {
+
+    /**
+     * Creates a file entry at the given path.
+     */
+    private static ArchiveEntry file(String path) {
+        return new ArchiveEntry(path, false, 0, 1, false);
+    }
+
+    /**
+     * Creates a directory entry at the given path.
+     */
+    private static ArchiveEntry directory(String path) {
+        return new ArchiveEntry(path, true, 0, 0, false);
+    }
+
+    /**
+     * Asserts that entries are organized by folder, in the order they were added, and that missing parent folders
+     * are created.
+     */
+    @Test
+    public void testAddArchiveEntry() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(file("a/b/c.txt"));
+        tree.addArchiveEntry(directory("a/"));
+        tree.addArchiveEntry(file("a/d.txt"));
+        tree.addArchiveEntry(file("e.txt"));
+
+        assert tree.getChildCount() == 2;
+        assert tree.getChildAt(0).getEntry().getPath().equals("a/");
+        assert tree.getChildAt(1).getEntry().getPath().equals("e.txt");
+
+        ArchiveEntryNode a = tree.getChildAt(0);
+        assert a.getEntry().exists();
+        assert a.getChildCount() == 2;
+        assert a.getChildAt(0).getEntry().getPath().equals("a/b/");
+        assert a.getChildAt(0).getEntry().isDirectory();
+        assert a.getChildAt(1).getEntry().getPath().equals("a/d.txt");
+        assert a.getChildAt(1).getParent() == a;
+
+        ArchiveEntryNode c = a.getChildAt(0).getChildAt(0);
+        assert c.getEntry().getPath().equals("a/b/c.txt");
+        assert c.getEntry().exists();
+        assert c.getChildCount() == 0;
+    }
+
+    /**
+     * Asserts that an entry replaces the one that has the same path, keeping its children.
+     */
+    @Test
+    public void testReplaceArchiveEntry() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(file("a/b.txt"));
+
+        ArchiveEntry a = directory("a");
+        tree.addArchiveEntry(a);
+
+        assert tree.getChildCount() == 1;
+        assert tree.getChildAt(0).getEntry() == a;
+        assert tree.getChildAt(0).getChildCount() == 1;
+    }
+
+    /**
+     * Asserts that {@link ArchiveEntryTree#findEntryNode(String)} finds entries regardless of trailing separators,
+     * including in folders that have enough children to be indexed by name.
+     */
+    @Test
+    public void testFindEntryNode() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for (int i = 0; i < 100; i++)
+            tree.addArchiveEntry(file("dir/file" + i));
+        tree.addArchiveEntry(file("top"));
+
+        assert tree.findEntryNode("") == tree;
+        assert tree.findEntryNode("dir").getEntry().getPath().equals("dir/");
+        assert tree.findEntryNode("dir/").getEntry().getPath().equals("dir/");
+        assert tree.findEntryNode("top").getEntry().getPath().equals("top");
+        assert tree.findEntryNode("top/") != null;
+        for (int i = 0; i < 100; i++)
+            assert tree.findEntryNode("dir/file" + i).getEntry().getPath().equals("dir/file" + i);
+
+        assert tree.findEntryNode("file0") == null;
+        assert tree.findEntryNode("dir/file100") == null;
+        assert tree.findEntryNode("dir/file0/child") == null;
+    }
+
+    /**
+     * Asserts that removed entries can no longer be found and that the order of the remaining ones is preserved.
+     */
+    @Test
+    public void testRemove() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for (int i = 0; i < 20; i++)
+            tree.addArchiveEntry(file("file" + i));
+
+        ArchiveEntryNode node = tree.findEntryNode("file5");
+        tree.remove(node);
+
+        assert node.getParent() == null;
+        assert tree.getChildCount() == 19;
+        assert tree.findEntryNode("file5") == null;
+        assert tree.getChildAt(5).getEntry().getPath().equals("file6");
+
+        tree.addArchiveEntry(file("file5"));
+        assert tree.findEntryNode("file5") != null;
+        assert tree.getChildAt(19).getEntry().getPath().equals("file5");
+    }
+
+    /**
+     * Asserts that adding an entry to a folder does not involve the folder's other entries, by counting how many times
+     * entry paths are looked up while building the tree of a flat archive: with a per-folder scan, the count would grow
+     * quadratically with the number of entries. See {@link ArchiveEntryTreeBenchmark} for actual timings.
+     */
+    @Test
+    public void testLinearBuild() {
+        for (int nbEntries : new int[] {1_000, 100_000}) {
+            int[] nbPathLookups = new int[1];
+            ArchiveEntryTree tree = new ArchiveEntryTree();
+            for (int i = 0; i < nbEntries; i++) {
+                tree.addArchiveEntry(new ArchiveEntry("folder/" + i, false, 0, 1, false) {
+                    @Override
+                    public String getPath() {
+                        nbPathLookups[0]++;
+                        return super.getPath();
+                    }
+                });
+            }
+
+            assert tree.findEntryNode("folder").getChildCount() == nbEntries;
+            assert nbPathLookups[0] < nbEntries * 5 : nbPathLookups[0] + " path lookups for " + nbEntries + " entries";
+        }
+    }
+}
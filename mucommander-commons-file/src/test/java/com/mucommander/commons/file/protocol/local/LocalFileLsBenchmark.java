@@ -0,0 +1,76 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.local;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * Measures the time it takes to list a local folder of up to 100,000 files with {@link LocalFile#ls()}, which
+ * resolves a file instance for each child. This is not a unit test: it is meant to be run manually, e.g. after a
+ * change to {@link FileFactory} or {@link com.mucommander.commons.file.util.FilePool}, and prints the listing time per
+ * file for each folder size, which should remain roughly constant.
+ *
+ * <p>Usage: <code>java com.mucommander.commons.file.protocol.local.LocalFileLsBenchmark [max files]</code></p>
+ */
+public class LocalFileLsBenchmark {
+
+    /** Number of times each measure is repeated, the best time is retained */
+    private final static int NB_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int maxFiles = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        File folder = File.createTempFile("LocalFileLsBenchmark", "");
+        folder.delete();
+        folder.mkdir();
+        try {
+            System.out.println("files\tls (ms)\tns/file");
+            int nbFiles = 0;
+            for (int size = 1_000; size <= maxFiles; size *= 10) {
+                // Some of the files have an archive extension
+                for (; nbFiles < size; nbFiles++)
+                    new File(folder, "file" + nbFiles + (nbFiles % 10 == 0 ? ".zip" : ".txt")).createNewFile();
+
+                AbstractFile localFolder = FileFactory.getFile(folder.getAbsolutePath());
+                // Warm up
+                localFolder.ls();
+
+                long time = Long.MAX_VALUE;
+                for (int run = 0; run < NB_RUNS; run++) {
+                    long start = System.nanoTime();
+                    localFolder.ls();
+                    time = Math.min(time, System.nanoTime() - start);
+                }
+
+                System.out.println(size + "\t" + time / 1_000_000 + "\t" + time / size);
+            }
+        }
+        finally {
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            folder.delete();
+        }
+    }
+}
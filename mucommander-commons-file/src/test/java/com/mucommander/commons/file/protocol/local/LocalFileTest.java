@@ -19,12 +19,19 @@ package com.mucommander.commons.file.protocol.local;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractFileTest;
+import com.mucommander.commons.file.CachedFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 
 /**
@@ -137,6 +144,61 @@ public class LocalFileTest extends AbstractFileTest {
             testVolume(volume, volumes);
     }
 
+    /**
+     * Asserts that the attributes read in bulk by {@link LocalFile#ls(com.mucommander.commons.file.filter.FilenameFilter, List)} match those returned by
+     * the regular getters, and that they are picked up by the {@link CachedFile} instances returned by
+     * {@link CachedFile#ls()} only.
+     *
+     * @throws IOException should not happen
+     * @throws NoSuchAlgorithmException should not happen
+     */
+    @Test
+    public void testPrefetchedAttributes() throws IOException, NoSuchAlgorithmException {
+        tempFile.mkdir();
+        AbstractFile file = tempFile.getDirectChild("file");
+        createFile(file, 27);
+        tempFile.getDirectChild(".folder").mkdir();
+        AbstractFile groupFile = tempFile.getDirectChild("group");
+        createFile(groupFile, 1);
+        // Same group and others bits: the permissions of a file the user does not own are known from the mode
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+            Files.setPosixFilePermissions(((File) groupFile.getUnderlyingFileObject()).toPath(),
+                    PosixFilePermissions.fromString("rw-r--r--"));
+
+        List<LocalFileAttributes> attributesList = new ArrayList<>();
+        AbstractFile[] children = ((LocalFile) tempFile).ls(null, attributesList);
+        assert children.length == 3;
+        assert attributesList.size() == 3;
+
+        for (int i = 0; i < children.length; i++) {
+            AbstractFile child = children[i];
+            LocalFileAttributes attributes = attributesList.get(i);
+            assert attributes != null;
+
+            assert attributes.exists();
+            assert attributes.isDirectory() == child.isDirectory();
+            assert attributes.isSymlink() == child.isSymlink();
+            assert attributes.isHidden() == child.isHidden();
+            assert attributes.getDate() == child.getDate();
+            if (!child.isDirectory())
+                assert attributes.getSize() == child.getSize();
+            // The files are owned by the current user, whether or not it is the superuser
+            assert attributes.getPermissions() != null;
+            assert attributes.getPermissions().getIntValue() == child.getPermissions().getIntValue() : child;
+        }
+
+        // The snapshot is not retained by the pooled children: a CachedFile created later sees the new size
+        assert new CachedFile(file, true).getSize() == 27;
+        createFile(file, 50);
+        assert new CachedFile(file, true).getSize() == 50;
+
+        for (AbstractFile child : new CachedFile(tempFile, true).ls()) {
+            assert child instanceof CachedFile;
+            if (!child.isDirectory())
+                assert child.getSize() == (child.getName().equals("file") ? 50 : 1);
+        }
+    }
+
     /**
      * Tests the regex pattern
      */
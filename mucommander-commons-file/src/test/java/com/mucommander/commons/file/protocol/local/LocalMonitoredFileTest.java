@@ -0,0 +1,108 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.local;
+
+import com.mucommander.commons.file.FileFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A test case for the changed children reported by {@link LocalMonitoredFile}.
+ */
+public class LocalMonitoredFileTest {
+
+    /**
+     * Checks the given file periodically until the given children have been reported as changed, and returns all the
+     * children that have been reported, for at most 10 seconds.
+     */
+    private static Set<String> awaitChangedChildren(LocalMonitoredFile folder, Set<String> expected) throws InterruptedException {
+        Set<String> changedChildren = new HashSet<>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!changedChildren.containsAll(expected) && System.currentTimeMillis() < deadline) {
+            if (folder.isChanged(true)) {
+                assert folder.getChangedChildren() != null;
+                changedChildren.addAll(folder.getChangedChildren());
+            } else {
+                Thread.sleep(10);
+            }
+        }
+        return changedChildren;
+    }
+
+    /**
+     * Asserts that the children that are created, modified and deleted are reported by periodic checks, and that no
+     * change is reported once they have been.
+     */
+    @Test
+    public void testChangedChildren() throws IOException, InterruptedException {
+        Path path = Files.createTempDirectory("LocalMonitoredFileTest");
+        Files.write(path.resolve("modified"), new byte[1]);
+        Files.write(path.resolve("deleted"), new byte[1]);
+        Files.write(path.resolve("unchanged"), new byte[1]);
+
+        LocalMonitoredFile folder = new LocalMonitoredFile(FileFactory.getFile(path.toString()));
+        folder.startWatch();
+        try {
+            assert !folder.isChanged(true);
+
+            Files.write(path.resolve("created"), new byte[1]);
+            Files.write(path.resolve("modified"), new byte[2]);
+            Files.delete(path.resolve("deleted"));
+
+            Set<String> expected = new HashSet<>(Arrays.asList("created", "modified", "deleted"));
+            assert awaitChangedChildren(folder, expected).equals(expected);
+
+            // Changes are only reported once
+            Thread.sleep(100);
+            assert !folder.isChanged(true);
+
+            Files.write(path.resolve("unchanged"), new byte[2]);
+            assert awaitChangedChildren(folder, Set.of("unchanged")).equals(Set.of("unchanged"));
+        } finally {
+            folder.stopWatch();
+        }
+    }
+
+    /**
+     * Asserts that the changed children are not known when a change is detected from the modification date of the
+     * folder, as a check that is not periodic does first.
+     */
+    @Test
+    public void testChangeDetectedByDate() throws IOException {
+        Path path = Files.createTempDirectory("LocalMonitoredFileTest");
+        LocalMonitoredFile folder = new LocalMonitoredFile(FileFactory.getFile(path.toString()));
+        folder.startWatch();
+        try {
+            Files.write(path.resolve("created"), new byte[1]);
+            // Make sure the date of the folder changes, whatever the resolution of the file system
+            Files.setLastModifiedTime(path, FileTime.fromMillis(folder.getDate() - 10000));
+
+            assert folder.isChanged(false);
+            assert folder.getChangedChildren() == null;
+        } finally {
+            folder.stopWatch();
+        }
+    }
+}
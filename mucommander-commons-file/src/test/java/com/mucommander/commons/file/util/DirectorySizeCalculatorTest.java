@@ -0,0 +1,187 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a TestNG test case for {@link DirectorySizeCalculator}.
+ *
+ * @see DirectorySizeCalculator
+ */
+public class DirectorySizeCalculatorTest {
+
+    /**
+     * Creates a folder with a few files and subfolders, and returns it.
+     */
+    private Path createFolder() throws IOException {
+        Path folder = Files.createTempDirectory("DirectorySizeCalculatorTest-");
+        Files.write(folder.resolve("a"), new byte[10]);
+        Files.write(folder.resolve(".hidden"), new byte[100]);
+        Path sub = Files.createDirectory(folder.resolve("sub"));
+        Files.write(sub.resolve("b"), new byte[1000]);
+        Path subSub = Files.createDirectory(sub.resolve("subSub"));
+        Files.write(subSub.resolve("c"), new byte[10000]);
+        return folder;
+    }
+
+    /**
+     * Calculates the size of a local folder, with and without hidden files.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCalculate() throws IOException {
+        AbstractFile folder = FileFactory.getFile(createFolder().toString());
+
+        DirectorySizeCalculator.Progress progress = new DirectorySizeCalculator.Progress();
+        DirectorySizeCalculator.DirectorySize size = DirectorySizeCalculator.getInstance(true).calculate(folder, progress, () -> false);
+        assert size.getSize() == 11110;
+        assert size.getNbFiles() == 4;
+        assert size.getNbFolders() == 2;
+        assert progress.getSize() == 11110;
+        assert progress.getNbFiles() == 4;
+        assert progress.getNbFolders() == 2;
+
+        size = DirectorySizeCalculator.getInstance(false).calculate(folder, new DirectorySizeCalculator.Progress(), () -> false);
+        assert size.getSize() == 11010;
+        assert size.getNbFiles() == 3;
+    }
+
+    /**
+     * Checks that calculated sizes are cached until they are invalidated.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCache() throws IOException {
+        Path path = createFolder();
+        AbstractFile folder = FileFactory.getFile(path.toString());
+        DirectorySizeCalculator calculator = DirectorySizeCalculator.getInstance(true);
+
+        assert calculator.getCachedSize(folder) == null;
+        calculator.calculate(folder, new DirectorySizeCalculator.Progress(), () -> false);
+        assert calculator.getCachedSize(folder).getSize() == 11110;
+        AbstractFile subSub = FileFactory.getFile(path.resolve("sub").resolve("subSub").toString());
+        assert calculator.getCachedSize(subSub).getSize() == 10000;
+
+        // A change deep in the folder does not change the date of the folder, the cached size has to be invalidated
+        Files.write(path.resolve("sub").resolve("subSub").resolve("d"), new byte[5]);
+        subSub = FileFactory.getFile(subSub.getAbsolutePath());
+        DirectorySizeCalculator.invalidate(subSub);
+        assert calculator.getCachedSize(folder) == null;
+        assert calculator.getCachedSize(subSub) == null;
+
+        assert calculator.calculate(folder, new DirectorySizeCalculator.Progress(), () -> false).getSize() == 11115;
+    }
+
+    /**
+     * Checks that files with several hard links are included in the size only once.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testHardLinks() throws IOException {
+        Path path = createFolder();
+        try {
+            Files.createLink(path.resolve("sub").resolve("link"), path.resolve("sub").resolve("subSub").resolve("c"));
+        }
+        catch(UnsupportedOperationException e) {
+            // Hard links are not supported by this file system
+            return;
+        }
+
+        AbstractFile folder = FileFactory.getFile(path.toString());
+        DirectorySizeCalculator.DirectorySize size = DirectorySizeCalculator.getInstance(true).calculate(folder, new DirectorySizeCalculator.Progress(), () -> false);
+        assert size.getNbFiles() == 5;
+        if (Files.getFileStore(path).supportsFileAttributeView("unix"))
+            assert size.getSize() == 11110;
+    }
+
+    /**
+     * Checks that the size of a subfolder calculated after its parent does not depend on the other subfolders that
+     * share hard-linked files with it.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testHardLinksCache() throws IOException {
+        Path path = Files.createTempDirectory("DirectorySizeCalculatorTest-");
+        Path a = Files.createDirectory(path.resolve("a"));
+        Path b = Files.createDirectory(path.resolve("b"));
+        Files.write(a.resolve("file"), new byte[1000]);
+        try {
+            Files.createLink(b.resolve("file"), a.resolve("file"));
+        }
+        catch(UnsupportedOperationException e) {
+            // Hard links are not supported by this file system
+            return;
+        }
+        if (!Files.getFileStore(path).supportsFileAttributeView("unix"))
+            return;
+
+        DirectorySizeCalculator calculator = DirectorySizeCalculator.getInstance(true);
+        AbstractFile folder = FileFactory.getFile(path.toString());
+        assert calculator.calculate(folder, new DirectorySizeCalculator.Progress(), () -> false).getSize() == 1000;
+        assert calculator.getCachedSize(folder) == null;
+
+        for (Path subfolder : new Path[] {a, b}) {
+            AbstractFile file = FileFactory.getFile(subfolder.toString());
+            assert calculator.getCachedSize(file) == null;
+            assert calculator.calculate(file, new DirectorySizeCalculator.Progress(), () -> false).getSize() == 1000 : subfolder;
+        }
+    }
+
+    /**
+     * Checks that the listener of the progress is notified of each file and folder that is processed.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testFileListener() throws IOException {
+        Path path = createFolder();
+        AbstractFile folder = FileFactory.getFile(path.toString());
+        Set<String> names = ConcurrentHashMap.newKeySet();
+
+        DirectorySizeCalculator.getInstance(false).calculate(folder, new DirectorySizeCalculator.Progress(file -> names.add(file.getName())), () -> false);
+        assert names.equals(Set.of("a", "sub", "b", "subSub", "c")) : names;
+    }
+
+    /**
+     * Checks that a cancelled calculation stops and is not cached.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCancel() throws IOException {
+        AbstractFile folder = FileFactory.getFile(createFolder().toString());
+        DirectorySizeCalculator calculator = DirectorySizeCalculator.getInstance(true);
+
+        DirectorySizeCalculator.DirectorySize size = calculator.calculate(folder, new DirectorySizeCalculator.Progress(), () -> true);
+        assert size.getSize() == 0;
+        assert calculator.getCachedSize(folder) == null;
+    }
+}
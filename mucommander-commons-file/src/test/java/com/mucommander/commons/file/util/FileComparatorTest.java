@@ -198,5 +198,53 @@ public class FileComparatorTest {
         assert B.equals(files[2]);
         assert A.equals(files[3]);
     }
-    
+
+    /**
+     * Asserts that comparing sort keys yields the same order as comparing files, for names containing numbers.
+     */
+    @Test
+    public void testCompareSortKeys() throws Exception {
+        String[] names = {"file10", "file2", "File1", "file01a", "2", "10", "a", "B", "file"};
+        AbstractFile[] numberedFiles = new AbstractFile[names.length];
+        for (int i = 0; i < names.length; i++)
+            numberedFiles[i] = new TestFile(FileFactory.getTemporaryFolder() + names[i], false, 0, 0, null);
+
+        for (CRITERION criterion : new CRITERION[] {CRITERION.NAME, CRITERION.SIZE}) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                FileComparator fc = new FileComparator(criterion, ascending, true, AbstractFile::getName, Locale.ENGLISH);
+                for (AbstractFile f1 : numberedFiles) {
+                    for (AbstractFile f2 : numberedFiles) {
+                        assert Integer.signum(fc.compare(f1, f2)) == Integer.signum(fc.compare(fc.getSortKey(f1), fc.getSortKey(f2)));
+                    }
+                }
+            }
+        }
+
+        FileComparator fc = new FileComparator(CRITERION.NAME, true, true, AbstractFile::getName, Locale.ENGLISH);
+        Arrays.sort(numberedFiles, fc);
+        assert numberedFiles[0].getName().equals("2");
+        assert numberedFiles[1].getName().equals("10");
+        assert numberedFiles[numberedFiles.length-1].getName().equals("file10");
+    }
+
+    /**
+     * Asserts that sort keys created concurrently sort files like the comparator does, and tell the index of their file.
+     */
+    @Test
+    public void testSortKeysIndexes() throws Exception {
+        AbstractFile[] manyFiles = new AbstractFile[5000];
+        for (int i = 0; i < manyFiles.length; i++)
+            manyFiles[i] = new TestFile(FileFactory.getTemporaryFolder() + "file" + (i * 7919 % manyFiles.length), false, 0, 0, null);
+
+        FileComparator fc = new FileComparator(CRITERION.NAME, true, true, AbstractFile::getName, Locale.ENGLISH);
+        FileComparator.SortKey[] keys = new FileComparator.SortKey[manyFiles.length];
+        Arrays.parallelSetAll(keys, i -> fc.getSortKey(manyFiles[i], i));
+        Arrays.parallelSort(keys, fc::compare);
+
+        AbstractFile[] sortedFiles = manyFiles.clone();
+        Arrays.sort(sortedFiles, fc);
+        for (int i = 0; i < keys.length; i++)
+            assert manyFiles[keys[i].getIndex()] == sortedFiles[i];
+        assert fc.getSortKey(manyFiles[0]).getIndex() == -1;
+    }
 }
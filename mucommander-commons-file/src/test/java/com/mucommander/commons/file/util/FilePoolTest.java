@@ -0,0 +1,73 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link FilePool}.
+ */
+public class FilePoolTest {
+
+    @Test
+    public void testMappings() throws IOException {
+        FilePool pool = new FilePool();
+        AbstractFile file1 = FileFactory.getTemporaryFile("pool1", true);
+        AbstractFile file2 = FileFactory.getTemporaryFile("pool2", true);
+        FileURL key = file1.getURL();
+
+        assert pool.put(key, file1) == null;
+        assert pool.get(key) == file1;
+        assert pool.containsKey(key);
+        assert pool.containsValue(file1);
+        assert !pool.containsValue(file2);
+
+        assert pool.put(key, file2) == file1;
+        assert pool.get(key) == file2;
+        assert pool.size() == 1;
+
+        pool.clear();
+        assert pool.get(key) == null;
+        assert !pool.containsKey(key);
+        assert pool.size() == 0;
+    }
+
+    /**
+     * Asserts that the mappings of files that are no longer referenced are eventually removed.
+     */
+    @Test
+    public void testGarbageCollectedFiles() throws IOException, InterruptedException {
+        FilePool pool = new FilePool();
+        for (int i = 0; i < 100; i++)
+            pool.put(i, FileFactory.getTemporaryFile("pool" + i, false));
+
+        for (int i = 0; i < 50 && pool.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assert pool.size() == 0;
+        assert pool.get(0) == null;
+    }
+}
@@ -118,6 +118,9 @@ public class BoundedInputStream extends FilterInputStream implements Bounded {
 
     @Override
     public synchronized int read(byte b[], int off, int len) throws IOException {
+        if(len==0)
+            return 0;
+
         int canRead = (int)Math.min(getRemainingBytes(), len);
         if(canRead==0)
             return handleStreamOutOfBound();
@@ -20,9 +20,19 @@ package com.mucommander.commons.io;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class allows to share and reuse byte buffers to avoid excessive memory allocation and garbage collection.
@@ -45,7 +55,18 @@ import java.util.Vector;
  * </ul>
  * </p>
  *
- * <p>Note: this class is thread safe and thus can safely be used by concurrent threads.</p>
+ * <p>Note: this class is thread safe and thus can safely be used by concurrent threads. It does not rely on a global
+ * lock: released buffers are kept in buckets indexed by buffer class and length, each bucket being a lock-free stack
+ * shared by all threads. In addition, each thread keeps the last {@link #THREAD_CACHE_SIZE} buffers it released in a
+ * cache of its own, which subsequent <code>get*Buffer</code> calls from the same thread look up first. Buffers held by
+ * these caches count as pooled buffers; those cached by a thread that has terminated are handed over to the shared
+ * buckets once the thread has been garbage-collected, or earlier with {@link #flushThreadCache()}. As such buffers
+ * can't be reused in the meantime, thread caches altogether hold at most 1/{@link #THREAD_CACHES_POOL_SHARE} of the
+ * {@link #getMaxPoolSize() max pool size}. Buffers are matched against the
+ * {@link BufferFactory#getBufferClass() buffer class} of the factory they were released with.</p>
+ *
+ * <p>The number of <code>get*Buffer</code> calls that were served from the pool and of those that required a new
+ * buffer can be retrieved with {@link #getHitCount()} and {@link #getMissCount()}, for diagnostics purposes.</p>
  *
  * @author Maxence Bernard, Nicolas Rinaudo
  * @see com.mucommander.commons.io.StreamUtils
@@ -54,23 +75,59 @@ public class BufferPool {
     /** Logger used by this class. */
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
 
-    /** List of BufferContainer instances that wraps available buffers */
-    private static Vector<BufferContainer> bufferContainers = new Vector<BufferContainer>();
+    /** Buckets of available buffers, indexed by the buffer class of the factory they were released with and by length */
+    private final static Map<Class<?>, Map<Integer, Bucket>> buckets = new ConcurrentHashMap<>();
+
+    /** Maximum number of buffers a thread keeps in its own cache */
+    public final static int THREAD_CACHE_SIZE = 4;
+
+    /** Thread caches altogether hold at most 1/THREAD_CACHES_POOL_SHARE of the max pool size */
+    public final static int THREAD_CACHES_POOL_SHARE = 2;
+
+    /** Combined size of the buffers held by thread caches, in bytes */
+    private final static AtomicLong threadCachesSize = new AtomicLong();
+
+    /** The cache of the current thread */
+    private final static ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(BufferPool::newThreadCache);
+
+    /** References to the threads that have a cache, which are enqueued once the threads have been garbage-collected */
+    private final static Set<ThreadCacheReference> threadCacheReferences = ConcurrentHashMap.newKeySet();
+
+    /** Queue of references to the threads that have been garbage-collected */
+    private final static ReferenceQueue<Thread> collectedThreads = new ReferenceQueue<>();
+
+    /** Number of get*Buffer calls that returned a pooled buffer */
+    private final static LongAdder hitCount = new LongAdder();
+
+    /** Number of get*Buffer calls that created a new buffer */
+    private final static LongAdder missCount = new LongAdder();
 
     /** The initial default buffer size */
     public final static int INITIAL_DEFAULT_BUFFER_SIZE = 65536;
 
     /** Size of buffers returned by get*Buffer methods without a size argument */
-    public static int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
+    public static volatile int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
 
     /** The initial max pool size */
     public final static long INITIAL_POOL_LIMIT = 10485760;
 
     /** Maximum combined size of all pooled buffers, in bytes */
-    public static long maxPoolSize = INITIAL_POOL_LIMIT;
+    public static volatile long maxPoolSize = INITIAL_POOL_LIMIT;
 
     /** Current combined size of all pooled buffers, in bytes */
-    public static long poolSize;
+    public static volatile long poolSize;
+
+    /** Atomically updates {@link #poolSize} */
+    private final static VarHandle POOL_SIZE;
+
+    static {
+        try {
+            POOL_SIZE = MethodHandles.lookup().findStaticVarHandle(BufferPool.class, "poolSize", long.class);
+        }
+        catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
 
     /**
@@ -79,7 +136,7 @@ public class BufferPool {
      *
      * @return a byte array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized byte[] getByteArray() {
+    public static byte[] getByteArray() {
         return getByteArray(getDefaultBufferSize());
     }
 
@@ -97,7 +154,7 @@ public class BufferPool {
      * @param length length of the byte array
      * @return a byte array of the specified size
      */
-    public static synchronized byte[] getByteArray(int length) {
+    public static byte[] getByteArray(int length) {
         return (byte[])getBuffer(new ByteArrayFactory(), length);
     }
 
@@ -107,7 +164,7 @@ public class BufferPool {
      *
      * @return a char array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized char[] getCharArray() {
+    public static char[] getCharArray() {
         return getCharArray(getDefaultBufferSize());
     }
 
@@ -125,7 +182,7 @@ public class BufferPool {
      * @param length length of the char array
      * @return a char array of the specified length
      */
-    public static synchronized char[] getCharArray(int length) {
+    public static char[] getCharArray(int length) {
         return (char[])getBuffer(new CharArrayFactory(), length);
     }
 
@@ -135,7 +192,7 @@ public class BufferPool {
      *
      * @return a ByteBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized ByteBuffer getByteBuffer() {
+    public static ByteBuffer getByteBuffer() {
         return getByteBuffer(getDefaultBufferSize());
     }
 
@@ -153,7 +210,7 @@ public class BufferPool {
      * @param capacity capacity of the ByteBuffer
      * @return a ByteBuffer with the specified capacity
      */
-    public static synchronized ByteBuffer getByteBuffer(int capacity) {
+    public static ByteBuffer getByteBuffer(int capacity) {
         return (ByteBuffer)getBuffer(new ByteBufferFactory(), capacity);
     }
 
@@ -164,7 +221,7 @@ public class BufferPool {
      *
      * @return a CharBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized CharBuffer getCharBuffer() {
+    public static CharBuffer getCharBuffer() {
         return getCharBuffer(getDefaultBufferSize());
     }
 
@@ -182,7 +239,7 @@ public class BufferPool {
      * @param capacity capacity of the CharBuffer
      * @return a CharBuffer with the specified capacity
      */
-    public static synchronized CharBuffer getCharBuffer(int capacity) {
+    public static CharBuffer getCharBuffer(int capacity) {
         return (CharBuffer)getBuffer(new CharBufferFactory(), capacity);
     }
 
@@ -194,7 +251,7 @@ public class BufferPool {
      * @param factory BufferFactory used to identify the target buffer class and create a new buffer (if necessary)
      * @return a buffer with a size equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized Object getBuffer(BufferFactory factory) {
+    public static Object getBuffer(BufferFactory factory) {
         return getBuffer(factory, getDefaultBufferSize());
     }
 
@@ -211,30 +268,54 @@ public class BufferPool {
      * @param size size of the buffer
      * @return a buffer of the specified size
      */
-    public static synchronized Object getBuffer(BufferFactory factory, int size) {
-        int nbBuffers = bufferContainers.size();
-        BufferContainer bufferContainer;
-        Object buffer;
+    public static Object getBuffer(BufferFactory factory, int size) {
+        Bucket bucket = getBucket(factory.getBufferClass(), size, false);
+        if(bucket!=null) {
+            // Look in the cache of the current thread first, then in the buckets shared by all threads
+            BufferContainer bufferContainer = threadCache.get().poll(bucket);
+            if(bufferContainer==null)
+                bufferContainer = bucket.bufferContainers.pollFirst();
+
+            if(bufferContainer!=null) {
+                // Caution: mind the difference between BufferContainer#getLength() and BufferContainer#getSize()
+                bucket.pooledBuffers.remove(bufferContainer);
+                POOL_SIZE.getAndAdd(-(long)bufferContainer.getSize());
+                hitCount.increment();
+
+                Object buffer = bufferContainer.getBuffer();
+                // NIO buffers may have been released with any position and limit
+                if(buffer instanceof Buffer)
+                    ((Buffer)buffer).clear();
 
-        // Looks for a buffer container in the pool that matches the specified size and buffer class.
-        for(int i=0; i<nbBuffers; i++) {
-            bufferContainer = bufferContainers.elementAt(i);
-            buffer = bufferContainer.getBuffer();
-
-            // Caution: mind the difference between BufferContainer#getLength() and BufferContainer#getSize()
-            if(bufferContainer.getLength()==size && (factory.matchesBufferClass(buffer.getClass()))) {
-                bufferContainers.removeElementAt(i);
-                poolSize -= bufferContainer.getSize();
                 return buffer;
             }
         }
 
+        missCount.increment();
         LOGGER.trace("Creating new buffer with {} size= {}", factory, size);
 
         // No buffer with the same class and size found in the pool, create a new one and return it
         return factory.newBuffer(size);
     }
 
+    /**
+     * Returns the bucket of buffers of the given class and length, <code>null</code> if there is none and
+     * <code>create</code> is <code>false</code>.
+     */
+    private static Bucket getBucket(Class<?> bufferClass, int length, boolean create) {
+        Map<Integer, Bucket> lengthBuckets = buckets.get(bufferClass);
+        if(lengthBuckets==null) {
+            if(!create)
+                return null;
+            lengthBuckets = buckets.computeIfAbsent(bufferClass, c -> new ConcurrentHashMap<>());
+        }
+
+        Bucket bucket = lengthBuckets.get(length);
+        if(bucket==null && create)
+            bucket = lengthBuckets.computeIfAbsent(length, l -> new Bucket());
+
+        return bucket;
+    }
 
     /**
      * Makes the given buffer available for further calls to {@link #getByteArray(int)} with the same buffer length.
@@ -248,7 +329,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteArray(byte buffer[]) {
+    public static boolean releaseByteArray(byte buffer[]) {
         return releaseBuffer(buffer, new ByteArrayFactory());
     }
 
@@ -264,7 +345,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharArray(char buffer[]) {
+    public static boolean releaseCharArray(char buffer[]) {
         return releaseBuffer(buffer, new CharArrayFactory());
     }
 
@@ -280,7 +361,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteBuffer(ByteBuffer buffer) {
+    public static boolean releaseByteBuffer(ByteBuffer buffer) {
         return releaseBuffer(buffer, new ByteBufferFactory());
     }
 
@@ -296,7 +377,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharBuffer(CharBuffer buffer) {
+    public static boolean releaseCharBuffer(CharBuffer buffer) {
         return releaseBuffer(buffer, new CharBufferFactory());
     }
 
@@ -314,32 +395,75 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool or the pool size limit has been reached
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseBuffer(Object buffer, BufferFactory factory) {
+    public static boolean releaseBuffer(Object buffer, BufferFactory factory) {
         if(buffer==null)
             throw new IllegalArgumentException("specified buffer is null");
 
         BufferContainer bufferContainer = factory.newBufferContainer(buffer);
+        Bucket bucket = getBucket(factory.getBufferClass(), bufferContainer.getLength(), true);
 
-        if(bufferContainers.contains(bufferContainer)) {
+        // Buffers in the pool are registered in their bucket wherever they are kept, including in the cache of
+        // another thread
+        if(!bucket.pooledBuffers.add(bufferContainer)) {
             LOGGER.info("Warning: specified buffer is already in the pool: {}", buffer);
             return false;
         }
 
         long bufferSize = bufferContainer.getSize();        // size in bytes (!= length)
 
-        if(maxPoolSize!=-1 && poolSize+bufferSize>maxPoolSize) {
+        if(!reservePoolSize(bufferSize)) {
+            bucket.pooledBuffers.remove(bufferContainer);
+            // Make the buffers cached by threads that have terminated available to the other threads
+            flushCollectedThreadCaches();
             LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool: {}", buffer);
             return false;
         }
 
-        bufferContainers.add(bufferContainer);
-        poolSize += bufferSize;
+        if(!threadCache.get().offer(bufferContainer, bucket))
+            bucket.bufferContainers.offerFirst(bufferContainer);
+
+        return true;
+    }
+
+    /**
+     * Adds the given size to the pool size, if and only if the max pool size is not exceeded.
+     *
+     * @return <code>true</code> if the pool size was increased
+     */
+    private static boolean reservePoolSize(long bufferSize) {
+        long currentPoolSize;
+        do {
+            currentPoolSize = poolSize;
+            long max = maxPoolSize;
+            if(max!=-1 && currentPoolSize+bufferSize>max)
+                return false;
+        }
+        while(!POOL_SIZE.compareAndSet(currentPoolSize, currentPoolSize+bufferSize));
+
+        return true;
+    }
+
+    /**
+     * Adds the given size to the combined size of the buffers held by thread caches, if and only if thread caches do
+     * not exceed their share of the max pool size.
+     *
+     * @return <code>true</code> if the size of thread caches was increased
+     */
+    private static boolean reserveThreadCachesSize(long bufferSize) {
+        long currentSize;
+        do {
+            currentSize = threadCachesSize.get();
+            long max = maxPoolSize;
+            if(max!=-1 && currentSize+bufferSize>max/THREAD_CACHES_POOL_SHARE)
+                return false;
+        }
+        while(!threadCachesSize.compareAndSet(currentSize, currentSize+bufferSize));
 
         return true;
     }
 
     /**
-     * Returns <code>true</code> if the specified buffer is currently in the pool.
+     * Returns <code>true</code> if the specified buffer is currently in the pool, including in the cache of any thread.
      *
      * <p>Note that it is not necessary (and thus not recommended for performance reasons) to call this method before
      * calling <code>release*Buffer</code> as it already performs this test before adding a buffer to the pool.</p>
@@ -349,7 +473,18 @@ public class BufferPool {
      * @return <code>true</code> if the specified buffer is already in the pool
      */
     public static boolean containsBuffer(Object buffer, BufferFactory factory) {
-        return bufferContainers.contains(factory.newBufferContainer(buffer));
+        BufferContainer bufferContainer = factory.newBufferContainer(buffer);
+        Bucket bucket = getBucket(factory.getBufferClass(), bufferContainer.getLength(), false);
+        return bucket!=null && bucket.pooledBuffers.contains(bufferContainer);
+    }
+
+    /**
+     * Moves the buffers kept in the cache of the current thread to the pool shared by all threads. Threads that
+     * release buffers and are about to terminate may call this method so that their buffers can be reused right away,
+     * rather than once the thread has been garbage-collected.
+     */
+    public static void flushThreadCache() {
+        threadCache.get().flush();
     }
 
 
@@ -360,7 +495,13 @@ public class BufferPool {
      * @return the number of buffers currently in the pool
      */
     public static int getBufferCount() {
-        return bufferContainers.size();
+        int count = 0;
+        for(Map<Integer, Bucket> lengthBuckets : buckets.values()) {
+            for(Bucket bucket : lengthBuckets.values())
+                count += bucket.pooledBuffers.size();
+        }
+
+        return count;
     }
 
     /**
@@ -371,17 +512,37 @@ public class BufferPool {
      * @return the number of buffers currently in the pool
      */
     public static int getBufferCount(BufferFactory factory) {
-        int count = 0;        
-        int nbBuffers = bufferContainers.size();
-        for(int i=0; i<nbBuffers; i++) {
-            if(factory.matchesBufferClass(bufferContainers.elementAt(i).getBuffer().getClass())) {
-                count ++;
+        int count = 0;
+        for(Map.Entry<Class<?>, Map<Integer, Bucket>> entry : buckets.entrySet()) {
+            if(factory.matchesBufferClass(entry.getKey())) {
+                for(Bucket bucket : entry.getValue().values())
+                    count += bucket.pooledBuffers.size();
             }
         }
 
         return count;
     }
 
+    /**
+     * Returns the number of <code>get*Buffer</code> calls that returned a buffer from the pool since this class was
+     * loaded. This method is provided for diagnostics purposes.
+     *
+     * @return the number of <code>get*Buffer</code> calls that returned a buffer from the pool
+     */
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of <code>get*Buffer</code> calls that had to create a new buffer, no matching buffer being
+     * available in the pool, since this class was loaded. This method is provided for diagnostics purposes.
+     *
+     * @return the number of <code>get*Buffer</code> calls that had to create a new buffer
+     */
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
     /**
      * Returns the default size of buffers returned by <code>get*Buffer</code> methods without a <code>size</code>
      * argument.
@@ -399,7 +560,7 @@ public class BufferPool {
      *
      * @param bufferSize the new buffer size
      */
-    public static synchronized void setDefaultBufferSize(int bufferSize) {
+    public static void setDefaultBufferSize(int bufferSize) {
         BufferPool.defaultBufferSize = bufferSize;
     }
 
@@ -407,7 +568,8 @@ public class BufferPool {
     /**
      * Returns the combined size in bytes of all buffers that are currently in the pool.
      *
-     * @return the combined size in bytes of all buffers that are currenty in the pool
+     * @return the combined size in bytes of all buffers that are currenty in the pool, including those in the
+     * cache of threads
      */
     public static long getPoolSize() {
         return poolSize;
@@ -433,7 +595,7 @@ public class BufferPool {
      *
      * @param maxPoolSize the maximum combined size in bytes for all buffers in the pool
      */
-    public static synchronized void setMaxPoolSize(long maxPoolSize) {
+    public static void setMaxPoolSize(long maxPoolSize) {
         BufferPool.maxPoolSize = maxPoolSize;
     }
 
@@ -442,6 +604,116 @@ public class BufferPool {
     // Inner classes //
     ///////////////////
 
+    /**
+     * The buffers of a given class and length that are in the pool.
+     */
+    private static class Bucket {
+
+        /** Buffers that are not in the cache of a thread, the most recently released first */
+        private final ConcurrentLinkedDeque<BufferContainer> bufferContainers = new ConcurrentLinkedDeque<>();
+
+        /** Buffers of this bucket in the pool, including those in the cache of threads. BufferContainer compares
+         * the identities of buffers: ByteBuffer#equals compares the remaining content */
+        private final Set<BufferContainer> pooledBuffers = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * The buffers released by a thread, which only that thread accesses until it has terminated.
+     */
+    private static class ThreadCache {
+
+        private final BufferContainer[] bufferContainers = new BufferContainer[THREAD_CACHE_SIZE];
+
+        /** The bucket of each cached buffer */
+        private final Bucket[] buckets = new Bucket[THREAD_CACHE_SIZE];
+
+        /**
+         * Removes and returns a buffer of the given bucket, <code>null</code> if there is none.
+         */
+        private BufferContainer poll(Bucket bucket) {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                if(buckets[i]==bucket) {
+                    BufferContainer bufferContainer = bufferContainers[i];
+                    bufferContainers[i] = null;
+                    buckets[i] = null;
+                    threadCachesSize.addAndGet(-(long)bufferContainer.getSize());
+                    return bufferContainer;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds the given buffer to this cache, unless it is full or thread caches hold their share of the max pool
+         * size already.
+         *
+         * @return <code>true</code> if the buffer was added
+         */
+        private boolean offer(BufferContainer bufferContainer, Bucket bucket) {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                if(buckets[i]==null) {
+                    if(!reserveThreadCachesSize(bufferContainer.getSize()))
+                        return false;
+                    bufferContainers[i] = bufferContainer;
+                    buckets[i] = bucket;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Moves the cached buffers to their shared bucket.
+         */
+        private void flush() {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                if(buckets[i]!=null) {
+                    threadCachesSize.addAndGet(-(long)bufferContainers[i].getSize());
+                    buckets[i].bufferContainers.offerFirst(bufferContainers[i]);
+                    bufferContainers[i] = null;
+                    buckets[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A weak reference to a thread that keeps its cache reachable, for the cached buffers to be handed over to the
+     * shared buckets once the thread has been garbage-collected.
+     */
+    private static class ThreadCacheReference extends WeakReference<Thread> {
+
+        private final ThreadCache cache;
+
+        private ThreadCacheReference(Thread thread, ThreadCache cache) {
+            super(thread, collectedThreads);
+            this.cache = cache;
+        }
+    }
+
+    /**
+     * Creates the cache of the current thread, after having flushed the cache of threads that have been
+     * garbage-collected.
+     */
+    private static ThreadCache newThreadCache() {
+        flushCollectedThreadCaches();
+
+        ThreadCache cache = new ThreadCache();
+        threadCacheReferences.add(new ThreadCacheReference(Thread.currentThread(), cache));
+        return cache;
+    }
+
+    /**
+     * Moves the buffers cached by threads that have been garbage-collected to their shared bucket.
+     */
+    private static void flushCollectedThreadCaches() {
+        ThreadCacheReference reference;
+        while((reference = (ThreadCacheReference)collectedThreads.poll())!=null) {
+            threadCacheReferences.remove(reference);
+            reference.cache.flush();
+        }
+    }
+
     /**
      * Wraps a buffer instance and provides information about the wrapped buffer.
      */
@@ -472,10 +744,16 @@ public class BufferPool {
          * Implements a shallow equal comparison.
          */
         public boolean equals(Object o) {
-            // Note: this method is used by Vector.contains()
             return (o instanceof BufferContainer) && buffer == ((BufferContainer)o).buffer;
         }
 
+        /**
+         * Returns the identity hash code of the wrapped buffer, consistently with {@link #equals(Object)}.
+         */
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+
         /**
          * Returns the length of the wrapped buffer instance.
          *
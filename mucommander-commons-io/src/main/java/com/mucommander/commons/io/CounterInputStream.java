@@ -75,6 +75,14 @@ public class CounterInputStream extends InputStream {
     }
 
 
+    /**
+     * Returns the underlying InputStream which data is read from.
+     */
+    public InputStream getUnderlyingInputStream() {
+        return this.in;
+    }
+
+
     /**
      * Specifies whether or not skipped bytes (using {@link #skip(long)} should be accounted for.
      * This is by default enabled, bytes that are skipped are added to the ByteCounter.
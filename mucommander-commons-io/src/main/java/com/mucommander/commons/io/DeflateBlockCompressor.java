@@ -0,0 +1,109 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link ParallelBlockOutputStream.BlockCompressor} that compresses the blocks of a stream into a single raw DEFLATE
+ * stream, as stored in Gzip members and Zip entries.
+ *
+ * <p>Each block is compressed independently and ends on a byte boundary, using a sync flush, so that the compressed
+ * blocks can be concatenated. The last 32 KB of the previous block are used as a dictionary, which makes the
+ * compression ratio close to that of a single-threaded compression. The last block of a stream ends the DEFLATE
+ * stream.</p>
+ */
+public class DeflateBlockCompressor implements ParallelBlockOutputStream.BlockCompressor {
+
+    /** Recommended block size, in bytes */
+    public final static int BLOCK_SIZE = 128 * 1024;
+
+    /** Size of the DEFLATE window */
+    private final static int DICTIONARY_SIZE = 32 * 1024;
+
+    /** Compression level of the Deflaters */
+    private final int level;
+
+    /** A Deflater for each compression thread, reset before each block and ended when the thread terminates */
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+
+
+    /**
+     * Creates a new <code>DeflateBlockCompressor</code> that uses the given compression level.
+     *
+     * @param level the compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public DeflateBlockCompressor(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte[] compress(byte[] block, int length, byte[] previousBlock, boolean last) {
+        Deflater deflater = deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            deflaters.set(deflater);
+        } else {
+            deflater.reset();
+        }
+
+        if (previousBlock != null) {
+            int dictionaryLength = Math.min(DICTIONARY_SIZE, previousBlock.length);
+            deflater.setDictionary(previousBlock, previousBlock.length - dictionaryLength, dictionaryLength);
+        }
+
+        deflater.setInput(block, 0, length);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = BufferPool.getByteArray();
+        try {
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                // Compress the whole block, ending it on a byte boundary
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length || !deflater.needsInput());
+            }
+        } finally {
+            BufferPool.releaseByteArray(buffer);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Ends the Deflater of the calling thread, which releases its native memory without waiting for it to be
+     * garbage collected.
+     */
+    @Override
+    public void threadTerminated() {
+        Deflater deflater = deflaters.get();
+        if (deflater != null) {
+            deflater.end();
+            deflaters.remove();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.io;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * FileChannelSource is implemented by streams that read from a NIO {@link FileChannel}. It gives access to the channel
+ * so that its contents can be transferred directly to another channel, without going through a heap buffer.
+ *
+ * <p>The channel's position must reflect the position of the stream: the next byte read from the stream is the byte
+ * located at the channel's position.</p>
+ *
+ * @see StreamUtils#transferStream(java.io.InputStream, FileChannel)
+ */
+public interface FileChannelSource {
+
+    /**
+     * Returns the channel this stream reads from.
+     *
+     * @return the channel this stream reads from
+     */
+    FileChannel getFileChannel();
+}
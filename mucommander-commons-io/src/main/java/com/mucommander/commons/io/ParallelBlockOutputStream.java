@@ -0,0 +1,316 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelBlockOutputStream compresses the data written to it using several threads, and writes the compressed data to
+ * an underlying <code>OutputStream</code> in the order the data was written.
+ *
+ * <p>The data is split in blocks of a fixed size, which are compressed concurrently by a {@link BlockCompressor}. The
+ * data can be made of several consecutive <i>streams</i>, each of which is ended by a call to {@link #endStream()}:
+ * the compressor is told which block is the last one of its stream, and is given the previous block of the same
+ * stream, if any, which allows formats such as DEFLATE to use it as a dictionary.</p>
+ *
+ * <p>{@link #runInOrder(OrderedAction)} can be used to write other data (headers, trailers...) to the underlying
+ * stream: the action is run once the blocks that were submitted before have been written. All writes to the
+ * underlying stream take place in the thread that uses this stream. The number of blocks that are compressed or
+ * waiting to be written is bounded, so that writing to this stream blocks when the compression can't keep up.</p>
+ *
+ * @see DeflateBlockCompressor
+ */
+public class ParallelBlockOutputStream extends OutputStream {
+
+    /**
+     * Compresses the blocks of a {@link ParallelBlockOutputStream}. Implementations must be thread-safe, as blocks are
+     * compressed concurrently.
+     */
+    public interface BlockCompressor {
+
+        /**
+         * Compresses the given block and returns the compressed data.
+         *
+         * @param block the data of the block, which must not be modified
+         * @param length the number of bytes of the block, smaller than the block size for the last block of a stream
+         * @param previousBlock the previous (full) block of the same stream, <code>null</code> for the first block
+         * @param last <code>true</code> if this is the last block of its stream
+         * @return the compressed data, not <code>null</code>
+         * @throws IOException if the block cannot be compressed
+         */
+        byte[] compress(byte[] block, int length, byte[] previousBlock, boolean last) throws IOException;
+
+        /**
+         * Releases the resources held for the calling thread, if any. This method is called by each compression
+         * thread before it terminates, once the stream has been closed. The default implementation does nothing.
+         */
+        default void threadTerminated() {
+        }
+    }
+
+    /**
+     * An operation on the underlying stream, which is run in the order it was submitted in with respect to blocks.
+     */
+    public interface OrderedAction {
+
+        /**
+         * Performs the operation.
+         *
+         * @throws IOException if an I/O error occurred
+         */
+        void run() throws IOException;
+    }
+
+    /** Maximum number of bytes of the blocks that are being compressed or waiting to be written */
+    private final static int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    /** The underlying stream the compressed data is written to */
+    private final OutputStream out;
+
+    private final BlockCompressor compressor;
+
+    private final int blockSize;
+
+    /** Maximum number of pending blocks and actions */
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    /** Blocks being compressed and actions to run, in order. Actions are represented by a <code>null</code> block. */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /** The actions to run, in order */
+    private final Deque<OrderedAction> actions = new ArrayDeque<>();
+
+    /** The block being filled */
+    private byte[] block;
+
+    /** Number of bytes in the block being filled */
+    private int count;
+
+    /** Previous block of the current stream, <code>null</code> if the block being filled is the first one */
+    private byte[] previousBlock;
+
+    /** <code>true</code> if data was written since the last call to {@link #endStream()} */
+    private boolean streamStarted;
+
+    /** <code>true</code> if {@link #endStream()} was called at least once */
+    private boolean streamEnded;
+
+    /** Number of compressed bytes written to the underlying stream */
+    private long compressedBytes;
+
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelBlockOutputStream</code> that compresses blocks of the given size with the given
+     * number of threads.
+     *
+     * @param out the underlying stream the compressed data is written to
+     * @param compressor compresses the blocks
+     * @param blockSize the size of the blocks, in bytes
+     * @param nbThreads the number of threads compressing the blocks
+     */
+    public ParallelBlockOutputStream(OutputStream out, BlockCompressor compressor, int blockSize, int nbThreads) {
+        this.out = out;
+        this.compressor = compressor;
+        this.blockSize = blockSize;
+        this.maxPending = Math.max(nbThreads + 1, Math.min(2 * nbThreads, MAX_PENDING_BYTES / blockSize));
+        this.block = new byte[blockSize];
+
+        executor = Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    compressor.threadTerminated();
+                }
+            }, "Parallel compression");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the number of compressed bytes that have been written to the underlying stream so far. When called from
+     * an {@link OrderedAction}, this includes all the blocks that were submitted before the action.
+     *
+     * @return the number of compressed bytes written to the underlying stream
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Ends the current stream: the data written since the previous call to this method, if any, is compressed as a
+     * separate stream. A stream is compressed even if no data was written to it.
+     *
+     * @throws IOException if an error occurred while writing compressed data
+     */
+    public void endStream() throws IOException {
+        submitBlock(true);
+        streamStarted = false;
+        streamEnded = true;
+    }
+
+    /**
+     * Runs the given action once the blocks submitted so far have been written to the underlying stream. The data that
+     * was written since the last call to {@link #endStream()} may not be submitted yet, so actions should only be
+     * submitted between streams.
+     *
+     * @param action the action to run
+     * @throws IOException if an error occurred while writing compressed data or running an action
+     */
+    public void runInOrder(OrderedAction action) throws IOException {
+        ensureOpen();
+        actions.add(action);
+        pending.add(CompletableFuture.completedFuture(null));
+        writeCompleted(false);
+    }
+
+    /**
+     * Submits the block being filled for compression, and starts filling a new one.
+     */
+    private void submitBlock(boolean last) throws IOException {
+        ensureOpen();
+
+        final byte[] data = block;
+        final int length = count;
+        final byte[] previous = previousBlock;
+        pending.add(executor.submit(() -> compressor.compress(data, length, previous, last)));
+
+        previousBlock = last ? null : data;
+        block = new byte[blockSize];
+        count = 0;
+
+        writeCompleted(false);
+    }
+
+    /**
+     * Writes the blocks that have been compressed, and runs the actions that follow them, in order.
+     *
+     * @param all if <code>true</code>, waits until all blocks have been written. Otherwise, only waits as long as
+     * there are too many pending blocks.
+     */
+    private void writeCompleted(boolean all) throws IOException {
+        Future<byte[]> next;
+        while ((next = pending.peek()) != null && (all || next.isDone() || pending.size() > maxPending)) {
+            byte[] compressed;
+            try {
+                compressed = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+            pending.poll();
+
+            if (compressed == null) {
+                actions.poll().run();
+            } else {
+                out.write(compressed);
+                compressedBytes += compressed.length;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+
+    ////////////////////////////////
+    // OutputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == blockSize)
+            submitBlock(false);
+
+        block[count++] = (byte) b;
+        streamStarted = true;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0)
+            streamStarted = true;
+
+        while (len > 0) {
+            // A full block is submitted only when more data comes, so that the last block of a stream is never empty
+            if (count == blockSize)
+                submitBlock(false);
+
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Waits until all the submitted blocks have been written and flushes the underlying stream. The data that was
+     * written since the last call to {@link #endStream()} is not flushed, as its last block is still being filled.
+     *
+     * @throws IOException if an error occurred while writing compressed data
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeCompleted(true);
+        out.flush();
+    }
+
+    /**
+     * Ends the current stream if data was written to it, or if no stream was ended yet, waits until all the submitted
+     * blocks have been written, stops the compression threads and closes the underlying stream. The compressor releases
+     * the resources of each thread as it terminates.
+     *
+     * @throws IOException if an error occurred while writing compressed data
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        try {
+            if (streamStarted || !streamEnded)
+                endStream();
+            writeCompleted(true);
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * ParallelRangeInputStream reads a remote file sequentially by reading consecutive ranges of it concurrently, and
+ * returning the ranges in order. As many ranges as there are threads are read ahead of the one being returned, each
+ * range being held in memory until it has been returned. The ranges are read by a {@link RangeReader}, typically with
+ * a ranged request or over a connection of its own.
+ *
+ * <p>The length of the file that is passed to the constructor may be stale, so it only limits how far ranges are
+ * read ahead: the file is read until a range comes back short, past the given length if the file has grown.</p>
+ */
+public class ParallelRangeInputStream extends InputStream {
+
+    /**
+     * Reads a range of a file. Implementations must be thread-safe, as ranges are read concurrently.
+     */
+    public interface RangeReader {
+
+        /**
+         * Reads the range of the file that starts at the given offset into the given array, until the array is full
+         * or the end of the file is reached.
+         *
+         * @param offset offset of the range in the file, which may be equal to or greater than the length of the file
+         * @param buffer the array to read the range into, whose length is the size of a range
+         * @return the number of bytes read, less than the length of the array only if the end of the file has been
+         * reached
+         * @throws IOException if the range could not be read
+         */
+        int read(long offset, byte[] buffer) throws IOException;
+    }
+
+    private final RangeReader reader;
+
+    /** Offset of the end of the file when the stream was opened, as far as it is known */
+    private final long length;
+
+    /** Maximum number of ranges being read concurrently */
+    private final int threads;
+
+    /** Size of the ranges that are read concurrently */
+    private final int rangeSize;
+
+    private final ExecutorService executor;
+
+    /** Ranges being read, in order */
+    private final Deque<Future<byte[]>> ranges = new ArrayDeque<>();
+
+    /** Buffers of ranges that have been returned, reused for the next ones */
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+
+    /** Offset of the next range to read */
+    private long nextRangeOffset;
+
+    /** Current range, <code>null</code> until the first one is read */
+    private byte[] range;
+
+    /** Offset of the next byte to return within the current range */
+    private int rangeOffset;
+
+    /** Whether a range has come back short, i.e. the end of the file has been read */
+    private boolean eof;
+
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelRangeInputStream</code> that starts reading the file at the given offset, and
+     * starts reading the first ranges right away.
+     *
+     * @param reader reads the ranges of the file
+     * @param threadName name of the threads that read the ranges
+     * @param offset offset of the first byte to read
+     * @param length length of the file, as far as it is known
+     * @param rangeSize size of the ranges, in bytes
+     * @param threads maximum number of ranges being read concurrently
+     */
+    public ParallelRangeInputStream(RangeReader reader, String threadName, long offset, long length, int rangeSize, int threads) {
+        this.reader = reader;
+        this.length = length;
+        this.threads = threads;
+        this.rangeSize = rangeSize;
+        this.nextRangeOffset = offset;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        readAhead(true);
+    }
+
+    /**
+     * Starts reading ranges until as many as there are threads are being read. Past the known length of the file,
+     * ranges are read one at a time, until one comes back short.
+     *
+     * @param pastLength <code>true</code> if a range may be started past the known length of the file, which is only
+     * the case before the first range and once the previous range has come back full
+     */
+    private void readAhead(boolean pastLength) {
+        while(!eof && ranges.size()<threads && (nextRangeOffset<length || (pastLength && ranges.isEmpty()))) {
+            long start = nextRangeOffset;
+            ranges.add(executor.submit(() -> readRange(start)));
+            nextRangeOffset = start+rangeSize;
+        }
+    }
+
+    /**
+     * Reads the range of the file that starts at the given offset. The returned array is shorter than a range if
+     * the end of the file has been reached.
+     */
+    private byte[] readRange(long offset) throws IOException {
+        byte[] data = freeBuffers.poll();
+        if(data==null)
+            data = allocateBuffer(rangeSize);
+
+        int nbRead = reader.read(offset, data);
+
+        return nbRead==rangeSize ? data : Arrays.copyOf(data, nbRead);
+    }
+
+    /**
+     * Allocates the buffer of a range, when no buffer of a returned range can be reused.
+     *
+     * @param size the size of a range
+     * @return a new buffer of the given size
+     */
+    protected byte[] allocateBuffer(int size) {
+        return new byte[size];
+    }
+
+    /**
+     * Moves on to the next range, waiting for it to be read.
+     *
+     * @return <code>false</code> if the end of the file has been reached
+     */
+    private boolean nextRange() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        Future<byte[]> nextRange = ranges.poll();
+        if(nextRange==null)
+            return false;
+
+        if(range!=null && range.length==rangeSize)
+            freeBuffers.add(range);
+        readAhead(false);
+
+        try {
+            range = nextRange.get();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+        }
+        rangeOffset = 0;
+
+        // The ranges that follow a short one are past the end of the file
+        if(range.length<rangeSize) {
+            eof = true;
+            cancelRanges();
+        }
+        else {
+            readAhead(true);
+        }
+        return true;
+    }
+
+    private void cancelRanges() {
+        for(Future<byte[]> range : ranges)
+            range.cancel(true);
+        ranges.clear();
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        while(range==null || rangeOffset>=range.length) {
+            if(!nextRange())
+                return -1;
+        }
+
+        return range[rangeOffset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len==0)
+            return 0;
+
+        while(range==null || rangeOffset>=range.length) {
+            if(!nextRange())
+                return -1;
+        }
+
+        int nbRead = Math.min(len, range.length-rangeOffset);
+        System.arraycopy(range, rangeOffset, b, off, nbRead);
+        rangeOffset += nbRead;
+
+        return nbRead;
+    }
+
+    /**
+     * Interrupts the ranges being read and stops the threads that read them.
+     */
+    @Override
+    public void close() {
+        if(closed)
+            return;
+
+        closed = true;
+        cancelRanges();
+        executor.shutdownNow();
+        range = null;
+        freeBuffers.clear();
+    }
+}
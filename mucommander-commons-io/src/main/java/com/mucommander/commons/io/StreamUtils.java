@@ -18,6 +18,8 @@
 package com.mucommander.commons.io;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 /**
  * This class provides convenience static methods that operate on streams. All read/write buffers are allocated using
@@ -27,6 +29,9 @@ import java.io.*;
  */
 public class StreamUtils {
 
+    /** Maximum number of bytes transferred at once by {@link #transferStream(InputStream, FileChannel)} */
+    private final static long CHANNEL_TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     /**
      * This method is a shorthand for {@link #copyStream(java.io.InputStream, java.io.OutputStream, int)} called with a
      * {@link BufferPool#getDefaultBufferSize() default buffer size}.
@@ -128,6 +133,90 @@ public class StreamUtils {
         return totalRead;
     }
 
+    /**
+     * Returns the {@link FileChannel} the given <code>InputStream</code> reads from, <code>null</code> if it does not
+     * read from a channel, or if it transforms the data it reads.
+     * {@link CounterInputStream} and {@link ThroughputLimitInputStream} do not transform data and are looked through.
+     *
+     * @param in the InputStream to inspect
+     * @return the FileChannel the InputStream reads from, null if there is none
+     */
+    public static FileChannel getFileChannel(InputStream in) {
+        while(true) {
+            if(in instanceof FileChannelSource)
+                return ((FileChannelSource)in).getFileChannel();
+            else if(in instanceof ThroughputLimitInputStream)
+                in = ((ThroughputLimitInputStream)in).getUnderlyingInputStream();
+            else if(in instanceof CounterInputStream)
+                in = ((CounterInputStream)in).getUnderlyingInputStream();
+            else
+                return null;
+        }
+    }
+
+    /**
+     * Copies the given <code>InputStream</code> to the specified channel until the end-of-file is reached. If the
+     * stream reads from a {@link FileChannel} (see {@link #getFileChannel(InputStream)}), the data is transferred
+     * from channel to channel with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * letting the operating system copy it without going through user space when possible (e.g. with
+     * <code>sendfile</code> or <code>copy_file_range</code> under Linux). Otherwise, the stream is copied using a
+     * buffer. This method does *NOT* close the given stream or channel.
+     *
+     * <p>The data transferred from channel to channel is skipped in the given stream rather than being read, chunk by
+     * chunk, before being transferred. This lets streams that monitor or throttle reads (e.g.
+     * {@link CounterInputStream} and {@link ThroughputLimitInputStream}) account for the transferred bytes, block the
+     * transfer when needed and interrupt it when closed.</p>
+     *
+     * @param in the InputStream to read from
+     * @param out the channel to write to
+     * @return the number of bytes that were copied
+     * @throws FileTransferException if something went wrong while reading from the stream or writing to the channel
+     */
+    public static long transferStream(InputStream in, FileChannel out) throws FileTransferException {
+        FileChannel inChannel = getFileChannel(in);
+        if(inChannel==null)
+            return copyStream(in, Channels.newOutputStream(out));
+
+        long totalTransferred = 0;
+        while(true) {
+            long position;
+            long chunkSize;
+            try {
+                position = inChannel.position();
+                chunkSize = Math.min(CHANNEL_TRANSFER_CHUNK_SIZE, inChannel.size()-position);
+                if(chunkSize<=0)
+                    break;
+
+                // Skipping the chunk may block (pause, throughput limit) and return less than requested
+                chunkSize = in.skip(chunkSize);
+                if(chunkSize<=0)
+                    break;
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.READING_SOURCE);
+            }
+
+            try {
+                long nbTransferred = 0;
+                while(nbTransferred<chunkSize) {
+                    long n = inChannel.transferTo(position+nbTransferred, chunkSize-nbTransferred, out);
+                    // The source file has been truncated in the meantime
+                    if(n<=0)
+                        throw new EOFException();
+
+                    nbTransferred += n;
+                }
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.WRITING_DESTINATION, totalTransferred);
+            }
+
+            totalTransferred += chunkSize;
+        }
+
+        return totalTransferred;
+    }
+
     /**
      * This method is a shorthand for {@link #transcode(java.io.InputStream, String, java.io.OutputStream, String, int)}
      * called with a {@link BufferPool#getDefaultBufferSize() default buffer size}.
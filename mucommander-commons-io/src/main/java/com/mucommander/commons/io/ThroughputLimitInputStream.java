@@ -117,6 +117,16 @@ public class ThroughputLimitInputStream extends InputStream {
     }
 
 
+    /**
+     * Returns the underlying InputStream which data is read from.
+     *
+     * @return the underlying InputStream which data is read from
+     */
+    public InputStream getUnderlyingInputStream() {
+        return in;
+    }
+
+
     /**
      * Returns the number of bytes that can be read (or skipped) without exceeding the current throughput limit.
      * This method blocks until at least 1 byte is available. In other words the method always returns
@@ -135,6 +135,11 @@ public class BoundedInputStreamTest {
         // Attempt to read a chunk larger than the remaining bytes and assert that it does not return -1
         bin = new BoundedInputStream(new ByteArrayInputStream(TEST_BYTES), 4, false);
         assert bin.read(new byte[6])!=-1;
+
+        // Zero-length reads return 0 as long as the bound has not been reached, like any InputStream
+        bin = new BoundedInputStream(new ByteArrayInputStream(TEST_BYTES), 4, false);
+        assert 0 == bin.read(new byte[1], 0, 0);
+        assert 0 == bin.getProcessedBytes();
     }
 
     /**
@@ -17,6 +17,14 @@
 
 package com.mucommander.commons.io;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.testng.annotations.Test;
 
 /**
@@ -29,6 +37,8 @@ public class BufferPoolTest {
     public final static int TEST_BUFFER_SIZE_1 = 27;
     public final static int TEST_BUFFER_SIZE_2 = 28;
     public final static int TEST_MAX_POOL_SIZE = 1000;
+    /** Base size of the buffers used by the concurrent tests, which differs from the sizes used by the other tests */
+    public final static int TEST_CONCURRENT_BUFFER_SIZE = 100;
 
     /**
      * Tests <code>BufferPool</code> with byte array (<code>byte[]</code>) buffers.
@@ -187,6 +197,162 @@ public class BufferPoolTest {
         BufferPool.setMaxPoolSize(BufferPool.INITIAL_POOL_LIMIT);
     }
 
+    /**
+     * Asserts that the hit and miss counts are incremented by <code>get*Buffer</code> calls, and that pooled NIO
+     * buffers are returned cleared.
+     */
+    @Test
+    public void testStatistics() {
+        long hitCount = BufferPool.getHitCount();
+        long missCount = BufferPool.getMissCount();
+
+        ByteBuffer buffer = BufferPool.getByteBuffer(TEST_BUFFER_SIZE_2);
+        assert buffer.isDirect();
+        assert BufferPool.getMissCount() == missCount+1;
+
+        buffer.position(3).limit(5);
+        assert BufferPool.releaseByteBuffer(buffer);
+        assert BufferPool.getByteBuffer(TEST_BUFFER_SIZE_2) == buffer;
+        assert BufferPool.getHitCount() == hitCount+1;
+        assert buffer.position() == 0 && buffer.limit() == TEST_BUFFER_SIZE_2;
+    }
+
+    /**
+     * Asserts that a buffer is never handed out to several threads at once, and that the pool size accounts for the
+     * buffers cached by threads. The pool is left as it was before the test.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        long originalPoolSize = BufferPool.getPoolSize();
+        int originalBufferCount = BufferPool.getBufferCount();
+        Set<Object> inUse = ConcurrentHashMap.newKeySet();
+        List<Throwable> errors = new ArrayList<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<8; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for(int i=0; i<10000; i++) {
+                        byte[] buffer = BufferPool.getByteArray(TEST_CONCURRENT_BUFFER_SIZE + i%3);
+                        assert inUse.add(buffer);
+                        assert inUse.remove(buffer);
+                        BufferPool.releaseByteArray(buffer);
+                    }
+                    BufferPool.flushThreadCache();
+                }
+                catch(Throwable e) {
+                    synchronized(errors) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+
+        assert errors.isEmpty() : errors;
+        int pooledBuffers = BufferPool.getBufferCount()-originalBufferCount;
+        assert pooledBuffers > 0;
+        assert BufferPool.getPoolSize() >= originalPoolSize+pooledBuffers*TEST_CONCURRENT_BUFFER_SIZE;
+        assert BufferPool.getPoolSize() <= originalPoolSize+pooledBuffers*(TEST_CONCURRENT_BUFFER_SIZE+2);
+
+        // The threads have flushed their cache, retrieve all the buffers they released
+        while(BufferPool.getBufferCount() > originalBufferCount) {
+            for(int i=0; i<3; i++)
+                BufferPool.getByteArray(TEST_CONCURRENT_BUFFER_SIZE + i);
+        }
+        assert BufferPool.getPoolSize() == originalPoolSize;
+    }
+
+    /**
+     * Asserts that releasing a buffer that is in the cache of another thread fails.
+     */
+    @Test
+    public void testReleaseCachedByOtherThread() throws InterruptedException {
+        long originalPoolSize = BufferPool.getPoolSize();
+        byte[] buffer = new byte[TEST_CONCURRENT_BUFFER_SIZE];
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch checked = new CountDownLatch(1);
+
+        Thread thread = new Thread(() -> {
+            assert BufferPool.releaseByteArray(buffer);
+            released.countDown();
+            try {
+                checked.await();
+            }
+            catch(InterruptedException e) {
+                return;
+            }
+            // Leave the pool as it was before the test
+            assert BufferPool.getByteArray(TEST_CONCURRENT_BUFFER_SIZE) == buffer;
+        });
+        thread.start();
+
+        assert released.await(10, TimeUnit.SECONDS);
+        assert BufferPool.containsBuffer(buffer, new BufferPool.ByteArrayFactory());
+        assert !BufferPool.releaseByteArray(buffer);
+        checked.countDown();
+        thread.join();
+
+        assert !BufferPool.containsBuffer(buffer, new BufferPool.ByteArrayFactory());
+        assert BufferPool.getPoolSize() == originalPoolSize;
+    }
+
+    /**
+     * Asserts that thread caches do not hold more than their share of the max pool size, and that buffers cached by
+     * a thread become available to other threads once the thread has flushed its cache.
+     */
+    @Test
+    public void testThreadCachesShare() throws InterruptedException {
+        long originalPoolSize = BufferPool.getPoolSize();
+        // Leave room for 5 buffers in the pool besides the buffers already in it, thread caches holding up to 2 of them
+        long maxPoolSize = 5 * originalPoolSize + TEST_MAX_POOL_SIZE;
+        int bufferSize = (int)(maxPoolSize / 5);
+        int nbBuffers = 4;
+        int maxCached = (int)(maxPoolSize / BufferPool.THREAD_CACHES_POOL_SHARE / bufferSize);
+        BufferPool.setMaxPoolSize(maxPoolSize);
+        try {
+            CountDownLatch released = new CountDownLatch(1);
+            CountDownLatch flush = new CountDownLatch(1);
+            Thread thread = new Thread(() -> {
+                for(int i=0; i<nbBuffers; i++)
+                    assert BufferPool.releaseByteArray(new byte[bufferSize]);
+                released.countDown();
+                try {
+                    flush.await();
+                }
+                catch(InterruptedException e) {
+                    return;
+                }
+                BufferPool.flushThreadCache();
+            });
+            thread.start();
+            assert released.await(10, TimeUnit.SECONDS);
+            assert BufferPool.getPoolSize() == originalPoolSize + (long)nbBuffers * bufferSize;
+
+            // The buffers that did not fit in the cache of the thread are available to other threads
+            long hitCount = BufferPool.getHitCount();
+            for(int i=0; i<nbBuffers; i++)
+                BufferPool.getByteArray(bufferSize);
+            int nbCached = nbBuffers - (int)(BufferPool.getHitCount() - hitCount);
+            assert nbCached <= maxCached;
+
+            // Once flushed, so are the buffers cached by the thread
+            flush.countDown();
+            thread.join();
+            hitCount = BufferPool.getHitCount();
+            for(int i=0; i<nbCached; i++)
+                BufferPool.getByteArray(bufferSize);
+            assert BufferPool.getHitCount() == hitCount + nbCached;
+            assert BufferPool.getPoolSize() == originalPoolSize;
+        }
+        finally {
+            BufferPool.setMaxPoolSize(BufferPool.INITIAL_POOL_LIMIT);
+        }
+    }
+
     /**
      * Asserts that the given buffer's size matches the specified one.
      *
@@ -0,0 +1,175 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link ParallelBlockOutputStream} and {@link DeflateBlockCompressor}.
+ */
+public class ParallelBlockOutputStreamTest {
+
+    /**
+     * Returns compressible data of the given length.
+     */
+    private static byte[] getData(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte) ('a' + random.nextInt(8));
+        return data;
+    }
+
+    private static byte[] inflate(byte[] compressed, int offset, int length) throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed, offset, length), new Inflater(true))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static ParallelBlockOutputStream getStream(ByteArrayOutputStream bout) {
+        return new ParallelBlockOutputStream(bout, new DeflateBlockCompressor(Deflater.DEFAULT_COMPRESSION), DeflateBlockCompressor.BLOCK_SIZE, 4);
+    }
+
+    /**
+     * Asserts that data of various lengths, some of which are a multiple of the block size, is compressed into a
+     * single DEFLATE stream that decompresses to the original data.
+     */
+    @Test
+    public void testDeflate() throws IOException {
+        int blockSize = DeflateBlockCompressor.BLOCK_SIZE;
+        for (int length : new int[] {0, 1, 1000, blockSize, blockSize + 1, 10 * blockSize, 10 * blockSize + 12345}) {
+            byte[] data = getData(length, length);
+
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try (ParallelBlockOutputStream out = getStream(bout)) {
+                // Write the data in chunks that don't match the blocks
+                for (int off = 0; off < length; off += 10000)
+                    out.write(data, off, Math.min(10000, length - off));
+            }
+
+            byte[] compressed = bout.toByteArray();
+            assert length < 1000 || compressed.length < length / 2;
+            assert Arrays.equals(data, inflate(compressed, 0, compressed.length)) : length;
+        }
+    }
+
+    /**
+     * Asserts that consecutive streams and the actions between them are written in order.
+     */
+    @Test
+    public void testStreamsAndActions() throws IOException {
+        byte[][] data = {getData(5 * DeflateBlockCompressor.BLOCK_SIZE + 7, 1), getData(0, 2), getData(300000, 3)};
+        long[] offsets = new long[data.length + 1];
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ParallelBlockOutputStream out = getStream(bout)) {
+            for (int i = 0; i < data.length; i++) {
+                final int index = i;
+                out.runInOrder(() -> {
+                    offsets[index] = out.getCompressedBytes();
+                    // Actions may write to the underlying stream
+                    bout.write(0);
+                });
+                out.write(data[i]);
+                out.endStream();
+            }
+            out.runInOrder(() -> offsets[data.length] = out.getCompressedBytes());
+        }
+
+        byte[] compressed = bout.toByteArray();
+        for (int i = 0; i < data.length; i++) {
+            // Account for the bytes written by the actions
+            int start = (int) offsets[i] + i + 1;
+            int end = (int) offsets[i + 1] + i + 1;
+            assert compressed[start - 1] == 0;
+            assert Arrays.equals(data[i], inflate(compressed, start, end - start)) : i;
+        }
+    }
+
+    /**
+     * Asserts that a compression error is reported to the writer.
+     */
+    @Test
+    public void testCompressionError() throws IOException {
+        ParallelBlockOutputStream out = new ParallelBlockOutputStream(new ByteArrayOutputStream(), (block, length, previousBlock, last) -> {
+            throw new IOException("compression failed");
+        }, 1024, 2);
+
+        boolean exceptionThrown = false;
+        try {
+            out.write(new byte[100000]);
+            out.close();
+        } catch (IOException e) {
+            exceptionThrown = true;
+        }
+
+        assert exceptionThrown;
+    }
+
+    /**
+     * Asserts that each compression thread releases its resources once the stream is closed.
+     */
+    @Test
+    public void testThreadTerminated() throws IOException, InterruptedException {
+        int nbThreads = 4;
+        Set<Thread> compressingThreads = ConcurrentHashMap.newKeySet();
+        Set<Thread> terminatedThreads = ConcurrentHashMap.newKeySet();
+        CountDownLatch terminated = new CountDownLatch(nbThreads);
+        DeflateBlockCompressor deflater = new DeflateBlockCompressor(Deflater.DEFAULT_COMPRESSION);
+
+        ParallelBlockOutputStream.BlockCompressor compressor = new ParallelBlockOutputStream.BlockCompressor() {
+            @Override
+            public byte[] compress(byte[] block, int length, byte[] previousBlock, boolean last) {
+                compressingThreads.add(Thread.currentThread());
+                return deflater.compress(block, length, previousBlock, last);
+            }
+
+            @Override
+            public void threadTerminated() {
+                deflater.threadTerminated();
+                terminatedThreads.add(Thread.currentThread());
+                terminated.countDown();
+            }
+        };
+
+        byte[] data = getData(10 * DeflateBlockCompressor.BLOCK_SIZE, 4);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ParallelBlockOutputStream out = new ParallelBlockOutputStream(bout, compressor, DeflateBlockCompressor.BLOCK_SIZE, nbThreads)) {
+            out.write(data);
+        }
+
+        assert terminated.await(10, TimeUnit.SECONDS);
+        assert terminatedThreads.equals(compressingThreads);
+
+        byte[] compressed = bout.toByteArray();
+        assert Arrays.equals(data, inflate(compressed, 0, compressed.length));
+    }
+}
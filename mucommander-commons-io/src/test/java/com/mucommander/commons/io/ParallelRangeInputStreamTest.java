@@ -0,0 +1,181 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link ParallelRangeInputStream}.
+ */
+public class ParallelRangeInputStreamTest {
+
+    /** Size of the ranges of the tested streams */
+    private final static int RANGE_SIZE = 1000;
+
+    private static byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++)
+            content[i] = (byte) (i * 31 + i / 251);
+        return content;
+    }
+
+    /**
+     * Returns a reader of ranges of the given content, which takes longer to read ranges at lower offsets so that
+     * ranges are read out of order. The offsets of the ranges that are read are added to the given list.
+     */
+    private static ParallelRangeInputStream.RangeReader createReader(byte[] content, List<Long> offsets) {
+        return (offset, buffer) -> {
+            synchronized (offsets) {
+                offsets.add(offset);
+            }
+            try {
+                Thread.sleep(Math.max(0, content.length - offset) / (10 * RANGE_SIZE));
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            int start = (int) Math.min(offset, content.length);
+            int length = Math.min(buffer.length, content.length - start);
+            System.arraycopy(content, start, buffer, 0, length);
+            return length;
+        };
+    }
+
+    /**
+     * Asserts that the ranges are returned in order, whether the length given to the stream is that of the file or
+     * is stale.
+     */
+    @Test
+    public void testRanges() throws IOException {
+        byte[] content = createContent(20 * RANGE_SIZE + 123);
+        for (long length : new long[] { content.length, content.length / 3, content.length * 2L, 20 * RANGE_SIZE }) {
+            List<Long> offsets = new ArrayList<>();
+            try (InputStream in = new ParallelRangeInputStream(createReader(content, offsets), "test", 0, length, RANGE_SIZE, 4)) {
+                assert Arrays.equals(content, in.readAllBytes()) : length;
+            }
+            // Past the given length, ranges are read one at a time until one comes back short
+            if (length <= content.length)
+                assert offsets.size() == 21 : length;
+        }
+
+        // Same with a file whose length is a multiple of the range size, read from an offset
+        byte[] aligned = createContent(10 * RANGE_SIZE);
+        List<Long> offsets = new ArrayList<>();
+        try (InputStream in = new ParallelRangeInputStream(createReader(aligned, offsets), "test", 500, aligned.length, RANGE_SIZE, 3)) {
+            assert Arrays.equals(Arrays.copyOfRange(aligned, 500, aligned.length), in.readAllBytes());
+        }
+        assert offsets.size() == 10;
+    }
+
+    /**
+     * Asserts that the buffers of the ranges that have been returned are reused, without overwriting data that has
+     * not been returned yet.
+     */
+    @Test
+    public void testBufferReuse() throws IOException {
+        byte[] content = createContent(30 * RANGE_SIZE);
+        int threads = 3;
+        AtomicInteger nbBuffers = new AtomicInteger();
+        try (InputStream in = new ParallelRangeInputStream(createReader(content, new ArrayList<>()), "test", 0, content.length, RANGE_SIZE, threads) {
+            @Override
+            protected byte[] allocateBuffer(int size) {
+                nbBuffers.incrementAndGet();
+                return super.allocateBuffer(size);
+            }
+        }) {
+            byte[] read = new byte[content.length];
+            int offset = 0;
+            int nbRead;
+            while ((nbRead = in.read(read, offset, Math.min(333, read.length - offset))) > 0)
+                offset += nbRead;
+            assert offset == content.length;
+            assert Arrays.equals(content, read);
+        }
+
+        // The ranges being read plus the one being returned
+        assert nbBuffers.get() <= threads + 1;
+    }
+
+    /**
+     * Asserts that an error reading a range is reported to the reader of the stream.
+     */
+    @Test
+    public void testReadError() throws IOException {
+        byte[] content = createContent(10 * RANGE_SIZE);
+        ParallelRangeInputStream.RangeReader reader = createReader(content, new ArrayList<>());
+        try (InputStream in = new ParallelRangeInputStream((offset, buffer) -> {
+            if (offset == 5 * RANGE_SIZE)
+                throw new IOException("range failed");
+            return reader.read(offset, buffer);
+        }, "test", 0, content.length, RANGE_SIZE, 2)) {
+            byte[] read = new byte[5 * RANGE_SIZE];
+            StreamUtils.readFully(in, read);
+            assert Arrays.equals(Arrays.copyOf(content, read.length), read);
+
+            boolean exceptionThrown = false;
+            try {
+                in.read();
+            } catch (IOException e) {
+                exceptionThrown = true;
+            }
+            assert exceptionThrown;
+        }
+    }
+
+    /**
+     * Asserts that closing the stream interrupts the ranges being read.
+     */
+    @Test
+    public void testCloseInFlight() throws IOException, InterruptedException {
+        int threads = 3;
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch interrupted = new CountDownLatch(threads);
+        ParallelRangeInputStream.RangeReader blockingReader = (offset, buffer) -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            throw new InterruptedIOException();
+        };
+
+        InputStream in = new ParallelRangeInputStream(blockingReader, "test", 0, 10 * RANGE_SIZE, RANGE_SIZE, threads);
+        assert started.await(10, TimeUnit.SECONDS);
+        in.close();
+        assert interrupted.await(10, TimeUnit.SECONDS);
+
+        boolean exceptionThrown = false;
+        try {
+            in.read();
+        } catch (IOException e) {
+            // The stream is closed
+            exceptionThrown = true;
+        }
+        assert exceptionThrown;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A test case for the channel transfer methods of {@link StreamUtils}.
+ *
+ * @see StreamUtils#transferStream(InputStream, FileChannel)
+ */
+public class StreamUtilsTest {
+
+    /** Large enough to be transferred in several chunks */
+    private final static int TEST_FILE_SIZE = 20 * 1024 * 1024 + 17;
+
+    /**
+     * An InputStream that reads from a FileChannel, like local file streams do.
+     */
+    private static class ChannelInputStream extends FilterInputStream implements FileChannelSource {
+        private final FileChannel channel;
+
+        private ChannelInputStream(FileInputStream in) {
+            super(in);
+            this.channel = in.getChannel();
+        }
+
+        public FileChannel getFileChannel() {
+            return channel;
+        }
+    }
+
+    private static File createTestFile(byte[] data) throws IOException {
+        File file = File.createTempFile("StreamUtilsTest", null);
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private static byte[] createTestData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Asserts that {@link StreamUtils#getFileChannel(InputStream)} looks through counting and throttling streams only.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testGetFileChannel() throws IOException {
+        File file = createTestFile(new byte[1]);
+        try (ChannelInputStream in = new ChannelInputStream(new FileInputStream(file))) {
+            assert in.getFileChannel() == StreamUtils.getFileChannel(in);
+            assert in.getFileChannel() == StreamUtils.getFileChannel(new ThroughputLimitInputStream(new CounterInputStream(in)));
+            assert StreamUtils.getFileChannel(new ByteArrayInputStream(new byte[1])) == null;
+            assert StreamUtils.getFileChannel(new BoundedInputStream(in, 1, false)) == null;
+        }
+    }
+
+    /**
+     * Transfers a file from channel to channel, starting at a non-zero offset, and asserts that the data is copied
+     * and accounted for by a {@link CounterInputStream}.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testTransferStream() throws IOException {
+        byte[] data = createTestData(TEST_FILE_SIZE);
+        File source = createTestFile(data);
+        File destination = createTestFile(new byte[0]);
+        long offset = 3;
+
+        ByteCounter counter = new ByteCounter();
+        try (ChannelInputStream channelIn = new ChannelInputStream(new FileInputStream(source));
+             InputStream in = new ThroughputLimitInputStream(new CounterInputStream(channelIn, counter));
+             FileChannel out = new FileOutputStream(destination).getChannel()) {
+            StreamUtils.skipFully(in, offset);
+            assert TEST_FILE_SIZE-offset == StreamUtils.transferStream(in, out);
+            assert TEST_FILE_SIZE == counter.getByteCount();
+            assert in.read() == -1;
+        }
+
+        assert Arrays.equals(Arrays.copyOfRange(data, (int)offset, data.length), Files.readAllBytes(destination.toPath()));
+    }
+
+    /**
+     * Asserts that streams which do not read from a channel are copied using a buffer.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testTransferStreamWithoutChannel() throws IOException {
+        byte[] data = createTestData(1000);
+        File destination = createTestFile(new byte[0]);
+
+        try (FileChannel out = new FileOutputStream(destination).getChannel()) {
+            assert data.length == StreamUtils.transferStream(new ByteArrayInputStream(data), out);
+        }
+
+        assert Arrays.equals(data, Files.readAllBytes(destination.toPath()));
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.mucommander;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
@@ -35,14 +36,19 @@ import com.mucommander.command.Command;
 import com.mucommander.command.CommandException;
 import com.mucommander.command.CommandManager;
 import com.mucommander.command.CommandType;
+import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archive.ArchiveEntryCache;
 import com.mucommander.commons.file.icon.impl.SwingFileIconProvider;
+import com.mucommander.commons.conf.ValueList;
 import com.mucommander.commons.file.util.ResourceLoader;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.PlatformManager;
 import com.mucommander.conf.SystemIconsPolicy;
 import com.mucommander.extension.ExtensionManager;
+import com.mucommander.search.FileIndexer;
 import com.mucommander.snapshot.MuSnapshot;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionManager;
@@ -76,6 +82,9 @@ public class Application {
     private static final Object LAUNCH_LOCK = new Object();
     /** OSGi BundleActivator */
     private static Activator activator;
+    /** Name of the folder, within the preferences folder, where archive listings are persisted */
+    private static final String ARCHIVE_LISTING_CACHE_FOLDER = "archive_listings";
+    private static final String SEARCH_INDEX_FOLDER = "search_index";
 
     // - Initialization ---------------------------------------------------------
     // --------------------------------------------------------------------------
@@ -356,6 +365,9 @@ public class Application {
             // Configure filesystems
             configureFilesystems();
 
+            // Index the files of the folders configured for search, if any
+            startFileIndexers();
+
             if (isFirstBoot) {
                 try {
                     com.mucommander.ui.main.WindowManager.setDefaultLookAndFeel();
@@ -591,6 +603,34 @@ public class Application {
 
         // Use CredentialsManager for file URL authentication
         FileFactory.setDefaultAuthenticator(CredentialsManager.getAuthenticator());
+
+        // Persist archive listings in the preferences folder, if enabled
+        if (MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVE_LISTING_CACHE, MuPreferences.DEFAULT_ARCHIVE_LISTING_CACHE)) {
+            long maxSize = MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVE_LISTING_CACHE_SIZE,
+                    MuPreferences.DEFAULT_ARCHIVE_LISTING_CACHE_SIZE) * 1024L * 1024L;
+            try {
+                AbstractFile folder = PlatformManager.getPreferencesFolder().getChild(ARCHIVE_LISTING_CACHE_FOLDER);
+                ArchiveEntryCache.setInstance(new ArchiveEntryCache(new File(folder.getAbsolutePath()), maxSize));
+            } catch (IOException e) {
+                LOGGER.debug("Failed to resolve the archive listing cache folder, listings will not be persisted", e);
+            }
+        }
+    }
+
+    private static void startFileIndexers() {
+        ValueList folders = MuConfigurations.getPreferences().getListVariable(MuPreference.SEARCH_INDEX_FOLDERS,
+                MuPreferences.SEARCH_INDEX_FOLDERS_SEPARATOR);
+        if (folders == null || folders.isEmpty())
+            return;
+
+        long rescanPeriod = MuConfigurations.getPreferences().getVariable(MuPreference.SEARCH_INDEX_RESCAN_PERIOD,
+                MuPreferences.DEFAULT_SEARCH_INDEX_RESCAN_PERIOD) * 60 * 1000L;
+        try {
+            AbstractFile folder = PlatformManager.getPreferencesFolder().getChild(SEARCH_INDEX_FOLDER);
+            FileIndexer.start(folders, new File(folder.getAbsolutePath()), rescanPeriod);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to resolve the search index folder, folders will not be indexed", e);
+        }
     }
 
     /**
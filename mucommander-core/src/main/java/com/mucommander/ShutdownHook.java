@@ -24,6 +24,7 @@ import com.mucommander.auth.CredentialsManager;
 import com.mucommander.bookmark.BookmarkManager;
 import com.mucommander.command.CommandManager;
 import com.mucommander.conf.MuConfigurations;
+import com.mucommander.search.FileIndexer;
 import com.mucommander.snapshot.MuSnapshot;
 import com.mucommander.ui.action.ActionKeymapIO;
 import com.mucommander.ui.main.commandbar.CommandBarIO;
@@ -69,6 +70,10 @@ public class ShutdownHook extends Thread {
 
         TreeIOThreadManager.getInstance().interrupt();
 
+        // Stop indexing files, saving the indexes
+        try {FileIndexer.stop();}
+        catch(Exception e) {LOGGER.warn("Failed to stop file indexers", e);}
+
         // Save snapshot
         try{MuSnapshot.saveSnapshot();}
         catch(Exception e) {LOGGER.warn("Failed to save snapshot", e);}
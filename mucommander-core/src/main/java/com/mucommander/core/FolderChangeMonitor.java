@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import com.mucommander.commons.file.filter.AbstractFileFilter;
 import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.OrFileFilter;
 import com.mucommander.commons.file.protocol.FileProtocols;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
@@ -52,8 +54,12 @@ import com.mucommander.ui.main.table.FileTable;
  * <p>If the MainFrame which contains the monitored FolderPanel becomes inactive (lies in the background), monitoring
  * on will be not happen until the MainFrame becomes active again.
  *
+ * <p>When the current folder reports which of its children have changed, only those children are updated in the
+ * FolderPanel rather than refreshing the whole folder.
+ *
  * <p>Implementation note: the monitoring is done in one single thread for all folders, each folder being monitored
- * one after another. Current folder refreshes are performed in a separate thread.
+ * one after another. The thread waits until the next folder is due for a check, or until it is notified that a check
+ * should happen right away. Current folder refreshes are performed in a separate thread.
  *
  * @author Maxence Bernard
  * @see <a href="http://trac.mucommander.com/wiki/FolderAutoRefresh">FolderAutoRefresh wiki entry</a>
@@ -63,6 +69,9 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
 
     private static final Object INIT_LOCK_OBJ = new Object();
 
+    /** Lock the monitor thread waits on between checks */
+    private static final Object MONITOR_LOCK = new Object();
+
     /** Folder panel we are monitoring */
     private FolderPanel folderPanel;
 
@@ -103,9 +112,12 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     /** If folder change check took an average of N milliseconds, thread will wait at least N*WAIT_MULTIPLIER before next check */
     private final static int WAIT_MULTIPLIER = 50;
 
-    /** Granularity of the thread check (number of milliseconds to sleep before next loop) */
+    /** Minimum number of milliseconds to wait between two loops of the monitor thread */
     private final static int TICK = 300;
 
+    /** Maximum number of changed files that are updated one by one, a full refresh is performed above */
+    private final static int MAX_INCREMENTAL_CHANGES = 500;
+
     /** This forces refreshing the displayed locations immediately */
     private static boolean forceRefresh;
 
@@ -158,6 +170,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
 
         instances.add(this);
         initMonitoringThread();
+        wakeUp();
     }
 
     private void initMonitoringThread() {
@@ -174,21 +187,20 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     }
 	
     public void run() {
-        // TODO: it would be more efficient to use a wait/notify scheme rather than sleeping. 
-        // It would also allow folders to be checked immediately upon certain conditions such as a window becoming activated.
         while (monitorThread!=null) {
-            // Sleep for a while
-            try { Thread.sleep(TICK);}
-            catch(InterruptedException e) {}
-			
-            // Loop on instances
-            int nbInstances = instances.size();
+            // Wait until the next check is due, or until notified that a check should happen now
             boolean forceRefresh;
-            synchronized(monitorThread) {
+            synchronized(MONITOR_LOCK) {
+                if (!FolderChangeMonitor.forceRefresh) {
+                    try { MONITOR_LOCK.wait(getTimeBeforeNextCheck()); }
+                    catch(InterruptedException e) {}
+                }
                 forceRefresh = FolderChangeMonitor.forceRefresh;
                 FolderChangeMonitor.forceRefresh = false;
             }
 
+            // Loop on instances
+            int nbInstances = instances.size();
             for (int i=0; i<nbInstances; i++) {
                 FolderChangeMonitor monitor;
                 try { monitor = instances.get(i); }
@@ -205,13 +217,53 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
                     }
                     // By checking FolderPanel.getLastFolderChangeTime(), we ensure that we don't check right after
                     // the folder has been refreshed.
-                    if (forceRefresh || System.currentTimeMillis()-Math.max(monitor.lastCheckTimestamp, monitor.folderPanel.getLastFolderChangeTime())>monitor.waitBeforeCheckTime) {
+                    if (forceRefresh || System.currentTimeMillis()-monitor.getLastActivityTime()>monitor.waitBeforeCheckTime) {
                         // Checks folder contents and refreshes view if necessary
                         monitor.waitBeforeCheckTime = monitor.checkAndRefresh(forceRefresh);
                         monitor.lastCheckTimestamp = System.currentTimeMillis();
                     }
                 }
             }
+
+            // Do not loop more often than every TICK milliseconds, even when notified repeatedly
+            try { Thread.sleep(TICK); }
+            catch(InterruptedException e) {}
+        }
+    }
+
+    /**
+     * Returns the number of milliseconds to wait before one of the monitored folders is due for a check. Folders of
+     * MainFrames that are in the background or that are being changed are not considered, as they are not checked;
+     * the monitor thread is woken up when they change.
+     *
+     * @return the number of milliseconds to wait, at least 1
+     */
+    private static long getTimeBeforeNextCheck() {
+        long now = System.currentTimeMillis();
+        long timeBeforeNextCheck = Math.max(checkPeriod, TICK);
+        synchronized(instances) {
+            for (FolderChangeMonitor monitor : instances) {
+                if (monitor.folderPanel.getMainFrame().isForegroundActive() && !monitor.folderChanging)
+                    timeBeforeNextCheck = Math.min(timeBeforeNextCheck, monitor.getLastActivityTime()+monitor.waitBeforeCheckTime-now+1);
+            }
+        }
+
+        return Math.max(timeBeforeNextCheck, 1);
+    }
+
+    /**
+     * Returns the time of the last check or change of the current folder, whichever is the most recent.
+     */
+    private long getLastActivityTime() {
+        return Math.max(lastCheckTimestamp, folderPanel.getLastFolderChangeTime());
+    }
+
+    /**
+     * Wakes the monitor thread up so that it reconsiders when the next check is due.
+     */
+    private static void wakeUp() {
+        synchronized(MONITOR_LOCK) {
+            MONITOR_LOCK.notifyAll();
         }
     }
     
@@ -222,6 +274,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         synchronized(INIT_LOCK_OBJ) {
             monitorThread = null;
         }
+        wakeUp();
     }
 
 
@@ -245,8 +298,19 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
      */
     private synchronized long checkAndRefresh(boolean forceRefresh) {
         if (!mayFolderChangeByFileJob() && isFileTableAutoRefreshable() && isFolderChanged(forceRefresh)) {
-            // Try and refresh current folder in a separate thread as to not lock monitor thread
-            folderPanel.tryRefreshCurrentFolder();
+            MonitoredFile currentFolder = folderPanel.getCurrentFolder();
+            // Sizes calculated for the folder and its ancestors are no longer valid
+            DirectorySizeCalculator.invalidate(currentFolder);
+
+            Set<String> changedChildren = currentFolder.getChangedChildren();
+            if (changedChildren != null && changedChildren.size() <= MAX_INCREMENTAL_CHANGES) {
+                // Update the changed files only, the table is updated in the event dispatch thread
+                folderPanel.getLocationManager().updateCurrentFolder(currentFolder, changedChildren);
+            }
+            else {
+                // Try and refresh current folder in a separate thread as to not lock monitor thread
+                folderPanel.tryRefreshCurrentFolder();
+            }
             return nbSamples==0 ?
                     waitAfterRefresh
                     : Math.max(waitAfterRefresh, (int)(WAIT_MULTIPLIER*(totalCheckTime/(float)nbSamples)));
@@ -302,6 +366,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         updateFolderInfo();
 
         folderChanging = false;
+        wakeUp();
     }
 
     public void locationCancelled(LocationEvent locationEvent) {
@@ -342,8 +407,9 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     @Override
     public void windowGainedFocus(WindowEvent e) {
         LOGGER.debug("{}: setting forceRefresh as MainFrame gained focus", this);
-        synchronized (monitorThread) {
+        synchronized (MONITOR_LOCK) {
             forceRefresh = true;
+            MONITOR_LOCK.notifyAll();
         }
     }
 
@@ -18,10 +18,17 @@
 package com.mucommander.job.impl;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
+import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.util.Pair;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.job.FileCollisionChecker;
 import com.mucommander.job.FileJobAction;
+import com.mucommander.job.FileJobState;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.DialogAction;
 import com.mucommander.ui.dialog.QuestionDialog;
@@ -31,6 +38,11 @@ import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class is the parent class of {@link com.mucommander.job.impl.CopyJob} and {@link com.mucommander.job.impl.MoveJob} and
@@ -41,7 +53,8 @@ import java.io.IOException;
  * @see com.mucommander.job.impl.MoveJob
  */
 public abstract class AbstractCopyJob extends TransferFileJob {
-    
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractCopyJob.class);
+
     /** Base destination folder */
     protected AbstractFile baseDestFolder;
     
@@ -62,6 +75,9 @@ public abstract class AbstractCopyJob extends TransferFileJob {
     /** True when an archive is being optimized */
     protected boolean isOptimizingArchive;
 
+    /** Folders whose date is to be changed once the parallel transfers of their children have completed */
+    private List<Pair<AbstractFile, Long>> pendingFolderDates = new ArrayList<>();
+
     /**
      * Creates a new <code>AbstractCopyJob</code>.
      *
@@ -205,6 +221,111 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         return destFile;
     }
     
+    /**
+     * Copies the given file to the specified destination, either right away on the job's thread or by queuing it for a
+     * parallel transfer if parallel transfers are enabled and supported for these files. In the latter case,
+     * <code>true</code> is returned optimistically: failed transfers are retried by {@link #completeParallelTransfers()},
+     * which also reports top-level files as processed once their transfer has completed.
+     *
+     * @param file the file to copy
+     * @param destFile the destination file
+     * @return true if the file was copied or queued, false if the transfer was interrupted / aborted by the user
+     */
+    protected boolean copyOrSubmitFile(AbstractFile file, AbstractFile destFile) {
+        if (canCopyConcurrently(file, destFile))
+            return submitCopyFile(file, destFile, append, null);
+
+        return tryCopyFile(file, destFile, append, errorDialogTitle);
+    }
+
+    /**
+     * Changes the date of the given destination folder, deferring the change until the parallel transfers of the
+     * folder's children have completed, as writing the children would otherwise alter the date again.
+     *
+     * @param destFolder the destination folder
+     * @param date the date to set
+     */
+    protected void changeFolderDate(AbstractFile destFolder, long date) {
+        if (canCopyConcurrently(destFolder, destFolder)) {
+            pendingFolderDates.add(new Pair<>(destFolder, date));
+            return;
+        }
+
+        if (destFolder.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            try {
+                destFolder.changeDate(date);
+            }
+            catch (IOException e) {
+                LOGGER.debug("failed to change the date of "+destFolder, e);
+                // Fail silently
+            }
+        }
+    }
+
+    /**
+     * Waits for the parallel transfers queued so far to complete, retries the ones that failed on the job's thread
+     * (showing the usual error dialogs), reports the top-level files that were queued as processed and changes the
+     * dates of the folders the files were copied into.
+     *
+     * @return true if all transfers eventually succeeded, false if some were skipped or the job was interrupted
+     */
+    protected boolean completeParallelTransfers() {
+        boolean success = true;
+        List<AbstractFile> failedFiles = new ArrayList<>();
+        for (ParallelTransferScheduler.Transfer transfer : awaitParallelTransfers()) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return false;
+
+            // Notify job that we're processing this file again
+            nextFile(transfer.source);
+            if (!retryTransfer(transfer)) {
+                success = false;
+                failedFiles.add(transfer.source);
+            }
+        }
+        reportParallelTransfers(failedFiles);
+
+        // Folders were added once their children had been processed: the deepest folders come first
+        List<Pair<AbstractFile, Long>> folderDates = pendingFolderDates;
+        pendingFolderDates = new ArrayList<>();
+        for (Pair<AbstractFile, Long> folderDate : folderDates) {
+            AbstractFile destFolder = folderDate.first;
+            if (destFolder.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+                try {
+                    destFolder.changeDate(folderDate.second);
+                }
+                catch (IOException e) {
+                    LOGGER.debug("failed to change the date of "+destFolder, e);
+                    // Fail silently
+                }
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Retries a parallel transfer that failed, on the job's thread. This implementation copies the file again,
+     * giving the user the choice to skip the file, retry or cancel if it fails again.
+     *
+     * @param transfer the transfer that failed
+     * @return true if the file was copied, false if it was skipped or the job was interrupted
+     */
+    protected boolean retryTransfer(ParallelTransferScheduler.Transfer transfer) {
+        return tryCopyFile(transfer.source, transfer.destination, transfer.append, errorDialogTitle);
+    }
+
+    /**
+     * Returns the maximum number of files this job may transfer concurrently, as configured in the preferences.
+     * Subclasses that need each file to be transferred by the time {@link #processFile(AbstractFile, Object)} returns
+     * should override this method to return <code>1</code>.
+     *
+     * @return the maximum number of files this job may transfer concurrently
+     */
+    protected int getNbParallelTransfers() {
+        return MuConfigurations.getPreferences().getVariable(MuPreference.PARALLEL_TRANSFERS, MuPreferences.DEFAULT_PARALLEL_TRANSFERS);
+    }
+
     /**
      * Optimizes the given writable archive file and notifies the user in case of an error.
      *
@@ -231,4 +352,27 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         isOptimizingArchive = false;
     }
 
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    /**
+     * Enables parallel transfers if the user asked for them in the preferences. The number of concurrent transfers
+     * against a single remote realm leaves one pooled connection available to the job's thread.
+     */
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        int nbTransfers = getNbParallelTransfers();
+        int realmLimit = MuConfigurations.getPreferences().getVariable(MuPreference.PARALLEL_TRANSFERS_PER_REALM, MuPreferences.DEFAULT_PARALLEL_TRANSFERS_PER_REALM);
+        enableParallelTransfers(nbTransfers, Math.min(realmLimit, ConnectionPool.getMaxConnectionsPerRealm()-1));
+    }
+
+    @Override
+    protected void allFilesProcessed() {
+        super.allFilesProcessed();
+
+        completeParallelTransfers();
+    }
 }
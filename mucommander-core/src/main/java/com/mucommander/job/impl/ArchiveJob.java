@@ -61,17 +61,21 @@ public class ArchiveJob extends TransferFileJob {
 	
     /** Optional archive comment */
     private String archiveComment;
+
+    /** Number of threads compressing the archive */
+    private int nbThreads;
 	
     /** Lock to avoid Archiver.close() to be called while data is being written */
     private final Object ioLock = new Object();
 
 
-    public ArchiveJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile destFile, int archiveFormat, String archiveComment) {
+    public ArchiveJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile destFile, int archiveFormat, String archiveComment, int nbThreads) {
         super(progressDialog, mainFrame, files);
 		
         this.destFile = destFile;
         this.archiveFormat = archiveFormat;
         this.archiveComment = archiveComment;
+        this.nbThreads = nbThreads;
 
         this.baseFolderPath = getBaseSourceFolder().getAbsolutePath(false);
     }
@@ -185,7 +189,7 @@ public class ArchiveJob extends TransferFileJob {
         do {
             try {
                 // Tries to get an Archiver instance.
-                this.archiver = Archiver.getArchiver(destFile, archiveFormat);
+                this.archiver = Archiver.getArchiver(destFile, archiveFormat, nbThreads);
                 this.archiver.setComment(archiveComment);
 
                 break;
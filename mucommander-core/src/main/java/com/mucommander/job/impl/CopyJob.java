@@ -25,7 +25,6 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
-import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.protocol.local.LocalFile;
@@ -171,15 +170,12 @@ public class CopyJob extends AbstractCopyJob {
                     currentDestFile = destFile;
 
                     // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.changeDate(file.getDate());
-                        }
-                        catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
-                    }
+                    changeFolderDate(destFile, file.getDate());
+
+                    // Wait for the files of a top-level folder to be copied, so that the folder is reported as
+                    // processed only if all its files have been copied
+                    if (recurseParams == null)
+                        return completeParallelTransfers();
 
                     return true;
                 }
@@ -196,8 +192,8 @@ public class CopyJob extends AbstractCopyJob {
         }
         // File is a regular file, copy it
         else  {
-            // Copy the file
-            return tryCopyFile(file, destFile, append, errorDialogTitle);
+            // Copy the file, concurrently if parallel transfers are enabled
+            return copyOrSubmitFile(file, destFile);
         }
     }
 
@@ -115,6 +115,12 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
 
     /** If set to true, processed files will be unmarked from current table */
     private boolean autoUnmark = true;
+
+    /** Table that was active when this job started, in which processed files are unmarked */
+    private FileTable activeTable;
+
+    /** Whether the processing of the current top-level file completes after {@link #processFile(AbstractFile, Object)} has returned */
+    private boolean fileProcessedDeferred;
     
     /** File to be selected after job has finished (can be null if not set) */
     private AbstractFile fileToSelect;
@@ -449,6 +455,51 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
     }
     
 
+    /**
+     * This method is called on the job's thread once {@link #processFile(AbstractFile,Object)} has returned for the last
+     * file, unless this job has been interrupted. The call happens before {@link #jobCompleted()}.
+     * This method implementation does nothing but it can be overridden by subclasses that process files asynchronously
+     * and need to wait for the processing to complete.
+     */
+    protected void allFilesProcessed() {
+    }
+
+
+    /**
+     * This method is called on the job's thread once the given top-level file has been processed, by {@link #run()}
+     * or, if the processing of the file was deferred with {@link #deferFileProcessed(AbstractFile)}, by the subclass.
+     * This method implementation unmarks the file in the active table if 'auto unmark' is enabled and the file was
+     * processed successfully.
+     *
+     * @param file the top-level file that has been processed
+     * @param success <code>true</code> if the file was processed successfully
+     */
+    protected void fileProcessed(AbstractFile file, boolean success) {
+        if (autoUnmark && success) {
+            // Do not repaint rows individually as it would be too expensive
+            activeTable.setFileMarked(file, false, false);
+        }
+    }
+
+
+    /**
+     * Signals that the processing of the given file completes asynchronously, after
+     * {@link #processFile(AbstractFile, Object)} has returned, if it is the top-level file being processed. In that
+     * case, {@link #run()} does not call {@link #fileProcessed(AbstractFile, boolean)} for the file: the subclass must
+     * call it once the processing has completed.
+     *
+     * @param file a file being processed
+     * @return <code>true</code> if the file is the top-level file being processed, whose processing is now deferred
+     */
+    protected boolean deferFileProcessed(AbstractFile file) {
+        if (currentFileIndex<0 || currentFileIndex>=nbFiles || files.elementAt(currentFileIndex)!=file)
+            return false;
+
+        fileProcessedDeferred = true;
+        return true;
+    }
+
+
     /**
      * This method is called when this job has completed normal execution : all files have been processed without any interruption
      * (without any call to {@link #interrupt()}).
@@ -702,7 +753,7 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
      * This method is public as a side-effect of this class implementing <code>Runnable</code>.
      */
     public final void run() {
-        FileTable activeTable = getMainFrame().getActiveTable();
+        activeTable = getMainFrame().getActiveTable();
 
         // Notify that this job has started
         jobStarted();
@@ -715,20 +766,23 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
             nextFile(currentFile);
 
             // Process current file
+            fileProcessedDeferred = false;
             boolean success = processFile(currentFile, null);
 
             // Stop if job was interrupted
             if (getState() == FileJobState.INTERRUPTED)
                 break;
 
-            // Unmark file in active table if 'auto unmark' is enabled
-            // and file was processed successfully
-            if (autoUnmark && success) {
-                // Do not repaint rows individually as it would be too expensive
-                activeTable.setFileMarked(currentFile, false, false);
-            }
+            // Unmark file in active table if 'auto unmark' is enabled and file was processed successfully,
+            // unless the processing completes asynchronously
+            if (!fileProcessedDeferred)
+                fileProcessed(currentFile, success);
         }
 
+        // Let the job complete the processing of files that it performs asynchronously
+        if (getState() != FileJobState.INTERRUPTED)
+            allFilesProcessed();
+
         // If last file was reached without any user interruption, all files have been processed with or
         // without errors, switch to FINISHED state and notify listeners
         if (currentFileIndex == nbFiles && getState() != FileJobState.INTERRUPTED) {
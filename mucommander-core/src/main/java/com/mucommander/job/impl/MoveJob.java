@@ -19,6 +19,8 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,8 @@ import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.protocol.search.SearchFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.util.Pair;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
 import com.mucommander.text.Translator;
@@ -50,6 +54,12 @@ public class MoveJob extends AbstractCopyJob {
     /** True if this job corresponds to a single file renaming */
     protected final boolean renameMode;
 
+    /** Source folders to delete once the parallel transfers of their children have completed, with whether they are top-level files */
+    private final List<Pair<AbstractFile, Boolean>> pendingFolderDeletions = new ArrayList<>();
+
+    /** Source files that could not be moved by parallel transfers, and folders that could not be deleted */
+    private final List<AbstractFile> notMovedFiles = new ArrayList<>();
+
     
     /**
      * Creates a new MoveJob without starting it.
@@ -192,18 +202,18 @@ public class MoveJob extends AbstractCopyJob {
                     }
 
                     // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.changeDate(originalDate);
-                        } catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
-                    }
+                    changeFolderDate(destFile, originalDate);
 
                     // If one file failed to be moved, return false (failure) since this folder could not be moved totally
                     if (!isFolderEmpty)
                         return false;
+
+                    // The children may still be being moved by parallel transfers: delete this folder once they are
+                    // all done, rather than waiting for them here, which would move the folders one at a time
+                    if (canCopyConcurrently(file, destFile)) {
+                        pendingFolderDeletions.add(new Pair<>(file, deferFileProcessed(file)));
+                        return true;
+                    }
                 } catch(IOException e) {
                     // file.ls() failed
                     DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_read_folder", file.getName()));
@@ -240,28 +250,94 @@ public class MoveJob extends AbstractCopyJob {
 
             // if renameTo() was not supported or failed, or if it wasn't possible because of 'append',
             // try the hard way by copying the file first, and then deleting the source file.
-            if (tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != FileJobState.INTERRUPTED) {
-                // Delete the source file
+            // If parallel transfers are enabled, both are done by a worker thread.
+            if (canCopyConcurrently(file, destFile))
+                return submitCopyFile(file, destFile, append, byteCounter -> file.delete());
+
+            if (tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != FileJobState.INTERRUPTED)
+                return tryDeleteFile(file);
+
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the given source file once it has been copied, giving the user the choice to skip the file, retry or
+     * cancel if it fails.
+     *
+     * @return true if the file was deleted, false if it was skipped or the job was interrupted
+     */
+    private boolean tryDeleteFile(AbstractFile file) {
+        do {		// Loop for retry
+            try  {
+                file.delete();
+                // All OK
+                return true;
+            } catch(IOException e) {
+                LOGGER.debug("IOException caught", e);
+
+                DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
+                // Retry loops
+                if(ret==FileJobAction.RETRY)
+                    continue;
+                // Cancel, skip or close dialog returns false
+                return false;
+            }
+        } while(true);
+    }
+
+    /**
+     * Deletes the source folders whose deletion was deferred until the parallel transfers of their children completed,
+     * skipping the folders that still contain a file that could not be moved. The top-level folders are reported as
+     * processed.
+     */
+    private void deletePendingFolders() {
+        // Folders were added once their children had been processed: the deepest folders come first
+        for (Pair<AbstractFile, Boolean> pendingFolder : pendingFolderDeletions) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return;
+
+            AbstractFile folder = pendingFolder.first;
+            boolean success = notMovedFiles.stream().noneMatch(folder::isParentOf);
+            if (success) {
+                nextFile(folder);
                 do {		// Loop for retry
                     try  {
-                        file.delete();
-                        // All OK
-                        return true;
+                        folder.delete();
                     } catch(IOException e) {
-                        LOGGER.debug("IOException caught", e);
-
-                        DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
+                        DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_folder", folder.getAbsolutePath()));
                         // Retry loops
                         if(ret==FileJobAction.RETRY)
                             continue;
-                        // Cancel, skip or close dialog returns false
-                        return false;
+                        // Cancel, skip or close dialog leaves the folder and its parents in place
+                        success = false;
+                        notMovedFiles.add(folder);
                     }
+                    break;
                 } while(true);
             }
 
-            return false;
+            if (pendingFolder.second)
+                fileProcessed(folder, success);
         }
+        pendingFolderDeletions.clear();
+    }
+
+    /**
+     * Retries a parallel transfer that failed. If the file was copied but could not be deleted, only its deletion is
+     * retried.
+     */
+    @Override
+    protected boolean retryTransfer(ParallelTransferScheduler.Transfer transfer) {
+        boolean success;
+        if (transfer.error != null && !(transfer.error instanceof FileTransferException))
+            success = tryDeleteFile(transfer.source);
+        else
+            success = super.retryTransfer(transfer) && getState() != FileJobState.INTERRUPTED && tryDeleteFile(transfer.source);
+
+        if (!success)
+            notMovedFiles.add(transfer.source);
+        return success;
     }
 
     // This job modifies baseDestFolder and its subfolders
@@ -276,6 +352,13 @@ public class MoveJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void allFilesProcessed() {
+        super.allFilesProcessed();
+
+        deletePendingFolders();
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
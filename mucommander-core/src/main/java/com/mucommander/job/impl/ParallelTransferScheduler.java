@@ -0,0 +1,290 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.commons.io.ByteCounter;
+
+/**
+ * Dispatches file transfers to a bounded pool of worker threads.
+ *
+ * <p>The job thread acts as the producer: it walks the directory tree, resolves collisions and creates folders, and
+ * hands regular files over to this scheduler with {@link #submit(AbstractFile, AbstractFile, boolean, TransferTask)}.
+ * Submission blocks when too many transfers are queued, so that the walker never gets too far ahead of the workers.
+ * The number of transfers running at the same time against a remote realm is capped independently of the number of
+ * workers, so that workers do not starve the {@link com.mucommander.commons.file.connection.ConnectionPool}.</p>
+ *
+ * <p>Transfers that fail are not reported by the workers: they are collected and returned by {@link #awaitCompletion()}
+ * so that the job thread can retry them one by one, with the usual error dialogs.</p>
+ */
+class ParallelTransferScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTransferScheduler.class);
+
+    /** Number of transfers that can be queued per worker before {@link #submit} blocks */
+    private final static int QUEUED_TRANSFERS_PER_WORKER = 4;
+
+    /**
+     * Performs a single transfer, accounting the bytes it processes in the given counter.
+     */
+    interface TransferTask {
+        void transfer(ByteCounter counter) throws IOException;
+    }
+
+    /**
+     * A transfer that has been handed over to the scheduler.
+     */
+    static class Transfer {
+        /** The file being transferred */
+        final AbstractFile source;
+        /** The file the source is transferred to */
+        final AbstractFile destination;
+        /** Whether the destination file is to be resumed rather than overwritten */
+        final boolean append;
+        /** The error that made the transfer fail, <code>null</code> if it did not fail */
+        IOException error;
+
+        private final TransferTask task;
+        private final ByteCounter counter = new ByteCounter();
+
+        private Transfer(AbstractFile source, AbstractFile destination, boolean append, TransferTask task) {
+            this.source = source;
+            this.destination = destination;
+            this.append = append;
+            this.task = task;
+        }
+    }
+
+    private final ExecutorService workers;
+
+    /** Bounds the number of transfers that are either queued or running */
+    private final Semaphore queueSlots;
+
+    /** Maximum number of concurrent transfers per remote realm */
+    private final int realmLimit;
+
+    /** Permits for each remote realm transfers have been submitted for */
+    private final Map<String, Semaphore> realmPermits = new HashMap<>();
+
+    /** Byte counters of the transfers that are currently running */
+    private final Set<ByteCounter> runningCounters = ConcurrentHashMap.newKeySet();
+
+    /** Number of bytes processed by the transfers that have completed successfully */
+    private final ByteCounter completedCounter = new ByteCounter();
+
+    /** Transfers that have failed since the last call to {@link #awaitCompletion()} */
+    private final List<Transfer> failures = new ArrayList<>();
+
+    /** Number of transfers that have been submitted and have not completed yet */
+    private int pending;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param nbWorkers number of worker threads, i.e. maximum number of concurrent transfers
+     * @param realmLimit maximum number of concurrent transfers involving the same remote realm
+     */
+    ParallelTransferScheduler(int nbWorkers, int realmLimit) {
+        this.realmLimit = Math.max(1, realmLimit);
+        this.queueSlots = new Semaphore(nbWorkers * QUEUED_TRANSFERS_PER_WORKER);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(nbWorkers, runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName() + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns <code>true</code> if the given source and destination files can be transferred by a worker thread.
+     * Files that are located inside archives are always transferred by the job thread, as archives do not support
+     * concurrent access.
+     *
+     * @param source the file to transfer
+     * @param destination the file to transfer the source to
+     * @return true if the transfer can be performed concurrently
+     */
+    static boolean canTransferConcurrently(AbstractFile source, AbstractFile destination) {
+        return source.getParentArchive() == null && destination.getParentArchive() == null;
+    }
+
+    /**
+     * Queues the given transfer, blocking while the queue is full.
+     *
+     * @param source the file to transfer
+     * @param destination the file to transfer the source to
+     * @param append true if the destination file is to be resumed
+     * @param task the task that performs the transfer
+     * @throws InterruptedException if the calling thread was interrupted while waiting for a free slot
+     */
+    void submit(AbstractFile source, AbstractFile destination, boolean append, TransferTask task) throws InterruptedException {
+        queueSlots.acquire();
+
+        Transfer transfer = new Transfer(source, destination, append, task);
+        synchronized(this) {
+            pending++;
+        }
+
+        workers.execute(() -> run(transfer));
+    }
+
+    private void run(Transfer transfer) {
+        List<Semaphore> permits = getRealmPermits(transfer.source, transfer.destination);
+        int nbAcquired = 0;
+        boolean success = false;
+        try {
+            for (Semaphore permit : permits) {
+                permit.acquire();
+                nbAcquired++;
+            }
+
+            if (!cancelled) {
+                runningCounters.add(transfer.counter);
+                transfer.task.transfer(transfer.counter);
+                success = true;
+            }
+        } catch(IOException e) {
+            LOGGER.debug("concurrent transfer of " + transfer.source + " failed", e);
+            transfer.error = e;
+        } catch(InterruptedException e) {
+            LOGGER.debug("interrupted while waiting to transfer " + transfer.source);
+        } finally {
+            for (int i=0; i<nbAcquired; i++)
+                permits.get(i).release();
+
+            // Account the transfer even if it failed unexpectedly, so that awaitCompletion() does not wait forever:
+            // it is then retried by the job thread, where the error is reported
+            synchronized(this) {
+                if (success)
+                    completedCounter.add(transfer.counter, false);
+                runningCounters.remove(transfer.counter);
+
+                if (!success && !cancelled)
+                    failures.add(transfer);
+
+                pending--;
+                notifyAll();
+            }
+
+            queueSlots.release();
+        }
+    }
+
+    /**
+     * Returns the permits to acquire before transferring between the given files, in a consistent order so that
+     * transfers between two remote realms cannot deadlock each other.
+     */
+    private synchronized List<Semaphore> getRealmPermits(AbstractFile source, AbstractFile destination) {
+        String sourceRealm = getRemoteRealm(source);
+        String destinationRealm = getRemoteRealm(destination);
+
+        List<Semaphore> permits = new ArrayList<>(2);
+        if (sourceRealm != null && destinationRealm != null && sourceRealm.compareTo(destinationRealm) > 0) {
+            String tmp = sourceRealm;
+            sourceRealm = destinationRealm;
+            destinationRealm = tmp;
+        }
+        if (sourceRealm != null)
+            permits.add(realmPermits.computeIfAbsent(sourceRealm, realm -> new Semaphore(realmLimit)));
+        if (destinationRealm != null && !destinationRealm.equals(sourceRealm))
+            permits.add(realmPermits.computeIfAbsent(destinationRealm, realm -> new Semaphore(realmLimit)));
+
+        return permits;
+    }
+
+    /**
+     * Returns the realm of the given file if it is a remote file, <code>null</code> for local files whose
+     * concurrency is not capped.
+     */
+    private static String getRemoteRealm(AbstractFile file) {
+        FileURL url = file.getURL();
+        if (LocalFile.SCHEMA.equals(url.getScheme()))
+            return null;
+
+        return url.getRealm().toString(false);
+    }
+
+    /**
+     * Waits for all submitted transfers to complete and returns the ones that failed, in the order they completed.
+     * The returned transfers are forgotten by the scheduler.
+     *
+     * @return the transfers that failed since the last call to this method
+     */
+    synchronized List<Transfer> awaitCompletion() {
+        while (pending > 0) {
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                // Keep waiting, workers will eventually complete
+            }
+        }
+
+        List<Transfer> failed = new ArrayList<>(failures);
+        failures.clear();
+        return failed;
+    }
+
+    /**
+     * Returns the total number of bytes processed by the transfers submitted to this scheduler so far, including the
+     * ones that are still running. Bytes of failed transfers are not accounted.
+     *
+     * @return the number of bytes processed by concurrent transfers
+     */
+    synchronized long getByteCount() {
+        long byteCount = completedCounter.getByteCount();
+        for (ByteCounter counter : runningCounters)
+            byteCount += counter.getByteCount();
+
+        return byteCount;
+    }
+
+    /**
+     * Prevents queued transfers from starting. Running transfers are not interrupted: they are expected to be stopped
+     * by closing their streams.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Releases the worker threads once the transfers that have been submitted have completed. Transfers still queued
+     * complete without being performed if {@link #cancel()} has been called.
+     */
+    void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -19,6 +19,7 @@
 package com.mucommander.job.impl;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
@@ -26,8 +27,6 @@ import com.mucommander.conf.MuPreferences;
 import com.mucommander.job.FileJobState;
 import com.mucommander.ui.main.MainFrame;
 
-import java.io.IOException;
-
 
 /**
  * This FileJob calculates the number of files contained in a list of file and folders and
@@ -45,6 +44,9 @@ public class PropertiesJob extends FileJob {
 	
     /** Combined size of all files encountered so far */
     private long totalBytes;
+
+    /** Progress of the folder being processed, null if none */
+    private volatile DirectorySizeCalculator.Progress folderProgress;
 	
 	
     public PropertiesJob(FileSet files, MainFrame mainFrame) {
@@ -56,21 +58,24 @@ public class PropertiesJob extends FileJob {
      * Returns the size in bytes of all the files seen so far.
      */
     public long getTotalBytes() {
-        return totalBytes;
+        DirectorySizeCalculator.Progress progress = folderProgress;
+        return progress==null ? totalBytes : totalBytes+progress.getSize();
     }
 
     /**
      * Returns the number of folders counted so far.
      */
     public int getNbFolders() {
-        return nbFolders;
+        DirectorySizeCalculator.Progress progress = folderProgress;
+        return progress==null ? nbFolders : nbFolders+(int)progress.getNbFolders();
     }
  
     /**
      * Returns the number of files (folders excluded) counted so far.
      */
     public int getNbFilesRecurse() {
-        return nbFilesRecurse;
+        DirectorySizeCalculator.Progress progress = folderProgress;
+        return progress==null ? nbFilesRecurse : nbFilesRecurse+(int)progress.getNbFiles();
     }
  
 
@@ -91,21 +96,21 @@ public class PropertiesJob extends FileJob {
         if (file.isHidden() && !MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_HIDDEN_FILES, MuPreferences.DEFAULT_SHOW_HIDDEN_FILES))
             return true;
 
-        // If file is a directory, increase folder counter and recurse
+        // If file is a directory, increase folder counter and add the contents of the folder, whose subfolders
+        // are processed in parallel and whose size may have been calculated already
         if (file.isDirectory() && !file.isSymlink()) {
             nbFolders++;
 
-            try {
-                AbstractFile[] subFiles = file.ls();
-                for(int i=0; i<subFiles.length && getState() != FileJobState.INTERRUPTED; i++) {
-                    // Notify job that we're starting to process this file (needed for recursive calls to processFile)
-                    nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
-                }
-            }
-            catch(IOException e) {
-                // Should we tell the user?
-            }
+            boolean showHidden = MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_HIDDEN_FILES, MuPreferences.DEFAULT_SHOW_HIDDEN_FILES);
+            // Files are reported by the threads of the calculation, as the status of the job
+            DirectorySizeCalculator.Progress progress = new DirectorySizeCalculator.Progress(this::nextFile);
+            folderProgress = progress;
+            DirectorySizeCalculator.DirectorySize folderSize = DirectorySizeCalculator.getInstance(showHidden)
+                    .calculate(file, progress, () -> getState() == FileJobState.INTERRUPTED);
+            folderProgress = null;
+            nbFolders += (int)folderSize.getNbFolders();
+            nbFilesRecurse += (int)folderSize.getNbFiles();
+            totalBytes += folderSize.getSize();
         }
         // If not, increase file counter and bytes total
         else {
@@ -17,14 +17,19 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +37,6 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.protocol.search.SearchListener;
 import com.mucommander.commons.file.util.FileSet;
-import com.mucommander.commons.util.Pair;
 import com.mucommander.job.FileJobState;
 import com.mucommander.ui.main.MainFrame;
 
@@ -40,18 +44,37 @@ import com.mucommander.ui.main.MainFrame;
  * This job executes a file search.
  * The search details are defined in SearchProperty via SearchBuilder.
  *
+ * <p>Folders are listed by a work-stealing pool, each listed folder submitting the listing of its subfolders as
+ * separate tasks, so that a slow folder does not hold back the others. Files are first filtered on their attributes
+ * by the listing tasks. When the content of files needs to be searched, files that pass the filter are handed to a
+ * separate pool, through a bounded queue, so that the number of concurrent content scans is capped independently of
+ * the number of listing threads. Findings are reported to the listener as soon as they are found.</p>
+ *
  * @author Arik Hadas
  */
 public class SearchJob extends FileJob implements com.mucommander.commons.file.protocol.search.SearchJob {
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchJob.class);
 
+    /** Maximum number of files waiting for their content to be searched */
+    private static final int CONTENT_QUEUE_CAPACITY = 1024;
+
+    /** Maximum number of files whose content is searched at the same time: content searches are CPU and I/O bound,
+     * more threads than a few per processor only compete with each other */
+    public static final int MAX_CONTENT_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
     private Predicate<AbstractFile> fileMatcher;
+    private Predicate<AbstractFile> contentMatcher;
     private Predicate<AbstractFile> lsFilter;
+    private Supplier<List<AbstractFile>> indexSearch;
     private List<AbstractFile> findings;
-    private SearchListener listener;
-    private int depth, threads;
+    private volatile SearchListener listener;
+    private int depth, threads, contentThreads;
 
     private ExecutorService customThreadPool;
+    private ExecutorService contentThreadPool;
+
+    /** Number of listing and content search tasks that have been submitted and are not complete yet */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
 
     private static final SearchListener nullListener = () -> {};
 
@@ -69,49 +92,124 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
         this.threads = threads;
     }
 
+    /**
+     * Sets the maximum number of files whose content is searched at the same time, which is capped to
+     * {@link #MAX_CONTENT_THREADS}.
+     *
+     * @param contentThreads the maximum number of concurrent content searches, 0 for the number of processors
+     */
+    public void setContentThreads(int contentThreads) {
+        this.contentThreads = Math.min(contentThreads, MAX_CONTENT_THREADS);
+    }
+
     public void setFileMatcher(Predicate<AbstractFile> fileMatcher) {
         this.fileMatcher = fileMatcher;
     }
 
+    /**
+     * Sets the predicate that files matched by the file matcher must also satisfy, which is expensive as it involves
+     * reading the content of the files.
+     *
+     * @param contentMatcher predicate on the content of files, null to match files on their attributes only
+     */
+    public void setContentMatcher(Predicate<AbstractFile> contentMatcher) {
+        this.contentMatcher = contentMatcher;
+    }
+
     public void setListFilter(Predicate<AbstractFile> browseMatcher) {
         this.lsFilter = browseMatcher;
     }
 
-    private Pair<List<AbstractFile>, Boolean> search(List<AbstractFile> files, boolean lsFilter) {
+    /**
+     * Sets the search of an index that covers the searched folder, which provides the files that satisfy the file
+     * matcher without listing folders. The folder is listed if the search returns <code>null</code>.
+     *
+     * @param indexSearch search of an index that returns the files that satisfy the file matcher, or
+     * <code>null</code> if the index cannot be used
+     */
+    public void setIndexSearch(Supplier<List<AbstractFile>> indexSearch) {
+        this.indexSearch = indexSearch;
+    }
+
+    /**
+     * Submits the listing of the given folder.
+     *
+     * @param folder the folder to list
+     * @param level the depth of the folder, 0 for the folder the search starts from
+     */
+    private void submitListing(AbstractFile folder, int level) {
+        submit(customThreadPool, () -> list(folder, level));
+    }
+
+    /**
+     * Submits the search of the content of the given file, waiting for room in the queue if needed.
+     */
+    private void submitContentMatch(AbstractFile file) {
+        submit(contentThreadPool, () -> {
+            if (getState() != FileJobState.INTERRUPTED && contentMatcher.test(file))
+                addFindings(Collections.singletonList(file));
+        });
+    }
+
+    private void submit(ExecutorService executor, Runnable task) {
+        pendingTasks.incrementAndGet();
         try {
-            List<AbstractFile> children = customThreadPool.submit(() -> ls(files, lsFilter)).get();
-            List<AbstractFile> matches = customThreadPool.submit(() -> match(children)).get();
-            boolean searchChanged = findings.addAll(matches);
-            return new Pair<>(children, searchChanged);
-        } catch (Exception e) {
-            return new Pair<>(Collections.emptyList(), false);
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    taskCompleted();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The search has been interrupted
+            taskCompleted();
         }
     }
 
-    private List<AbstractFile> ls(List<AbstractFile> files, boolean filter) {
-        Stream<AbstractFile> stream = files.parallelStream();
-        if (filter)
-            stream = stream.filter(lsFilter);
-        return stream.map(this::ls).flatMap(s -> s).collect(Collectors.toList());
+    private void taskCompleted() {
+        if (pendingTasks.decrementAndGet() == 0) {
+            synchronized (pendingTasks) {
+                pendingTasks.notifyAll();
+            }
+        }
     }
 
-    private List<AbstractFile> match(List<AbstractFile> files) {
-        return files.parallelStream().filter(this::match).collect(Collectors.toList());
-    }
+    private void list(AbstractFile folder, int level) {
+        if (getState() == FileJobState.INTERRUPTED)
+            return;
+
+        AbstractFile[] children;
+        try {
+            children = folder.ls();
+        } catch (IOException e) {
+            LOGGER.debug("failed to list: " + folder, e);
+            return;
+        }
+
+        List<AbstractFile> matches = new ArrayList<>();
+        for (AbstractFile child : children) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return;
 
-    private Stream<AbstractFile> ls(AbstractFile file) {
-        if (getState() != FileJobState.INTERRUPTED) {
-            try {
-                return Stream.of(file.ls());
-            } catch (IOException e) {
-                LOGGER.debug("failed to list: " + file, e);
+            if (level + 1 < depth && lsFilter.test(child))
+                submitListing(child, level + 1);
+
+            if (fileMatcher.test(child)) {
+                if (contentMatcher == null)
+                    matches.add(child);
+                else
+                    submitContentMatch(child);
             }
         }
-        return Stream.empty();
+
+        if (!matches.isEmpty())
+            addFindings(matches);
     }
 
-    private boolean match(AbstractFile file) {
-        return getState() != FileJobState.INTERRUPTED && fileMatcher.test(file);
+    private void addFindings(List<AbstractFile> matches) {
+        if (findings.addAll(matches))
+            listener.searchChanged();
     }
 
     public List<AbstractFile> getFindings() {
@@ -123,7 +221,12 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
         setListener(null);
         if (customThreadPool != null)
             customThreadPool.shutdown();
+        if (contentThreadPool != null)
+            contentThreadPool.shutdownNow();
         super.interrupt();
+        synchronized (pendingTasks) {
+            pendingTasks.notifyAll();
+        }
     }
 
     public void setListener(SearchListener listener) {
@@ -139,22 +242,61 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
     protected boolean processFile(AbstractFile file, Object recurseParams) {
         LOGGER.info("start searching {}", file);
         customThreadPool = threads > 0 ? new ForkJoinPool(threads) : new ForkJoinPool();
+        if (contentMatcher != null) {
+            int nbContentThreads = contentThreads > 0 ? contentThreads : Runtime.getRuntime().availableProcessors();
+            // When the queue is full, listing threads wait for room rather than running ahead of content searches
+            contentThreadPool = new ThreadPoolExecutor(nbContentThreads, nbContentThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(CONTENT_QUEUE_CAPACITY),
+                    (task, executor) -> {
+                        try {
+                            if (executor.isShutdown() || !waitForRoom(executor, task))
+                                throw new RejectedExecutionException();
+                        } catch (InterruptedException e) {
+                            throw new RejectedExecutionException(e);
+                        }
+                    });
+        }
         try {
-            List<AbstractFile> files = Collections.singletonList(file);
-            for (int i=0; getState() != FileJobState.INTERRUPTED && i<depth && !files.isEmpty(); i++) {
-                Pair<List<AbstractFile>, Boolean> result = search(files, i != 0);
-                files = result.first;
-                if (result.second)
-                    listener.searchChanged();
+            List<AbstractFile> indexedFiles = indexSearch != null ? indexSearch.get() : null;
+            if (indexedFiles != null) {
+                LOGGER.info("searching {} in its index", file);
+                if (contentMatcher == null)
+                    addFindings(indexedFiles);
+                else
+                    indexedFiles.forEach(this::submitContentMatch);
+            } else {
+                submitListing(file, 0);
+            }
+            synchronized (pendingTasks) {
+                while (pendingTasks.get() > 0 && getState() != FileJobState.INTERRUPTED) {
+                    try {
+                        pendingTasks.wait();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
             }
         } finally {
             LOGGER.info("completed searching {}", file);
-            listener = null;
+            listener = nullListener;
             customThreadPool.shutdown();
+            if (contentThreadPool != null)
+                contentThreadPool.shutdown();
         }
         return true;
     }
 
+    /**
+     * Waits until the given task can be queued by the given executor, giving up if the executor is shut down.
+     */
+    private static boolean waitForRoom(ThreadPoolExecutor executor, Runnable task) throws InterruptedException {
+        while (!executor.isShutdown()) {
+            if (executor.getQueue().offer(task, 100, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public boolean isFinished() {
         return getState() == FileJobState.FINISHED;
@@ -253,6 +253,15 @@ public class SelfUpdateJob extends CopyJob {
         }
     }
 
+    /**
+     * The JAR file is moved to its final destination as soon as it has been copied, so it must not be copied
+     * asynchronously.
+     */
+    @Override
+    protected int getNbParallelTransfers() {
+        return 1;
+    }
+
     @Override
     protected boolean processFile(AbstractFile file, Object recurseParams) {
         if(!super.processFile(file, recurseParams))
@@ -25,7 +25,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +82,18 @@ public abstract class TransferFileJob extends FileJob {
     /** InputStream currently being processed, may be null */
     private ThroughputLimitInputStream tlin;
 
+    /** InputStreams currently being processed by parallel transfers */
+    private final Set<ThroughputLimitInputStream> concurrentInputStreams = ConcurrentHashMap.newKeySet();
+
+    /** Schedules parallel transfers, null if parallel transfers are disabled */
+    private ParallelTransferScheduler parallelTransfers;
+
+    /** Number of parallel transfers, 1 if parallel transfers are disabled */
+    private int nbParallelTransfers = 1;
+
+    /** Top-level files whose parallel transfer has been queued and that have not been reported as processed yet */
+    private final List<AbstractFile> submittedFiles = new ArrayList<>();
+
     /** ThroughputLimit in bytes per second, -1 initially (no limit) */
     private long throughputLimit = -1;
 
@@ -135,6 +153,14 @@ public abstract class TransferFileJob extends FileJob {
             try {
                 sourceFile.copyRemotelyTo(destFile);
                 copied = true;
+
+                // The file's contents did not go through the job: count them as processed but skipped, so that the
+                // progress of the job advances without distorting its transfer speed
+                long size = sourceFile.getSize();
+                if(size>0) {
+                    currentFileByteCounter.add(size);
+                    currentFileSkippedByteCounter.add(size);
+                }
             }
             catch(IOException e) {
                 // The file will be copied manually
@@ -240,6 +266,76 @@ public abstract class TransferFileJob extends FileJob {
     }
 
 
+    /**
+     * Copies the given source file to the specified destination file, like {@link #copyFile(AbstractFile, AbstractFile, boolean)}
+     * does, but without using the current file's InputStream and byte counters so that it can be called from several
+     * threads at once. The integrity of the transfer is not verified.
+     */
+    private void copyFileConcurrently(AbstractFile sourceFile, AbstractFile destFile, boolean append, ByteCounter byteCounter) throws FileTransferException {
+        // Throw a specific FileTransferException if source and destination files are identical
+        if(sourceFile.equalsCanonical(destFile))
+            throw new FileTransferException(FileTransferError.SOURCE_AND_DESTINATION_IDENTICAL);
+
+        boolean copied = false;
+        if(sourceFile.isFileOperationSupported(FileOperation.COPY_REMOTELY)) {
+            try {
+                sourceFile.copyRemotelyTo(destFile);
+                copied = true;
+
+                long size = sourceFile.getSize();
+                if(size>0) {
+                    byteCounter.add(size);
+                    totalSkippedByteCounter.add(size);
+                }
+            }
+            catch(IOException e) {
+                // The file will be copied manually
+            }
+        }
+
+        if(!copied) {
+            ThroughputLimitInputStream in = null;
+            try {
+                long inLength = sourceFile.getSize();
+
+                // Try to open InputStream
+                try  {
+                    long destFileSize = destFile.getSize();
+                    if(append && destFileSize!=-1) {
+                        in = openConcurrentInputStream(sourceFile.getInputStream(destFileSize), byteCounter);
+
+                        inLength -= destFileSize;
+                        byteCounter.add(destFileSize);
+                        totalSkippedByteCounter.add(destFileSize);
+                    }
+                    else {
+                        in = openConcurrentInputStream(sourceFile.getInputStream(), byteCounter);
+                    }
+                }
+                catch(Exception e) {
+                    LOGGER.debug("IOException caught, throwing FileTransferException", e);
+                    throw new FileTransferException(FileTransferError.OPENING_SOURCE);
+                }
+
+                // Copy source stream to destination file
+                destFile.copyStream(in, append, inLength);
+            }
+            finally {
+                closeConcurrentInputStream(in);
+            }
+        }
+
+        // Preserve source file's date
+        tryCopyFileDate(sourceFile, destFile);
+
+        // Preserve source file's permissions: preserve only the permissions bits that are supported by the source file
+        // and use default permissions for the rest of them.
+        tryCopyFilePermissions(sourceFile, destFile);
+
+        // Under Mac OS X only, preserving the file type and creator
+        DesktopManager.postCopy(sourceFile, destFile);
+    }
+
     private void tryCopyFilePermissions(AbstractFile sourceFile, AbstractFile destFile) {
         if(destFile.isFileOperationSupported(FileOperation.CHANGE_PERMISSION)) {
             try {
@@ -370,6 +466,123 @@ public abstract class TransferFileJob extends FileJob {
     }
 
 
+    /**
+     * Enables parallel transfers: regular files passed to {@link #submitCopyFile(AbstractFile, AbstractFile, boolean, ParallelTransferScheduler.TransferTask)}
+     * are then copied by a pool of worker threads while the job's thread keeps walking the files to process.
+     * Parallel transfers are not enabled if integrity check is enabled or if <code>nbTransfers</code> is lower than 2.
+     *
+     * <p>This method should be called from {@link #jobStarted()}.</p>
+     *
+     * @param nbTransfers maximum number of files to transfer concurrently
+     * @param realmLimit maximum number of files to transfer concurrently from/to the same remote realm
+     */
+    protected void enableParallelTransfers(int nbTransfers, int realmLimit) {
+        if(nbTransfers<2 || integrityCheckEnabled)
+            return;
+
+        LOGGER.debug("enabling {} parallel transfers, {} per remote realm", nbTransfers, realmLimit);
+        this.nbParallelTransfers = nbTransfers;
+        this.parallelTransfers = new ParallelTransferScheduler(nbTransfers, realmLimit);
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #submitCopyFile(AbstractFile, AbstractFile, boolean, ParallelTransferScheduler.TransferTask)}
+     * can be used to copy the given source file to the given destination file.
+     */
+    protected boolean canCopyConcurrently(AbstractFile sourceFile, AbstractFile destFile) {
+        return parallelTransfers!=null && ParallelTransferScheduler.canTransferConcurrently(sourceFile, destFile);
+    }
+
+    /**
+     * Queues the given source file for being copied to the specified destination file by a worker thread, blocking
+     * while too many files are queued. If the copy fails, it is returned by {@link #awaitParallelTransfers()} so that
+     * it can be retried on the job's thread.
+     *
+     * @param sourceFile the file to copy
+     * @param destFile the destination file
+     * @param append true to resume the copy
+     * @param postCopy task executed on the worker thread after the file has been copied, may be <code>null</code>
+     * @return <code>true</code> if the copy was queued, <code>false</code> if the job was interrupted while waiting.
+     * If the source file is a top-level file, it is reported as processed by {@link #reportParallelTransfers(Collection)}.
+     */
+    protected boolean submitCopyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, ParallelTransferScheduler.TransferTask postCopy) {
+        try {
+            parallelTransfers.submit(sourceFile, destFile, append, byteCounter -> {
+                copyFileConcurrently(sourceFile, destFile, append, byteCounter);
+                if(postCopy!=null)
+                    postCopy.transfer(byteCounter);
+            });
+
+            // Top-level files are reported as processed once their transfer has completed
+            if(deferFileProcessed(sourceFile))
+                submittedFiles.add(sourceFile);
+            return true;
+        }
+        catch(InterruptedException e) {
+            LOGGER.debug("interrupted while queuing "+sourceFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for all files queued with {@link #submitCopyFile(AbstractFile, AbstractFile, boolean, ParallelTransferScheduler.TransferTask)}
+     * to be copied and returns the transfers that failed. Returns an empty list if parallel transfers are not enabled.
+     *
+     * @return the transfers that failed since the last call to this method
+     */
+    protected List<ParallelTransferScheduler.Transfer> awaitParallelTransfers() {
+        if(parallelTransfers==null)
+            return Collections.emptyList();
+
+        return parallelTransfers.awaitCompletion();
+    }
+
+    /**
+     * Reports the top-level files queued with {@link #submitCopyFile(AbstractFile, AbstractFile, boolean, ParallelTransferScheduler.TransferTask)}
+     * as processed, once the transfers returned by {@link #awaitParallelTransfers()} have been retried.
+     *
+     * @param failedFiles the source files whose transfer failed, including after being retried
+     */
+    protected void reportParallelTransfers(Collection<AbstractFile> failedFiles) {
+        for(AbstractFile file : submittedFiles)
+            fileProcessed(file, !failedFiles.contains(file));
+        submittedFiles.clear();
+    }
+
+    /**
+     * Opens an 'augmented' InputStream for a parallel transfer, which counts bytes, honors the throughput limit and
+     * pauses, and is closed when the job is stopped.
+     */
+    private ThroughputLimitInputStream openConcurrentInputStream(InputStream in, ByteCounter byteCounter) {
+        ThroughputLimitInputStream concurrentIn = new ThroughputLimitInputStream(new CounterInputStream(in, byteCounter), getConcurrentThroughputLimit());
+        concurrentInputStreams.add(concurrentIn);
+
+        // The job may have been paused or stopped while the stream was being opened
+        FileJobState state = getState();
+        if(state==FileJobState.PAUSED)
+            concurrentIn.setThroughputLimit(0);
+        else if(state==FileJobState.INTERRUPTED)
+            closeConcurrentInputStream(concurrentIn);
+
+        return concurrentIn;
+    }
+
+    private void closeConcurrentInputStream(ThroughputLimitInputStream in) {
+        if(in!=null) {
+            concurrentInputStreams.remove(in);
+            try { in.close(); }
+            catch(IOException e) {}
+        }
+    }
+
+    /**
+     * Returns the throughput limit of each parallel transfer: the job's limit is evenly distributed among them.
+     */
+    private long getConcurrentThroughputLimit() {
+        return throughputLimit<=0 ? throughputLimit : Math.max(1, throughputLimit/nbParallelTransfers);
+    }
+
+
     /**
      * Registers the given InputStream as currently in use, in order to:
      * <ul>
@@ -520,6 +733,9 @@ public abstract class TransferFileJob extends FileJob {
      * @return the total number of bytes that have been processed by this job so far
      */
     public long getTotalByteCount() {
+        if(parallelTransfers!=null)
+            return totalByteCounter.getByteCount() + parallelTransfers.getByteCount();
+
         return totalByteCounter.getByteCount();
     }
 
@@ -551,8 +767,13 @@ public abstract class TransferFileJob extends FileJob {
         this.throughputLimit = bytesPerSecond<=0?-1:bytesPerSecond;
 
         synchronized(this) {
-            if(getState() != FileJobState.PAUSED && tlin !=null)
-                tlin.setThroughputLimit(throughputLimit);
+            if(getState() != FileJobState.PAUSED) {
+                if(tlin !=null)
+                    tlin.setThroughputLimit(throughputLimit);
+
+                for(ThroughputLimitInputStream concurrentIn : concurrentInputStreams)
+                    concurrentIn.setThroughputLimit(getConcurrentThroughputLimit());
+            }
         }
     }
 
@@ -585,6 +806,14 @@ public abstract class TransferFileJob extends FileJob {
                 closeCurrentInputStream();
             }
         }
+
+        if(parallelTransfers!=null) {
+            // Prevent queued transfers from starting and interrupt the running ones
+            parallelTransfers.cancel();
+            for(ThroughputLimitInputStream concurrentIn : concurrentInputStreams)
+                closeConcurrentInputStream(concurrentIn);
+            parallelTransfers.shutdown();
+        }
     }
 
 
@@ -599,6 +828,9 @@ public abstract class TransferFileJob extends FileJob {
         synchronized(this) {
             if(tlin !=null)
                 tlin.setThroughputLimit(0);
+
+            for(ThroughputLimitInputStream concurrentIn : concurrentInputStreams)
+                concurrentIn.setThroughputLimit(0);
         }
     }
 
@@ -615,6 +847,9 @@ public abstract class TransferFileJob extends FileJob {
             // Restore previous throughput limit (if any, -1 by default)
             if(tlin !=null)
                 tlin.setThroughputLimit(throughputLimit);
+
+            for(ThroughputLimitInputStream concurrentIn : concurrentInputStreams)
+                concurrentIn.setThroughputLimit(getConcurrentThroughputLimit());
         }
     }
 
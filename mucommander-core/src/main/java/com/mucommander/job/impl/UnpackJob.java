@@ -309,7 +309,8 @@ public class UnpackJob extends AbstractCopyJob {
 
                         // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
                         // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
-                        // some archive file implementations (such as TAR) can speed things by an order of magnitude.
+                        // some archive file implementations (such as TAR, or 7z and RAR 5 whose solid blocks are then
+                        // decompressed only once) can speed things by an order of magnitude.
                         if (!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle))
                             return false;
                     }
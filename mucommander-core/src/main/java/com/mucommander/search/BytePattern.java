@@ -0,0 +1,258 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequence of bytes to search for, where each position may accept several byte values.
+ * <p>
+ * Text is searched for in its encoded form: each character is encoded in the charset of the data, along with its
+ * other case variants if the case does not matter. Positions of the pattern accept the bytes of any of the variants,
+ * which lets the data be scanned with the Boyer-Moore-Horspool algorithm, and candidate matches are then checked
+ * character by character so that bytes of different variants cannot be mixed. Case variants whose encoding does not
+ * have the same length as the searched character are ignored, as all matches have the length of the pattern.
+ */
+public final class BytePattern {
+
+    /** Bytes accepted at each position of the pattern */
+    private final boolean[][] acceptedBytes;
+    /** Offsets of the characters the pattern is made of, null for binary patterns */
+    private final int[] segmentOffsets;
+    /** Encoded variants of each character, null for binary patterns */
+    private final byte[][][] segmentVariants;
+    /** Horspool shift for each byte value */
+    private final int[] shifts = new int[256];
+
+    private BytePattern(boolean[][] acceptedBytes, int[] segmentOffsets, byte[][][] segmentVariants) {
+        this.acceptedBytes = acceptedBytes;
+        this.segmentOffsets = segmentOffsets;
+        this.segmentVariants = segmentVariants;
+
+        int length = acceptedBytes.length;
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) {
+            for (int b = 0; b < 256; b++) {
+                if (acceptedBytes[i][b]) {
+                    shifts[b] = length - 1 - i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a pattern matching the given bytes exactly.
+     *
+     * @param bytes bytes to search for
+     * @return pattern
+     */
+    public static BytePattern forBytes(byte[] bytes) {
+        int length = bytes.length;
+        boolean[][] acceptedBytes = new boolean[length][256];
+        for (int i = 0; i < length; i++) {
+            acceptedBytes[i][bytes[i] & 0xFF] = true;
+        }
+
+        return new BytePattern(acceptedBytes, null, null);
+    }
+
+    /**
+     * Creates a pattern matching the given text encoded in the given charset.
+     *
+     * @param text text to search for
+     * @param charset charset of the searched data
+     * @param matchCase false if characters of any case should match
+     * @return pattern, or null if the text cannot be encoded in the charset and thus cannot be found
+     */
+    public static BytePattern forText(String text, Charset charset, boolean matchCase) {
+        CharsetEncoder encoder = getEncoderWithoutByteOrderMark(charset);
+        if (encoder == null) {
+            return null;
+        }
+
+        List<byte[][]> segments = new ArrayList<>();
+        int length = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            byte[] encoded = encode(encoder, codePoint);
+            if (encoded == null) {
+                return null;
+            }
+
+            List<byte[]> variants = new ArrayList<>();
+            variants.add(encoded);
+            if (!matchCase) {
+                int[] caseVariants = new int[] { Character.toLowerCase(codePoint), Character.toUpperCase(codePoint),
+                    Character.toTitleCase(codePoint) };
+                for (int variant : caseVariants) {
+                    byte[] encodedVariant = variant == codePoint ? null : encode(encoder, variant);
+                    if (encodedVariant != null && encodedVariant.length == encoded.length
+                            && variants.stream().noneMatch(v -> Arrays.equals(v, encodedVariant))) {
+                        variants.add(encodedVariant);
+                    }
+                }
+            }
+
+            segments.add(variants.toArray(new byte[0][]));
+            length += encoded.length;
+        }
+
+        boolean[][] acceptedBytes = new boolean[length][256];
+        int[] segmentOffsets = new int[segments.size()];
+        int offset = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            segmentOffsets[s] = offset;
+            byte[][] variants = segments.get(s);
+            for (byte[] variant : variants) {
+                for (int i = 0; i < variant.length; i++) {
+                    acceptedBytes[offset + i][variant[i] & 0xFF] = true;
+                }
+            }
+            offset += variants[0].length;
+        }
+
+        return new BytePattern(acceptedBytes, segmentOffsets, segments.toArray(new byte[0][][]));
+    }
+
+    /**
+     * Returns an encoder for the given charset, which does not emit a byte order mark: the pattern has to match the
+     * data anywhere, not only at the beginning of it.
+     */
+    private static CharsetEncoder getEncoderWithoutByteOrderMark(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_16)) {
+            charset = StandardCharsets.UTF_16BE;
+        } else if (charset.name().equals("UTF-32")) {
+            charset = Charset.forName("UTF-32BE");
+        }
+
+        try {
+            return charset.newEncoder();
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(CharsetEncoder encoder, int codePoint) {
+        try {
+            ByteBuffer buffer = encoder.reset().encode(CharBuffer.wrap(Character.toChars(codePoint)));
+            byte[] encoded = new byte[buffer.remaining()];
+            buffer.get(encoded);
+            return encoded.length == 0 ? null : encoded;
+        } catch (CharacterCodingException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the length of the pattern, which is also the length of all matches.
+     *
+     * @return length in bytes
+     */
+    public int getLength() {
+        return acceptedBytes.length;
+    }
+
+    /**
+     * Returns the number of positions the pattern can be moved forward when the byte aligned with the last position
+     * of the pattern is the given one, according to the Boyer-Moore-Horspool algorithm.
+     *
+     * @param b byte aligned with the last position of the pattern
+     * @return shift, between 1 and the length of the pattern
+     */
+    public int getShift(byte b) {
+        return shifts[b & 0xFF];
+    }
+
+    /**
+     * Tests whether the pattern matches the given buffer at the given index.
+     *
+     * @param buffer buffer to test
+     * @param index absolute index in the buffer, the buffer must have at least {@link #getLength()} bytes from there
+     * @return true if matches
+     */
+    public boolean matches(ByteBuffer buffer, int index) {
+        int length = acceptedBytes.length;
+        // Check from the end as the last byte has usually been checked already by the caller
+        for (int i = length - 1; i >= 0; i--) {
+            if (!acceptedBytes[i][buffer.get(index + i) & 0xFF]) {
+                return false;
+            }
+        }
+
+        if (segmentVariants == null) {
+            return true;
+        }
+
+        for (int s = 0; s < segmentVariants.length; s++) {
+            if (!matchesVariant(buffer, index + segmentOffsets[s], segmentVariants[s])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the index of the first match of the pattern in the given range of the buffer.
+     *
+     * @param buffer buffer to search
+     * @param from absolute index in the buffer of the first byte of the range
+     * @param to absolute index in the buffer of the byte following the range
+     * @return absolute index of the first match in the buffer, -1 if there is none
+     */
+    public int indexIn(ByteBuffer buffer, int from, int to) {
+        int length = acceptedBytes.length;
+        int i = from;
+        while (i <= to - length) {
+            byte last = buffer.get(i + length - 1);
+            if (matches(buffer, i)) {
+                return i;
+            }
+            i += shifts[last & 0xFF];
+        }
+
+        return -1;
+    }
+
+    private static boolean matchesVariant(ByteBuffer buffer, int index, byte[][] variants) {
+        if (variants.length == 1) {
+            return true;
+        }
+
+        nextVariant:
+        for (byte[] variant : variants) {
+            for (int i = 0; i < variant.length; i++) {
+                if (buffer.get(index + i) != variant[i]) {
+                    continue nextVariant;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+}
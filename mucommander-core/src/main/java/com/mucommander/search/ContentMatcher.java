@@ -0,0 +1,219 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.BinaryDetector;
+import com.mucommander.commons.io.EncodingDetector;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.bom.BOM;
+import com.mucommander.commons.io.bom.BOMInputStream;
+
+/**
+ * Tells whether the content of files contains a given text.
+ *
+ * <p>Files that look like binary files are skipped. Literal text is searched for at the byte level, encoded in the
+ * charsets the file may be encoded in: the one given by its byte-order mark if it has one, otherwise UTF-8, the
+ * platform's default charset and the charset detected from the beginning of the file. Local files are memory-mapped
+ * in large regions, other files are read through a buffer of bounded size. Regular expressions are matched line by
+ * line against the decoded text. In both cases, the file is read no further than the first match.</p>
+ */
+public class ContentMatcher {
+
+    /** Size of the buffer files that are not memory-mapped are read through */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /** Size of the regions of local files that are mapped at once */
+    static final int MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final String text;
+    private final boolean caseSensitive;
+    /** Compiled regular expression, null if the text is literal */
+    private final Pattern regex;
+    /** Whether the text is made of ASCII characters only, whose encoding is the same in most charsets */
+    private final boolean ascii;
+
+    /**
+     * Creates a new matcher of the given text.
+     *
+     * @param text the text to search for
+     * @param caseSensitive whether the case of the text matters
+     * @param regex whether the text is a regular expression
+     */
+    public ContentMatcher(String text, boolean caseSensitive, boolean regex) {
+        this.text = text;
+        this.caseSensitive = caseSensitive;
+        this.regex = regex ? Pattern.compile(text, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : null;
+        this.ascii = text.chars().allMatch(c -> c < 0x80);
+    }
+
+    /**
+     * Returns <code>true</code> if the content of the given file contains the text. Directories and files that look
+     * like binary files never match.
+     *
+     * @param file the file to search
+     * @return true if the file contains the text
+     * @throws IOException if the file could not be read
+     */
+    public boolean matches(AbstractFile file) throws IOException {
+        if (file.isDirectory())
+            return false;
+
+        try (InputStream in = file.getInputStream()) {
+            byte[] head = new byte[Math.max(BinaryDetector.RECOMMENDED_BYTE_SIZE, EncodingDetector.MAX_RECOMMENDED_BYTE_SIZE)];
+            int headLength = StreamUtils.readUpTo(in, head);
+            if (BinaryDetector.guessBinary(head, 0, Math.min(headLength, BinaryDetector.RECOMMENDED_BYTE_SIZE)))
+                return false;
+
+            List<Charset> charsets = getCharsets(head, headLength);
+            if (regex != null)
+                return matchesRegex(new SequenceInputStream(new ByteArrayInputStream(head, 0, headLength), in), charsets.get(0));
+
+            List<BytePattern> patterns = getPatterns(charsets);
+            if (patterns.isEmpty())
+                return false;
+
+            FileChannel channel = StreamUtils.getFileChannel(in);
+            return channel != null ?
+                    matchesMapped(channel, patterns)
+                    : matchesBuffered(head, headLength, in, patterns);
+        }
+    }
+
+    /**
+     * Returns the charsets the text may be encoded in, given the first bytes of the file. The first charset is the
+     * most likely one.
+     */
+    private List<Charset> getCharsets(byte[] head, int headLength) throws IOException {
+        Set<Charset> charsets = new LinkedHashSet<>();
+        try (BOMInputStream bin = new BOMInputStream(new ByteArrayInputStream(head, 0, headLength))) {
+            BOM bom = bin.getBOM();
+            if (bom != null && Charset.isSupported(bom.getEncoding())) {
+                charsets.add(Charset.forName(bom.getEncoding()));
+                return new ArrayList<>(charsets);
+            }
+        }
+
+        charsets.add(StandardCharsets.UTF_8);
+        // Detecting the charset is expensive and rarely matters for ASCII text
+        if (!ascii && regex == null) {
+            String encoding = EncodingDetector.detectEncoding(head, 0, headLength);
+            if (encoding != null && Charset.isSupported(encoding))
+                charsets.add(Charset.forName(encoding));
+        }
+        charsets.add(Charset.defaultCharset());
+
+        return new ArrayList<>(charsets);
+    }
+
+    /**
+     * Returns the patterns of the text encoded in the given charsets, leaving out duplicates.
+     */
+    private List<BytePattern> getPatterns(List<Charset> charsets) {
+        List<BytePattern> patterns = new ArrayList<>();
+        List<byte[]> encodings = new ArrayList<>();
+        for (Charset charset : charsets) {
+            byte[] encoding = text.getBytes(charset);
+            if (encodings.stream().anyMatch(e -> Arrays.equals(e, encoding)))
+                continue;
+            encodings.add(encoding);
+
+            BytePattern pattern = BytePattern.forText(text, charset, caseSensitive);
+            if (pattern != null && pattern.getLength() > 0)
+                patterns.add(pattern);
+        }
+
+        return patterns;
+    }
+
+    private boolean matchesRegex(InputStream in, Charset charset) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset), BUFFER_SIZE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (regex.matcher(line).find())
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean matchesMapped(FileChannel channel, List<BytePattern> patterns) throws IOException {
+        int maxLength = patterns.stream().mapToInt(BytePattern::getLength).max().getAsInt();
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            int regionLength = (int) Math.min(MAPPED_REGION_SIZE, size - position);
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionLength);
+            if (matches(region, regionLength, patterns))
+                return true;
+
+            if (position + regionLength == size)
+                break;
+            // Regions overlap so that matches spanning two regions are found
+            position += Math.max(1, regionLength - maxLength + 1);
+        }
+
+        return false;
+    }
+
+    private static boolean matchesBuffered(byte[] head, int headLength, InputStream in, List<BytePattern> patterns) throws IOException {
+        int maxLength = patterns.stream().mapToInt(BytePattern::getLength).max().getAsInt();
+        byte[] buffer = new byte[Math.max(BUFFER_SIZE, 2 * maxLength)];
+        System.arraycopy(head, 0, buffer, 0, headLength);
+        int length = headLength;
+        while (true) {
+            int read = StreamUtils.readUpTo(in, buffer, length, buffer.length - length);
+            length += read;
+            if (matches(ByteBuffer.wrap(buffer, 0, length), length, patterns))
+                return true;
+            // The buffer is filled up unless the end of the stream has been reached
+            if (length < buffer.length)
+                return false;
+
+            // Keep the end of the buffer so that matches spanning two reads are found
+            int kept = Math.min(length, maxLength - 1);
+            System.arraycopy(buffer, length - kept, buffer, 0, kept);
+            length = kept;
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int length, List<BytePattern> patterns) {
+        for (BytePattern pattern : patterns) {
+            if (pattern.indexIn(buffer, 0, length) != -1)
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,844 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * An index of the names and attributes of the files located under a local folder, which answers searches on file
+ * names, sizes and dates without listing any folder.
+ *
+ * <p>Each file is an entry that records its name, size, date, a few flags and a link to the entry of its parent
+ * folder, from which paths are rebuilt. Symbolic links have the attributes of their target, like files listed by
+ * {@link com.mucommander.commons.file.AbstractFile} do, but the content of symlinked folders is not indexed, which
+ * spares following link cycles. The entries are looked up by the trigrams (sequences of three characters,
+ * regardless of case) of their names: searches for names containing literal text only consider the entries that have
+ * all the trigrams of that text.</p>
+ *
+ * <p>The index is kept up to date by {@link #sync(String, Consumer)}, which reconciles the entries of a folder with
+ * its current content, and {@link #rescan(Consumer)}, which does so for every folder whose date has changed. Both are
+ * meant to be called by a single thread, see {@link FileIndexer}, while searches can be run concurrently by any
+ * number of threads. The file system is never accessed while the index is locked.</p>
+ *
+ * <p>The index is persisted with {@link #save(File)} and {@link #load(File, String)}. Only the entries are written,
+ * trigrams are computed again when the index is loaded.</p>
+ */
+public class FileIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndex.class);
+
+    /** Magic number that starts index files: 'muFI' */
+    private final static int MAGIC = 0x6D754649;
+
+    /** Version of the index file format, to be incremented whenever the format changes */
+    private final static int VERSION = 2;
+
+    /** Bits of the flags that store boolean entry attributes */
+    final static int DIRECTORY = 1;
+    final static int HIDDEN = 2;
+    final static int SYMLINK = 4;
+
+    /** Id of the entry of the indexed folder */
+    private final static int ROOT = 0;
+
+    /** Id that designates no entry */
+    private final static int NONE = -1;
+
+    /** Initial capacity of the entry arrays */
+    private final static int INITIAL_CAPACITY = 1024;
+
+    /** Absolute path of the indexed folder */
+    private final String root;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Number of entry slots in use, including those of removed entries */
+    private int count;
+    /** Number of removed entries, whose slots are reclaimed when the index is compacted */
+    private int removed;
+
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    /** Names of the entries, <code>null</code> for removed entries */
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+
+    /** Ids of the entries whose names contain each trigram, in increasing order */
+    private Map<Long, IntList> trigrams = new HashMap<>();
+
+    /** Whether the content of the folder has been indexed */
+    private volatile boolean ready;
+
+    /** Whether the index has changed since it was last saved or loaded */
+    private volatile boolean modified;
+
+    /**
+     * Creates a new empty index of the given folder. The index is not {@link #isReady() ready} until
+     * {@link #build(Consumer)} is called.
+     *
+     * @param root absolute path of the folder to index
+     */
+    public FileIndex(String root) {
+        this.root = normalize(root);
+        add(NONE, "", 0, 0, DIRECTORY);
+    }
+
+    /**
+     * Returns the absolute path of the indexed folder.
+     *
+     * @return the absolute path of the indexed folder
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns <code>true</code> if the content of the folder has been indexed, either by {@link #build(Consumer)}
+     * or by {@link #load(File, String)}.
+     *
+     * @return true if the content of the folder has been indexed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns <code>true</code> if the index has changed since it was saved or loaded.
+     *
+     * @return true if the index has changed since it was saved or loaded
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Returns <code>true</code> if the given absolute path is that of the indexed folder or of a file under it.
+     *
+     * @param path an absolute path
+     * @return true if the path is within the indexed folder
+     */
+    public boolean contains(String path) {
+        path = normalize(path);
+        return path.equals(root) || (path.startsWith(root) && isSeparator(path.charAt(root.length())))
+                || (root.endsWith(File.separator) && path.startsWith(root));
+    }
+
+    /**
+     * Returns the number of files in the index, not counting the indexed folder.
+     *
+     * @return the number of files in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - removed - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //////////////////////
+    // Indexing methods //
+    //////////////////////
+
+    /**
+     * Indexes the whole content of the folder, after which the index is {@link #isReady() ready}. Indexing stops
+     * early if the current thread is interrupted, in which case the index is not ready.
+     *
+     * @param folderListener notified of the path of every folder that is indexed, may be <code>null</code>
+     */
+    public void build(Consumer<Path> folderListener) {
+        syncTree(ROOT, Paths.get(root), true, folderListener);
+        ready = !Thread.currentThread().isInterrupted();
+        compactIfNeeded();
+    }
+
+    /**
+     * Updates the entries of the given folder with its current content. Subfolders that were not indexed yet are
+     * indexed as a whole, the others are left untouched. Nothing happens if the folder is not in the index or is a
+     * symlinked folder, whose content is not indexed.
+     *
+     * @param path absolute path of the folder
+     * @param folderListener notified of the path of every folder that is added to the index, may be <code>null</code>
+     */
+    public void sync(String path, Consumer<Path> folderListener) {
+        int id = find(path);
+        if (id != NONE && (flags[id] & (DIRECTORY | SYMLINK)) == DIRECTORY) {
+            syncTree(id, Paths.get(path), false, folderListener);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Updates the entries of every indexed folder whose date has changed. Note that the date of a folder only
+     * changes when files are added to, removed from or renamed in the folder, not when the files are modified.
+     *
+     * @param folderListener notified of the path of every folder in the index, may be <code>null</code>
+     */
+    public void rescan(Consumer<Path> folderListener) {
+        Deque<Integer> folders = new ArrayDeque<>();
+        folders.push(ROOT);
+        while (!folders.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            int id = folders.pop();
+            if (names[id] == null)
+                continue;
+
+            Path path = Paths.get(getPath(id));
+            try {
+                long date = Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+                if (date != dates[id])
+                    syncTree(id, path, false, folderListener);
+                else if (folderListener != null)
+                    folderListener.accept(path);
+            } catch (IOException e) {
+                // The folder no longer exists, it is removed when its parent is synced
+                continue;
+            }
+
+            for (int child = firstChildren[id]; child != NONE; child = nextSiblings[child]) {
+                if ((flags[child] & (DIRECTORY | SYMLINK)) == DIRECTORY)
+                    folders.push(child);
+            }
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Updates the entries of the given folder with its current content, and those of its subfolders if
+     * <code>recursive</code> is <code>true</code> or if they were not indexed yet.
+     */
+    private void syncTree(int id, Path path, boolean recursive, Consumer<Path> folderListener) {
+        Deque<Integer> ids = new ArrayDeque<>();
+        Deque<Path> paths = new ArrayDeque<>();
+        ids.push(id);
+        paths.push(path);
+        while (!ids.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            int folder = ids.pop();
+            Path folderPath = paths.pop();
+            if (folderListener != null)
+                folderListener.accept(folderPath);
+
+            for (int newFolder : syncFolder(folder, folderPath, recursive)) {
+                ids.push(newFolder);
+                paths.push(folderPath.resolve(names[newFolder]));
+            }
+        }
+    }
+
+    /**
+     * Updates the entries of the given folder with its current content, and returns the ids of the subfolders
+     * that need to be synced in turn.
+     */
+    private List<Integer> syncFolder(int id, Path path, boolean recursive) {
+        // List the folder without holding the lock
+        long folderDate;
+        List<String> childNames = new ArrayList<>();
+        List<BasicFileAttributes> childAttributes = new ArrayList<>();
+        List<Boolean> childSymlinks = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            folderDate = Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+            for (Path child : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    boolean symlink = attributes.isSymbolicLink();
+                    if (symlink)
+                        attributes = readTargetAttributes(child, attributes);
+                    childAttributes.add(attributes);
+                    childSymlinks.add(symlink);
+                    childNames.add(child.getFileName().toString());
+                } catch (IOException e) {
+                    LOGGER.debug("failed to read attributes of " + child, e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("failed to list " + path, e);
+            return new ArrayList<>();
+        }
+
+        Map<String, Integer> existing = new HashMap<>();
+        for (int child = firstChildren[id]; child != NONE; child = nextSiblings[child])
+            existing.put(names[child], child);
+
+        List<Integer> folders = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            dates[id] = folderDate;
+            for (int i = 0; i < childNames.size(); i++) {
+                String name = childNames.get(i);
+                BasicFileAttributes attributes = childAttributes.get(i);
+                int childFlags = getFlags(name, attributes, childSymlinks.get(i));
+                long size = attributes.isDirectory() ? 0 : attributes.size();
+                long date = attributes.lastModifiedTime().toMillis();
+
+                // The date of folders is only set when they are synced, so that rescans notice the folders whose
+                // syncing has been interrupted
+                boolean directory = (childFlags & DIRECTORY) != 0;
+                Integer child = existing.remove(name);
+                boolean added = child == null || flags[child] != childFlags;
+                if (added) {
+                    if (child != null)
+                        remove(child);
+                    child = add(id, name, size, directory ? 0 : date, childFlags);
+                } else {
+                    sizes[child] = size;
+                    if (!directory)
+                        dates[child] = date;
+                }
+
+                if ((childFlags & (DIRECTORY | SYMLINK)) == DIRECTORY && (added || recursive))
+                    folders.add(child);
+            }
+
+            for (int child : existing.values())
+                remove(child);
+
+            modified = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return folders;
+    }
+
+    /**
+     * Returns the attributes of the target of the given symbolic link, those of the link itself if the target does
+     * not exist or cannot be read.
+     */
+    private static BasicFileAttributes readTargetAttributes(Path link, BasicFileAttributes linkAttributes) {
+        try {
+            return Files.readAttributes(link, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return linkAttributes;
+        }
+    }
+
+    private static int getFlags(String name, BasicFileAttributes attributes, boolean symlink) {
+        int flags = 0;
+        if (attributes.isDirectory())
+            flags |= DIRECTORY;
+        if (symlink)
+            flags |= SYMLINK;
+        if (attributes instanceof DosFileAttributes ? ((DosFileAttributes) attributes).isHidden() : name.startsWith("."))
+            flags |= HIDDEN;
+        return flags;
+    }
+
+    /**
+     * Adds an entry to the index and returns its id. Must be called with the write lock held, except from the
+     * constructor and while loading.
+     */
+    private int add(int parent, String name, long size, long date, int entryFlags) {
+        if (count == names.length)
+            grow(count * 2);
+
+        int id = count++;
+        parents[id] = parent;
+        firstChildren[id] = NONE;
+        names[id] = name;
+        sizes[id] = size;
+        dates[id] = date;
+        flags[id] = (byte) entryFlags;
+        if (parent != NONE) {
+            nextSiblings[id] = firstChildren[parent];
+            firstChildren[parent] = id;
+        } else {
+            nextSiblings[id] = NONE;
+        }
+
+        for (long trigram : getTrigrams(name))
+            trigrams.computeIfAbsent(trigram, k -> new IntList()).add(id);
+
+        return id;
+    }
+
+    /**
+     * Removes the given entry and the entries under it. Must be called with the write lock held.
+     * The trigrams still refer to the removed entries until the index is compacted.
+     */
+    private void remove(int id) {
+        int parent = parents[id];
+        if (firstChildren[parent] == id) {
+            firstChildren[parent] = nextSiblings[id];
+        } else {
+            int sibling = firstChildren[parent];
+            while (nextSiblings[sibling] != id)
+                sibling = nextSiblings[sibling];
+            nextSiblings[sibling] = nextSiblings[id];
+        }
+
+        Deque<Integer> ids = new ArrayDeque<>();
+        ids.push(id);
+        while (!ids.isEmpty()) {
+            int removedId = ids.pop();
+            for (int child = firstChildren[removedId]; child != NONE; child = nextSiblings[child])
+                ids.push(child);
+            names[removedId] = null;
+            firstChildren[removedId] = NONE;
+            removed++;
+        }
+    }
+
+    /**
+     * Reclaims the slots of removed entries once they make up half of the index. This changes the ids of the
+     * entries, so it must not be called while ids are being held.
+     */
+    private void compactIfNeeded() {
+        if (removed <= INITIAL_CAPACITY || removed <= count / 2)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the entries to the lowest ids and computes the trigrams again, dropping removed entries.
+     * Must be called with the write lock held.
+     */
+    private void compact() {
+        int[] newIds = new int[count];
+        int newCount = 0;
+        for (int id = 0; id < count; id++) {
+            if (names[id] == null) {
+                newIds[id] = NONE;
+                continue;
+            }
+            // Parents always have lower ids than their children, so they have been moved already
+            int newId = newCount++;
+            newIds[id] = newId;
+            parents[newId] = parents[id] == NONE ? NONE : newIds[parents[id]];
+            names[newId] = names[id];
+            sizes[newId] = sizes[id];
+            dates[newId] = dates[id];
+            flags[newId] = flags[id];
+        }
+
+        Arrays.fill(names, newCount, count, null);
+        count = newCount;
+        removed = 0;
+        linkChildren();
+        computeTrigrams();
+    }
+
+    /**
+     * Links the entries to their parents. Must be called with the write lock held.
+     */
+    private void linkChildren() {
+        Arrays.fill(firstChildren, 0, count, NONE);
+        for (int id = count - 1; id >= 0; id--) {
+            int parent = parents[id];
+            if (parent != NONE) {
+                nextSiblings[id] = firstChildren[parent];
+                firstChildren[parent] = id;
+            } else {
+                nextSiblings[id] = NONE;
+            }
+        }
+    }
+
+    /**
+     * Computes the trigrams of all entries. Must be called with the write lock held.
+     */
+    private void computeTrigrams() {
+        trigrams = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            for (long trigram : getTrigrams(names[id]))
+                trigrams.computeIfAbsent(trigram, k -> new IntList()).add(id);
+        }
+    }
+
+    private void grow(int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        names = Arrays.copyOf(names, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    /**
+     * Returns the trigrams of the given text, regardless of case, each packed into a long.
+     */
+    private static Collection<Long> getTrigrams(String text) {
+        List<Long> trigrams = new ArrayList<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long trigram = ((long) Character.toLowerCase(text.charAt(i)) << 32)
+                    | ((long) Character.toLowerCase(text.charAt(i + 1)) << 16)
+                    | Character.toLowerCase(text.charAt(i + 2));
+            if (!trigrams.contains(trigram))
+                trigrams.add(trigram);
+        }
+        return trigrams;
+    }
+
+    /**
+     * Returns the id of the entry of the given absolute path, {@link #NONE} if the path is not in the index.
+     * Does not require the lock when called by the thread that updates the index.
+     */
+    private int find(String path) {
+        if (!contains(path))
+            return NONE;
+
+        int id = ROOT;
+        String relativePath = normalize(path).substring(root.length());
+        for (String name : relativePath.split("[/\\\\]")) {
+            if (name.isEmpty())
+                continue;
+
+            int child = firstChildren[id];
+            while (child != NONE && !name.equals(names[child]))
+                child = nextSiblings[child];
+            if (child == NONE)
+                return NONE;
+            id = child;
+        }
+
+        return id;
+    }
+
+    private String getPath(int id) {
+        if (id == ROOT)
+            return root;
+
+        List<String> names = new ArrayList<>();
+        for (; id != ROOT; id = parents[id])
+            names.add(this.names[id]);
+
+        StringBuilder path = new StringBuilder(root);
+        for (int i = names.size() - 1; i >= 0; i--) {
+            if (!isSeparator(path.charAt(path.length() - 1)))
+                path.append(File.separatorChar);
+            path.append(names.get(i));
+        }
+        return path.toString();
+    }
+
+    private static String normalize(String path) {
+        // Keep the separator of file system roots such as '/' or 'C:\'
+        if (path.length() > 1 && isSeparator(path.charAt(path.length() - 1)) && !path.endsWith(":" + File.separator))
+            return path.substring(0, path.length() - 1);
+        return path;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == File.separatorChar;
+    }
+
+    ////////////////////
+    // Search methods //
+    ////////////////////
+
+    /**
+     * Returns the files under the given folder that match the given predicate, <code>null</code> if the folder is
+     * not in the index or is a symlinked folder.
+     *
+     * @param folder absolute path of the folder to search
+     * @param depth maximum depth of the files to return, 1 for the files located directly in the folder
+     * @param folderFilter predicate that the folders between the searched folder and the returned files must satisfy
+     * @param fragments literal text that the names of the files to return all contain, regardless of case
+     * @param predicate predicate that the files to return must satisfy
+     * @return the files that match, <code>null</code> if the folder is not in the index
+     */
+    public List<Entry> search(String folder, int depth, Predicate<Entry> folderFilter, Collection<String> fragments, Predicate<Entry> predicate) {
+        lock.readLock().lock();
+        try {
+            int start = find(folder);
+            if (!ready || start == NONE || (flags[start] & (DIRECTORY | SYMLINK)) != DIRECTORY)
+                return null;
+
+            // The depth of folders below the searched folder plus one, 0 if unknown and -1 for folders that are not searched
+            int[] folderDepths = new int[count];
+            folderDepths[start] = 1;
+
+            List<Entry> matches = new ArrayList<>();
+            IntList candidates = getCandidates(fragments);
+            int nbCandidates = candidates != null ? candidates.size : count;
+            for (int i = 0; i < nbCandidates; i++) {
+                int id = candidates != null ? candidates.get(i) : i;
+                if (names[id] == null || parents[id] == NONE)
+                    continue;
+
+                int entryDepth = getFolderDepth(parents[id], folderDepths, folderFilter);
+                if (entryDepth <= 0 || entryDepth > depth)
+                    continue;
+
+                Entry entry = new Entry(id);
+                if (predicate.test(entry)) {
+                    // Ids may change once the lock is released
+                    entry.path = getPath(id);
+                    matches.add(entry);
+                }
+            }
+
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the entries that may contain all the given fragments, <code>null</code> if any entry may.
+     */
+    private IntList getCandidates(Collection<String> fragments) {
+        IntList candidates = null;
+        for (String fragment : fragments) {
+            for (long trigram : getTrigrams(fragment)) {
+                IntList ids = trigrams.get(trigram);
+                if (ids == null)
+                    return new IntList();
+                if (candidates == null || ids.size < candidates.size)
+                    candidates = ids;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the depth of the given folder below the searched folder plus one, or -1 if the folder is not searched.
+     */
+    private int getFolderDepth(int id, int[] folderDepths, Predicate<Entry> folderFilter) {
+        if (folderDepths[id] != 0)
+            return folderDepths[id];
+
+        Deque<Integer> ancestors = new ArrayDeque<>();
+        int ancestor = id;
+        while (ancestor != NONE && folderDepths[ancestor] == 0) {
+            ancestors.push(ancestor);
+            ancestor = parents[ancestor];
+        }
+
+        int depth = ancestor == NONE ? -1 : folderDepths[ancestor];
+        while (!ancestors.isEmpty()) {
+            int folder = ancestors.pop();
+            depth = depth > 0 && folderFilter.test(new Entry(folder)) ? depth + 1 : -1;
+            folderDepths[folder] = depth;
+        }
+
+        return depth;
+    }
+
+    /////////////////////////
+    // Persistence methods //
+    /////////////////////////
+
+    /**
+     * Writes the index to the given file, replacing it atomically.
+     *
+     * @param file the file to write the index to
+     * @throws IOException if the index could not be written
+     */
+    public void save(File file) throws IOException {
+        File tmpFile = File.createTempFile("index", ".tmp", file.getParentFile());
+        try {
+            lock.readLock().lock();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(root);
+                out.writeInt(count - removed);
+
+                // Entries are written in the order of their ids, so that parents come before their children
+                int[] newIds = new int[count];
+                int newCount = 0;
+                for (int id = 0; id < count; id++) {
+                    if (names[id] == null)
+                        continue;
+                    newIds[id] = newCount++;
+                    out.writeInt(parents[id] == NONE ? NONE : newIds[parents[id]]);
+                    out.writeUTF(names[id]);
+                    out.writeLong(sizes[id]);
+                    out.writeLong(dates[id]);
+                    out.writeByte(flags[id]);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmpFile = null;
+            modified = false;
+        } finally {
+            if (tmpFile != null)
+                tmpFile.delete();
+        }
+    }
+
+    /**
+     * Reads an index from the given file. The returned index is {@link #isReady() ready}, but may not reflect the
+     * changes made to the folder since it was saved until it is {@link #rescan(Consumer) rescanned}.
+     *
+     * @param file the file to read the index from
+     * @param root absolute path of the indexed folder
+     * @return the index that was read
+     * @throws IOException if the file could not be read, is corrupt, or is the index of another folder
+     */
+    public static FileIndex load(File file, String root) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Unsupported index file: " + file);
+
+            FileIndex index = new FileIndex(root);
+            if (!in.readUTF().equals(index.root))
+                throw new IOException("Index file of another folder: " + file);
+
+            int count = in.readInt();
+            index.grow(Math.max(INITIAL_CAPACITY, count));
+            for (int id = 0; id < count; id++) {
+                int parent = in.readInt();
+                if (parent >= id)
+                    throw new IOException("Corrupt index file: " + file);
+                index.parents[id] = parent;
+                index.names[id] = in.readUTF();
+                index.sizes[id] = in.readLong();
+                index.dates[id] = in.readLong();
+                index.flags[id] = in.readByte();
+            }
+            if (count == 0 || index.parents[ROOT] != NONE)
+                throw new IOException("Corrupt index file: " + file);
+
+            index.count = count;
+            index.linkChildren();
+            index.computeTrigrams();
+            index.ready = true;
+            return index;
+        }
+    }
+
+    /**
+     * A file in the index, as it was when it was indexed.
+     */
+    public class Entry {
+        private final int id;
+        private String path;
+        private final String name;
+        private final long size;
+        private final long date;
+        private final int flags;
+
+        private Entry(int id) {
+            this.id = id;
+            this.name = names[id];
+            this.size = sizes[id];
+            this.date = dates[id];
+            this.flags = FileIndex.this.flags[id];
+        }
+
+        /**
+         * Returns the absolute path of the file.
+         *
+         * @return the absolute path of the file
+         */
+        public String getPath() {
+            // Entries are only passed to predicates while the lock is held
+            if (path == null)
+                path = FileIndex.this.getPath(id);
+            return path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getDate() {
+            return date;
+        }
+
+        public boolean isDirectory() {
+            return (flags & DIRECTORY) != 0;
+        }
+
+        public boolean isHidden() {
+            return (flags & HIDDEN) != 0;
+        }
+
+        public boolean isSymlink() {
+            return (flags & SYMLINK) != 0;
+        }
+
+        /**
+         * Returns <code>true</code> if the file is a regular file whose extension is that of a supported archive
+         * format, like {@link com.mucommander.commons.file.AbstractFile#isArchive()} does.
+         *
+         * @return true if the file looks like an archive
+         */
+        public boolean isArchive() {
+            return !isDirectory() && FileFactory.isArchiveFilename(name);
+        }
+    }
+
+    /**
+     * A growable list of ints, which spares boxing the ids of the entries that contain a trigram.
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+
+/**
+ * Maintains the {@link FileIndex} of a local folder in the background.
+ *
+ * <p>Each indexer runs in its own daemon thread. The index is read from its file if there is one, and built from
+ * scratch otherwise. It is then kept up to date by watching the indexed folders for changes, up to
+ * {@link #MAX_WATCHED_FOLDERS} of them, and by periodically rescanning the folders whose date has changed, which
+ * catches the changes in the folders that are not watched. The index is saved when it has changed, at most every
+ * {@link #SAVE_PERIOD} milliseconds, and when the indexer is stopped.</p>
+ *
+ * <p>Indexers are started with {@link #start(Collection, File, long)}, after which {@link #getIndex(AbstractFile)}
+ * returns the index that covers a folder, if any.</p>
+ */
+public class FileIndexer implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndexer.class);
+
+    /** Maximum number of folders that are watched by each indexer, to stay within the limits of the platform */
+    private final static int MAX_WATCHED_FOLDERS = 4096;
+
+    /** Minimum number of milliseconds between two saves of the index */
+    private final static long SAVE_PERIOD = 5 * 60 * 1000;
+
+    /** Extension of index files */
+    private final static String EXTENSION = ".index";
+
+    /** The indexers that are running */
+    private static List<FileIndexer> indexers = new ArrayList<>();
+
+    private volatile FileIndex index;
+    private final File file;
+    private final long rescanPeriod;
+    private final Thread thread;
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+    private final Set<Path> watchedPaths = new HashSet<>();
+    private volatile boolean stopped;
+
+    private FileIndexer(String root, File file, long rescanPeriod) {
+        this.index = new FileIndex(root);
+        this.file = file;
+        this.rescanPeriod = rescanPeriod;
+        thread = new Thread(this, "FileIndexer " + root);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Starts indexing the given local folders, stopping the indexers that were running if any.
+     *
+     * @param roots absolute paths of the folders to index
+     * @param folder the folder in which indexes are stored, created if it does not exist
+     * @param rescanPeriod number of milliseconds between two rescans of the indexed folders
+     */
+    public static synchronized void start(Collection<String> roots, File folder, long rescanPeriod) {
+        stop();
+
+        folder.mkdirs();
+        List<FileIndexer> newIndexers = new ArrayList<>();
+        for (String root : roots) {
+            String name = Integer.toHexString(root.hashCode()) + EXTENSION;
+            FileIndexer indexer = new FileIndexer(root, new File(folder, name), rescanPeriod);
+            newIndexers.add(indexer);
+            indexer.thread.start();
+        }
+        indexers = newIndexers;
+    }
+
+    /**
+     * Stops the indexers that are running, saving their index if it has changed.
+     */
+    public static synchronized void stop() {
+        for (FileIndexer indexer : indexers) {
+            indexer.stopped = true;
+            indexer.thread.interrupt();
+            try {
+                indexer.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The indexer saves its index when it stops, unless it is still busy syncing a large folder
+            if (indexer.thread.isAlive())
+                indexer.save();
+        }
+        indexers = new ArrayList<>();
+    }
+
+    /**
+     * Returns the index that covers the given folder, <code>null</code> if the folder is not a local folder that
+     * is indexed or if its index is not ready yet.
+     *
+     * @param folder a folder
+     * @return the index that covers the folder, <code>null</code> if there is none
+     */
+    public static FileIndex getIndex(AbstractFile folder) {
+        if (!LocalFile.SCHEMA.equals(folder.getURL().getScheme()) || folder.isArchive())
+            return null;
+
+        String path = folder.getAbsolutePath();
+        List<FileIndexer> indexers;
+        synchronized (FileIndexer.class) {
+            indexers = FileIndexer.indexers;
+        }
+        for (FileIndexer indexer : indexers) {
+            if (indexer.index.isReady() && indexer.index.contains(path))
+                return indexer.index;
+        }
+        return null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            LOGGER.info("changes to {} are not watched", index.getRoot(), e);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            FileIndex loadedIndex = load();
+            if (loadedIndex != null) {
+                // The loaded index can be searched right away, while it is brought up to date
+                index = loadedIndex;
+                index.rescan(this::watch);
+            } else {
+                index.build(this::watch);
+                save();
+            }
+            LOGGER.info("indexed {} files under {} in {}ms", index.size(), index.getRoot(), System.currentTimeMillis() - startTime);
+
+            long lastRescan = System.currentTimeMillis();
+            long lastSave = lastRescan;
+            while (!stopped) {
+                long timeout = Math.max(1, lastRescan + rescanPeriod - System.currentTimeMillis());
+                Set<Path> changedFolders = pollChanges(timeout);
+                if (changedFolders != null) {
+                    for (Path folder : changedFolders)
+                        index.sync(folder.toString(), this::watch);
+                }
+
+                // Events were lost, or the folders that are not watched are due for a rescan, which a steady stream
+                // of events must not postpone
+                if (changedFolders == null || System.currentTimeMillis() - lastRescan >= rescanPeriod) {
+                    index.rescan(this::watch);
+                    lastRescan = System.currentTimeMillis();
+                }
+
+                if (index.isModified() && System.currentTimeMillis() - lastSave >= SAVE_PERIOD) {
+                    save();
+                    lastSave = System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The indexer has been stopped
+        } finally {
+            if (index.isModified())
+                save();
+            closeWatchService();
+        }
+    }
+
+    /**
+     * Waits for changes to the watched folders and returns the folders that have changed, or <code>null</code> if
+     * the indexed folders have to be rescanned.
+     */
+    private Set<Path> pollChanges(long timeout) throws InterruptedException {
+        if (watchService == null) {
+            Thread.sleep(timeout);
+            return null;
+        }
+
+        WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+        if (key == null)
+            return null;
+
+        // Gather all pending events, so that a folder that changed several times is synced once
+        Set<Path> changedFolders = new LinkedHashSet<>();
+        boolean overflow = false;
+        for (; key != null; key = watchService.poll()) {
+            Path folder = watchedFolders.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    overflow = true;
+            }
+            if (folder != null)
+                changedFolders.add(folder);
+            if (!key.reset())
+                watchedPaths.remove(watchedFolders.remove(key));
+        }
+
+        return overflow ? null : changedFolders;
+    }
+
+    /**
+     * Watches the given folder for changes, unless the maximum number of watched folders has been reached.
+     */
+    private void watch(Path folder) {
+        if (watchService == null || watchedPaths.size() >= MAX_WATCHED_FOLDERS || watchedPaths.contains(folder))
+            return;
+
+        try {
+            WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedFolders.put(key, folder);
+            watchedPaths.add(folder);
+        } catch (IOException e) {
+            LOGGER.debug("failed to watch " + folder, e);
+        }
+    }
+
+    private FileIndex load() {
+        if (!file.exists())
+            return null;
+
+        try {
+            return FileIndex.load(file, index.getRoot());
+        } catch (IOException e) {
+            LOGGER.info("failed to load the index of {}, rebuilding it", index.getRoot(), e);
+            return null;
+        }
+    }
+
+    private void save() {
+        // An index whose building has been interrupted is built again rather than saved
+        if (!index.isReady())
+            return;
+
+        try {
+            index.save(file);
+        } catch (IOException e) {
+            LOGGER.warn("failed to save the index of " + index.getRoot(), e);
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService == null)
+            return;
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.debug("failed to close watch service", e);
+        }
+    }
+}
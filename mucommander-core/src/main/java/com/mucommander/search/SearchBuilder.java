@@ -18,18 +18,24 @@
 package com.mucommander.search;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.unix4j.Unix4j;
-import org.unix4j.unix.Grep;
-import org.unix4j.unix.grep.GrepOptionSet_Fcilnvx;
-import org.unix4j.unix.grep.GrepOptions;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.protocol.search.SearchListener;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.util.Pair;
@@ -62,7 +68,8 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
     private String searchText;
     private boolean textCaseSensitive;
     private boolean textMatchRegex;
-    private Predicate<AbstractFile> sizePredicate;
+    private int searchTextThreads;
+    private LongPredicate sizePredicate;
 
     private SearchJob searchJob;
 
@@ -188,6 +195,13 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         return this;
     }
 
+    @Override
+    public SearchBuilder searchTextThreads(List<Pair<String, String>> properties) {
+        String value = SearchProperty.SEARCH_TEXT_THREADS.get(properties);
+        searchTextThreads = Integer.parseInt(value);
+        return this;
+    }
+
     @Override
     public SearchBuilder searchSize(List<Pair<String, String>> properties) {
         var sizeKeys = new String[] { SearchProperty.SEARCH_SIZE.getKey(), SearchProperty.SEARCH_SIZE2.getKey() };
@@ -198,7 +212,7 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
             SizeRelation searchSizeRelation = SearchUtils.getSizeRelation(value);
             long searchSize = SearchUtils.getSize(value);
             SizeUnit searchSizeUnit = SearchUtils.getSizeUnit(value);
-            Predicate<AbstractFile> predicate = file -> searchSizeRelation.matches(file.getSize(), searchSize, searchSizeUnit);
+            LongPredicate predicate = size -> searchSizeRelation.matches(size, searchSize, searchSizeUnit);
             sizePredicate = sizePredicate == null ? predicate : sizePredicate.and(predicate);
         });
         return this;
@@ -210,13 +224,30 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
             searchJob.setListener(listener);
             searchJob.setDepth(searchDepth);
             searchJob.setThreads(searchThreads);
+            searchJob.setContentThreads(searchTextThreads);
+
+            // must be called before the name predicate is created as it turns wildcards into a regex
+            Collection<String> nameFragments = getNameFragments();
+            Predicate<String> namePredicate = createFilenamePredicate();
 
-            Predicate<AbstractFile> fileMatcher = createFilePredicate();
+            Predicate<AbstractFile> fileMatcher = createFilePredicate(namePredicate, AbstractFile::getName,
+                    AbstractFile::isDirectory, AbstractFile::isArchive, AbstractFile::isHidden, AbstractFile::isSymlink,
+                    AbstractFile::getSize);
             searchJob.setFileMatcher(fileMatcher);
 
-            Predicate<AbstractFile> lsFilter = createListFilter();
+            // the content is searched separately because it is by far the most expensive
+            if (searchText != null)
+                searchJob.setContentMatcher(createFileContentPredicate());
+
+            Predicate<AbstractFile> lsFilter = createListFilter(AbstractFile::isDirectory, AbstractFile::isArchive,
+                    AbstractFile::isHidden, AbstractFile::isSymlink);
             searchJob.setListFilter(lsFilter);
 
+            // the index neither covers the content of archives nor that of symlinked folders
+            FileIndex index = searchInArchives || searchInSymlinks ? null : FileIndexer.getIndex(entrypoint);
+            if (index != null)
+                searchJob.setIndexSearch(createIndexSearch(index, nameFragments, namePredicate));
+
             SearchProperty.SEARCH_TEXT.setValue(searchText);
             SearchProperty.TEXT_CASESENSITIVE.setValue(textCaseSensitive);
             SearchProperty.TEXT_MATCH_REGEX.setValue(textMatchRegex);
@@ -226,39 +257,28 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         return searchJob;
     }
 
-    private Predicate<AbstractFile> createFilePredicate() {
-        Predicate<AbstractFile> predicate = createFilenamePredicate();
-        if (!searchForSubfolders) {
-            Predicate<AbstractFile> isDirectory = AbstractFile::isDirectory;
-            Predicate<AbstractFile> isNotDirectory = isDirectory.negate();
-            predicate = predicate.and(isNotDirectory);
-        }
-        if (!searchForArchives) {
-            Predicate<AbstractFile> isArchive = AbstractFile::isArchive;
-            Predicate<AbstractFile> isNotArchive = isArchive.negate();
-            predicate = predicate.and(isNotArchive);
-        }
-        if (!searchForHidden) {
-            Predicate<AbstractFile> isHidden = AbstractFile::isHidden;
-            Predicate<AbstractFile> isNotHidden = isHidden.negate();
-            predicate = predicate.and(isNotHidden);
-        }
-        if (!searchForSymlinks) {
-            Predicate<AbstractFile> isSymlink = AbstractFile::isSymlink;
-            Predicate<AbstractFile> isNotSymlink = isSymlink.negate();
-            predicate = predicate.and(isNotSymlink);
-        }
+    /**
+     * Returns the predicate that files must satisfy, apart from their content, given accessors to their attributes.
+     */
+    private <T> Predicate<T> createFilePredicate(Predicate<String> namePredicate, Function<T, String> name,
+            Predicate<T> isDirectory, Predicate<T> isArchive, Predicate<T> isHidden, Predicate<T> isSymlink,
+            ToLongFunction<T> size) {
+        Predicate<T> predicate = file -> namePredicate.test(name.apply(file));
+        if (!searchForSubfolders)
+            predicate = predicate.and(isDirectory.negate());
+        if (!searchForArchives)
+            predicate = predicate.and(isArchive.negate());
+        if (!searchForHidden)
+            predicate = predicate.and(isHidden.negate());
+        if (!searchForSymlinks)
+            predicate = predicate.and(isSymlink.negate());
         if (sizePredicate != null)
-            predicate =  predicate.and(sizePredicate);
-
-        // text should be the last predicate because it is the most expensive
-        if (searchText != null)
-            predicate = predicate.and(createFileContentPredicate());
+            predicate =  predicate.and(file -> sizePredicate.test(size.applyAsLong(file)));
 
         return predicate;
     }
 
-    private Predicate<AbstractFile> createFilenamePredicate() {
+    private Predicate<String> createFilenamePredicate() {
         if (!matchRegex) {
             String regex = SearchUtils.wildcardToRegex(searchStr);
             if (!searchStr.equals(regex)) {
@@ -270,24 +290,32 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         if (matchRegex) {
             int flags = matchCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
             Pattern pattern = Pattern.compile(searchStr, flags);
-            return file -> pattern.matcher(file.getName()).matches();
+            return name -> pattern.matcher(name).matches();
         }
 
         return matchCaseSensitive ?
-                file -> file.getName().equals(searchStr)
-                : file -> file.getName().equalsIgnoreCase(searchStr);
+                name -> name.equals(searchStr)
+                : name -> name.equalsIgnoreCase(searchStr);
+    }
+
+    /**
+     * Returns the literal parts of the searched name, which the names of matching files contain. There are none when
+     * the searched name contains a backslash, which may escape a wildcard.
+     */
+    private Collection<String> getNameFragments() {
+        if (matchRegex || searchStr.indexOf('\\') != -1)
+            return Collections.emptyList();
+
+        return Arrays.stream(searchStr.split("[*?]"))
+                .filter(fragment -> !fragment.isEmpty())
+                .collect(Collectors.toList());
     }
 
     private Predicate<AbstractFile> createFileContentPredicate() {
-        GrepOptionSet_Fcilnvx grepOptions = Grep.Options.l;
-        if (!textCaseSensitive)
-            grepOptions = grepOptions.i;
-        if (!textMatchRegex)
-            grepOptions = grepOptions.F;
-        final GrepOptions options = grepOptions;
+        ContentMatcher matcher = new ContentMatcher(searchText, textCaseSensitive, textMatchRegex);
         return file -> {
             try {
-                return !file.isDirectory() && !Unix4j.from(file.getInputStream()).grep(options, searchText).toStringResult().isEmpty();
+                return matcher.matches(file);
             } catch (IOException e) {
                 LOGGER.debug("failed to search content of " + file.getAbsolutePath(), e);
                 return false;
@@ -295,27 +323,53 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         };
     }
 
-    private Predicate<AbstractFile> createListFilter() {
-        Predicate<AbstractFile> listFilter = file -> false;
+    /**
+     * Returns the predicate that folders must satisfy to be searched, given accessors to their attributes.
+     */
+    private <T> Predicate<T> createListFilter(Predicate<T> isDirectory, Predicate<T> isArchive, Predicate<T> isHidden,
+            Predicate<T> isSymlink) {
+        Predicate<T> listFilter = file -> false;
         if (searchInSubfolders)
-            listFilter = listFilter.or(AbstractFile::isDirectory);
+            listFilter = listFilter.or(isDirectory);
         if (searchInArchives)
-            listFilter = listFilter.or(AbstractFile::isArchive);
+            listFilter = listFilter.or(isArchive);
 
-        if (!searchInSymlinks) {
-            Predicate<AbstractFile> isSymlink = AbstractFile::isSymlink;
-            Predicate<AbstractFile> isNotSymlink = isSymlink.negate();
-            listFilter = listFilter.and(isNotSymlink);
-        }
-        if (!searchInHidden) {
-            Predicate<AbstractFile> isHidden = AbstractFile::isHidden;
-            Predicate<AbstractFile> isNotHidden = isHidden.negate();
-            listFilter = listFilter.and(isNotHidden);
-        }
+        if (!searchInSymlinks)
+            listFilter = listFilter.and(isSymlink.negate());
+        if (!searchInHidden)
+            listFilter = listFilter.and(isHidden.negate());
 
         return listFilter;
     }
 
+    /**
+     * Returns the search of the given index, which provides the files that match the search apart from their
+     * content, or <code>null</code> if the index does not cover the searched folder anymore.
+     */
+    private Supplier<List<AbstractFile>> createIndexSearch(FileIndex index, Collection<String> nameFragments,
+            Predicate<String> namePredicate) {
+        Predicate<FileIndex.Entry> entryMatcher = createFilePredicate(namePredicate, FileIndex.Entry::getName,
+                FileIndex.Entry::isDirectory, FileIndex.Entry::isArchive, FileIndex.Entry::isHidden,
+                FileIndex.Entry::isSymlink, FileIndex.Entry::getSize);
+        Predicate<FileIndex.Entry> entryListFilter = createListFilter(FileIndex.Entry::isDirectory,
+                FileIndex.Entry::isArchive, FileIndex.Entry::isHidden, FileIndex.Entry::isSymlink);
+        String path = entrypoint.getAbsolutePath();
+        int depth = searchDepth == 0 ? Integer.MAX_VALUE : searchDepth;
+
+        return () -> {
+            List<FileIndex.Entry> entries = index.search(path, depth, entryListFilter, nameFragments, entryMatcher);
+            if (entries == null)
+                return null;
+
+            // the index may lag behind the latest changes
+            return entries.stream()
+                    .map(entry -> FileFactory.getFile(entry.getPath()))
+                    .filter(Objects::nonNull)
+                    .filter(AbstractFile::exists)
+                    .collect(Collectors.toList());
+        };
+    }
+
     private String getProperty(List<Pair<String, String>> properties, String property) {
         return properties.stream()
                 .filter(p -> p.first.equals(property))
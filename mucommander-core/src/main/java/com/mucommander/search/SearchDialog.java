@@ -60,6 +60,7 @@ import com.mucommander.commons.util.ui.layout.XAlignedComponentPanel;
 import com.mucommander.commons.util.ui.layout.YBoxPanel;
 import com.mucommander.commons.util.ui.spinner.IntEditor;
 import com.mucommander.desktop.ActionType;
+import com.mucommander.job.impl.SearchJob;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionProperties;
 import com.mucommander.ui.dialog.InformationDialog;
@@ -93,6 +94,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
     private JTextField searchTextField;
     private JCheckBox textCase;
     private JCheckBox textRegex;
+    private JSpinner textThreads;
 
     private JComboBox<SizeRelation> firstSizeRel = new JComboBox<>(SizeRelation.values());
     private JComboBox<String> firstSizeUnit;
@@ -112,6 +114,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
     private final static Dimension MINIMUM_DIALOG_DIMENSION = new Dimension(650,0);
     private final static Dimension MAXIMUM_DIALOG_DIMENSION = new Dimension(1000,10000);
     private final static int MAX_NUM_OF_SEARCH_THREADS = 0x7fff; // taken from FormJoinPool#MAX_CAP
+    private final static int MAX_NUM_OF_CONTENT_SEARCH_THREADS = SearchJob.MAX_CONTENT_THREADS;
 
     public SearchDialog(MainFrame mainFrame) {
         super(mainFrame.getJFrame(), ActionProperties.getActionLabel(ActionType.Find), mainFrame.getJFrame());
@@ -258,6 +261,13 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
         groupingPanel.add(textRegex);
         compPanel.addRow("", groupingPanel, 5);
 
+        textThreads = new JSpinner();
+        editor = new IntEditor(textThreads, "#####", MAX_THREADS);
+        textThreads.setEditor(editor);
+        textThreads.setModel(new SpinnerNumberModel(0, 0, MAX_NUM_OF_CONTENT_SEARCH_THREADS, 1));
+        textThreads.setValue(Math.min(Integer.parseInt(SearchProperty.SEARCH_TEXT_THREADS.getValue()), MAX_NUM_OF_CONTENT_SEARCH_THREADS));
+        compPanel.addRow(SearchProperty.SEARCH_TEXT_THREADS.getTranslation(), textThreads, 5);
+
         searchButton = new JButton(Translator.get("Find.label"));
         searchButton.setEnabled(false);
         cancelButton = new JButton(Translator.get("cancel"));
@@ -464,6 +474,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
         SearchProperty.SEARCH_SIZE.setValue(buildSeachSizeClause(firstSizeRelation, firstSize, firstSizeUnit));
         SearchProperty.SEARCH_SIZE2.setValue(buildSeachSizeClause(secondSizeRelation, secondSize, secondSizeUnit));
         SearchProperty.SEARCH_TEXT.setValue(searchTextField.getText());
+        SearchProperty.SEARCH_TEXT_THREADS.setValue(String.valueOf(((Number) textThreads.getValue()).intValue()));
 
         return true;
     }
@@ -41,6 +41,7 @@ public enum SearchProperty {
     SEARCH_SIZE("size", "search_dialog.size", null),
     SEARCH_SIZE2("size-2", "search_dialog.size", null),
     SEARCH_TEXT("text", "search_dialog.search_text", ""),
+    SEARCH_TEXT_THREADS("text-threads", "search_dialog.search_text_threads", "0"),
     TEXT_WHOLE_WORDS("whole-words", "used-via-find-dialog1", Boolean.toString(false)),
     TEXT_SEARCH_FORWARD("forward", "used-via-find-dialog2", Boolean.toString(true)),
 
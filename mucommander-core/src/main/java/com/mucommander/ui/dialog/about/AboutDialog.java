@@ -196,7 +196,6 @@ public class AboutDialog extends FocusDialog implements ActionListener {
                     "BSD 3-Clause New or Revised License",
                     "https://bobbylight.github.io/RSyntaxTextArea/");
 
-            insertDetailedUrl(doc, "Unix4j", "MIT License", "http://unix4j.org");
             insertDetailedUrl(doc, "FlatLaf", "Apache License", "https://www.formdev.com/flatlaf");
             insertDetailedUrl(doc, "VAqua", "GPL", "https://violetlib.org/vaqua/overview.html");
             insertDetailedUrl(doc, "Mark James' icons", "Creative Commons Attribution License", "http://famfamfam.com");
@@ -25,7 +25,9 @@ import java.awt.event.ItemListener;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
 import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.archiver.Archiver;
@@ -56,12 +58,18 @@ public class PackDialog extends TransferDestinationDialog implements ItemListene
 	
     private JTextArea commentArea;
 
+    /** Number of threads compressing the archive, enabled only if the selected format is compressed */
+    private JSpinner threadsSpinner;
+
     /** Used to keep track of the last selected archive format. */
     private int lastFormatIndex;
 
     /** Last archive format used (Zip initially), selected by default when this dialog is created */
     private static int lastFormat = Archiver.ZIP_FORMAT;
 
+    /** Last number of threads used (the number of processors initially) */
+    private static int lastThreads = Runtime.getRuntime().availableProcessors();
+
 
     public PackDialog(MainFrame mainFrame, FileSet files) {
         super(mainFrame, files, ActionProperties.getActionLabel(ActionType.Pack), Translator.get("pack_dialog_description"), Translator.get("pack"), Translator.get("pack_dialog.error_title"), false);
@@ -97,7 +105,18 @@ public class PackDialog extends TransferDestinationDialog implements ItemListene
         tempPanel.add(formatsComboBox);
 
         YBoxPanel mainPanel = getMainPanel();
-        mainPanel.add(tempPanel);		
+        mainPanel.add(tempPanel);
+
+        // Number of compression threads, enabled only if selected archive format is compressed
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        tempPanel.add(new JLabel(Translator.get("pack_dialog.threads")));
+        int nbProcessors = Runtime.getRuntime().availableProcessors();
+        threadsSpinner = new JSpinner(new SpinnerNumberModel(Math.min(lastThreads, nbProcessors), 1, nbProcessors, 1));
+        threadsSpinner.setEnabled(Archiver.formatSupportsThreads(lastFormat));
+        tempPanel.add(threadsSpinner);
+
+        mainPanel.add(tempPanel);
         mainPanel.addSpace(10);
 		
         // Comment area, enabled only if selected archive format has comment support
@@ -139,8 +158,9 @@ public class PackDialog extends TransferDestinationDialog implements ItemListene
     protected TransferFileJob createTransferFileJob(ProgressDialog progressDialog, PathUtils.ResolvedDestination resolvedDest, FileCollisionDialog.FileCollisionAction defaultFileExistsAction) {
         // Remember last format used, for next time this dialog is invoked
         lastFormat = formats[formatsComboBox.getSelectedIndex()];
+        lastThreads = (Integer)threadsSpinner.getValue();
 
-        return new ArchiveJob(progressDialog, mainFrame, files, resolvedDest.getDestinationFile(), lastFormat, Archiver.formatSupportsComment(lastFormat)?commentArea.getText():null);
+        return new ArchiveJob(progressDialog, mainFrame, files, resolvedDest.getDestinationFile(), lastFormat, Archiver.formatSupportsComment(lastFormat)?commentArea.getText():null, lastThreads);
     }
 
     @Override
@@ -200,6 +220,7 @@ public class PackDialog extends TransferDestinationDialog implements ItemListene
             }
 
             commentArea.setEnabled(Archiver.formatSupportsComment(formats[formatsComboBox.getSelectedIndex()]));
+            threadsSpinner.setEnabled(Archiver.formatSupportsThreads(formats[formatsComboBox.getSelectedIndex()]));
             lastFormatIndex = newFormatIndex;
         }
 
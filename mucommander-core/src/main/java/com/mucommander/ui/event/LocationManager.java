@@ -17,7 +17,10 @@
 
 package com.mucommander.ui.event;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
@@ -32,6 +35,7 @@ import com.mucommander.core.GlobalLocationHistory;
 import com.mucommander.ui.dialog.file.ArchivePasswordDialog;
 import com.mucommander.ui.main.ConfigurableFolderFilter;
 import com.mucommander.ui.main.FolderPanel;
+import com.mucommander.ui.main.table.FileTableModel;
 
 /**
  * @author Maxence Bernard
@@ -122,6 +126,45 @@ public class LocationManager {
     		folderChangeMonitor = new FolderChangeMonitor(folderPanel);
     }
 
+    /**
+     * Updates the files presented in the {@link FolderPanel} with the given children of the current folder, that have
+     * been created, modified or deleted. Children that no longer exist or that are filtered out are removed, the
+     * other ones are added or replaced. Nothing is done if the current folder changes in the meantime.
+     *
+     * <p>This method is called by the folder change monitor thread: the children are resolved and their attributes
+     * pre-fetched in the calling thread, only the finished files are handed over to the event dispatch thread.</p>
+     *
+     * @param folder the current folder, as returned by {@link #getCurrentFolder()}
+     * @param changedNames the names of the children that have changed
+     */
+    public void updateCurrentFolder(MonitoredFile folder, Collection<String> changedNames) {
+        List<String> removedNames = new ArrayList<>();
+        List<AbstractFile> updatedFiles = new ArrayList<>();
+        for (String name : changedNames) {
+            AbstractFile child[] = new AbstractFile[1];
+            try {
+                child[0] = folder.getDirectChild(name);
+            } catch (IOException e) {
+                LOGGER.debug("Couldn't get child " + name + " of " + folder.getAbsolutePath() + ", error: " + e.getMessage());
+            }
+
+            if (child[0] != null) {
+                FileTableModel.createCachedFiles(child, 0, 1);
+                // Also the attributes the rows are typically sorted by
+                child[0].getDate();
+                if (!child[0].isDirectory())
+                    child[0].getSize();
+            }
+
+            if (child[0] != null && child[0].exists() && configurableFolderFilter.accept(child[0]))
+                updatedFiles.add(child[0]);
+            else
+                removedNames.add(name);
+        }
+
+        folderPanel.updateCurrentFolder(folder, removedNames, updatedFiles);
+    }
+
     /**
      * Return a {@link MonitoredFile} for the folder presented in the {@link FolderPanel}
      * 
@@ -30,6 +30,7 @@ import java.awt.dnd.DropTarget;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.KeyEvent;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -38,6 +39,7 @@ import java.util.concurrent.Future;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
+import javax.swing.SwingUtilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -417,6 +419,24 @@ public class FolderPanel implements FocusListener, QuickListContainer, ActiveTab
         fileTable.setCurrentFolder(folder, children, fileToSelect);
     }
 
+    /**
+     * Applies changes of the children of the current folder to the file table, without listing the folder again.
+     * The changes are ignored if the given folder is no longer the current one by the time they can be applied in
+     * the event dispatch thread, or if the current folder is being changed.
+     *
+     * @param folder - the current folder the changes were detected in
+     * @param removedNames - the names of the children that have been removed
+     * @param updatedFiles - the children that have been added or modified
+     */
+    public void updateCurrentFolder(MonitoredFile folder, Collection<String> removedNames, Collection<AbstractFile> updatedFiles) {
+        SwingUtilities.invokeLater(() -> {
+            if (getCurrentFolder() != folder || locationChanger.isFolderChanging())
+                return;
+
+            fileTable.updateFiles(removedNames, updatedFiles);
+        });
+    }
+
     /**
      * Shows the pop up which is located the given index in fileTablePopups.
      * 
@@ -18,12 +18,17 @@
 package com.mucommander.ui.main.table;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
+import com.mucommander.commons.file.util.DirectorySizeCalculator.DirectorySize;
 import com.mucommander.ui.main.table.FileTableModel;
 // import com.mucommander.ui.main.table.views.BaseFileTableModel;
 
 import javax.swing.SwingWorker;
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author Oleg Trifonov
@@ -36,8 +41,7 @@ public class CalculateDirectorySizeWorker extends SwingWorker<Long, Long> {
     private final FileTableModel fileTableModel;
     private final AbstractFile path;
     private final FileTable table;
-    private long size;
-    private long lastRefreshTime;
+    private volatile long size;
 
     public CalculateDirectorySizeWorker(FileTableModel fileTableModel, FileTable table, AbstractFile path) {
         this.fileTableModel = fileTableModel;
@@ -47,12 +51,24 @@ public class CalculateDirectorySizeWorker extends SwingWorker<Long, Long> {
 
     @Override
     protected Long doInBackground() {
-        size = 0;
-        try {
-            calcDirectorySize(path);
-        } catch (Exception e) {
-            e.printStackTrace();
-            size = -1;
+        // Subfolders are processed in parallel by the calculator, the size is published while waiting for it
+        DirectorySizeCalculator.Progress progress = new DirectorySizeCalculator.Progress();
+        ForkJoinTask<DirectorySize> task = DirectorySizeCalculator.getInstance(true).submit(path, progress, this::isCancelled);
+        while (true) {
+            try {
+                size = task.get(REFRESH_RATE_MS, TimeUnit.MILLISECONDS).getSize();
+                break;
+            } catch (TimeoutException e) {
+                size = progress.getSize();
+                publish(size);
+            } catch (InterruptedException e) {
+                // Cancelled, the calculation stops by itself
+                break;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                size = -1;
+                break;
+            }
         }
         return size;
     }
@@ -60,50 +76,18 @@ public class CalculateDirectorySizeWorker extends SwingWorker<Long, Long> {
     @Override
     protected void done() {
         fileTableModel.addProcessedDirectory(path, table, size, true);
-        fileTableModel.fillCellCache();
+        fileTableModel.clearCellCache();
         table.repaint();
     }
 
     @Override
     protected void process(List<Long> chunks) {
         fileTableModel.addProcessedDirectory(path, table, size, false);
-        fileTableModel.fillCellCache();
+        fileTableModel.clearCellCache();
         table.repaint();
         // table.updateSelectedFilesStatusBar();
     }
 
-    private void calcDirectorySize(AbstractFile path) throws IOException {
-        if (isCancelled()) {
-            return;
-        }
-        long tm = System.currentTimeMillis();
-        if (tm - lastRefreshTime > REFRESH_RATE_MS) {
-            lastRefreshTime = tm;
-            publish(size);
-        }
-        if (path.isSymlink() && path != this.path) {
-            return;
-        }
-        AbstractFile[] childs;
-        try {
-            childs = path.ls();
-        } catch (IOException e) {
-            return;
-        }
-        for (AbstractFile f : childs) {
-            if (isCancelled()) {
-                return;
-            }
-            if (f.isDirectory()) {
-                calcDirectorySize(f);
-            } else if (!f.isSymlink()) {
-                size += f.getSize();
-            }
-        }
-
-    }
-
-
     public AbstractFile getFile() {
         return path;
     }
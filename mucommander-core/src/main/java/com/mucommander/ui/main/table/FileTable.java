@@ -30,7 +30,12 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.WeakHashMap;
 
 import javax.swing.BorderFactory;
@@ -108,6 +113,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     /** Minimum column width when in automatic column sizing mode */
     private final static int MIN_COLUMN_AUTO_WIDTH = 20;
 
+    // - Folder loading ------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Number of files displayed first when changing the current folder, the remaining ones being added in chunks */
+    private final static int FIRST_CHUNK_SIZE = 1000;
+
 
     // - Containers ----------------------------------------------------------------------
     // -----------------------------------------------------------------------------------
@@ -504,6 +514,12 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
      * </ul>
      *
      * <p>
+     * The attributes of the children are retrieved by the calling thread. In large folders, the first children are
+     * displayed as soon as they are ready and the other ones are added in chunks of increasing size, the table being
+     * sorted again after each chunk.
+     * </p>
+     *
+     * <p>
      * This method returns only when the folder has actually been changed and the table refreshed.<br>
      * <b>Important:</b> This method should only be called by {@link FolderPanel} and in any case MUST be synchronized
      * externally to ensure this method is never called concurrently by different threads.
@@ -535,11 +551,35 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 fileToSelect = currentFolder;
         }
 
+        // Retrieve the attributes of the first children outside of the event dispatch thread
+        int nbFiles = children.length;
+        int chunkEnd = Math.min(nbFiles, FIRST_CHUNK_SIZE);
+        FileTableModel.createCachedFiles(children, 0, chunkEnd);
+
         // Changes the current folder in the swing thread to make sure that repaints cannot
         // happen in the middle of the operation - this is used to prevent flickering, badly
         // refreshed frames and such unpleasant graphical artifacts.
-        Runnable folderChangeThread = new FolderChangeThread(folder, children, markedFiles, fileToSelect);
+        FolderChangeThread folderChangeThread = new FolderChangeThread(folder,
+                chunkEnd==nbFiles ? children : Arrays.copyOf(children, chunkEnd), markedFiles, fileToSelect);
+        runFolderChangeThread(folderChangeThread);
+
+        // Add the remaining children in chunks, doubling the number of files each time
+        while(chunkEnd<nbFiles) {
+            int chunkStart = chunkEnd;
+            chunkEnd = (int)Math.min(nbFiles, 2L*chunkStart);
+            FileTableModel.createCachedFiles(children, chunkStart, chunkEnd);
+
+            folderChangeThread.setAddedFiles(Arrays.copyOfRange(children, chunkStart, chunkEnd));
+            runFolderChangeThread(folderChangeThread);
+        }
+    }
 
+    /**
+     * Runs the given thread in the event dispatch thread, and waits for it to complete.
+     *
+     * @param folderChangeThread the thread to run
+     */
+    private void runFolderChangeThread(FolderChangeThread folderChangeThread) {
         // Wait for the task to complete, so that we return only when the folder has actually been changed and the
         // table updated to reflect the new folder.
         // Note: we use a wait/notify scheme rather than calling SwingUtilities#invokeAndWait to avoid deadlocks
@@ -1031,6 +1071,49 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     }
 
 
+    /**
+     * Applies changes of the current folder's children without reloading the whole folder: the files with the given
+     * names are removed, and the given files are added or replace the files with the same name. The selected file and
+     * the marked files that still exist remain selected and marked. This method must be called from the event
+     * dispatch thread.
+     *
+     * @param removedNames the names of the files that have been removed
+     * @param updatedFiles the files that have been added or modified
+     */
+    public void updateFiles(Collection<String> removedNames, Collection<AbstractFile> updatedFiles) {
+        // Save currently selected file
+        AbstractFile selectedFile = tableModel.getFileAtRow(currentRow);
+        int nbRowsMarked = tableModel.getNbMarkedFiles();
+
+        tableModel.updateFiles(removedNames, updatedFiles);
+        tableModel.sortRows();
+
+        // Restore selected file, which may have been replaced by a modified instance, or select the closest row
+        // if it has been removed
+        int rowToSelect = -1;
+        if(selectedFile!=null) {
+            AbstractFile fileToSelect = selectedFile;
+            for(AbstractFile file : updatedFiles) {
+                if(file.getName().equals(selectedFile.getName())) {
+                    fileToSelect = file;
+                    break;
+                }
+            }
+            rowToSelect = tableModel.getFileRow(fileToSelect);
+        }
+        if(rowToSelect==-1)
+            rowToSelect = Math.max(0, Math.min(currentRow, tableModel.getRowCount()-1));
+        selectRow(currentRow = rowToSelect);
+        if(selectedFile==null || !selectedFile.equals(tableModel.getFileAtRow(currentRow)))
+            fireSelectedFileChangedEvent();
+
+        if(nbRowsMarked!=0)
+            fireMarkedFilesChangedEvent();
+
+        resizeAndRepaint();
+    }
+
+
     ////////////////////////////////////
     // TableSelectionListener methods //
     ////////////////////////////////////
@@ -1493,7 +1576,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         switch(event.getVariable()) {
         case MuPreferences.DISPLAY_COMPACT_FILE_SIZE:
             FileTableModel.setSizeFormat(event.getBooleanValue());
-            tableModel.fillCellCache();
+            tableModel.clearCellCache();
             resizeAndRepaint();
             break;
         case MuPreferences.SHOW_PARENT_FOLDER:
@@ -1508,7 +1591,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             // Since listeners are stored by MuConfiguration in a hash map, order is pretty much random.
             // So CustomDateFormat#updateDateFormat() has to be called before to ensure that is uses the new date format.
             CustomDateFormat.updateDateFormat();
-            tableModel.fillCellCache();
+            tableModel.clearCellCache();
             resizeAndRepaint();
             break;
         // Repaint file icons if their size has changed
@@ -1849,7 +1932,8 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     }
 
     /**
-     * This thread performs the change of current folder.
+     * This thread performs the change of current folder, then adds the remaining children of the folder when it is
+     * loaded in several chunks.
      *
      * @author Nicolas Rinaudo, Maxence Bernard
      */
@@ -1858,6 +1942,14 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         private AbstractFile[] children;
         private FileSet        markedFiles;
         private AbstractFile   selectedFile;
+        /** Files to add to the current folder, null until the folder has been changed */
+        private AbstractFile[] addedFiles;
+        /** Previously marked files that have not been found in the folder yet */
+        private List<AbstractFile> pendingMarkedFiles;
+        /** File to select that has not been found in the folder yet, null if there is none */
+        private AbstractFile   pendingSelectedFile;
+        /** File selected by default in place of the pending file to select */
+        private AbstractFile   defaultSelectedFile;
 
         private FolderChangeThread(AbstractFile folder, AbstractFile[] children, FileSet markedFiles, AbstractFile selectedFile) {
             this.folder       = folder;
@@ -1866,63 +1958,21 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             this.selectedFile = selectedFile;
         }
 
+        /**
+         * Sets the files to add to the current folder the next time this thread is run.
+         *
+         * @param addedFiles the files to add
+         */
+        private void setAddedFiles(AbstractFile[] addedFiles) {
+            this.addedFiles = addedFiles;
+        }
+
         public void run() {
             try {
-                // Set the new current folder.
-                tableModel.setCurrentFolder(folder, children);
-
-                // Update the visibility state of conditional columns
-                FileTableColumnModel columnModel = getFileTableColumnModel();
-                updateColumnsVisibility();
-
-                // The column corresponding to the current 'sort by' criterion may have become invisible.
-                // If that is the case, change the criterion to NAME.
-                if(!columnModel.isColumnVisible(sortInfo.getCriterion())) {
-                    sortInfo.setCriterion(Column.NAME);
-                    setTableHeaderRenderingProperties();
-                }
-
-                // Sort the new folder using the current sort criteria, ascending/descending order and
-                // 'show folders first' values.
-                tableModel.sortRows();
-
-                // Computes the index of the new row selection.
-                int rowToSelect;
-                if(selectedFile!=null) {
-                    // Tries to find the index of the file to select. If it cannot be found (the file might not
-                    // exist anymore, for example), use the closest possible row.
-                    if((rowToSelect = tableModel.getFileRow(selectedFile)) == -1) {
-                        int rowCount = tableModel.getRowCount();
-                        rowToSelect = currentRow < rowCount ? currentRow : rowCount - 1;
-                    }
-                }
-                // If no file was marked as needing to be selected, selects the first line.
-                else {
-                    rowToSelect = 0;
-                }
-
-                selectRow(currentRow = rowToSelect);
-                fireSelectedFileChangedEvent();
-
-                // Restore previously marked files (if any / current folder hasn't changed)
-                if(markedFiles != null) {
-                    // Restore previously marked files
-                    int nbMarkedFiles = markedFiles.size();
-                    int fileRow;
-                    for(int i  =0; i < nbMarkedFiles; i++) {
-                        fileRow = tableModel.getFileRow(markedFiles.elementAt(i));
-                        if(fileRow != -1)
-                            tableModel.setRowMarked(fileRow, true);
-                    }
-
-                    // Notify registered listeners that currently marked files have changed on this FileTable
-                    fireMarkedFilesChangedEvent();
-                }
-                if (consecutiveRename) {
-                    editCurrentFilename();
-                    consecutiveRename = false;
-                }
-                resizeAndRepaint();
+                if(addedFiles==null)
+                    changeFolder();
+                else
+                    addFiles();
             }
 
             catch(Throwable e) {
@@ -1937,6 +1987,101 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 }
             }
         }
+
+        private void changeFolder() {
+            // Set the new current folder.
+            tableModel.setCurrentFolder(folder, children);
+
+            // Update the visibility state of conditional columns
+            FileTableColumnModel columnModel = getFileTableColumnModel();
+            updateColumnsVisibility();
+
+            // The column corresponding to the current 'sort by' criterion may have become invisible.
+            // If that is the case, change the criterion to NAME.
+            if(!columnModel.isColumnVisible(sortInfo.getCriterion())) {
+                sortInfo.setCriterion(Column.NAME);
+                setTableHeaderRenderingProperties();
+            }
+
+            // Sort the new folder using the current sort criteria, ascending/descending order and
+            // 'show folders first' values.
+            tableModel.sortRows();
+
+            // Computes the index of the new row selection.
+            int rowToSelect;
+            if(selectedFile!=null) {
+                // Tries to find the index of the file to select. If it cannot be found (the file might not
+                // exist anymore, for example, or be part of the next chunks), use the closest possible row.
+                if((rowToSelect = tableModel.getFileRow(selectedFile)) == -1) {
+                    int rowCount = tableModel.getRowCount();
+                    rowToSelect = currentRow < rowCount ? currentRow : rowCount - 1;
+                    pendingSelectedFile = selectedFile;
+                }
+            }
+            // If no file was marked as needing to be selected, selects the first line.
+            else {
+                rowToSelect = 0;
+            }
+
+            selectRow(currentRow = rowToSelect);
+            defaultSelectedFile = tableModel.getFileAtRow(currentRow);
+            fireSelectedFileChangedEvent();
+
+            // Restore previously marked files (if any / current folder hasn't changed)
+            if(markedFiles != null) {
+                pendingMarkedFiles = new ArrayList<>(markedFiles);
+                restoreMarkedFiles();
+            }
+            if (consecutiveRename) {
+                editCurrentFilename();
+                consecutiveRename = false;
+            }
+            resizeAndRepaint();
+        }
+
+        private void addFiles() {
+            // Keep the same file selected once the files have been added and sorted
+            AbstractFile fileToSelect = tableModel.getFileAtRow(currentRow);
+
+            // The requested file is no longer selected once it is found if the selection has changed in the meantime
+            if(pendingSelectedFile!=null && !Objects.equals(fileToSelect, defaultSelectedFile))
+                pendingSelectedFile = null;
+
+            tableModel.addFiles(addedFiles);
+            tableModel.sortRows();
+
+            if(pendingSelectedFile!=null && tableModel.getFileRow(pendingSelectedFile)!=-1) {
+                fileToSelect = pendingSelectedFile;
+                pendingSelectedFile = null;
+            }
+            if(fileToSelect!=null)
+                selectFile(fileToSelect);
+
+            if(pendingMarkedFiles != null)
+                restoreMarkedFiles();
+
+            resizeAndRepaint();
+        }
+
+        /**
+         * Marks the previously marked files that can be found in the folder.
+         */
+        private void restoreMarkedFiles() {
+            int nbRestoredFiles = 0;
+            Iterator<AbstractFile> files = pendingMarkedFiles.iterator();
+            while(files.hasNext()) {
+                int fileRow = tableModel.getFileRow(files.next());
+                if(fileRow != -1) {
+                    tableModel.setRowMarked(fileRow, true);
+                    files.remove();
+                    nbRestoredFiles++;
+                }
+            }
+
+            // Notify registered listeners that currently marked files have changed on this FileTable
+            if(nbRestoredFiles>0 || addedFiles==null)
+                fireMarkedFilesChangedEvent();
+        }
     }
 
     /**
@@ -18,6 +18,10 @@
 package com.mucommander.ui.main.table;
 
 import java.awt.Cursor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,6 +39,7 @@ import com.mucommander.commons.file.CachedFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.protocol.search.SearchFile;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
 import com.mucommander.commons.file.util.FileComparator;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.conf.MuConfigurations;
@@ -53,6 +58,9 @@ public class FileTableModel extends AbstractTableModel {
 
     private static final Cursor WAIT_CURSOR = new Cursor(Cursor.WAIT_CURSOR);
 
+    /** Minimum number of files for sort keys to be computed and sorted in parallel */
+    private static final int PARALLEL_SORT_THRESHOLD = 8192;
+
      /** The current folder */
     private AbstractFile currentFolder;
 
@@ -68,9 +76,18 @@ public class FileTableModel extends AbstractTableModel {
     /** Index array */
     private int fileArrayIndex[];
 
-    /** Cell values cache */
+    /** Cell values cache, by file index (shifted by one if there is a parent folder), rows are computed lazily */
     private Object cellValuesCache[][];
 
+    /** Returns the value for the 'name' column for the files of the current folder, null if not known yet */
+    private Function<AbstractFile, String> nameFunc;
+
+    /** Whether owners can be retrieved for the files of the current folder, null if not known yet */
+    private Boolean canGetOwner;
+
+    /** Whether groups can be retrieved for the files of the current folder, null if not known yet */
+    private Boolean canGetGroup;
+
     /** Marked rows array */
     private boolean rowMarked[];
 
@@ -83,6 +100,12 @@ public class FileTableModel extends AbstractTableModel {
     /** Contains sort-related variables */
     private SortInfo sortInfo;
 
+    /** Sort keys of the cached files, by file index, null if the files have not been sorted yet */
+    private FileComparator.SortKey sortKeys[];
+
+    /** Comparator that created the sort keys */
+    private FileComparator sortKeysComparator;
+
     /** Locale that is used when sorting filenames */
     private Locale filenameLocale;
 
@@ -160,7 +183,7 @@ public class FileTableModel extends AbstractTableModel {
         // Init arrays to avoid NullPointerExceptions until setCurrentFolder() gets called for the first time
         cachedFiles = new AbstractFile[0];
         fileArrayIndex = new int[0];
-        cellValuesCache = new Object[0][Column.values().length-1];
+        cellValuesCache = new Object[0][];
         rowMarked = new boolean[0];
     }
 
@@ -228,6 +251,10 @@ public class FileTableModel extends AbstractTableModel {
     /**
      * Sets the current folder and its children.
      *
+     * <p>The children are turned into CachedFile instances whose attributes are pre-fetched: as this can be I/O bound,
+     * {@link #createCachedFiles(AbstractFile[], int, int)} should preferably be called on the children beforehand,
+     * outside of the event dispatch thread.</p>
+     *
      * @param folder the current folder
      * @param children the current folder's children
      */
@@ -235,6 +262,7 @@ public class FileTableModel extends AbstractTableModel {
         int nbFiles = children.length;
 
         this.currentFolder = (folder instanceof CachedFile)?folder:new CachedFile(folder, true);
+        this.currentFolderDateSnapshot = currentFolder.getDate();
 
         this.parent = showParentFolder ? currentFolder.getParent() : null;    // Note: the returned parent is a CachedFile instance
         if(parent!=null) {
@@ -244,18 +272,13 @@ public class FileTableModel extends AbstractTableModel {
         stopSizeCalculation();
 
         // Initialize file indexes and create CachedFile instances to speed up table display and navigation
+        createCachedFiles(children, 0, nbFiles);
         this.cachedFiles = children;
         this.fileArrayIndex = new int[nbFiles];
-        AbstractFile file;
-        for(int i=0; i<nbFiles; i++) {
-            file = new CachedFile(children[i], true);
-
-            // Pre-fetch the attributes that are used by the table renderer and some actions.
-            prefetchCachedFileAttributes(file);
-
-            cachedFiles[i] = file;
+        this.sortKeys = null;
+        this.sortKeysComparator = null;
+        for(int i=0; i<nbFiles; i++)
             fileArrayIndex[i] = i;
-        }
 
         // Reset marked files
         int nbRows = getRowCount();
@@ -263,10 +286,159 @@ public class FileTableModel extends AbstractTableModel {
         this.markedTotalSize = 0;
         this.nbRowsMarked = 0;
 
-        // Init and fill cell cache to speed up table even more
-        this.cellValuesCache = new Object[nbRows][Column.values().length-1];
+        // Cell values are computed when first requested, only for the rows that get displayed
+        this.cellValuesCache = new Object[nbRows][];
+        this.nameFunc = null;
+        this.canGetOwner = null;
+        this.canGetGroup = null;
+    }
+
+    /**
+     * Adds the given files to the current folder's children, after the existing ones. Marked files remain marked, but
+     * the rows need to be sorted again.
+     *
+     * @param files the files to add
+     */
+    synchronized void addFiles(AbstractFile files[]) {
+        int nbFiles = cachedFiles.length;
+        int nbAddedFiles = files.length;
+        createCachedFiles(files, 0, nbAddedFiles);
+
+        cachedFiles = Arrays.copyOf(cachedFiles, nbFiles+nbAddedFiles);
+        System.arraycopy(files, 0, cachedFiles, nbFiles, nbAddedFiles);
+        fileArrayIndex = Arrays.copyOf(fileArrayIndex, nbFiles+nbAddedFiles);
+        for(int i=nbFiles; i<nbFiles+nbAddedFiles; i++)
+            fileArrayIndex[i] = i;
+
+        // Arrays indexed by file index: existing files keep their index
+        int nbRows = getRowCount();
+        rowMarked = Arrays.copyOf(rowMarked, nbRows);
+        cellValuesCache = Arrays.copyOf(cellValuesCache, nbRows);
+
+        sortKeys = null;
+        sortKeysComparator = null;
+    }
+
+    /**
+     * Applies changes to the current folder's children: the files with the given names are removed, and the given
+     * files replace the existing files with the same name or are added if there is none. Marked files that are not
+     * removed remain marked, but the rows need to be sorted again.
+     *
+     * <p>The updated files should be CachedFile instances created by {@link #createCachedFiles(AbstractFile[], int, int)}
+     * outside of the event dispatch thread, so that no I/O is performed while the table is locked.</p>
+     *
+     * @param removedNames the names of the files to remove
+     * @param updatedFiles the files to add or replace
+     */
+    synchronized void updateFiles(Collection<String> removedNames, Collection<AbstractFile> updatedFiles) {
+        int nbFiles = cachedFiles.length;
+        Map<String, Integer> fileIndexes = new HashMap<>(nbFiles*4/3+1);
+        for(int i=0; i<nbFiles; i++)
+            fileIndexes.put(cachedFiles[i].getName(), i);
+
+        // Replace the existing files, and collect the new ones
+        int indexOffset = parent==null?0:1;
+        List<AbstractFile> addedFiles = new ArrayList<>();
+        for(AbstractFile file : updatedFiles) {
+            Integer fileIndex = fileIndexes.get(file.getName());
+            if(fileIndex==null) {
+                addedFiles.add(file);
+                continue;
+            }
+
+            AbstractFile oldFile = cachedFiles[fileIndex];
+            AbstractFile newFile[] = new AbstractFile[] {file};
+            createCachedFiles(newFile, 0, 1);
+            if(rowMarked[fileIndex]) {
+                // Update the combined size of marked files
+                long oldSize = oldFile.isDirectory()?0:oldFile.getSize();
+                long newSize = newFile[0].isDirectory()?0:newFile[0].getSize();
+                markedTotalSize += Math.max(newSize, 0) - Math.max(oldSize, 0);
+            }
+            // Marked directories are kept by instance, for their size to be calculated
+            if(markedDirectories.remove(oldFile) && newFile[0].isDirectory())
+                markedDirectories.add(newFile[0]);
+            cachedFiles[fileIndex] = newFile[0];
+            cellValuesCache[fileIndex+indexOffset] = null;
+        }
+
+        // Remove the files, keeping the remaining ones in the same order
+        boolean removed[] = new boolean[nbFiles];
+        int nbRemovedFiles = 0;
+        for(String name : removedNames) {
+            Integer fileIndex = fileIndexes.get(name);
+            if(fileIndex==null || removed[fileIndex])
+                continue;
+
+            if(rowMarked[fileIndex])
+                setRowMarked(getFileRowAtIndex(fileIndex), false);
+            markedDirectories.remove(cachedFiles[fileIndex]);
+            removed[fileIndex] = true;
+            nbRemovedFiles++;
+        }
+
+        if(nbRemovedFiles>0) {
+            int nbRemainingFiles = nbFiles-nbRemovedFiles;
+            AbstractFile remainingFiles[] = new AbstractFile[nbRemainingFiles];
+            boolean remainingRowMarked[] = new boolean[nbRemainingFiles+indexOffset];
+            Object remainingCellValues[][] = new Object[nbRemainingFiles+indexOffset][];
+            if(indexOffset>0)
+                remainingCellValues[0] = cellValuesCache[0];
+            int j = 0;
+            for(int i=0; i<nbFiles; i++) {
+                if(removed[i])
+                    continue;
+                remainingFiles[j] = cachedFiles[i];
+                remainingRowMarked[j] = rowMarked[i];
+                remainingCellValues[j+indexOffset] = cellValuesCache[i+indexOffset];
+                j++;
+            }
+
+            cachedFiles = remainingFiles;
+            rowMarked = remainingRowMarked;
+            cellValuesCache = remainingCellValues;
+            fileArrayIndex = new int[nbRemainingFiles];
+            for(int i=0; i<nbRemainingFiles; i++)
+                fileArrayIndex[i] = i;
+        }
+
+        sortKeys = null;
+        sortKeysComparator = null;
+
+        if(!addedFiles.isEmpty())
+            addFiles(addedFiles.toArray(new AbstractFile[0]));
+    }
+
+    /**
+     * Returns the row of the file with the given index.
+     */
+    private int getFileRowAtIndex(int fileIndex) {
+        for(int i=0; i<fileArrayIndex.length; i++) {
+            if(fileArrayIndex[i]==fileIndex)
+                return parent==null?i:i+1;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the files of the given range with CachedFile instances, and pre-fetches the attributes that are used by
+     * the table renderer and some actions. Files that already are CachedFile instances are kept, but their attributes
+     * are pre-fetched as well: this costs no I/O for the attributes they have cached already, e.g. when the files
+     * are passed to this method a second time.
+     *
+     * @param files the files to replace
+     * @param from index of the first file to replace, inclusive
+     * @param to index of the last file to replace, exclusive
+     */
+    public static void createCachedFiles(AbstractFile files[], int from, int to) {
+        for(int i=from; i<to; i++) {
+            AbstractFile file = files[i] instanceof CachedFile ? files[i] : new CachedFile(files[i], true);
+
+            // Pre-fetch the attributes that are used by the table renderer and some actions.
+            prefetchCachedFileAttributes(file);
 
-        fillCellCache();
+            files[i] = file;
+        }
     }
 
     /**
@@ -290,71 +462,71 @@ public class FileTableModel extends AbstractTableModel {
 
 
     /**
-     * Retrieves all cell values and stores them in an array for fast access.
+     * Discards the cell values so that they get computed again when requested, to reflect changes in their format or
+     * in directory sizes.
      */
-    synchronized void fillCellCache() {
-        int len = cellValuesCache.length;
-        if (len == 0)
-            return;
+    synchronized void clearCellCache() {
+        Arrays.fill(cellValuesCache, null);
+    }
+
+    /**
+     * Computes the cell values of the given file index, shifted by one if there is a parent folder.
+     */
+    private Object[] getCellValues(int cellIndex) {
+        Object values[] = new Object[Column.values().length-1];
 
-        Boolean canGetGroup = null, canGetOwner = null;
         // Special '..' file
-        if (parent != null) {
-            cellValuesCache[0][Column.NAME.ordinal()-1] = "..";
-            cellValuesCache[0][Column.SIZE.ordinal()-1] = DIRECTORY_SIZE_STRING;
-            currentFolderDateSnapshot = currentFolder.getDate();
-            cellValuesCache[0][Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(currentFolderDateSnapshot));
+        if (cellIndex == 0 && parent != null) {
+            values[Column.NAME.ordinal()-1] = "..";
+            values[Column.SIZE.ordinal()-1] = DIRECTORY_SIZE_STRING;
+            values[Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(currentFolderDateSnapshot));
             // Don't display parent's permissions as they can have a different format from the folder contents
             // (e.g. for archives) and this looks weird
-            cellValuesCache[0][Column.PERMISSIONS.ordinal()-1] = "";
-            cellValuesCache[0][Column.OWNER.ordinal()-1] = "";
-            cellValuesCache[0][Column.GROUP.ordinal()-1] = "";
-            canGetGroup = parent.canGetGroup();
-            canGetOwner = parent.canGetOwner();
-        }
-
-        var nameFunc = getNameFunc();
-        int fileIndex = 0;
-        final int indexOffset = parent == null ? 0 : 1;
-        for (int i = indexOffset; i < len; i++) {
-            var file = getCachedFileAtRow(i);
-            if (i == indexOffset) {
-                if (canGetGroup == null || canGetOwner == null) {
-                    canGetGroup = file.canGetGroup();
-                    canGetOwner = file.canGetOwner();
-		}
-            }
-            int cellIndex = fileArrayIndex[fileIndex] + indexOffset;
-            Object sizeValue;
-            if (file.isDirectory()) {
-                if (hasCalculatedDirectories) {
-                    Long dirSize;
-                    synchronized (directorySizes) {
-                        dirSize = directorySizes.get(file);
-                    }
-                    if (dirSize != null) {
-                        sizeValue = SizeFormat.format(dirSize, sizeFormat);
-                    } else {
-                        synchronized (calculateSizeQueue) {
-                            sizeValue = calculateSizeQueue.contains(file) ? QUEUED_DIRECTORY_SIZE_STRING : DIRECTORY_SIZE_STRING;
-                        }
-                    }
+            values[Column.PERMISSIONS.ordinal()-1] = "";
+            values[Column.OWNER.ordinal()-1] = "";
+            values[Column.GROUP.ordinal()-1] = "";
+            return values;
+        }
+
+        if (canGetGroup == null || canGetOwner == null) {
+            AbstractFile file = parent != null ? parent : cachedFiles[0];
+            canGetGroup = file.canGetGroup();
+            canGetOwner = file.canGetOwner();
+        }
+
+        var file = cachedFiles[parent == null ? cellIndex : cellIndex-1];
+        Object sizeValue;
+        if (file.isDirectory()) {
+            if (hasCalculatedDirectories) {
+                Long dirSize;
+                synchronized (directorySizes) {
+                    dirSize = directorySizes.get(file);
+                }
+                if (dirSize != null) {
+                    sizeValue = SizeFormat.format(dirSize, sizeFormat);
                 } else {
-                    sizeValue = DIRECTORY_SIZE_STRING;
+                    synchronized (calculateSizeQueue) {
+                        sizeValue = calculateSizeQueue.contains(file) ? QUEUED_DIRECTORY_SIZE_STRING : DIRECTORY_SIZE_STRING;
+                    }
                 }
             } else {
-                sizeValue = SizeFormat.format(file.getSize(), sizeFormat);
+                sizeValue = DIRECTORY_SIZE_STRING;
             }
+        } else {
+            sizeValue = SizeFormat.format(file.getSize(), sizeFormat);
+        }
 
-            cellValuesCache[cellIndex][Column.NAME.ordinal()-1] = nameFunc.apply(file);
-            cellValuesCache[cellIndex][Column.SIZE.ordinal()-1] = sizeValue;
-            cellValuesCache[cellIndex][Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(file.getDate()));
-            cellValuesCache[cellIndex][Column.PERMISSIONS.ordinal()-1] = file.getPermissionsString();
-            cellValuesCache[cellIndex][Column.OWNER.ordinal()-1] = canGetOwner ? file.getOwner() : null;
-            cellValuesCache[cellIndex][Column.GROUP.ordinal()-1] = canGetGroup ? file.getGroup() : null;
+        if (nameFunc == null)
+            nameFunc = getNameFunc();
 
-            fileIndex++;
-        }
+        values[Column.NAME.ordinal()-1] = nameFunc.apply(file);
+        values[Column.SIZE.ordinal()-1] = sizeValue;
+        values[Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(file.getDate()));
+        values[Column.PERMISSIONS.ordinal()-1] = file.getPermissionsString();
+        values[Column.OWNER.ordinal()-1] = canGetOwner ? file.getOwner() : null;
+        values[Column.GROUP.ordinal()-1] = canGetGroup ? file.getGroup() : null;
+
+        return values;
     }
 
     public Function<AbstractFile, String> getNameFunc() {
@@ -465,14 +637,18 @@ public class FileTableModel extends AbstractTableModel {
         int right = getRowCount()-1;
         int mid;
         AbstractFile midFile;
-        FileComparator fc = getFileComparator(sortInfo, filenameLocale);
+        int indexOffset = parent==null?0:1;
+        // Compare the file to the sort keys that were used to sort the rows, when available
+        FileComparator fc = sortKeys==null?getFileComparator(sortInfo, filenameLocale):sortKeysComparator;
+        FileComparator.SortKey key = sortKeys==null?null:fc.getSortKey(file);
 
         while(left<=right) {
             mid = (right-left)/2 + left;
             midFile = getCachedFileAtRow(mid);
             if(midFile.equals(file))
                 return mid;
-            if(fc.compare(file, midFile)<0)
+            int diff = key==null?fc.compare(file, midFile):fc.compare(key, sortKeys[fileArrayIndex[mid-indexOffset]]);
+            if(diff<0)
                 right = mid-1;
             else
                 left = mid+1;
@@ -706,70 +882,34 @@ public class FileTableModel extends AbstractTableModel {
 
     /**
      * Sorts rows by the current criterion, ascending/descending order and 'folders first' value.
+     *
+     * <p>The values that are compared, like collation keys of filenames, are computed once per file rather than on
+     * each comparison. They are kept to locate files in the sorted rows, see {@link #getFileRow(AbstractFile)}.
      */
     synchronized void sortRows()  {
-        sort(getFileComparator(sortInfo, filenameLocale), 0, fileArrayIndex.length-1);
-    }
-
-
-    /**
-     * Quick sort implementation, based on James Gosling's implementation.
-     */
-    private void sort(FileComparator fc, int lo0, int hi0) {
-        int lo = lo0;
-        int hi = hi0;
-
-        int temp;
-
-        if (lo >= hi) {
-            return;
-        }
-        else if( lo == hi - 1 ) {
-            // sort a two element list by swapping if necessary
-            if (fc.compare(cachedFiles[fileArrayIndex[lo]],cachedFiles[fileArrayIndex[hi]])>0) {
-                temp = fileArrayIndex[lo];
-                fileArrayIndex[lo] = fileArrayIndex[hi];
-                fileArrayIndex[hi] = temp;
-            }
-            return;
-        }
-
-        // Pick a pivot and move it out of the way
-        int pivotIndex = fileArrayIndex[(lo + hi) / 2];
-        fileArrayIndex[(lo + hi) / 2] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
-        AbstractFile pivot = cachedFiles[pivotIndex];
-
-        while( lo < hi ) {
-            // Search forward from files[lo] until an element is found that
-            // is greater than the pivot or lo >= hi
-            while (fc.compare(cachedFiles[fileArrayIndex[lo]], pivot)<=0 && lo < hi) {
-                lo++;
-            }
+        FileComparator fc = getFileComparator(sortInfo, filenameLocale);
+        int nbFiles = cachedFiles.length;
 
-            // Search backward from files[hi] until element is found that
-            // is less than the pivot, or lo >= hi
-            while (fc.compare(pivot, cachedFiles[fileArrayIndex[hi]])<=0 && lo < hi ) {
-                hi--;
-            }
+        boolean parallel = nbFiles>=PARALLEL_SORT_THRESHOLD;
 
-            // Swap elements files[lo] and files[hi]
-            if( lo < hi ) {
-                temp = fileArrayIndex[lo];
-                fileArrayIndex[lo] = fileArrayIndex[hi];
-                fileArrayIndex[hi] = temp;
-            }
-        }
+        FileComparator.SortKey keys[] = new FileComparator.SortKey[nbFiles];
+        if(parallel)
+            Arrays.parallelSetAll(keys, i -> fc.getSortKey(cachedFiles[i], i));
+        else
+            Arrays.setAll(keys, i -> fc.getSortKey(cachedFiles[i], i));
 
-        // Put the median in the "center" of the list
-        fileArrayIndex[hi0] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
+        // Sort the keys themselves, which know the index of their file
+        FileComparator.SortKey sortedKeys[] = keys.clone();
+        Comparator<FileComparator.SortKey> keyComparator = fc::compare;
+        if(parallel)
+            Arrays.parallelSort(sortedKeys, keyComparator);
+        else
+            Arrays.sort(sortedKeys, keyComparator);
+        for(int i=0; i<nbFiles; i++)
+            fileArrayIndex[i] = sortedKeys[i].getIndex();
 
-        // Recursive calls, elements files[lo0] to files[lo-1] are less than or
-        // equal to pivot, elements files[hi+1] to files[hi0] are greater than
-        // pivot.
-        sort(fc, lo0, lo-1);
-        sort(fc, hi+1, hi0);
+        this.sortKeys = keys;
+        this.sortKeysComparator = fc;
     }
 
 
@@ -811,11 +951,20 @@ public class FileTableModel extends AbstractTableModel {
 
         // Decrement column index for cellValuesCache array
         columnIndex--;
+        int cellIndex;
         // Handle special '..' file
         if(rowIndex==0 && parent!=null)
-            return cellValuesCache[0][columnIndex];
-        int fileIndex = parent==null?rowIndex:rowIndex-1;
-        return cellValuesCache[fileArrayIndex[fileIndex]+(parent==null?0:1)][columnIndex];
+            cellIndex = 0;
+        else {
+            int fileIndex = parent==null?rowIndex:rowIndex-1;
+            cellIndex = fileArrayIndex[fileIndex]+(parent==null?0:1);
+        }
+
+        Object values[] = cellValuesCache[cellIndex];
+        if(values==null)
+            values = cellValuesCache[cellIndex] = getCellValues(cellIndex);
+
+        return values[columnIndex];
     }
 
 
@@ -849,6 +998,16 @@ public class FileTableModel extends AbstractTableModel {
                 return;
             }
         }
+        // Reuse the size calculated previously if the folder has not changed since
+        DirectorySizeCalculator.DirectorySize cachedSize = DirectorySizeCalculator.getInstance(true).getCachedSize(file);
+        if (cachedSize != null) {
+            synchronized (directorySizes) {
+                directorySizes.put(file, cachedSize.getSize());
+            }
+            clearCellCache();
+            table.repaint();
+            return;
+        }
         synchronized (calculateSizeQueue) {
             if (calculateSizeQueue.contains(file)) {
                 return;
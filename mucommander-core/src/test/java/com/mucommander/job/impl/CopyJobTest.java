@@ -0,0 +1,178 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ListResourceBundle;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.filter.FilenameFilter;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.core.desktop.DesktopManager;
+import com.mucommander.desktop.DefaultDesktopAdapter;
+import com.mucommander.desktop.DesktopInitialisationException;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * A test case for the parallel transfers of {@link CopyJob}.
+ */
+public class CopyJobTest {
+
+    /** Date of the source folders */
+    private final static long FOLDER_DATE = TimeUnit.DAYS.toMillis(10000);
+
+    /**
+     * A file whose content cannot be read if its name matches a predicate.
+     */
+    private static class FailingFile extends ProxyFile {
+        private final Predicate<String> failingRead;
+
+        FailingFile(AbstractFile file, Predicate<String> failingRead) {
+            super(file);
+            this.failingRead = failingRead;
+        }
+
+        @Override
+        public AbstractFile[] ls() throws IOException {
+            return ls((FilenameFilter) null);
+        }
+
+        @Override
+        public AbstractFile[] ls(FilenameFilter filter) throws IOException {
+            AbstractFile[] children = file.ls(filter);
+            for (int i = 0; i < children.length; i++)
+                children[i] = new FailingFile(children[i], failingRead);
+            return children;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (failingRead.test(getName()))
+                throw new IOException("read failed");
+            return file.getInputStream();
+        }
+    }
+
+    /**
+     * Initializes the Translator with empty dictionaries, as the job looks up the labels of its dialogs, and the
+     * default desktop, which is notified of the files that are copied.
+     */
+    @BeforeClass
+    public static void setUp() throws DesktopInitialisationException {
+        ResourceBundle emptyBundle = new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[0][];
+            }
+        };
+        Translator.init(emptyBundle, emptyBundle, Collections.emptyList());
+
+        DesktopManager.registerAdapter(new DefaultDesktopAdapter());
+        DesktopManager.init(false);
+    }
+
+    /**
+     * Creates a folder with a few files and subfolders, and returns it.
+     */
+    private static Path createFolder(Path parent) throws IOException {
+        Path folder = Files.createDirectory(parent.resolve("source"));
+        Files.write(folder.resolve("a"), new byte[10]);
+        Path sub = Files.createDirectory(folder.resolve("sub"));
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        Files.write(sub.resolve("b"), content);
+        Files.write(sub.resolve("c"), new byte[100]);
+        Path subSub = Files.createDirectory(sub.resolve("subSub"));
+        Files.write(subSub.resolve("d"), new byte[10000]);
+
+        for (Path path : Arrays.asList(subSub, sub, folder))
+            Files.setLastModifiedTime(path, FileTime.fromMillis(FOLDER_DATE));
+        return folder;
+    }
+
+    /**
+     * Creates a job that copies the given folder into the given destination folder with parallel transfers.
+     */
+    private static CopyJob createJob(Path folder, Path destFolder, Predicate<String> failingRead) {
+        AbstractFile source = new FailingFile(FileFactory.getFile(folder.toString()), failingRead);
+        CopyJob job = new CopyJob(null, null, new FileSet(source.getParent(), source), FileFactory.getFile(destFolder.toString()),
+                null, CopyJob.TransferMode.COPY, FileCollisionDialog.FileCollisionAction.OVERWRITE);
+        job.setAutoUnmark(false);
+        job.setAutoSkipErrors(true);
+        job.enableParallelTransfers(4, 4);
+        return job;
+    }
+
+    /**
+     * Copies a folder with parallel transfers and asserts that the files are copied and that the dates of the
+     * destination folders are set once the files they contain have been written.
+     */
+    @Test
+    public void testParallelCopy() throws IOException {
+        Path parent = Files.createTempDirectory("CopyJobTest-");
+        Path folder = createFolder(parent);
+        Path destFolder = Files.createDirectory(parent.resolve("dest"));
+
+        CopyJob job = createJob(folder, destFolder, name -> false);
+        assert job.processFile(job.files.elementAt(0), null);
+        job.allFilesProcessed();
+
+        Path copied = destFolder.resolve("source");
+        for (String path : Arrays.asList("a", "sub/b", "sub/c", "sub/subSub/d"))
+            assert Arrays.equals(Files.readAllBytes(folder.resolve(path)), Files.readAllBytes(copied.resolve(path))) : path;
+        for (String path : Arrays.asList("", "sub", "sub/subSub"))
+            assert Files.getLastModifiedTime(copied.resolve(path)).toMillis() == FOLDER_DATE : path;
+        assert job.getTotalByteCount() == 110110;
+    }
+
+    /**
+     * Asserts that a file whose parallel transfer failed is retried on the job's thread, and that the top-level folder
+     * is then reported as not processed if the file is skipped.
+     */
+    @Test
+    public void testParallelCopyFailure() throws IOException {
+        Path parent = Files.createTempDirectory("CopyJobTest-");
+        Path folder = createFolder(parent);
+        Path destFolder = Files.createDirectory(parent.resolve("dest"));
+
+        CopyJob job = createJob(folder, destFolder, "c"::equals);
+        assert !job.processFile(job.files.elementAt(0), null);
+        job.allFilesProcessed();
+
+        Path copied = destFolder.resolve("source");
+        for (String path : Arrays.asList("a", "sub/b", "sub/subSub/d"))
+            assert Arrays.equals(Files.readAllBytes(folder.resolve(path)), Files.readAllBytes(copied.resolve(path))) : path;
+        assert !Files.exists(copied.resolve("sub/c"));
+    }
+}
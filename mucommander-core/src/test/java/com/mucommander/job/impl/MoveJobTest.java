@@ -0,0 +1,232 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.ListResourceBundle;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.UnsupportedFileOperation;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.filter.FilenameFilter;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.core.desktop.DesktopManager;
+import com.mucommander.desktop.DefaultDesktopAdapter;
+import com.mucommander.desktop.DesktopInitialisationException;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * A test case for the parallel transfers of {@link MoveJob}.
+ */
+public class MoveJobTest {
+
+    /**
+     * Initializes the Translator with empty dictionaries, as the job looks up the labels of its dialogs, and the
+     * default desktop, which is notified of the files that are copied.
+     */
+    @BeforeClass
+    public static void setUp() throws DesktopInitialisationException {
+        ResourceBundle emptyBundle = new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[0][];
+            }
+        };
+        Translator.init(emptyBundle, emptyBundle, Collections.emptyList());
+
+        DesktopManager.registerAdapter(new DefaultDesktopAdapter());
+        DesktopManager.init(false);
+    }
+
+    /**
+     * A file that cannot be renamed, so that it is moved by copying and deleting it, and whose content cannot be read
+     * if it matches a predicate.
+     */
+    private static class CopiedFile extends ProxyFile {
+        private final Predicate<String> failingRead;
+
+        CopiedFile(AbstractFile file, Predicate<String> failingRead) {
+            super(file);
+            this.failingRead = failingRead;
+        }
+
+        @Override
+        public AbstractFile[] ls() throws IOException {
+            return ls((FilenameFilter) null);
+        }
+
+        @Override
+        public AbstractFile[] ls(FilenameFilter filter) throws IOException {
+            AbstractFile[] children = file.ls(filter);
+            for (int i = 0; i < children.length; i++)
+                children[i] = new CopiedFile(children[i], failingRead);
+            return children;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (failingRead.test(getName()))
+                throw new IOException("read failed");
+            return file.getInputStream();
+        }
+
+        @Override
+        @UnsupportedFileOperation
+        public void renameTo(AbstractFile destFile) throws UnsupportedFileOperationException {
+            throw new UnsupportedFileOperationException(FileOperation.RENAME);
+        }
+    }
+
+    /**
+     * Creates a folder with a few files and subfolders, and returns it.
+     */
+    private static Path createFolder(Path parent) throws IOException {
+        Path folder = Files.createDirectory(parent.resolve("source"));
+        Files.write(folder.resolve("a"), new byte[10]);
+        Path sub = Files.createDirectory(folder.resolve("sub"));
+        Files.write(sub.resolve("b"), new byte[1000]);
+        Files.write(sub.resolve("c"), new byte[100]);
+        Path subSub = Files.createDirectory(sub.resolve("subSub"));
+        Files.write(subSub.resolve("d"), new byte[10000]);
+        Path other = Files.createDirectory(folder.resolve("other"));
+        Files.write(other.resolve("e"), new byte[1]);
+        return folder;
+    }
+
+    private static long countFiles(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * Creates a job that moves the given folder into the given destination folder with parallel transfers.
+     */
+    private static MoveJob createJob(Path folder, Path destFolder, Predicate<String> failingRead, int nbTransfers) {
+        AbstractFile source = new CopiedFile(FileFactory.getFile(folder.toString()), failingRead);
+        MoveJob job = new MoveJob(null, null, new FileSet(source.getParent(), source), FileFactory.getFile(destFolder.toString()),
+                null, FileCollisionDialog.FileCollisionAction.OVERWRITE, false);
+        job.setAutoUnmark(false);
+        job.setAutoSkipErrors(true);
+        job.enableParallelTransfers(nbTransfers, nbTransfers);
+        return job;
+    }
+
+    /**
+     * Moves a folder with parallel transfers and asserts that all the files are moved and the source folders are
+     * deleted once their children have been moved.
+     */
+    @Test
+    public void testParallelMove() throws IOException {
+        Path parent = Files.createTempDirectory("MoveJobTest-");
+        Path folder = createFolder(parent);
+        Path destFolder = Files.createDirectory(parent.resolve("dest"));
+
+        MoveJob job = createJob(folder, destFolder, name -> false, 4);
+        assert job.processFile(job.files.elementAt(0), null);
+        // Source folders are only deleted once all transfers have completed
+        assert Files.isDirectory(folder.resolve("sub/subSub"));
+        job.allFilesProcessed();
+
+        assert !Files.exists(folder);
+        Path moved = destFolder.resolve("source");
+        assert countFiles(moved) == 5;
+        assert Files.size(moved.resolve("sub/subSub/d")) == 10000;
+        assert Files.size(moved.resolve("other/e")) == 1;
+    }
+
+    /**
+     * Asserts that a file that could not be moved is left in place along with its parent folders, while the other
+     * source folders are deleted.
+     */
+    @Test
+    public void testParallelMoveFailure() throws IOException {
+        Path parent = Files.createTempDirectory("MoveJobTest-");
+        Path folder = createFolder(parent);
+        Path destFolder = Files.createDirectory(parent.resolve("dest"));
+
+        MoveJob job = createJob(folder, destFolder, "d"::equals, 4);
+        job.processFile(job.files.elementAt(0), null);
+        job.allFilesProcessed();
+
+        assert Files.isRegularFile(folder.resolve("sub/subSub/d"));
+        assert countFiles(folder) == 1;
+        assert !Files.exists(folder.resolve("other"));
+        Path moved = destFolder.resolve("source");
+        assert countFiles(moved) == 4;
+        assert !Files.exists(moved.resolve("sub/subSub/d"));
+    }
+
+    /**
+     * Asserts that interrupting the job stops the running transfers and prevents the queued ones from starting,
+     * leaving the source files and folders in place.
+     */
+    @Test
+    public void testInterrupt() throws IOException, InterruptedException {
+        Path parent = Files.createTempDirectory("MoveJobTest-");
+        Path folder = createFolder(parent);
+        Path destFolder = Files.createDirectory(parent.resolve("dest"));
+
+        int nbTransfers = 2;
+        AtomicInteger nbStarted = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(nbTransfers);
+        CountDownLatch release = new CountDownLatch(1);
+        MoveJob job = createJob(folder, destFolder, name -> {
+            // Block the transfers until the job has been interrupted
+            nbStarted.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }, nbTransfers);
+
+        Thread walker = new Thread(() -> job.processFile(job.files.elementAt(0), null));
+        walker.start();
+        assert started.await(10, TimeUnit.SECONDS);
+
+        job.interrupt();
+        job.jobStopped();
+        release.countDown();
+        walker.join(10000);
+        assert job.awaitParallelTransfers().isEmpty();
+
+        assert nbStarted.get() == nbTransfers;
+        assert countFiles(folder) == 5;
+        assert Files.isDirectory(folder.resolve("sub/subSub"));
+    }
+}
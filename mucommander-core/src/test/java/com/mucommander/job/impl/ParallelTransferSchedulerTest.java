@@ -0,0 +1,179 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link ParallelTransferScheduler}.
+ */
+public class ParallelTransferSchedulerTest {
+
+    private static AbstractFile getFile(String url) throws MalformedURLException {
+        return new DummyFile(FileURL.getFileURL(url));
+    }
+
+    /**
+     * Sleeps for the given number of milliseconds from a transfer.
+     */
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Waits for the given latch from a transfer, for at most 10 seconds.
+     */
+    private static boolean await(CountDownLatch latch) throws IOException {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Asserts that the transfers that failed are returned by {@link ParallelTransferScheduler#awaitCompletion()} once
+     * all transfers have completed, in the order they completed, and that the bytes of failed transfers are not
+     * accounted.
+     */
+    @Test
+    public void testFailures() throws IOException, InterruptedException {
+        // A single worker performs the transfers in the order they were submitted
+        ParallelTransferScheduler scheduler = new ParallelTransferScheduler(1, 1);
+        List<AbstractFile> transferred = new ArrayList<>();
+        List<AbstractFile> expectedFailures = new ArrayList<>();
+        AbstractFile destination = getFile("/dest");
+        for (int i = 0; i < 20; i++) {
+            AbstractFile source = getFile("/source/" + i);
+            boolean fail = i % 3 == 0;
+            if (fail)
+                expectedFailures.add(source);
+            scheduler.submit(source, destination, false, counter -> {
+                transferred.add(source);
+                counter.add(fail ? 50 : 100);
+                if (fail)
+                    throw new IOException("transfer failed");
+            });
+        }
+
+        List<ParallelTransferScheduler.Transfer> failures = scheduler.awaitCompletion();
+        assert transferred.size() == 20;
+        assert failures.stream().map(transfer -> transfer.source).collect(Collectors.toList()).equals(expectedFailures);
+        for (ParallelTransferScheduler.Transfer failure : failures) {
+            assert failure.destination == destination;
+            assert failure.error != null;
+        }
+        assert scheduler.getByteCount() == (20 - expectedFailures.size()) * 100;
+
+        // Failures are only returned once
+        assert scheduler.awaitCompletion().isEmpty();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Asserts that the number of concurrent transfers involving a remote realm is capped, while transfers between
+     * local files are not.
+     */
+    @Test
+    public void testRealmLimit() throws IOException, InterruptedException {
+        int nbWorkers = 6;
+        int realmLimit = 2;
+        ParallelTransferScheduler scheduler = new ParallelTransferScheduler(nbWorkers, realmLimit);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 24; i++) {
+            // Both directions count against the same realm
+            AbstractFile remoteFile = getFile("sftp://host/file" + i);
+            AbstractFile localFile = getFile("/local/file" + i);
+            scheduler.submit(i % 2 == 0 ? remoteFile : localFile, i % 2 == 0 ? localFile : remoteFile, false, counter -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+            });
+        }
+        assert scheduler.awaitCompletion().isEmpty();
+        assert maxRunning.get() <= realmLimit;
+        assert maxRunning.get() > 0;
+
+        // All workers transfer local files at the same time
+        CountDownLatch allRunning = new CountDownLatch(nbWorkers);
+        AtomicInteger nbConcurrent = new AtomicInteger();
+        for (int i = 0; i < nbWorkers; i++) {
+            scheduler.submit(getFile("/local/a" + i), getFile("/local/b" + i), false, counter -> {
+                allRunning.countDown();
+                if (await(allRunning))
+                    nbConcurrent.incrementAndGet();
+            });
+        }
+        assert scheduler.awaitCompletion().isEmpty();
+        assert nbConcurrent.get() == nbWorkers;
+        scheduler.shutdown();
+    }
+
+    /**
+     * Asserts that cancelling the scheduler prevents queued transfers from starting, lets the running ones complete,
+     * and does not report the transfers that did not run as failed.
+     */
+    @Test
+    public void testCancel() throws IOException, InterruptedException {
+        ParallelTransferScheduler scheduler = new ParallelTransferScheduler(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger nbTransferred = new AtomicInteger();
+        scheduler.submit(getFile("/source/running"), getFile("/dest/running"), false, counter -> {
+            started.countDown();
+            await(release);
+            counter.add(100);
+            nbTransferred.incrementAndGet();
+        });
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit(getFile("/source/" + i), getFile("/dest/" + i), false, counter -> {
+                counter.add(100);
+                nbTransferred.incrementAndGet();
+            });
+        }
+
+        assert started.await(10, TimeUnit.SECONDS);
+        scheduler.cancel();
+        release.countDown();
+
+        assert scheduler.awaitCompletion().isEmpty();
+        assert nbTransferred.get() == 1;
+        assert scheduler.getByteCount() == 100;
+        scheduler.shutdown();
+    }
+}
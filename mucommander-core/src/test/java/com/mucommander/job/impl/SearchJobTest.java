@@ -0,0 +1,228 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.FileJobState;
+
+/**
+ * A test case for {@link SearchJob}.
+ */
+public class SearchJobTest {
+
+    /**
+     * Creates a folder with files whose name starts with 'match' or 'other', in nested subfolders.
+     */
+    private static Path createFolder(int nbFilesPerFolder) throws IOException {
+        Path folder = Files.createTempDirectory("SearchJobTest-");
+        Path current = folder;
+        for (int level = 0; level < 3; level++) {
+            for (int i = 0; i < nbFilesPerFolder; i++) {
+                Files.createFile(current.resolve("match" + level + "-" + i));
+                Files.createFile(current.resolve("other" + level + "-" + i));
+            }
+            Files.createDirectory(current.resolve("empty" + level));
+            current = Files.createDirectory(current.resolve("sub" + level));
+        }
+        return folder;
+    }
+
+    private static SearchJob createJob(AbstractFile folder) {
+        SearchJob job = new SearchJob(null, new FileSet(folder, folder));
+        job.setDepth(0);
+        job.setListFilter(AbstractFile::isDirectory);
+        job.setFileMatcher(file -> file.getName().startsWith("match"));
+        job.setListener(null);
+        return job;
+    }
+
+    private static Set<String> getNames(List<AbstractFile> files) {
+        return files.stream().map(AbstractFile::getName).collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns a content matcher that sleeps for a while and records how many files have their content searched at the
+     * same time.
+     */
+    private static Predicate<AbstractFile> createSlowMatcher(AtomicInteger maxRunning) {
+        AtomicInteger running = new AtomicInteger();
+        return file -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return file.getName().endsWith("-0");
+        };
+    }
+
+    /**
+     * Asserts that the files whose content is searched are those that match on their attributes, and that the number
+     * of concurrent content searches is capped by the given number of threads, or by the number of processors.
+     */
+    @Test
+    public void testContentThreads() throws IOException {
+        AbstractFile folder = FileFactory.getFile(createFolder(12).toString());
+        int nbProcessors = Runtime.getRuntime().availableProcessors();
+        for (int contentThreads : new int[] { 2, 0, Integer.MAX_VALUE }) {
+            AtomicInteger maxRunning = new AtomicInteger();
+            SearchJob job = createJob(folder);
+            job.setThreads(4);
+            job.setContentThreads(contentThreads);
+            job.setContentMatcher(createSlowMatcher(maxRunning));
+            job.processFile(folder, null);
+
+            assert getNames(job.getFindings()).equals(new HashSet<>(Arrays.asList("match0-0", "match1-0", "match2-0"))) : contentThreads;
+            assert maxRunning.get() > 0;
+            if (contentThreads == 2)
+                assert maxRunning.get() <= 2;
+            else if (contentThreads == 0)
+                assert maxRunning.get() <= nbProcessors;
+            else
+                assert maxRunning.get() <= SearchJob.MAX_CONTENT_THREADS;
+        }
+    }
+
+    /**
+     * Asserts that all the matching files are found once, whatever the number of threads, that the files of a folder
+     * are reported in the order they are listed, and that the files provided by an index are reported in their order.
+     */
+    @Test
+    public void testFindings() throws IOException {
+        Path path = createFolder(50);
+        AbstractFile folder = FileFactory.getFile(path.toString());
+        Set<String> expected = new HashSet<>();
+        for (int level = 0; level < 3; level++) {
+            for (int i = 0; i < 50; i++)
+                expected.add("match" + level + "-" + i);
+        }
+
+        for (int threads : new int[] { 1, 2, 8 }) {
+            AtomicInteger nbChanges = new AtomicInteger();
+            SearchJob job = createJob(folder);
+            job.setThreads(threads);
+            job.setListener(nbChanges::incrementAndGet);
+            job.processFile(folder, null);
+
+            List<AbstractFile> findings = job.getFindings();
+            assert findings.size() == expected.size() : threads;
+            assert getNames(findings).equals(expected) : threads;
+            // The matches of a folder are reported at once
+            assert nbChanges.get() == 3 : threads;
+
+            for (AbstractFile listedFolder : Arrays.asList(folder, folder.getChild("sub0"), folder.getChild("sub0").getChild("sub1"))) {
+                List<AbstractFile> listed = new ArrayList<>(Arrays.asList(listedFolder.ls()));
+                listed.retainAll(findings);
+                List<AbstractFile> found = new ArrayList<>(findings);
+                found.retainAll(listed);
+                assert found.equals(listed) : listedFolder;
+            }
+        }
+
+        // Same with a limited depth: only the files of the first two levels are found
+        SearchJob job = createJob(folder);
+        job.setDepth(2);
+        job.processFile(folder, null);
+        assert getNames(job.getFindings()).stream().noneMatch(name -> name.startsWith("match2")) : job.getFindings();
+        assert job.getFindings().size() == 100;
+
+        // Files found in an index are reported in the index's order, without listing folders
+        List<AbstractFile> indexed = new ArrayList<>();
+        for (int i = 9; i >= 0; i--)
+            indexed.add(folder.getChild("match0-" + i));
+        job = createJob(folder);
+        job.setListFilter(file -> {
+            throw new AssertionError("listed " + file);
+        });
+        job.setIndexSearch(() -> indexed);
+        job.processFile(folder, null);
+        assert job.getFindings().equals(indexed);
+    }
+
+    /**
+     * Asserts that interrupting the search stops the content searches in progress, does not start the queued ones
+     * and no longer notifies the listener.
+     */
+    @Test
+    public void testInterrupt() throws IOException, InterruptedException {
+        AbstractFile folder = FileFactory.getFile(createFolder(20).toString());
+        int contentThreads = 2;
+        CountDownLatch started = new CountDownLatch(contentThreads);
+        AtomicInteger nbStarted = new AtomicInteger();
+        AtomicInteger nbInterrupted = new AtomicInteger();
+        AtomicBoolean notifiedAfterInterrupt = new AtomicBoolean();
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        SearchJob job = createJob(folder);
+        job.setContentThreads(contentThreads);
+        job.setListener(() -> notifiedAfterInterrupt.compareAndSet(false, interrupted.get()));
+        job.setContentMatcher(file -> {
+            nbStarted.incrementAndGet();
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                nbInterrupted.incrementAndGet();
+            }
+            return true;
+        });
+
+        Thread searcher = new Thread(() -> job.processFile(folder, null));
+        searcher.start();
+        assert started.await(10, TimeUnit.SECONDS);
+
+        interrupted.set(true);
+        job.interrupt();
+        searcher.join(10000);
+        assert !searcher.isAlive();
+        assert job.getState() == FileJobState.INTERRUPTED;
+
+        // Give the interrupted content searches time to return
+        long deadline = System.currentTimeMillis() + 10000;
+        while (nbInterrupted.get() < contentThreads && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assert nbInterrupted.get() == contentThreads;
+        Thread.sleep(100);
+        assert nbStarted.get() == contentThreads;
+        assert !notifiedAfterInterrupt.get();
+        assert job.getFindings().size() <= contentThreads : Collections.unmodifiableList(job.getFindings());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link BytePattern}.
+ */
+public class BytePatternTest {
+
+    /**
+     * Asserts that the first match in a range is found, and only within the range.
+     */
+    @Test
+    public void testIndexIn() {
+        BytePattern pattern = BytePattern.forBytes(new byte[] { 1, 2, 1 });
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 1, 2, 1, 2, 1, 0 });
+        assert pattern.indexIn(buffer, 0, 7) == 1;
+        assert pattern.indexIn(buffer, 2, 7) == 3;
+        assert pattern.indexIn(buffer, 2, 5) == -1;
+    }
+
+    /**
+     * Asserts that bytes of different case variants of a character are not mixed.
+     */
+    @Test
+    public void testVariantsNotMixed() {
+        BytePattern pattern = BytePattern.forText("ö", StandardCharsets.UTF_8, false);
+        // 'ö' is C3 B6, 'Ö' is C3 96
+        assert pattern.matches(ByteBuffer.wrap(new byte[] { (byte) 0xC3, (byte) 0xB6 }), 0);
+        assert pattern.matches(ByteBuffer.wrap(new byte[] { (byte) 0xC3, (byte) 0x96 }), 0);
+
+        pattern = BytePattern.forText("a", StandardCharsets.UTF_16, false);
+        assert pattern.getLength() == 2;
+        assert pattern.matches(ByteBuffer.wrap(new byte[] { 0, 'A' }), 0);
+        assert !pattern.matches(ByteBuffer.wrap(new byte[] { 'a', 0 }), 0);
+    }
+
+    /**
+     * Asserts that text which cannot be encoded in the charset is not searched for.
+     */
+    @Test
+    public void testUnencodableText() {
+        assert BytePattern.forText("€", StandardCharsets.US_ASCII, true) == null;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * A test case for {@link ContentMatcher}.
+ */
+public class ContentMatcherTest {
+
+    private static AbstractFile createFile(byte[] content) throws IOException {
+        Path path = Files.createTempFile("ContentMatcherTest-", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, content);
+        return FileFactory.getFile(path.toString());
+    }
+
+    /**
+     * Asserts that literal text is found regardless of case only when required.
+     */
+    @Test
+    public void testLiteral() throws IOException {
+        AbstractFile file = createFile("first line\nThe Quick brown fox\nlast line".getBytes(StandardCharsets.UTF_8));
+        assert new ContentMatcher("Quick brown", true, false).matches(file);
+        assert !new ContentMatcher("quick brown", true, false).matches(file);
+        assert new ContentMatcher("quick brown", false, false).matches(file);
+        assert !new ContentMatcher("quick fox", false, false).matches(file);
+    }
+
+    /**
+     * Asserts that text located after the first buffer and spanning two buffers is found.
+     */
+    @Test
+    public void testSpanningBuffers() throws IOException {
+        byte[] content = new byte[3 * ContentMatcher.BUFFER_SIZE];
+        Arrays.fill(content, (byte) 'a');
+        byte[] needle = "needle".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(needle, 0, content, ContentMatcher.BUFFER_SIZE - 3, needle.length);
+        AbstractFile file = createFile(content);
+        assert new ContentMatcher("needle", true, false).matches(file);
+        assert !new ContentMatcher("needles", true, false).matches(file);
+    }
+
+    /**
+     * Asserts that text is found in files encoded in UTF-16 with a byte-order mark.
+     */
+    @Test
+    public void testUtf16() throws IOException {
+        AbstractFile file = createFile("Grüße aus Köln".getBytes(StandardCharsets.UTF_16));
+        assert new ContentMatcher("köln", false, false).matches(file);
+        assert !new ContentMatcher("köln", true, false).matches(file);
+    }
+
+    /**
+     * Asserts that regular expressions are matched against lines.
+     */
+    @Test
+    public void testRegex() throws IOException {
+        AbstractFile file = createFile("id=42\nname=foo\n".getBytes(StandardCharsets.UTF_8));
+        assert new ContentMatcher("^id=\\d+$", true, true).matches(file);
+        assert new ContentMatcher("NAME=F.O", false, true).matches(file);
+        assert !new ContentMatcher("id=\\d+\\nname", true, true).matches(file);
+    }
+
+    /**
+     * Asserts that binary files are skipped.
+     */
+    @Test
+    public void testBinary() throws IOException {
+        AbstractFile file = createFile(new byte[] { 'a', 'b', 0, 'c', 'd' });
+        assert !new ContentMatcher("ab", true, false).matches(file);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link FileIndex}.
+ */
+public class FileIndexTest {
+
+    /**
+     * Creates a folder with a few files and subfolders, and returns it.
+     */
+    private static Path createFolder() throws IOException {
+        Path folder = Files.createTempDirectory("FileIndexTest-");
+        Files.write(folder.resolve("readme.txt"), new byte[10]);
+        Files.write(folder.resolve(".hidden.txt"), new byte[10]);
+        Path sub = Files.createDirectory(folder.resolve("sub"));
+        Files.write(sub.resolve("notes.txt"), new byte[1000]);
+        Files.write(sub.resolve("image.png"), new byte[100]);
+        Path subSub = Files.createDirectory(sub.resolve("subSub"));
+        Files.write(subSub.resolve("README.md"), new byte[5]);
+        return folder;
+    }
+
+    private static Set<String> search(FileIndex index, Path folder, int depth, String fragment, Predicate<FileIndex.Entry> predicate) {
+        List<FileIndex.Entry> entries = index.search(folder.toString(), depth, entry -> !entry.isHidden(),
+                fragment != null ? Collections.singletonList(fragment) : Collections.emptyList(), predicate);
+        return entries.stream().map(FileIndex.Entry::getName).collect(Collectors.toSet());
+    }
+
+    /**
+     * Asserts that files are found by name, size and depth.
+     */
+    @Test
+    public void testSearch() throws IOException {
+        Path folder = createFolder();
+        FileIndex index = new FileIndex(folder.toString());
+        assert !index.isReady();
+        assert index.search(folder.toString(), Integer.MAX_VALUE, entry -> true, Collections.emptyList(), entry -> true) == null;
+
+        index.build(null);
+        assert index.isReady();
+        assert index.size() == 7;
+
+        assert search(index, folder, Integer.MAX_VALUE, "readme", entry -> entry.getName().toLowerCase().startsWith("readme"))
+                .equals(Set.of("readme.txt", "README.md"));
+        assert search(index, folder, 1, "readme", entry -> entry.getName().toLowerCase().startsWith("readme"))
+                .equals(Set.of("readme.txt"));
+        assert search(index, folder, Integer.MAX_VALUE, null, entry -> entry.getSize() > 50)
+                .equals(Set.of("notes.txt", "image.png"));
+        assert search(index, folder, Integer.MAX_VALUE, null, FileIndex.Entry::isDirectory)
+                .equals(Set.of("sub", "subSub"));
+        assert search(index, folder, Integer.MAX_VALUE, "zzz", entry -> true).isEmpty();
+        assert search(index, folder.resolve("sub"), Integer.MAX_VALUE, ".txt", entry -> entry.getName().endsWith(".txt"))
+                .equals(Set.of("notes.txt"));
+
+        FileIndex.Entry entry = index.search(folder.toString(), Integer.MAX_VALUE, e -> true, Collections.singletonList("README"),
+                e -> e.getName().equals("README.md")).get(0);
+        assert entry.getPath().equals(folder.resolve("sub").resolve("subSub").resolve("README.md").toString());
+
+        assert index.search(folder.resolve("missing").toString(), 1, e -> true, Collections.emptyList(), e -> true) == null;
+    }
+
+    /**
+     * Asserts that the files of hidden folders are not found when hidden folders are not searched.
+     */
+    @Test
+    public void testFolderFilter() throws IOException {
+        Path folder = createFolder();
+        Path hidden = Files.createDirectory(folder.resolve(".git"));
+        Files.write(hidden.resolve("config"), new byte[1]);
+
+        FileIndex index = new FileIndex(folder.toString());
+        index.build(null);
+        assert search(index, folder, Integer.MAX_VALUE, "config", entry -> true).isEmpty();
+        assert index.search(folder.toString(), Integer.MAX_VALUE, entry -> true, Collections.singletonList("config"),
+                entry -> true).size() == 1;
+    }
+
+    /**
+     * Asserts that syncing and rescanning folders reflect the changes made to them.
+     */
+    @Test
+    public void testSync() throws IOException {
+        Path folder = createFolder();
+        FileIndex index = new FileIndex(folder.toString());
+        index.build(null);
+
+        Files.delete(folder.resolve("readme.txt"));
+        Files.write(folder.resolve("new.txt"), new byte[1]);
+        Path newFolder = Files.createDirectory(folder.resolve("newFolder"));
+        Files.write(newFolder.resolve("deep.txt"), new byte[1]);
+        index.sync(folder.toString(), null);
+        assert search(index, folder, Integer.MAX_VALUE, null, entry -> entry.getName().endsWith(".txt"))
+                .equals(Set.of(".hidden.txt", "new.txt", "notes.txt", "deep.txt"));
+
+        // Rescans only sync the folders whose date has changed
+        Path subSub = folder.resolve("sub").resolve("subSub");
+        Files.write(subSub.resolve("other.md"), new byte[1]);
+        Files.setLastModifiedTime(subSub, FileTime.from(1000, TimeUnit.SECONDS));
+        index.rescan(null);
+        assert search(index, folder, Integer.MAX_VALUE, null, entry -> entry.getName().endsWith(".md"))
+                .equals(Set.of("README.md", "other.md"));
+    }
+
+    /**
+     * Asserts that symbolic links have the attributes of their target, and that the content of symlinked folders is
+     * not indexed.
+     */
+    @Test
+    public void testSymlinks() throws IOException {
+        Path folder = createFolder();
+        try {
+            Files.createSymbolicLink(folder.resolve("linkToSub"), folder.resolve("sub"));
+            Files.createSymbolicLink(folder.resolve("linkToNotes"), folder.resolve("sub").resolve("notes.txt"));
+            Files.createSymbolicLink(folder.resolve("sub").resolve("linkToRoot"), folder);
+            Files.createSymbolicLink(folder.resolve("broken"), folder.resolve("missing"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // Symbolic links cannot be created on this platform or by this user
+            return;
+        }
+
+        FileIndex index = new FileIndex(folder.toString());
+        index.build(null);
+        assert index.size() == 11;
+
+        assert search(index, folder, Integer.MAX_VALUE, null, FileIndex.Entry::isDirectory)
+                .equals(Set.of("sub", "subSub", "linkToSub", "linkToRoot"));
+        assert search(index, folder, Integer.MAX_VALUE, null, FileIndex.Entry::isSymlink)
+                .equals(Set.of("linkToSub", "linkToNotes", "linkToRoot", "broken"));
+        assert search(index, folder, Integer.MAX_VALUE, "linkToNotes", entry -> entry.getSize() == 1000)
+                .equals(Set.of("linkToNotes"));
+        assert search(index, folder, Integer.MAX_VALUE, "notes", entry -> true).equals(Set.of("notes.txt", "linkToNotes"));
+        assert index.search(folder.resolve("linkToSub").toString(), 1, entry -> true, Collections.emptyList(), entry -> true) == null;
+    }
+
+    /**
+     * Asserts that an index that is saved and loaded again has the same content.
+     */
+    @Test
+    public void testSaveLoad() throws IOException {
+        Path folder = createFolder();
+        FileIndex index = new FileIndex(folder.toString());
+        index.build(null);
+        Files.delete(folder.resolve("readme.txt"));
+        index.sync(folder.toString(), null);
+
+        File file = Files.createTempFile("FileIndexTest-", ".index").toFile();
+        file.deleteOnExit();
+        index.save(file);
+        assert !index.isModified();
+
+        FileIndex loadedIndex = FileIndex.load(file, folder.toString());
+        assert loadedIndex.isReady();
+        assert loadedIndex.size() == index.size();
+        assert search(loadedIndex, folder, Integer.MAX_VALUE, ".md", entry -> true).equals(Set.of("README.md"));
+        assert search(loadedIndex, folder, Integer.MAX_VALUE, null, entry -> entry.getName().endsWith(".txt"))
+                .equals(Set.of(".hidden.txt", "notes.txt"));
+
+        try {
+            FileIndex.load(file, folder.resolve("sub").toString());
+            assert false;
+        } catch (IOException e) {
+            // The file is the index of another folder
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.CachedFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link FileTableModel}.
+ */
+public class FileTableModelTest {
+
+    /**
+     * A remote file that counts how many times its attributes are fetched.
+     */
+    private static class CountingFile extends DummyFile {
+        private final AtomicInteger nbFetches = new AtomicInteger();
+        private final long size;
+
+        CountingFile(String name, long size) throws MalformedURLException {
+            super(FileURL.getFileURL("sftp://host/folder/" + name));
+            this.size = size;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            nbFetches.incrementAndGet();
+            return false;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+    }
+
+    private static AbstractFile[] createFiles(String prefix, int nbFiles) throws MalformedURLException {
+        AbstractFile[] files = new AbstractFile[nbFiles];
+        for (int i = 0; i < nbFiles; i++)
+            files[i] = new CountingFile(prefix + i, 10 * (i + 1));
+        return files;
+    }
+
+    private static int getNbFetches(AbstractFile file) {
+        if (file instanceof CachedFile)
+            file = ((CachedFile) file).getProxiedFile();
+        return ((CountingFile) file).nbFetches.get();
+    }
+
+    /**
+     * Asserts that only the files of the given range are replaced by CachedFile instances whose attributes are
+     * pre-fetched once, and that CachedFile instances are kept but have their attributes pre-fetched as well.
+     */
+    @Test
+    public void testCreateCachedFiles() throws MalformedURLException {
+        AbstractFile[] files = createFiles("file", 10);
+        FileTableModel.createCachedFiles(files, 2, 5);
+        for (int i = 0; i < files.length; i++) {
+            boolean inRange = i >= 2 && i < 5;
+            assert (files[i] instanceof CachedFile) == inRange : i;
+            assert getNbFetches(files[i]) == (inRange ? 1 : 0) : i;
+        }
+
+        // Files that have been pre-fetched already are not fetched again
+        AbstractFile[] cachedFiles = files.clone();
+        FileTableModel.createCachedFiles(files, 0, files.length);
+        for (int i = 0; i < files.length; i++) {
+            assert files[i] instanceof CachedFile : i;
+            assert getNbFetches(files[i]) == 1 : i;
+            if (i >= 2 && i < 5)
+                assert files[i] == cachedFiles[i] : i;
+        }
+
+        // CachedFile instances created elsewhere get their attributes pre-fetched
+        CachedFile cachedFile = new CachedFile(new CountingFile("other", 0), true);
+        AbstractFile[] otherFiles = { cachedFile };
+        FileTableModel.createCachedFiles(otherFiles, 0, 1);
+        assert otherFiles[0] == cachedFile;
+        assert getNbFetches(cachedFile) == 1;
+    }
+
+    /**
+     * Asserts that the files added to the current folder in chunks follow the existing ones, and that marked files
+     * remain marked.
+     */
+    @Test
+    public void testAddFiles() throws MalformedURLException {
+        FileTableModel model = new FileTableModel();
+        AbstractFile[] children = createFiles("file", 3);
+        model.setCurrentFolder(new DummyFile(FileURL.getFileURL("sftp://host/folder")), children.clone());
+        model.setRowMarked(1, true);
+
+        AbstractFile[] added = createFiles("added", 4);
+        model.addFiles(added.clone());
+        model.addFiles(createFiles("more", 2));
+
+        assert model.getFileCount() == 9;
+        assert model.getRowCount() == 9;
+        for (int i = 0; i < children.length; i++)
+            assert model.getFileAt(i) == children[i] : i;
+        for (int i = 0; i < added.length; i++) {
+            assert model.getFileAt(children.length + i) == added[i] : i;
+            assert getNbFetches(added[i]) == 1 : i;
+        }
+        for (AbstractFile file : model.getCachedFiles())
+            assert file instanceof CachedFile;
+
+        assert model.isRowMarked(1);
+        assert model.getNbMarkedFiles() == 1;
+        assert model.getTotalMarkedSize() == 20;
+        model.setRowMarked(5, true);
+        assert model.getNbMarkedFiles() == 2;
+        assert model.getTotalMarkedSize() == 20 + 30;
+    }
+
+    /**
+     * Asserts that the changes of the current folder's children are applied as deltas: removed files are removed,
+     * modified files replace the existing ones while remaining marked, and new files are added.
+     */
+    @Test
+    public void testUpdateFiles() throws MalformedURLException {
+        FileTableModel model = new FileTableModel();
+        AbstractFile[] children = createFiles("file", 5);
+        model.setCurrentFolder(new DummyFile(FileURL.getFileURL("sftp://host/folder")), children.clone());
+        model.setRowMarked(1, true);
+        model.setRowMarked(3, true);
+        assert model.getTotalMarkedSize() == 20 + 40;
+
+        AbstractFile modified = new CountingFile("file1", 25);
+        AbstractFile created = new CountingFile("created", 7);
+        model.updateFiles(Arrays.asList("file3", "unknown"), Arrays.asList(modified, created));
+
+        assert model.getFileCount() == 5;
+        assert model.getRowCount() == 5;
+        List<AbstractFile> expected = Arrays.asList(children[0], modified, children[2], children[4], created);
+        for (int i = 0; i < expected.size(); i++)
+            assert model.getFileAt(i) == expected.get(i) : i;
+        for (AbstractFile file : model.getCachedFiles())
+            assert file instanceof CachedFile;
+        assert getNbFetches(modified) == 1;
+        assert getNbFetches(created) == 1;
+
+        // The modified file remains marked with its new size, the removed one is no longer marked
+        assert model.isRowMarked(1);
+        for (int row : new int[] { 0, 2, 3, 4 })
+            assert !model.isRowMarked(row) : row;
+        assert model.getNbMarkedFiles() == 1;
+        assert model.getTotalMarkedSize() == 25;
+
+        // Removing all the files leaves an empty folder
+        model.updateFiles(Arrays.asList("file0", "file1", "file2", "file4", "created"), Collections.emptyList());
+        assert model.getFileCount() == 0;
+        assert model.getNbMarkedFiles() == 0;
+        assert model.getTotalMarkedSize() == 0;
+    }
+}
@@ -95,7 +95,9 @@ public class Bzip2ArchiveFile extends AbstractROArchiveFile {
             // Quoted from CBZip2InputStream's Javadoc:
             // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
             // read()} method exclusively. Thus you should consider to use a buffered source stream."
-            return new CBZip2InputStream(new BufferedInputStream(in));
+            // Files made of concatenated Bzip2 streams, as created by pbzip2 or by multi-threaded compression, are
+            // decompressed entirely.
+            return new CBZip2InputStream(new BufferedInputStream(in), true);
         }
         catch(Exception e) {
             // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
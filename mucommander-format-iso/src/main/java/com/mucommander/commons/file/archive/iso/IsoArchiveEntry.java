@@ -41,6 +41,17 @@ class IsoArchiveEntry extends ArchiveEntry {
         this.audio = audio;
     }
 
+    /**
+     * Creates an entry with unspecified attribute values, used when entries are restored from the
+     * {@link com.mucommander.commons.file.archive.ArchiveEntryCache}.
+     */
+    IsoArchiveEntry(long index, int sectSize, long shiftOffset, boolean audio) {
+        this.index = index;
+        this.sectSize = sectSize;
+        this.shiftOffset = shiftOffset;
+        this.audio = audio;
+    }
+
     long getIndex() {
         return index;
     }
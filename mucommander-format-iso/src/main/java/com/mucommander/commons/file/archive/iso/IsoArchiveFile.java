@@ -21,10 +21,13 @@ package com.mucommander.commons.file.archive.iso;
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryCache;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
 import com.mucommander.commons.io.FilterRandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -73,4 +76,29 @@ public class IsoArchiveFile extends AbstractROArchiveFile {
 
         return new IsoEntryInputStream(rais, isoEntry);
     }
+
+    /**
+     * Returns <code>true</code>: the location of an entry's data is fully described by its {@link IsoArchiveEntry}.
+     */
+    @Override
+    protected boolean isEntryCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected void writeCachedEntry(ArchiveEntry entry, DataOutput out) throws IOException {
+        IsoArchiveEntry isoEntry = (IsoArchiveEntry) entry;
+        out.writeLong(isoEntry.getIndex());
+        out.writeInt(isoEntry.getSectSize());
+        out.writeLong(isoEntry.getShiftOffset());
+        out.writeBoolean(isoEntry.getAudio());
+        super.writeCachedEntry(entry, out);
+    }
+
+    @Override
+    protected ArchiveEntry readCachedEntry(DataInput in) throws IOException {
+        IsoArchiveEntry entry = new IsoArchiveEntry(in.readLong(), in.readInt(), in.readLong(), in.readBoolean());
+        ArchiveEntryCache.readAttributes(entry, in);
+        return entry;
+    }
 }
@@ -19,15 +19,22 @@
 package com.mucommander.commons.file.archive.tar;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryCache;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
+import com.mucommander.commons.io.BoundedInputStream;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.StreamUtils;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -39,6 +46,11 @@ import java.io.InputStream;
  * <p>The actual decompression work is performed by the <code>Apache Commons Compress</code> library under the terms of
  * the Apache Software License.</p>
  *
+ * <p>The offset of each entry's data is recorded while the entries are listed, so that an entry can later be read
+ * without scanning the archive from the beginning: the data is read directly from there if the underlying file has
+ * random access, otherwise the preceding bytes are skipped, which is cheaper than parsing them (and very cheap when
+ * the underlying stream can seek, such as multi-block XZ streams).</p>
+ *
  * @see com.mucommander.commons.file.archive.tar.TarFormatProvider
  * @author Maxence Bernard
  */
@@ -90,6 +102,9 @@ public class TarArchiveFile extends AbstractROArchiveFile {
             // This is not the one, look for the entry from the beginning of the archive
         }
 
+        if(entry instanceof TarEntry && ((TarEntry)entry).getDataOffset()>=0)
+            return getEntryInputStream((TarEntry)entry);
+
         TarArchiveInputStream tin = new TarArchiveInputStream(getInputStream());
         TarArchiveEntry tarEntry;
         String targetPath = entry.getPath();
@@ -103,4 +118,54 @@ public class TarArchiveFile extends AbstractROArchiveFile {
 
         throw new IOException("Unknown TAR entry: "+entry.getName());
     }
+
+    /**
+     * Returns <code>true</code>: entries are read from their data offset, which is cached along with them.
+     */
+    @Override
+    protected boolean isEntryCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected void writeCachedEntry(ArchiveEntry entry, DataOutput out) throws IOException {
+        out.writeLong(entry instanceof TarEntry?((TarEntry)entry).getDataOffset():-1);
+        super.writeCachedEntry(entry, out);
+    }
+
+    @Override
+    protected ArchiveEntry readCachedEntry(DataInput in) throws IOException {
+        TarEntry entry = new TarEntry(in.readLong());
+        ArchiveEntryCache.readAttributes(entry, in);
+        return entry;
+    }
+
+    /**
+     * Returns an <code>InputStream</code> to the data of the given entry, going straight to the data's offset.
+     */
+    private InputStream getEntryInputStream(TarEntry entry) throws IOException, UnsupportedFileOperationException {
+        long offset = entry.getDataOffset();
+
+        if(file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+            RandomAccessInputStream rais = file.getRandomAccessInputStream();
+            try {
+                rais.seek(offset);
+            }
+            catch(IOException e) {
+                rais.close();
+                throw e;
+            }
+            return new BoundedInputStream(rais, entry.getSize(), false);
+        }
+
+        InputStream in = getInputStream();
+        try {
+            StreamUtils.skipFully(in, offset);
+        }
+        catch(IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BoundedInputStream(in, entry.getSize(), false);
+    }
 }
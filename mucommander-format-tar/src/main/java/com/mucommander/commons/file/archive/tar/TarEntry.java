@@ -0,0 +1,63 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.tar;
+
+import com.mucommander.commons.file.archive.ArchiveEntry;
+
+/**
+ * An {@link ArchiveEntry} that also records where the entry's data is located within the (uncompressed) TAR stream,
+ * allowing {@link TarArchiveFile} to access it without going through the entries that precede it.
+ */
+class TarEntry extends ArchiveEntry {
+
+    /** Offset of the entry's data in the TAR stream, <code>-1</code> if the data is not stored contiguously */
+    private final long dataOffset;
+
+    /**
+     * Creates a new TarEntry.
+     *
+     * @param path the entry's path
+     * @param directory true if the entry is a directory
+     * @param date the entry's date
+     * @param size the entry's size
+     * @param dataOffset offset of the entry's data in the TAR stream, <code>-1</code> if it is not known
+     */
+    TarEntry(String path, boolean directory, long date, long size, long dataOffset) {
+        super(path, directory, date, size, true);
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Creates a new TarEntry with unspecified attribute values, whose data is located at the given offset.
+     *
+     * @param dataOffset offset of the entry's data in the TAR stream, <code>-1</code> if it is not known
+     */
+    TarEntry(long dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Returns the offset of the entry's data in the TAR stream, <code>-1</code> if the data cannot be read directly
+     * from there, e.g. for sparse files.
+     *
+     * @return the offset of the entry's data in the TAR stream, <code>-1</code> if it is not known
+     */
+    long getDataOffset() {
+        return dataOffset;
+    }
+}
@@ -77,7 +77,10 @@ class TarEntryIterator implements ArchiveEntryIterator {
      * @return an ArchiveEntry whose attributes are fetched from the given {@link TarArchiveEntry}
      */
     private ArchiveEntry createArchiveEntry(TarArchiveEntry tarEntry) {
-        ArchiveEntry entry = new ArchiveEntry(tarEntry.getName(), tarEntry.isDirectory(), tarEntry.getModTime().getTime(), tarEntry.getSize(), true);
+        // The stream is positioned at the beginning of the entry's data, which is stored as-is unless the file is sparse
+        long dataOffset = tarEntry.isSparse() ? -1 : tin.getBytesRead();
+
+        ArchiveEntry entry = new TarEntry(tarEntry.getName(), tarEntry.isDirectory(), tarEntry.getModTime().getTime(), tarEntry.getSize(), dataOffset);
         entry.setPermissions(new SimpleFilePermissions(tarEntry.getMode() & PermissionBits.FULL_PERMISSION_INT));
         entry.setOwner(tarEntry.getUserName());
         entry.setGroup(tarEntry.getGroupName());
@@ -0,0 +1,211 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.tar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.UnsupportedFileOperation;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryIterator;
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+/**
+ * A test case for reading the entries of a {@link TarArchiveFile} from their recorded data offset.
+ */
+public class TarArchiveFileTest {
+
+    /** Sizes of the archive's entries, around the 512-byte TAR record size */
+    private final static int[] ENTRY_SIZES = { 1000, 0, 1, 511, 512, 513, 100000, 7 };
+
+    /** The TAR file the tests read */
+    private static File tarFile;
+
+    /**
+     * A file whose content cannot be accessed randomly, so that entries are read by skipping the bytes that precede
+     * them.
+     */
+    private static class SequentialFile extends ProxyFile {
+        SequentialFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        @UnsupportedFileOperation
+        public RandomAccessInputStream getRandomAccessInputStream() throws UnsupportedFileOperationException {
+            throw new UnsupportedFileOperationException(FileOperation.RANDOM_READ_FILE);
+        }
+    }
+
+    @BeforeClass
+    public static void createTarFile() throws IOException {
+        tarFile = File.createTempFile("TarArchiveFileTest", ".tar");
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new FileOutputStream(tarFile))) {
+            TarArchiveEntry folder = new TarArchiveEntry("folder/");
+            out.putArchiveEntry(folder);
+            out.closeArchiveEntry();
+
+            for (int i = 0; i < ENTRY_SIZES.length; i++) {
+                TarArchiveEntry entry = new TarArchiveEntry("folder/entry" + i);
+                entry.setSize(ENTRY_SIZES[i]);
+                out.putArchiveEntry(entry);
+                byte[] content = new byte[ENTRY_SIZES[i]];
+                for (int j = 0; j < content.length; j++)
+                    content[j] = (byte) (i * 7 + j);
+                out.write(content);
+                out.closeArchiveEntry();
+            }
+        }
+    }
+
+    @AfterClass
+    public static void deleteTarFile() {
+        tarFile.delete();
+    }
+
+    /**
+     * Reads the content of the archive's files sequentially, by path.
+     */
+    private static Map<String, byte[]> readSequentially() throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new FileInputStream(tarFile))) {
+            TarArchiveEntry entry;
+            while ((entry = in.getNextTarEntry()) != null) {
+                if (!entry.isDirectory())
+                    contents.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Lists the entries of the given archive.
+     */
+    private static List<ArchiveEntry> listEntries(TarArchiveFile archive) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        try (ArchiveEntryIterator iterator = archive.getEntryIterator()) {
+            ArchiveEntry entry;
+            while ((entry = iterator.nextEntry()) != null)
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the files of the given archive from their data offset, starting from the middle of the archive, and
+     * compares them with their sequentially read content.
+     */
+    private static void assertEntriesReadFromOffset(TarArchiveFile archive) throws IOException {
+        Map<String, byte[]> contents = readSequentially();
+        List<ArchiveEntry> entries = listEntries(archive);
+        assert entries.size() == ENTRY_SIZES.length + 1;
+
+        List<ArchiveEntry> files = new ArrayList<>();
+        for (ArchiveEntry entry : entries) {
+            assert entry instanceof TarEntry;
+            if (!entry.isDirectory()) {
+                assert ((TarEntry) entry).getDataOffset() > 0 : entry.getPath();
+                files.add(entry);
+            }
+        }
+        assert files.size() == contents.size();
+
+        // Middle entry first, then the ones that follow and precede it
+        int middle = files.size() / 2;
+        List<ArchiveEntry> order = new ArrayList<>(files.subList(middle, files.size()));
+        order.addAll(files.subList(0, middle));
+        for (ArchiveEntry entry : order) {
+            try (InputStream in = archive.getEntryInputStream(entry, null)) {
+                assert Arrays.equals(contents.get(entry.getPath()), in.readAllBytes()) : entry.getPath();
+            }
+        }
+    }
+
+    /**
+     * Asserts that entries are read by seeking to their data when the archive file has random access.
+     */
+    @Test
+    public void testRandomAccess() throws IOException {
+        AbstractFile file = FileFactory.getFile(tarFile.getAbsolutePath());
+        assert file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+        assertEntriesReadFromOffset(new TarArchiveFile(file));
+    }
+
+    /**
+     * Asserts that entries are read by skipping the preceding bytes when the archive file has no random access.
+     */
+    @Test
+    public void testSequentialAccess() throws IOException {
+        AbstractFile file = new SequentialFile(FileFactory.getFile(tarFile.getAbsolutePath()));
+        assert !file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+        assertEntriesReadFromOffset(new TarArchiveFile(file));
+    }
+
+    /**
+     * Asserts that an entry is read from its data offset when the given iterator is positioned on another entry, and
+     * from the iterator's stream when it is positioned on the entry.
+     */
+    @Test
+    public void testIteratorPosition() throws IOException {
+        TarArchiveFile archive = new TarArchiveFile(FileFactory.getFile(tarFile.getAbsolutePath()));
+        Map<String, byte[]> contents = readSequentially();
+        ArchiveEntry last = null;
+        for (ArchiveEntry entry : listEntries(archive)) {
+            if (!entry.isDirectory())
+                last = entry;
+        }
+
+        try (ArchiveEntryIterator iterator = archive.getEntryIterator()) {
+            ArchiveEntry entry;
+            while ((entry = iterator.nextEntry()) != null) {
+                if (entry.isDirectory())
+                    continue;
+
+                if (!entry.equals(last)) {
+                    try (InputStream in = archive.getEntryInputStream(last, iterator)) {
+                        assert Arrays.equals(contents.get(last.getPath()), in.readAllBytes());
+                    }
+                }
+                // Reading another entry leaves the iterator's stream where it was
+                try (InputStream in = archive.getEntryInputStream(entry, iterator)) {
+                    assert Arrays.equals(contents.get(entry.getPath()), in.readAllBytes()) : entry.getPath();
+                }
+            }
+        }
+    }
+}
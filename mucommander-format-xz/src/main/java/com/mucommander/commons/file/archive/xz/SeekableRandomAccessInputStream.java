@@ -0,0 +1,67 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.xz;
+
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+import org.tukaani.xz.SeekableInputStream;
+
+import java.io.IOException;
+
+/**
+ * Exposes a {@link RandomAccessInputStream} as a {@link SeekableInputStream}, the kind of stream
+ * {@link org.tukaani.xz.SeekableXZInputStream} decompresses.
+ */
+class SeekableRandomAccessInputStream extends SeekableInputStream {
+
+    private final RandomAccessInputStream rais;
+
+    SeekableRandomAccessInputStream(RandomAccessInputStream rais) {
+        this.rais = rais;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return rais.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return rais.read(b, off, len);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return rais.getLength();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return rais.getOffset();
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        rais.seek(pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        rais.close();
+    }
+}
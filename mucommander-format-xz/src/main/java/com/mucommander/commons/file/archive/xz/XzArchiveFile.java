@@ -19,12 +19,17 @@
 package com.mucommander.commons.file.archive.xz;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
 import com.mucommander.commons.file.archive.SingleArchiveEntryIterator;
+import com.mucommander.commons.io.RandomAccessInputStream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tukaani.xz.SeekableXZInputStream;
 import org.tukaani.xz.XZInputStream;
 
 import java.io.IOException;
@@ -35,10 +40,16 @@ import java.io.InputStream;
  *
  * <p>The actual decompression work is performed by the {@link org.tukaani.xz.XZInputStream} class.</p>
  *
+ * <p>When the underlying file has random access, the entry is decompressed by a {@link SeekableXZInputStream}
+ * instead, whose <code>skip</code> method seeks to the XZ block that contains the target position rather than
+ * decompressing all the data in between. This makes skipping within files compressed in multiple blocks (as done by
+ * <code>xz -T</code>) cheap, e.g. when reading an entry of a <code>.tar.xz</code> archive.</p>
+ *
  * @see com.mucommander.commons.file.archive.xz.XzFormatProvider
  * @author Giorgos Retsinas
  */
 public class XzArchiveFile extends AbstractROArchiveFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(XzArchiveFile.class);
 
     /**
      * Creates a XzArchiveFile on top of the given file.
@@ -77,6 +88,17 @@ public class XzArchiveFile extends AbstractROArchiveFile {
 
     @Override
     public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
+        if (file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+            RandomAccessInputStream rais = file.getRandomAccessInputStream();
+            try {
+                return new SeekableXZInputStream(new SeekableRandomAccessInputStream(rais));
+            } catch (IOException e) {
+                // The index at the end of the file could not be read (e.g. truncated file), decompress sequentially
+                LOGGER.debug("failed to open seekable XZ stream, falling back to XZInputStream", e);
+                rais.close();
+            }
+        }
+
         return new XZInputStream(getInputStream());
     }
 }
@@ -0,0 +1,166 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.xz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.UnsupportedFileOperation;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.StreamUtils;
+
+/**
+ * A test case for reading the entry of a {@link XzArchiveFile} from the middle of its data.
+ */
+public class XzArchiveFileTest {
+
+    /** Size of the XZ blocks of the tested file */
+    private final static int BLOCK_SIZE = 64 * 1024;
+
+    /** Number of XZ blocks of the tested file */
+    private final static int NB_BLOCKS = 8;
+
+    /** The uncompressed content of the tested file */
+    private static byte[] content;
+
+    /** The XZ file the tests read */
+    private static File xzFile;
+
+    /**
+     * A file whose content cannot be accessed randomly.
+     */
+    private static class SequentialFile extends ProxyFile {
+        SequentialFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        @UnsupportedFileOperation
+        public RandomAccessInputStream getRandomAccessInputStream() throws UnsupportedFileOperationException {
+            throw new UnsupportedFileOperationException(FileOperation.RANDOM_READ_FILE);
+        }
+    }
+
+    /**
+     * Creates a XZ file made of several blocks, like the ones written by <code>xz -T</code>.
+     */
+    @BeforeClass
+    public static void createXzFile() throws IOException {
+        content = new byte[NB_BLOCKS * BLOCK_SIZE + 123];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i * 31 + i / 4099);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (XZOutputStream out = new XZOutputStream(compressed, new LZMA2Options())) {
+            for (int offset = 0; offset < content.length; offset += BLOCK_SIZE) {
+                out.write(content, offset, Math.min(BLOCK_SIZE, content.length - offset));
+                out.endBlock();
+            }
+        }
+
+        xzFile = File.createTempFile("XzArchiveFileTest", ".xz");
+        Files.write(xzFile.toPath(), compressed.toByteArray());
+    }
+
+    @AfterClass
+    public static void deleteXzFile() {
+        xzFile.delete();
+    }
+
+    private static InputStream getEntryInputStream(AbstractFile file) throws IOException {
+        XzArchiveFile archive = new XzArchiveFile(file);
+        ArchiveEntry entry = archive.getEntryIterator().nextEntry();
+        return archive.getEntryInputStream(entry, null);
+    }
+
+    /**
+     * Skips to the given offset of the given stream, reads the given number of bytes and compares them with the
+     * content that was compressed.
+     */
+    private static void assertReadAt(InputStream in, int offset, int length) throws IOException {
+        StreamUtils.skipFully(in, offset);
+        byte[] read = new byte[length];
+        StreamUtils.readFully(in, read);
+        assert Arrays.equals(Arrays.copyOfRange(content, offset, offset + length), read) : offset;
+    }
+
+    /**
+     * Asserts that the entry of a file with random access is decompressed by a seekable stream, which reads data from
+     * the middle of the file like a sequential stream does.
+     */
+    @Test
+    public void testSeekableStream() throws IOException {
+        AbstractFile file = FileFactory.getFile(xzFile.getAbsolutePath());
+        int offset = NB_BLOCKS / 2 * BLOCK_SIZE + 1000;
+        try (InputStream in = getEntryInputStream(file)) {
+            assert in instanceof SeekableXZInputStream;
+            assert ((SeekableXZInputStream) in).getBlockCount() == NB_BLOCKS + 1;
+
+            assertReadAt(in, offset, BLOCK_SIZE);
+            assert ((SeekableXZInputStream) in).position() == offset + BLOCK_SIZE;
+        }
+
+        // The whole content is read as well
+        try (InputStream in = getEntryInputStream(file)) {
+            assert Arrays.equals(content, in.readAllBytes());
+        }
+
+        try (InputStream in = getEntryInputStream(new SequentialFile(file))) {
+            assert in instanceof XZInputStream;
+            assertReadAt(in, offset, BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Asserts that the entry of a truncated file, whose index cannot be read, is decompressed sequentially up to where
+     * the file was truncated.
+     */
+    @Test
+    public void testTruncatedFile() throws IOException {
+        File truncatedFile = File.createTempFile("XzArchiveFileTest", ".xz");
+        try {
+            byte[] compressed = Files.readAllBytes(xzFile.toPath());
+            Files.write(truncatedFile.toPath(), Arrays.copyOf(compressed, compressed.length / 2));
+
+            try (InputStream in = getEntryInputStream(FileFactory.getFile(truncatedFile.getAbsolutePath()))) {
+                assert in instanceof XZInputStream;
+                assertReadAt(in, 1000, BLOCK_SIZE);
+            }
+        } finally {
+            truncatedFile.delete();
+        }
+    }
+}
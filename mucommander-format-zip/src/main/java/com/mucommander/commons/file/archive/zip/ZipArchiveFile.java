@@ -118,6 +118,10 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
         com.mucommander.commons.file.archive.zip.provider.ZipEntry zipEntry = new com.mucommander.commons.file.archive.zip.provider.ZipEntry(path);
         zipEntry.setMethod(ZipConstants.DEFLATED);
         zipEntry.setTime(System.currentTimeMillis());
+        // The size allows small entries not to reserve room for ZIP64 sizes in their local file header
+        long size = entry.getSize();
+        if(!isDirectory && size>=0)
+            zipEntry.setSize(size);
         zipEntry.setUnixMode(SimpleFilePermissions.padPermissions(entry.getPermissions(), isDirectory
                 ? FilePermissions.DEFAULT_DIRECTORY_PERMISSIONS
                         : FilePermissions.DEFAULT_FILE_PERMISSIONS).getIntValue());
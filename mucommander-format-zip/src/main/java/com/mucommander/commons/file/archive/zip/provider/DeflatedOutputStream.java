@@ -89,13 +89,13 @@ public class DeflatedOutputStream extends ZipEntryOutputStream {
     /////////////////////////////////////////
 
     @Override
-    public int getTotalIn() {
-        return deflater.getTotalIn();
+    public long getTotalIn() {
+        return deflater.getBytesRead();
     }
 
     @Override
-    public int getTotalOut() {
-        return deflater.getTotalOut();
+    public long getTotalOut() {
+        return deflater.getBytesWritten();
     }
 
 
@@ -45,6 +45,7 @@ public class ExtraFieldUtils {
         register(AsiExtraField.class);
         register(JarMarker.class);
         register(ExtendedTimestampExtraField.class);
+        register(Zip64ExtraField.class);
     }
 
     /**
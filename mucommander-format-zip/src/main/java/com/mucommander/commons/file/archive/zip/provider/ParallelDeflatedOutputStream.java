@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.io.IOException;
+
+import com.mucommander.commons.io.ParallelBlockOutputStream;
+
+/**
+ * ParallelDeflatedOutputStream compresses data using the DEFLATED compression method with several threads, by sending
+ * it to a {@link ParallelBlockOutputStream} shared by all the entries of a {@link ZipOutputStream}.
+ *
+ * <p>The data is compressed and written to the Zip file after this stream has been closed, so the compressed size is
+ * only known once the entry has been finalized by {@link ZipOutputStream}.</p>
+ *
+ * @see ZipOutputStream#setThreads(int)
+ */
+class ParallelDeflatedOutputStream extends ZipEntryOutputStream {
+
+    /** Number of bytes written so far */
+    private long totalIn;
+
+    /** Number of compressed bytes written by the ParallelBlockOutputStream before the entry's data */
+    long compressedStart;
+
+    /** Number of compressed bytes written by the ParallelBlockOutputStream after the entry's data */
+    long compressedEnd;
+
+
+    /**
+     * Creates a new <code>ParallelDeflatedOutputStream</code> that sends the entry's data to the given
+     * <code>ParallelBlockOutputStream</code> and automatically updates the CRC32 checksum.
+     *
+     * @param out the ParallelBlockOutputStream that compresses the data
+     */
+    ParallelDeflatedOutputStream(ParallelBlockOutputStream out) {
+        super(out, ZipConstants.DEFLATED);
+    }
+
+
+    /////////////////////////////////////////
+    // ZipEntryOutputStream implementation //
+    /////////////////////////////////////////
+
+    @Override
+    public long getTotalIn() {
+        return totalIn;
+    }
+
+    @Override
+    public long getTotalOut() {
+        return compressedEnd - compressedStart;
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        out.write(b, offset, length);
+        totalIn += length;
+
+        crc.update(b, offset, length);
+    }
+}
@@ -36,7 +36,7 @@ import java.io.OutputStream;
 public class StoredOutputStream extends ZipEntryOutputStream {
 
     /** Number of bytes in/out so far */
-    private int storedCount;
+    private long storedCount;
 
 
     /**
@@ -55,12 +55,12 @@ public class StoredOutputStream extends ZipEntryOutputStream {
     /////////////////////////////////////////
 
     @Override
-    public int getTotalIn() {
+    public long getTotalIn() {
         return storedCount;
     }
 
     @Override
-    public int getTotalOut() {
+    public long getTotalOut() {
         return storedCount;
     }
 
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.util.zip.ZipException;
+
+/**
+ * ZIP64 extended information extra field, which holds the values that don't fit in the 32-bit fields of a local or
+ * central file header.
+ *
+ * <p>The field contains, in this order, the uncompressed size, the compressed size and the offset of the local file
+ * header, each of them on eight bytes. In central file headers, a value is only present if the corresponding 32-bit
+ * field is set to {@link ZipConstants#MAX_ZIP32_SIZE}: the meaning of each value depends on the header it is read from,
+ * so values are returned in the order they were found.</p>
+ *
+ * <p>This field is managed by {@link ZipOutputStream} and {@link ZipFile}: it is written according to the sizes and
+ * offset of the entry, and is not part of the extra fields returned by {@link ZipEntry#getLocalFileDataExtra()} and
+ * {@link ZipEntry#getCentralDirectoryExtra()}.</p>
+ */
+public final class Zip64ExtraField implements ZipExtraField {
+
+    /** Header ID of the ZIP64 extended information extra field */
+    public static final ZipShort HEADER_ID = new ZipShort(0x0001);
+
+    /** The eight-byte values, in the order they appear in the field */
+    private long[] values;
+
+
+    /** No-arg constructor, used for parsing */
+    public Zip64ExtraField() {
+        this.values = new long[0];
+    }
+
+    /**
+     * Creates a new field that holds the given values, in this order.
+     *
+     * @param values the values of the field
+     */
+    public Zip64ExtraField(long... values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of values contained by this field.
+     *
+     * @return the number of values contained by this field
+     */
+    public int getNbValues() {
+        return values.length;
+    }
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index of the value, in the order values appear in the field
+     * @return the value at the given index
+     * @throws ZipException if this field contains less values
+     */
+    public long getValue(int index) throws ZipException {
+        if(index>=values.length)
+            throw new ZipException("Invalid ZIP64 extra field");
+
+        return values[index];
+    }
+
+
+    ///////////////////////////////////
+    // ZipExtraField implementation //
+    ///////////////////////////////////
+
+    public ZipShort getHeaderId() {
+        return HEADER_ID;
+    }
+
+    public ZipShort getLocalFileDataLength() {
+        return new ZipShort(8 * values.length);
+    }
+
+    public ZipShort getCentralDirectoryLength() {
+        return getLocalFileDataLength();
+    }
+
+    public byte[] getLocalFileDataData() {
+        byte[] data = new byte[8 * values.length];
+        for(int i=0; i<values.length; i++)
+            ZipEightByteInteger.getBytes(values[i], data, 8 * i);
+        return data;
+    }
+
+    public byte[] getCentralDirectoryData() {
+        return getLocalFileDataData();
+    }
+
+    public void parseFromLocalFileData(byte[] data, int offset, int length) {
+        // A trailing 4-byte disk number may follow the values, it is ignored as split archives are not supported
+        values = new long[length / 8];
+        for(int i=0; i<values.length; i++)
+            values[i] = ZipEightByteInteger.getValue(data, offset + 8 * i);
+    }
+}
@@ -49,10 +49,17 @@ public interface ZipConstants {
     public static final int DEFAULT_DEFLATER_BUFFER_SIZE = 512;
 
     /**
-     * Maximum size of a Zip32 entry or a Zip32 file as a whole, i.e. (2^32)-1.
+     * Maximum size of a Zip32 entry or a Zip32 file as a whole, i.e. (2^32)-1. This is also the value of the 32-bit
+     * size and offset fields whose actual value is stored in ZIP64 extensions.
      * */
     public static final long MAX_ZIP32_SIZE = 4294967295l;
 
+    /**
+     * Value of the 16-bit number of entries fields whose actual value is stored in the ZIP64 end of central directory
+     * record
+     */
+    public static final int ZIP64_MAGIC_SHORT = 0xFFFF;
+
     /**
      * Size of write buffers
      */
@@ -82,4 +89,14 @@ public interface ZipConstants {
      * End of central dir signature
      */
     static final byte[] EOCD_SIG = ZipLong.getBytes(0X06054B50L);
+
+    /**
+     * ZIP64 end of central dir signature
+     */
+    static final byte[] ZIP64_EOCD_SIG = ZipLong.getBytes(0X06064B50L);
+
+    /**
+     * ZIP64 end of central dir locator signature
+     */
+    static final byte[] ZIP64_EOCD_LOC_SIG = ZipLong.getBytes(0X07064B50L);
 }
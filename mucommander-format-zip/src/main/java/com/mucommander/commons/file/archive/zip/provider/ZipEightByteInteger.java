@@ -0,0 +1,72 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+/**
+ * Utility class that converts eight byte integers, as used by the ZIP64 extensions, to and from the little endian byte
+ * order of Zip files. Values are stored in a Java <code>long</code> and must not be negative.
+ *
+ * @see ZipLong
+ */
+public final class ZipEightByteInteger {
+
+    private ZipEightByteInteger() {
+    }
+
+    /**
+     * Converts the given value as eight bytes in little endian byte order. The specified byte array is used to store
+     * the result, starting at offset 0. The returned byte array is the same as the given one.
+     *
+     * @param value the value to convert
+     * @param result the byte array in which to store the value
+     * @return the converted value as a byte array in little endian byte order
+     */
+    public static byte[] getBytes(long value, byte[] result) {
+        return getBytes(value, result, 0);
+    }
+
+    /**
+     * Converts the given value as eight bytes in little endian byte order. The specified byte array is used to store
+     * the result, starting at the given offset. The returned byte array is the same as the given one.
+     *
+     * @param value the value to convert
+     * @param result the byte array in which to store the value
+     * @param off offset at which to start writing the result in the array
+     * @return the converted value as a byte array in little endian byte order
+     */
+    public static byte[] getBytes(long value, byte[] result, int off) {
+        for (int i=0; i<8; i++)
+            result[off+i] = (byte)(value >>> (8*i));
+        return result;
+    }
+
+    /**
+     * Returns the value of the eight bytes starting at the given array offset.
+     *
+     * @param bytes the array of bytes
+     * @param offset the offset to start
+     * @return the corresponding Java long value
+     */
+    public static long getValue(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i=7; i>=0; i--)
+            value = (value << 8) | (bytes[offset+i] & 0xFF);
+        return value;
+    }
+}
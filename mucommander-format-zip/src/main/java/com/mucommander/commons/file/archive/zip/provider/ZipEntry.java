@@ -319,7 +319,7 @@ public class ZipEntry implements Cloneable {
      * @return the data of the local file extra fields
      */
     public byte[] getLocalFileDataExtra() {
-        return ExtraFieldUtils.mergeLocalExtraFields(getExtraFields());
+        return ExtraFieldUtils.mergeLocalExtraFields(getExtraFieldsWithoutZip64());
     }
 
     /**
@@ -329,7 +329,19 @@ public class ZipEntry implements Cloneable {
      * @return the data of the central directory extra fields
      */
     public byte[] getCentralDirectoryExtra() {
-        return ExtraFieldUtils.mergeCentralExtraFields(getExtraFields());
+        return ExtraFieldUtils.mergeCentralExtraFields(getExtraFieldsWithoutZip64());
+    }
+
+    /**
+     * Returns the extra fields of this entry, except the ZIP64 extra field which is written by {@link ZipOutputStream}
+     * according to the sizes and offset of the entry.
+     *
+     * @return the extra fields of this entry, except the ZIP64 extra field
+     */
+    private ZipExtraField[] getExtraFieldsWithoutZip64() {
+        return Stream.of(getExtraFields())
+                .filter(field -> !Zip64ExtraField.HEADER_ID.equals(field.getHeaderId()))
+                .toArray(ZipExtraField[]::new);
     }
 
     /**
@@ -391,10 +403,10 @@ public class ZipEntry implements Cloneable {
      * Sets the uncompressed size of the entry data.
      *
      * @param size the uncompressed size in bytes
-     * @throws IllegalArgumentException if the specified size is less than 0 or greater than 0xFFFFFFFF bytes
+     * @throws IllegalArgumentException if the specified size is less than 0
      */
     public void setSize(long size) {
-        if(!isValidUnsignedInt(size))
+        if(size<0)
 	        throw new IllegalArgumentException("Invalid entry size");
 
 	    this.size = size;
@@ -414,9 +426,10 @@ public class ZipEntry implements Cloneable {
      * Sets the size of the compressed entry data.
      *
      * @param csize the compressed size to set to
+     * @throws IllegalArgumentException if the specified size is less than 0
      */
     public void setCompressedSize(long csize) {
-        if(!isValidUnsignedInt(csize))
+        if(csize<0)
 	        throw new IllegalArgumentException("Invalid entry size");
 
         this.compressedSize = csize;
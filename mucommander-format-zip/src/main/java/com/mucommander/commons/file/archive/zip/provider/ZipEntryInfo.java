@@ -41,6 +41,10 @@ final class ZipEntryInfo {
     /** <code>true</code> if this entry has a data descriptor in the Zip file */
     boolean hasDataDescriptor;
 
+    /** <code>true</code> if the local file header ends with a ZIP64 extra field, either reserved for the sizes to be
+     * written once the entry's data has been written, or announcing a data descriptor with 8-byte sizes */
+    boolean hasLocalZip64Extra;
+
     /** The encoding used for filename and comment fields */
     String encoding;
 
@@ -456,11 +456,11 @@ public class ZipFile implements ZipConstants {
             final ZipEntryInfo entryInfo = new ZipEntryInfo();
             entryInfo.encoding = UTF_8;   // Always use UTF-8 for new entries
             entryInfo.headerOffset = centralDirectoryStart;
+            entry.setEntryInfo(entryInfo);
             entryInfo.dataOffset = entryInfo.headerOffset +
                                      ZipOutputStream.writeLocalFileHeader(entry, raos, entryInfo.encoding, false, zipBuffer);
 
             // Add the new entry to the internal lists
-            entry.setEntryInfo(entryInfo);
             entries.add(entry);
             nameMap.put(entry.getName(), entry);
 
@@ -612,7 +612,7 @@ public class ZipFile implements ZipConstants {
                 calculateDataOffset(currentEntryInfo);
 
             if(currentEntryInfo.headerOffset>0) {
-                StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, 0, (currentEntryInfo.dataOffset- currentEntryInfo.headerOffset)+currentEntry.getCompressedSize());
+                StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, 0, getEntryLength(currentEntry));
                 shift = currentEntryInfo.headerOffset;
 
                 currentEntryInfo.headerOffset = 0;
@@ -634,15 +634,12 @@ public class ZipFile implements ZipConstants {
 
                 // Calculate the offset to the end of the previous entry based on its data offset and compressed size
                 // and taking into account a potential data descriptor
-                long previousCompressedSize = previousEntry.getCompressedSize();
-                long previousEntryEnd = previousEntryInfo.dataOffset+previousCompressedSize;
-                if(previousEntryInfo.hasDataDescriptor)
-                    previousEntryEnd += 16;
+                long previousEntryEnd = previousEntryInfo.headerOffset+getEntryLength(previousEntry);
 
                 // Tests if there is some unused space between the 2 entries
                 if(previousEntryEnd < currentEntryInfo.headerOffset) {
-                    StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, previousEntryInfo.dataOffset+previousCompressedSize, (currentEntryInfo.dataOffset- currentEntryInfo.headerOffset)+currentEntry.getCompressedSize());
-                    shift = currentEntryInfo.headerOffset - (previousEntryInfo.dataOffset+previousCompressedSize);
+                    StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, previousEntryEnd, getEntryLength(currentEntry));
+                    shift = currentEntryInfo.headerOffset - previousEntryEnd;
 
                     currentEntryInfo.headerOffset -= shift;
                     currentEntryInfo.dataOffset -= shift;
@@ -689,10 +686,27 @@ public class ZipFile implements ZipConstants {
     }
 
 
+    /**
+     * Returns the number of bytes the given entry occupies in the Zip file, from the start of its local file header to
+     * the end of its data descriptor if it has one. The entry's data offset must have been calculated.
+     *
+     * @param entry an entry of this Zip file
+     * @return the length of the entry in the Zip file
+     */
+    private static long getEntryLength(ZipEntry entry) {
+        ZipEntryInfo entryInfo = entry.getEntryInfo();
+        long length = entryInfo.dataOffset - entryInfo.headerOffset + entry.getCompressedSize();
+        if(entryInfo.hasDataDescriptor)
+            length += ZipOutputStream.getDataDescriptorLength(entry);
+
+        return length;
+    }
+
     /**
      * Calulcates the data offset of the entry which starts at the given ZipEntryInfo.headerOffset and stores the result
-     * in ZipEntryInfo.dataOffset. After calling this method, the RandomAccessInputStream will be positionned at the
-     * beginning of the filename field.
+     * in ZipEntryInfo.dataOffset. For entries that have a data descriptor, this method also looks for a ZIP64 extra
+     * field in the local file header and stores the result in ZipEntryInfo.hasLocalZip64Extra, as it determines the
+     * length of the data descriptor.
      *
      * @param entryInfo the ZipEntryInfo object in which to store the data offset
      * @throws IOException if an unexpected I/O error occurred
@@ -716,16 +730,40 @@ public class ZipFile implements ZipConstants {
         // Advance the offset of the filename field's length (plus the filename length field: 2 bytes)
         byte[] b = new byte[2];
         rais.readFully(b);
-        dataOffset += 2 + ZipShort.getValue(b);
+        int filenameLength = ZipShort.getValue(b);
+        dataOffset += 2 + filenameLength;
 
         // Advance the offset of the extra field's length (plus the extra field length field: 2 bytes)
         rais.readFully(b);
-        dataOffset += 2 + ZipShort.getValue(b);
+        int extraLength = ZipShort.getValue(b);
+        dataOffset += 2 + extraLength;
+
+        // The length of the data descriptor depends on the presence of a ZIP64 extra field in the local file header
+        if(entryInfo.hasDataDescriptor && extraLength>0) {
+            rais.seek(entryInfo.headerOffset + 30 + filenameLength);
+            byte[] extra = new byte[extraLength];
+            rais.readFully(extra);
+            entryInfo.hasLocalZip64Extra = hasExtraField(extra, Zip64ExtraField.HEADER_ID);
+        }
 
         entryInfo.dataOffset = dataOffset;
     }
 
 
+    /**
+     * Returns <code>true</code> if the given extra field data contains a field with the given header ID.
+     */
+    private static boolean hasExtraField(byte[] extra, ZipShort headerId) {
+        int offset = 0;
+        while(offset+4<=extra.length) {
+            if(ZipShort.getValue(extra, offset)==headerId.getValue())
+                return true;
+            offset += 4 + ZipShort.getValue(extra, offset+2);
+        }
+        return false;
+    }
+
+
     /** Combined length of all constant-size fields of the Central File Header */
     private static final int CFH_LEN =
         /* version made by                 */ 2
@@ -868,6 +906,21 @@ public class ZipFile implements ZipConstants {
             rais.readFully(extra);
             ze.setExtra(extra);
 
+            // Values that don't fit in 32 bits are stored in the ZIP64 extra field, in this order
+            long compressedSize = ze.getCompressedSize();
+            if(ze.getSize()==MAX_ZIP32_SIZE || compressedSize==MAX_ZIP32_SIZE || entryInfo.headerOffset==MAX_ZIP32_SIZE) {
+                Zip64ExtraField zip64Field = getZip64ExtraField(ze);
+                int index = 0;
+                if(ze.getSize()==MAX_ZIP32_SIZE)
+                    ze.setSize(zip64Field.getValue(index++));
+                if(compressedSize==MAX_ZIP32_SIZE)
+                    ze.setCompressedSize(zip64Field.getValue(index++));
+                if(entryInfo.headerOffset==MAX_ZIP32_SIZE)
+                    entryInfo.headerOffset = zip64Field.getValue(index);
+            }
+            // The field is written again if needed when the central directory is rewritten
+            ze.removeExtraField(Zip64ExtraField.HEADER_ID);
+
             // Read comment bytes
             byte[] comment = new byte[commentLen];
             rais.readFully(comment);
@@ -924,6 +977,22 @@ public class ZipFile implements ZipConstants {
         }
     }
 
+    /**
+     * Returns the ZIP64 extra field of the given entry.
+     *
+     * @param ze the entry whose sizes or offset are stored in a ZIP64 extra field
+     * @return the ZIP64 extra field of the given entry
+     * @throws ZipException if the entry has no ZIP64 extra field
+     */
+    private static Zip64ExtraField getZip64ExtraField(ZipEntry ze) throws ZipException {
+        for(ZipExtraField field : ze.getExtraFields()) {
+            if(field instanceof Zip64ExtraField)
+                return (Zip64ExtraField)field;
+        }
+
+        throw new ZipException("Missing ZIP64 extra field for entry "+ze.getName());
+    }
+
     /**
      * Sets the given filename in the ZipEntry.
      *
@@ -1002,6 +1071,30 @@ public class ZipFile implements ZipConstants {
         /* the central dir                 */ + 2
         /* size of the central directory   */ + 4;
 
+    /** Size of the ZIP64 End Of Central Directory locator */
+    private static final int ZIP64_EOCD_LOCATOR_SIZE =
+        /* zip64 end of central dir locator signature */ 4
+        /* number of the disk with the start of the   */
+        /* zip64 end of central directory             */ + 4
+        /* relative offset of the zip64 end of        */
+        /* central directory record                   */ + 8
+        /* total number of disks                      */ + 4;
+
+    private static final int ZIP64_CFD_LOCATOR_OFFSET =
+        /* zip64 end of central dir signature         */ 4
+        /* size of zip64 end of central directory     */
+        /* record                                     */ + 8
+        /* version made by                            */ + 2
+        /* version needed to extract                  */ + 2
+        /* number of this disk                        */ + 4
+        /* number of the disk with the start of the   */
+        /* central directory                          */ + 4
+        /* total number of entries in the central     */
+        /* directory on this disk                     */ + 8
+        /* total number of entries in the central     */
+        /* directory                                  */ + 8
+        /* size of the central directory              */ + 8;
+
     /**
      * Searches for the end of central dir record, parses
      * it and positions the stream at the first central directory
@@ -1049,6 +1142,8 @@ public class ZipFile implements ZipConstants {
                 throw new ZipException("Invalid Zip stream (EOCD signature not found)");
             }
 
+            long eocdOffset = length-bufLen+off;
+
             // Parse the offset to the central directory start
             off += CFD_LOCATOR_OFFSET;
             byte[] cdStart = new byte[4];
@@ -1069,14 +1164,53 @@ public class ZipFile implements ZipConstants {
             // like bit 11 in GPBF.
             comment = getString(commentBytes, defaultEncoding!=null?defaultEncoding:EncodingDetector.detectEncoding(commentBytes));
 
-            // Seek to the start of the central directory
-            rais.seek(ZipLong.getValue(cdStart));
+            // Seek to the start of the central directory, whose offset is found in the ZIP64 end of central directory
+            // record if the archive has one
+            long zip64EocdOffset = getZip64CentralDirectoryEndOffset(eocdOffset);
+            if(zip64EocdOffset!=-1) {
+                byte[] zip64CdStart = new byte[8];
+                rais.seek(zip64EocdOffset+ZIP64_CFD_LOCATOR_OFFSET);
+                rais.readFully(zip64CdStart);
+                rais.seek(ZipEightByteInteger.getValue(zip64CdStart, 0));
+            }
+            else {
+                rais.seek(ZipLong.getValue(cdStart));
+            }
         }
         finally {
             BufferPool.releaseByteArray(buf);
         }
     }
 
+    /**
+     * Looks for a ZIP64 end of central directory locator right before the end of central directory record, and returns
+     * the offset of the ZIP64 end of central directory record it points to.
+     *
+     * @param eocdOffset offset of the end of central directory record
+     * @return the offset of the ZIP64 end of central directory record, -1 if the archive doesn't have one
+     * @throws IOException if an I/O error occurs
+     * @throws ZipException if the locator points to an invalid record
+     */
+    private long getZip64CentralDirectoryEndOffset(long eocdOffset) throws IOException, ZipException {
+        if(eocdOffset<ZIP64_EOCD_LOCATOR_SIZE)
+            return -1;
+
+        byte[] locator = new byte[ZIP64_EOCD_LOCATOR_SIZE];
+        rais.seek(eocdOffset-ZIP64_EOCD_LOCATOR_SIZE);
+        rais.readFully(locator);
+        if(ZipLong.getValue(locator, 0)!=ZipLong.getValue(ZIP64_EOCD_LOC_SIG))
+            return -1;
+
+        long zip64EocdOffset = ZipEightByteInteger.getValue(locator, 8);
+        byte[] signature = new byte[4];
+        rais.seek(zip64EocdOffset);
+        rais.readFully(signature);
+        if(ZipLong.getValue(signature)!=ZipLong.getValue(ZIP64_EOCD_SIG))
+            throw new ZipException("Invalid Zip file (ZIP64 EOCD signature not found)");
+
+        return zip64EocdOffset;
+    }
+
     /**
      * Creates and returns a String created using the given bytes and encoding.
      * If the specified encoding isn't supported, the platform's default encoding will be used.
@@ -19,12 +19,15 @@
 package com.mucommander.commons.file.archive.zip.provider;
 
 import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.DeflateBlockCompressor;
+import com.mucommander.commons.io.ParallelBlockOutputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Vector;
+import java.util.stream.LongStream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipException;
 
@@ -73,6 +76,12 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** Count the bytes written to out */
     private long written = 0;
 
+    /** Number of threads compressing DEFLATED entries */
+    private int nbThreads = 1;
+
+    /** Compresses DEFLATED entries when several threads are used, created along with the first of them */
+    private ParallelBlockOutputStream parallelOut;
+
     /** The encoding to use for filenames and the file comment, UTF-8 by default */
     private String encoding = UTF_8;
 
@@ -97,6 +106,12 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** 20 as ZipShort */
     private static final byte[] SHORT_20 = ZipShort.getBytes(20);
 
+    /** 45 as ZipShort, the version needed to extract entries that use ZIP64 extensions */
+    private static final byte[] SHORT_45 = ZipShort.getBytes(45);
+
+    /** MAX_ZIP32_SIZE as ZipLong */
+    private static final byte[] LONG_MAX_ZIP32_SIZE = ZipLong.getBytes(MAX_ZIP32_SIZE);
+
     /** 2048 as ZipShort */
     private static final byte[] SHORT_2048 = ZipShort.getBytes(2048);
 
@@ -181,6 +196,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      */
     public void finish() throws IOException {
         closeEntry();
+        // Wait until all the entries have been compressed and written
+        if(parallelOut!=null)
+            parallelOut.flush();
+
         long cdOffset = written;
         int nbEntries = entries.size();
         ZipEntry ze;
@@ -203,11 +222,16 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         if (entry == null)
             return;
 
-        finalizeEntryData(entry, zeos, out, !hasRandomAccess, zipBuffer);
-        written += entry.getCompressedSize();
+        if(zeos instanceof ParallelDeflatedOutputStream) {
+            closeParallelEntry(entry, (ParallelDeflatedOutputStream)zeos);
+        }
+        else {
+            finalizeEntryData(entry, zeos, out, !hasRandomAccess, zipBuffer);
+            written += entry.getCompressedSize();
 
-        if(!hasRandomAccess)
-            written += writeDataDescriptor(entry, out, zipBuffer);
+            if(!hasRandomAccess)
+                written += writeDataDescriptor(entry, out, zipBuffer);
+        }
 
         entry = null;
         entryInfo = null;
@@ -216,6 +240,23 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         zeos = null;
     }
 
+    /**
+     * Ends the data of an entry compressed by several threads. The entry is finalized once its data has been compressed
+     * and written, without waiting for it.
+     */
+    private void closeParallelEntry(final ZipEntry ze, final ParallelDeflatedOutputStream pzeos) throws IOException {
+        parallelOut.endStream();
+        parallelOut.runInOrder(() -> {
+            pzeos.compressedEnd = parallelOut.getCompressedBytes();
+
+            finalizeEntryData(ze, pzeos, out, !hasRandomAccess, zipBuffer);
+            written += ze.getCompressedSize();
+
+            if(!hasRandomAccess)
+                written += writeDataDescriptor(ze, out, zipBuffer);
+        });
+    }
+
     /**
      * Writes the size and CRC information of an entry. This method is to be called right after a file entry's data
      * has been written.
@@ -235,11 +276,11 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         long crc = zeos.getCrc();
 
         if (entry.getMethod() == DEFLATED) {
-            ((DeflatedOutputStream)zeos).finishDeflate();
+            if (zeos instanceof DeflatedOutputStream)
+                ((DeflatedOutputStream)zeos).finishDeflate();
 
-            entry.setSize(adjustToLong(zeos.getTotalIn()));
-            long compressedSize = adjustToLong(zeos.getTotalOut());
-            entry.setCompressedSize(compressedSize);
+            entry.setSize(zeos.getTotalIn());
+            entry.setCompressedSize(zeos.getTotalOut());
             entry.setCrc(crc);
         }
         else {      // Method is STORED
@@ -254,13 +295,27 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // the correct CRC and compressed/uncompressed sizes
         if (!useDataDescriptor) {
             RandomAccessOutputStream raos = (RandomAccessOutputStream)out;
+            ZipEntryInfo entryInfo = entry.getEntryInfo();
 
             long save = raos.getOffset();
 
-            raos.seek(entry.getEntryInfo().headerOffset + 14);
+            raos.seek(entryInfo.headerOffset + 14);
             raos.write(ZipLong.getBytes(entry.getCrc(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            if (entryInfo.hasLocalZip64Extra) {
+                // The sizes are stored in the ZIP64 extra field which ends the local file header
+                raos.write(LONG_MAX_ZIP32_SIZE);
+                raos.write(LONG_MAX_ZIP32_SIZE);
+                raos.seek(entryInfo.dataOffset - 16);
+                raos.write(ZipEightByteInteger.getBytes(entry.getSize(), zipBuffer.eightByteBuffer));
+                raos.write(ZipEightByteInteger.getBytes(entry.getCompressedSize(), zipBuffer.eightByteBuffer));
+            }
+            else if (isZip64(entry)) {
+                throw new ZipException("Entry "+entry.getName()+" is larger than 4 GB but was declared smaller");
+            }
+            else {
+                raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
+                raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            }
             raos.seek(save);
         }
     }
@@ -292,6 +347,11 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             entry.setTime(System.currentTimeMillis());
         }
 
+        if(entryMethod == DEFLATED && nbThreads > 1) {
+            putNextParallelEntry(entry);
+            return;
+        }
+
         if(entryMethod == DEFLATED) {
             deflater.reset();
             deflater.setLevel(level);
@@ -302,11 +362,49 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             zeos = new StoredOutputStream(out);
         }
 
+        // Entries that are not compressed by several threads are written after the previous ones
+        if(parallelOut!=null)
+            parallelOut.flush();
+
         entryInfo.headerOffset = written;
         written += writeLocalFileHeader(entry, out, encoding, !hasRandomAccess, zipBuffer);
         entryInfo.dataOffset = written;
     }
 
+    /**
+     * Starts writing the given DEFLATED entry, whose data is compressed by several threads. The local file header is
+     * written once the data of the previous entries has been compressed and written, without waiting for it.
+     */
+    private void putNextParallelEntry(final ZipEntry ze) throws IOException {
+        if(parallelOut==null)
+            parallelOut = new ParallelBlockOutputStream(out, new DeflateBlockCompressor(level), DeflateBlockCompressor.BLOCK_SIZE, nbThreads);
+
+        final ParallelDeflatedOutputStream pzeos = new ParallelDeflatedOutputStream(parallelOut);
+        zeos = pzeos;
+
+        parallelOut.runInOrder(() -> {
+            ZipEntryInfo info = ze.getEntryInfo();
+            info.headerOffset = written;
+            written += writeLocalFileHeader(ze, out, encoding, !hasRandomAccess, zipBuffer);
+            info.dataOffset = written;
+
+            pzeos.compressedStart = parallelOut.getCompressedBytes();
+        });
+    }
+
+    /**
+     * Sets the number of threads that compress DEFLATED entries, 1 by default.
+     *
+     * <p>With more than one thread, the data of the entries is split in blocks that are compressed concurrently, and
+     * entries are written while the next ones are being compressed. The compression level can't be changed once the
+     * first of these entries has been started.</p>
+     *
+     * @param nbThreads the number of compression threads
+     */
+    public void setThreads(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
     /**
      * Sets the file comment.
      *
@@ -358,6 +456,12 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException if an I/O error occurred
      */
     protected static long writeLocalFileHeader(ZipEntry ze, OutputStream out, String encoding, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        // A ZIP64 extra field is added for entries that may not fit in 32-bit fields. When the header is updated once
+        // the data has been written, the sizes are written in it. Otherwise, it tells readers that the data descriptor
+        // holds 8-byte sizes: streaming readers have no other way to know.
+        boolean zip64 = mayNeedZip64(ze);
+        ze.getEntryInfo().hasLocalZip64Extra = zip64;
+
         out.write(LFH_SIG);
         // written += 4;
 
@@ -365,7 +469,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // version needed to extract
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64);
         // nbWritten += 4;
 
         // compression method
@@ -382,7 +486,15 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // this information is not known at this stage so it will be set after the data has been written,
         // either in the data descriptor (if used), or here by seeking (requires random access)
-        out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        if (zip64 && useDataDescriptor) {
+            // The sizes are in the ZIP64 data descriptor
+            out.write(LONG_0);
+            out.write(LONG_MAX_ZIP32_SIZE);
+            out.write(LONG_MAX_ZIP32_SIZE);
+        }
+        else {
+            out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        }
         // written += 12;
 
         // file name length
@@ -392,6 +504,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getLocalFileDataExtra();
+        if (zip64)
+            extra = appendZip64ExtraField(extra, 0, 0);     // sizes are not known yet
         out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
         // written += 2;
 
@@ -411,22 +525,83 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
     /**
      * Writes the data descriptor, using the CRC, compressed and uncompressed size attributes contained in the
-     * given ZipEntry.
-     * The length of the field is returned, it is always 16 bytes.
+     * given ZipEntry. The sizes are written on 8 bytes if the local file header of the entry has a ZIP64 extra field,
+     * which is how readers tell the length of the data descriptor.
+     * The length of the field is returned, see {@link #getDataDescriptorLength(ZipEntry)}.
      *
      * @param ze the entry for which to write the data descriptor
      * @param out the OutputStream where to write the data descriptor to
      * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
-     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 bytes)
+     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 or 24 bytes)
      * @throws IOException if an I/O error occurred
      */
     protected static long writeDataDescriptor(ZipEntry ze, OutputStream out, ZipBuffer zipBuffer) throws IOException {
+        boolean zip64 = ze.getEntryInfo().hasLocalZip64Extra;
+        if (!zip64 && isZip64(ze))
+            throw new ZipException("Entry "+ze.getName()+" is larger than 4 GB but was declared smaller");
+
         out.write(DD_SIG);
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        if (zip64) {
+            out.write(ZipEightByteInteger.getBytes(ze.getCompressedSize(), zipBuffer.eightByteBuffer));
+            out.write(ZipEightByteInteger.getBytes(ze.getSize(), zipBuffer.eightByteBuffer));
+        }
+        else {
+            out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
+            out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        }
+
+        return getDataDescriptorLength(ze);
+    }
+
+    /**
+     * Returns the length of the data descriptor of the given entry: 24 bytes if its local file header has a ZIP64
+     * extra field, 16 bytes otherwise.
+     *
+     * @param ze an entry that has a data descriptor
+     * @return the length of the data descriptor of the given entry
+     */
+    protected static long getDataDescriptorLength(ZipEntry ze) {
+        return ze.getEntryInfo().hasLocalZip64Extra?24:16;
+    }
+
+    /**
+     * Returns <code>true</code> if the compressed or uncompressed size of the given entry doesn't fit in a 32-bit
+     * field.
+     *
+     * @param ze an entry whose sizes are known
+     * @return <code>true</code> if the sizes of the entry require ZIP64 extensions
+     */
+    protected static boolean isZip64(ZipEntry ze) {
+        return ze.getSize()>=MAX_ZIP32_SIZE || ze.getCompressedSize()>=MAX_ZIP32_SIZE;
+    }
+
+    /**
+     * Returns <code>true</code> if the given entry is a file whose size is unknown, or large enough for the entry not
+     * to fit in 32-bit fields once compressed (deflate may slightly expand data that doesn't compress).
+     *
+     * @param ze an entry whose data hasn't been written yet
+     * @return <code>true</code> if the entry may require ZIP64 extensions
+     */
+    private static boolean mayNeedZip64(ZipEntry ze) {
+        long size = ze.getSize();
+        return !ze.isDirectory() && (size==-1 || size>=MAX_ZIP32_SIZE/2);
+    }
 
-        return 16;
+    /**
+     * Returns the given extra field data, followed by a ZIP64 extra field that contains the given values.
+     *
+     * @param extra the data of the other extra fields
+     * @param values the values of the ZIP64 extra field
+     * @return the data of the extra fields, ending with the ZIP64 extra field
+     */
+    private static byte[] appendZip64ExtraField(byte[] extra, long... values) {
+        byte[] zip64Extra = ExtraFieldUtils.mergeLocalExtraFields(new ZipExtraField[] {new Zip64ExtraField(values)});
+
+        byte[] result = new byte[extra.length + zip64Extra.length];
+        System.arraycopy(extra, 0, result, 0, extra.length);
+        System.arraycopy(zip64Extra, 0, result, extra.length, zip64Extra.length);
+        return result;
     }
 
     /**
@@ -458,6 +633,14 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @return the number of bytes that were written, i.e. the size of the central file header 
      */
     protected static long writeCentralFileHeader(ZipEntry ze, OutputStream out, String encoding, long localFileHeaderOffset, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        // Values that don't fit in 32 bits are stored in a ZIP64 extra field, in this order
+        long size = ze.getSize();
+        long compressedSize = ze.getCompressedSize();
+        long[] zip64Values = LongStream.of(size, compressedSize, localFileHeaderOffset)
+                .filter(value -> value>=MAX_ZIP32_SIZE)
+                .toArray();
+        boolean zip64 = zip64Values.length>0;
+
         out.write(CFH_SIG);
         // nbWritten += 4;
 
@@ -465,9 +648,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         writeVersionMadeBy(ze, out, zipBuffer);
         // nbWritten += 2;
 
-        // version needed to extract
+        // version needed to extract, the same as in the local file header if it uses ZIP64 extensions
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        ZipEntryInfo entryInfo = ze.getEntryInfo();
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64 || (entryInfo!=null && entryInfo.hasLocalZip64Extra));
         // nbWritten += 4;
 
         // compression method
@@ -482,8 +666,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // compressed length
         // uncompressed length
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(compressedSize, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(size, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
         // nbWritten += 12;
 
         // file name length
@@ -493,6 +677,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getCentralDirectoryExtra();
+        if (zip64)
+            extra = appendZip64ExtraField(extra, zip64Values);
         out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
         // nbWritten += 2;
 
@@ -518,7 +704,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // nbWritten += 4;
 
         // relative offset of LFH
-        out.write(ZipLong.getBytes(localFileHeaderOffset, zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(localFileHeaderOffset, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
         // nbWritten += 4;
 
         long nbWritten = 46;
@@ -545,10 +731,11 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @param out the OutputStream to write the fields to
      * @param encoding the encoding used for writing the filename and optional comment
      * @param useDataDescriptor true if a data descriptor is used for the entry
+     * @param zip64 true if the header uses ZIP64 extensions
      * @return the number of bytes that were written, i.e. 4
      * @throws IOException if an I/O error occurred
      */
-    protected static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor) throws IOException {
+    protected static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor, boolean zip64) throws IOException {
         boolean isUTF8 = isUTF8(encoding);
 
         // General purpose bit flag :
@@ -556,8 +743,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // Bit 3 signals a data descriptor is used
 
         if (useDataDescriptor) {
-            // requires version 2 as we are going to store length info in the data descriptor
-            out.write(SHORT_20);
+            // requires version 2 as we are going to store length info in the data descriptor, 4.5 for ZIP64
+            out.write(zip64?SHORT_45:SHORT_20);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -567,7 +754,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
         else {
             // Version
-            out.write(SHORT_10);
+            out.write(zip64?SHORT_45:SHORT_10);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -581,7 +768,9 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
 
     /**
-     * Writes the end of the central directory record.
+     * Writes the end of the central directory record, which must directly follow the central directory. If the number
+     * of entries, the length or the offset of the central directory doesn't fit in the record, a ZIP64 end of central
+     * directory record and its locator are written first.
      *
      * @param out the OutputStream to write the end of the central directory record to
      * @param nbEntries number of entries the Zip file contains
@@ -595,19 +784,22 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     protected static void writeCentralDirectoryEnd(OutputStream out, int nbEntries, long cdLength, long cdOffset, String comment, String encoding, ZipBuffer zipBuffer)
             throws IOException {
 
+        if (nbEntries>=ZIP64_MAGIC_SHORT || cdLength>=MAX_ZIP32_SIZE || cdOffset>=MAX_ZIP32_SIZE)
+            writeZip64CentralDirectoryEnd(out, nbEntries, cdLength, cdOffset, zipBuffer);
+
         out.write(EOCD_SIG);
 
         // disk numbers
         out.write(LONG_0);      // 2x SHORT_0
 
         // number of entries
-        ZipShort.getBytes(nbEntries, zipBuffer.shortBuffer);
+        ZipShort.getBytes(Math.min(nbEntries, ZIP64_MAGIC_SHORT), zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
 
         // length and location of CD
-        out.write(ZipLong.getBytes(cdLength, zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(cdOffset, zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(cdLength, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(cdOffset, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
 
         // ZIP file comment
         byte[] data = getBytes(comment, encoding);
@@ -615,6 +807,48 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         out.write(data);
     }
 
+    /**
+     * Writes the ZIP64 end of central directory record and locator, which must directly follow the central directory.
+     *
+     * @param out the OutputStream to write the records to
+     * @param nbEntries number of entries the Zip file contains
+     * @param cdLength length (in bytes) of the central directory record
+     * @param cdOffset offset from the beginning of the Zip file to the start of the central directory record
+     * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
+     * @throws IOException if an I/O error occurred
+     */
+    private static void writeZip64CentralDirectoryEnd(OutputStream out, int nbEntries, long cdLength, long cdOffset, ZipBuffer zipBuffer)
+            throws IOException {
+
+        out.write(ZIP64_EOCD_SIG);
+
+        // size of the remaining record
+        out.write(ZipEightByteInteger.getBytes(44, zipBuffer.eightByteBuffer));
+
+        // version made by, version needed to extract
+        out.write(SHORT_45);
+        out.write(SHORT_45);
+
+        // disk numbers
+        out.write(LONG_0);
+        out.write(LONG_0);
+
+        // number of entries
+        ZipEightByteInteger.getBytes(nbEntries, zipBuffer.eightByteBuffer);
+        out.write(zipBuffer.eightByteBuffer);
+        out.write(zipBuffer.eightByteBuffer);
+
+        // length and location of CD
+        out.write(ZipEightByteInteger.getBytes(cdLength, zipBuffer.eightByteBuffer));
+        out.write(ZipEightByteInteger.getBytes(cdOffset, zipBuffer.eightByteBuffer));
+
+        // Locator: disk number, location of the ZIP64 end of central directory record and total number of disks
+        out.write(ZIP64_EOCD_LOC_SIG);
+        out.write(LONG_0);
+        out.write(ZipEightByteInteger.getBytes(cdOffset + cdLength, zipBuffer.eightByteBuffer));
+        out.write(ZipLong.getBytes(1, zipBuffer.longBuffer));
+    }
+
     /**
      * Retrieve the bytes for the given String in the encoding set for
      * this Stream.
@@ -635,16 +869,6 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
     }
 
-    /**
-     * Returns a long that is the unsigned intepretation of the given (signed) int.
-     *
-     * @param i the value to treat as unsigned int
-     * @return the unsigned int as a long
-     */
-    protected static long adjustToLong(int i) {
-        return i & 0xFFFFFFFFl;
-    }
-
 
     /////////////////////////////////
     // OutputStream implementation //
@@ -706,7 +930,14 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             deflaterBuf = null;
         }
 
-        out.close();
+        if(parallelOut!=null) {
+            // Stops the compression threads and closes the underlying stream
+            parallelOut.close();
+            parallelOut = null;
+        }
+        else {
+            out.close();
+        }
     }
 
     /**
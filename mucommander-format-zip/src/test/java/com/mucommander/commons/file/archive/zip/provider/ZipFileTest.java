@@ -0,0 +1,230 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * A test case for the ZIP64 extensions of {@link ZipFile} and {@link ZipOutputStream}. Archives larger than 4 GB are
+ * not created, the ZIP64 end of central directory being required by the number of entries.
+ */
+public class ZipFileTest {
+
+    /** More entries than the end of central directory record can count */
+    private static final int NB_ENTRIES = 70000;
+
+    private File tempFile;
+
+    @BeforeMethod
+    public void createTempFile() throws IOException {
+        tempFile = File.createTempFile("ZipFileTest", ".zip");
+    }
+
+    @AfterMethod
+    public void deleteTempFile() {
+        tempFile.delete();
+    }
+
+    private static byte[] getContent(int index) {
+        return ("content of entry " + index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private AbstractFile createArchive() throws IOException {
+        AbstractFile file = FileFactory.getFile(tempFile.getAbsolutePath());
+        try (ZipOutputStream zos = new ZipOutputStream(file.getRandomAccessOutputStream())) {
+            for (int i = 0; i < NB_ENTRIES; i++) {
+                zos.putNextEntry(new ZipEntry("entry" + i));
+                zos.write(getContent(i));
+            }
+        }
+        return file;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Asserts that an archive with a ZIP64 end of central directory record is readable by <code>java.util.zip</code>
+     * and by {@link ZipFile}.
+     */
+    @Test
+    public void testZip64CentralDirectoryEnd() throws IOException {
+        AbstractFile file = createArchive();
+
+        try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(tempFile)) {
+            assert zipFile.size() == NB_ENTRIES;
+            java.util.zip.ZipEntry entry = zipFile.getEntry("entry" + (NB_ENTRIES - 1));
+            assert Arrays.equals(getContent(NB_ENTRIES - 1), readFully(zipFile.getInputStream(entry)));
+        }
+
+        ZipFile zipFile = new ZipFile(file);
+        int nbEntries = 0;
+        for (Iterator<ZipEntry> entries = zipFile.getEntries(); entries.hasNext(); entries.next())
+            nbEntries++;
+        assert nbEntries == NB_ENTRIES;
+
+        ZipEntry entry = zipFile.getEntry("entry12345");
+        assert entry.getSize() == getContent(12345).length;
+        assert Arrays.equals(getContent(12345), readFully(zipFile.getInputStream(entry)));
+    }
+
+    /**
+     * Asserts that entries can be added to and deleted from an archive with a ZIP64 end of central directory record.
+     */
+    @Test
+    public void testAddAndDeleteEntry() throws IOException {
+        AbstractFile file = createArchive();
+        byte[] content = new byte[100000];
+        Arrays.fill(content, (byte) 'x');
+
+        // The size of the added entry is unknown, a ZIP64 extra field is reserved in its local file header
+        ZipEntry added = new ZipEntry("added");
+        added.setMethod(ZipConstants.DEFLATED);
+        ZipFile zipFile = new ZipFile(file);
+        try (OutputStream out = zipFile.addEntry(added)) {
+            out.write(content);
+        }
+
+        try (java.util.zip.ZipFile javaZipFile = new java.util.zip.ZipFile(tempFile)) {
+            assert javaZipFile.size() == NB_ENTRIES + 1;
+            java.util.zip.ZipEntry entry = javaZipFile.getEntry("added");
+            assert entry.getSize() == content.length;
+            assert Arrays.equals(content, readFully(javaZipFile.getInputStream(entry)));
+        }
+
+        zipFile = new ZipFile(file);
+        assert Arrays.equals(content, readFully(zipFile.getInputStream(zipFile.getEntry("added"))));
+        zipFile.deleteEntry(zipFile.getEntry("added"));
+        zipFile.deleteEntry(zipFile.getEntry("entry0"));
+
+        try (java.util.zip.ZipFile javaZipFile = new java.util.zip.ZipFile(tempFile)) {
+            assert javaZipFile.size() == NB_ENTRIES - 1;
+            assert javaZipFile.getEntry("added") == null;
+        }
+
+        zipFile = new ZipFile(file);
+        zipFile.defragment();
+        assert new ZipFile(file).getEntry("entry0") == null;
+        try (java.util.zip.ZipFile javaZipFile = new java.util.zip.ZipFile(tempFile)) {
+            java.util.zip.ZipEntry entry = javaZipFile.getEntry("entry1");
+            assert Arrays.equals(getContent(1), readFully(javaZipFile.getInputStream(entry)));
+        }
+    }
+
+    /**
+     * Asserts that entries written with a data descriptor announce ZIP64 sizes with a ZIP64 extra field in their
+     * local file header, and that the resulting archive is readable by a streaming reader and by {@link ZipFile}.
+     */
+    @Test
+    public void testZip64DataDescriptor() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bout)) {
+            for (int i = 0; i < 3; i++) {
+                ZipEntry entry = new ZipEntry("entry" + i);
+                entry.setMethod(ZipConstants.DEFLATED);
+                zos.putNextEntry(entry);
+                zos.write(getContent(i));
+            }
+        }
+        byte[] archive = bout.toByteArray();
+
+        // Version 45 and a ZIP64 extra field with zeroed sizes in the local file header
+        assert ZipShort.getValue(archive, 4) == 45;
+        assert (ZipShort.getValue(archive, 6) & 8) == 8;
+        assert ZipLong.getValue(archive, 18) == ZipConstants.MAX_ZIP32_SIZE;
+        assert ZipLong.getValue(archive, 22) == ZipConstants.MAX_ZIP32_SIZE;
+        int extraOffset = 30 + ZipShort.getValue(archive, 26);
+        assert ZipShort.getValue(archive, extraOffset) == Zip64ExtraField.HEADER_ID.getValue();
+
+        try (ZipArchiveInputStream zis = new ZipArchiveInputStream(new ByteArrayInputStream(archive))) {
+            for (int i = 0; i < 3; i++) {
+                ZipArchiveEntry entry = zis.getNextZipEntry();
+                assert entry != null && entry.getName().equals("entry" + i);
+                assert Arrays.equals(getContent(i), zis.readAllBytes());
+            }
+            assert zis.getNextZipEntry() == null;
+        }
+
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(archive);
+        }
+        ZipFile zipFile = new ZipFile(FileFactory.getFile(tempFile.getAbsolutePath()));
+        ZipEntry entry = zipFile.getEntry("entry2");
+        assert entry.getSize() == getContent(2).length;
+        assert Arrays.equals(getContent(2), readFully(zipFile.getInputStream(entry)));
+
+        // The length of the 24-byte data descriptors is taken into account when defragmenting
+        zipFile.deleteEntry(zipFile.getEntry("entry0"));
+        zipFile = new ZipFile(FileFactory.getFile(tempFile.getAbsolutePath()));
+        zipFile.defragment();
+        try (java.util.zip.ZipFile javaZipFile = new java.util.zip.ZipFile(tempFile)) {
+            assert javaZipFile.size() == 2;
+            assert Arrays.equals(getContent(2), readFully(javaZipFile.getInputStream(javaZipFile.getEntry("entry2"))));
+        }
+    }
+
+    /**
+     * Asserts that sizes and offsets that don't fit in 32 bits are stored in the ZIP64 extra field of the central
+     * file header, in the order defined by the specification.
+     */
+    @Test
+    public void testCentralFileHeader() throws IOException {
+        ZipEntry entry = new ZipEntry("large");
+        entry.setMethod(ZipConstants.DEFLATED);
+        entry.setSize(5_000_000_000L);
+        entry.setCompressedSize(1000);
+        entry.setCrc(0);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ZipOutputStream.writeCentralFileHeader(entry, bout, "UTF-8", 6_000_000_000L, false, new ZipBuffer());
+        byte[] cfh = bout.toByteArray();
+
+        assert ZipShort.getValue(cfh, 6) == 45;
+        assert ZipLong.getValue(cfh, 20) == 1000;
+        assert ZipLong.getValue(cfh, 24) == ZipConstants.MAX_ZIP32_SIZE;
+        assert ZipLong.getValue(cfh, 42) == ZipConstants.MAX_ZIP32_SIZE;
+
+        ZipEntry parsed = new ZipEntry("large");
+        parsed.setExtra(Arrays.copyOfRange(cfh, 46 + 5, cfh.length));
+        Zip64ExtraField field = (Zip64ExtraField) parsed.getExtraFields()[0];
+        assert field.getNbValues() == 2;
+        assert field.getValue(0) == 5_000_000_000L;
+        assert field.getValue(1) == 6_000_000_000L;
+    }
+}
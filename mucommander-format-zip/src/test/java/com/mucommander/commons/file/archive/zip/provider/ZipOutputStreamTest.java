@@ -0,0 +1,123 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipInputStream;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * A test case for the multi-threaded compression of {@link ZipOutputStream}: the archives it creates must be readable
+ * by <code>java.util.zip</code>.
+ */
+public class ZipOutputStreamTest {
+
+    private static final int NB_ENTRIES = 30;
+
+    /**
+     * Returns the content of the entries: small and large ones, compressible or not, some of them empty.
+     */
+    private static byte[][] getContents() {
+        Random random = new Random(0);
+        byte[][] contents = new byte[NB_ENTRIES][];
+        for (int i = 0; i < NB_ENTRIES; i++) {
+            contents[i] = new byte[i % 7 == 0 ? 0 : i % 5 == 0 ? 1000000 + i : 1000 * i];
+            if (i % 3 == 0)
+                random.nextBytes(contents[i]);
+            else
+                for (int j = 0; j < contents[i].length; j++)
+                    contents[i][j] = (byte) ('a' + random.nextInt(4));
+        }
+        return contents;
+    }
+
+    /**
+     * Writes the given entries, some of which are STORED if <code>mixStored</code> is <code>true</code>.
+     */
+    private static void writeEntries(OutputStream out, byte[][] contents, boolean mixStored) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.setThreads(4);
+            for (int i = 0; i < contents.length; i++) {
+                ZipEntry entry = new ZipEntry("entry" + i);
+                entry.setMethod(mixStored && i % 4 == 3 ? ZipConstants.STORED : ZipConstants.DEFLATED);
+                zos.putNextEntry(entry);
+                zos.write(contents[i]);
+            }
+        }
+    }
+
+    private static void assertEntries(InputStream in, byte[][] contents) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(in)) {
+            for (int i = 0; i < contents.length; i++) {
+                java.util.zip.ZipEntry entry = zis.getNextEntry();
+                assert ("entry" + i).equals(entry.getName());
+                assert Arrays.equals(contents[i], zis.readAllBytes()) : entry.getName();
+            }
+            assert zis.getNextEntry() == null;
+        }
+    }
+
+    /**
+     * Tests an archive written to a stream without random access, whose entries have a data descriptor.
+     * <code>ZipInputStream</code> can't read STORED entries with a data descriptor, so all entries are DEFLATED.
+     */
+    @Test
+    public void testDataDescriptor() throws IOException {
+        byte[][] contents = getContents();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        writeEntries(bout, contents, false);
+
+        assertEntries(new ByteArrayInputStream(bout.toByteArray()), contents);
+    }
+
+    /**
+     * Tests an archive written to a random access stream, whose local file headers are updated.
+     */
+    @Test
+    public void testRandomAccess() throws IOException {
+        byte[][] contents = getContents();
+        File tempFile = File.createTempFile("ZipOutputStreamTest", ".zip");
+        try {
+            writeEntries(FileFactory.getFile(tempFile.getAbsolutePath()).getRandomAccessOutputStream(), contents, true);
+
+            try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(tempFile)) {
+                for (int i = 0; i < contents.length; i++) {
+                    java.util.zip.ZipEntry entry = zipFile.getEntry("entry" + i);
+                    assert entry.getSize() == contents[i].length;
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        assert Arrays.equals(contents[i], in.readAllBytes()) : entry.getName();
+                    }
+                }
+            }
+            assertEntries(new FileInputStream(tempFile), contents);
+        } finally {
+            tempFile.delete();
+        }
+    }
+}
@@ -82,6 +82,12 @@ public enum MuPreference {
     SET_DROP_ACTION_TO_COPY(MuPreferences.SET_DROP_ACTION_TO_COPY),
     QUICK_SEARCH_TIMEOUT(MuPreferences.QUICK_SEARCH_TIMEOUT),
     SHOW_PARENT_FOLDER(MuPreferences.SHOW_PARENT_FOLDER),
+    PARALLEL_TRANSFERS(MuPreferences.PARALLEL_TRANSFERS),
+    PARALLEL_TRANSFERS_PER_REALM(MuPreferences.PARALLEL_TRANSFERS_PER_REALM),
+    ARCHIVE_LISTING_CACHE(MuPreferences.ARCHIVE_LISTING_CACHE),
+    ARCHIVE_LISTING_CACHE_SIZE(MuPreferences.ARCHIVE_LISTING_CACHE_SIZE),
+    SEARCH_INDEX_FOLDERS(MuPreferences.SEARCH_INDEX_FOLDERS),
+    SEARCH_INDEX_RESCAN_PERIOD(MuPreferences.SEARCH_INDEX_RESCAN_PERIOD),
     ;
 
     private String label;
@@ -25,6 +25,7 @@ import com.mucommander.commons.conf.XmlConfigurationReader;
 import com.mucommander.commons.conf.XmlConfigurationWriter;
 import com.mucommander.commons.runtime.OsFamily;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
@@ -375,6 +376,48 @@ public class MuPreferences implements MuPreferencesAPI {
     public static final boolean DEFAULT_SMB_USE_EXTENDED_SECURITY = false;
 
 
+    // - Variables used for file transfers -----------------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all file transfer variables. */
+    public static final String TRANSFER_SECTION                   = "transfer";
+    /** Maximum number of files that copy and move jobs transfer concurrently, 1 disables parallel transfers. */
+    public static final String PARALLEL_TRANSFERS                 = TRANSFER_SECTION + '.' + "parallel_transfers";
+    /** Default value for {@link #PARALLEL_TRANSFERS}. */
+    public static final int DEFAULT_PARALLEL_TRANSFERS            = 1;
+    /** Maximum number of concurrent transfers against a single remote realm (server/credentials combo). */
+    public static final String PARALLEL_TRANSFERS_PER_REALM       = TRANSFER_SECTION + '.' + "parallel_transfers_per_realm";
+    /** Default value for {@link #PARALLEL_TRANSFERS_PER_REALM}. */
+    public static final int DEFAULT_PARALLEL_TRANSFERS_PER_REALM  = 3;
+
+
+    // - Variables used for archives -----------------------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all archive variables. */
+    public static final String ARCHIVE_SECTION                    = "archive";
+    /** Whether archive listings are persisted so that archives are not read again when browsed later on. */
+    public static final String ARCHIVE_LISTING_CACHE              = ARCHIVE_SECTION + '.' + "listing_cache";
+    /** Default value for {@link #ARCHIVE_LISTING_CACHE}. */
+    public static final boolean DEFAULT_ARCHIVE_LISTING_CACHE     = false;
+    /** Maximum total size of the persisted archive listings, in megabytes. */
+    public static final String ARCHIVE_LISTING_CACHE_SIZE         = ARCHIVE_SECTION + '.' + "listing_cache_size";
+    /** Default value for {@link #ARCHIVE_LISTING_CACHE_SIZE}. */
+    public static final int DEFAULT_ARCHIVE_LISTING_CACHE_SIZE    = 64;
+
+
+    // - Variables used for search -------------------------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all search variables. */
+    public static final String SEARCH_SECTION                     = "search";
+    /** Local folders whose files are indexed so that searching them does not require listing folders, none by default. */
+    public static final String SEARCH_INDEX_FOLDERS               = SEARCH_SECTION + '.' + "index_folders";
+    /** Separator of the folders in {@link #SEARCH_INDEX_FOLDERS}. */
+    public static final String SEARCH_INDEX_FOLDERS_SEPARATOR     = File.pathSeparator;
+    /** Number of minutes between two rescans of the indexed folders, to catch the changes that were not notified. */
+    public static final String SEARCH_INDEX_RESCAN_PERIOD         = SEARCH_SECTION + '.' + "index_rescan_period";
+    /** Default value for {@link #SEARCH_INDEX_RESCAN_PERIOD}. */
+    public static final int DEFAULT_SEARCH_INDEX_RESCAN_PERIOD    = 60;
+
+
     private static final String ROOT_ELEMENT = "preferences";
 
     // - Instance fields -----------------------------------------------------
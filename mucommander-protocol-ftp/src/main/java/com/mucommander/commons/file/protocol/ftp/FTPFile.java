@@ -36,11 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 /**
@@ -68,6 +72,8 @@ import java.util.Date;
  *  passive mode is assumed.
  *  <li>{@link #ENCODING_PROPERTY_NAME}: specifies the character encoding used by the server. If the property is not 
  *  specified when the connection is created, {@link #DEFAULT_ENCODING} is assumed.
+ *  <li>{@link #FXP_PROPERTY_NAME}: enables server to server transfers, <code>"true"</code> to enable them. If the
+ *  property is not specified, files are copied through the client.
  * </ul>
  * These properties are only used when the FTP connection is created. Setting them after the connection is created
  * will not have any immediate effect, their values will only be used if the connection needs to be re-established.
@@ -119,6 +125,12 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
     /** Default value if {@link #CONNECTION_RETRY_DELAY_PROPERTY_NAME} is not set */
     public final static int DEFAULT_CONNECTION_RETRY_DELAY = 15;
 
+    /** Name of the property that enables server to server (FXP) transfers, which must be enabled on both servers */
+    public final static String FXP_PROPERTY_NAME = "fxp";
+
+    /** Matches the host and port numbers of a reply to the PASV command */
+    private final static Pattern PASSIVE_REPLY_PATTERN = Pattern.compile("(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3})");
+
     /** Date format used by the SITE UTIME command */
     private final static SimpleDateFormat SITE_UTIME_DATE_FORMAT = new SimpleDateFormat("yyyyMMddHHmm");
 
@@ -154,10 +166,6 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
 
     private org.apache.commons.net.ftp.FTPFile getFTPFile(FileURL fileURL) throws IOException {
-        // Todo: this method is very ineffective as it lists the parent directory to retrieve the information about the
-        // requested file to workaround the fact that FTPClient#listFiles follows directories.
-        // => Use the MLST command if supported by the server (use FEAT command to find out if it is supported).
-        // See http://tools.ietf.org/html/draft-ietf-ftpext-mlst-16
         FileURL parentURL = fileURL.getParent();
         LOGGER.trace("fileURL={} parent={}", fileURL, parentURL);
 
@@ -165,13 +173,23 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         if(parentURL==null) {
             return createFTPFile("/", true);
         }
-        else {
+
+        // The parent directory may have just been listed, e.g. while browsing it
+        org.apache.commons.net.ftp.FTPFile files[] = FTPListingCache.getInstance().get(parentURL);
+        if(files==null) {
             FTPConnectionHandler connHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
-            org.apache.commons.net.ftp.FTPFile files[];
             try {
                 // Makes sure the connection is started, if not starts it
                 connHandler.checkConnection();
 
+                // Ask the server for the file's attributes if it supports MLST, rather than listing the parent.
+                // Fall back to listing the parent if the reply is neither the file nor 'file unavailable'.
+                if(connHandler.mlsxSupported) {
+                    org.apache.commons.net.ftp.FTPFile file = getMLSTFile(connHandler, fileURL);
+                    if(file!=null || connHandler.ftpClient.getReplyCode()==FTPReply.FILE_UNAVAILABLE)
+                        return file;
+                }
+
                 // List files contained by this file's parent in order to retrieve the FTPFile instance corresponding
                 // to this file
                 files = listFiles(connHandler, parentURL.getPath());
@@ -181,21 +199,57 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 connHandler.releaseLock();
             }
 
-            // File doesn't exist
-            if(files==null || files.length==0)
-                return null;
-
-            // Find the file in the parent folder's contents
-            int nbFiles = files.length;
-            String wantedName = fileURL.getFilename();
-            for(int i=0; i<nbFiles; i++) {
-                if(files[i].getName().equalsIgnoreCase(wantedName))
-                    return files[i];
-            }
+            FTPListingCache.getInstance().put(parentURL, files);
+        }
 
-            // File doesn't exists
+        // File doesn't exist
+        if(files.length==0)
             return null;
+
+        // Find the file in the parent folder's contents
+        String wantedName = fileURL.getFilename();
+        for(org.apache.commons.net.ftp.FTPFile file : files) {
+            if(file!=null && file.getName().equalsIgnoreCase(wantedName))
+                return file;
         }
+
+        // File doesn't exists
+        return null;
+    }
+
+    /**
+     * Retrieves the attributes of the file at the given location with the MLST command.
+     *
+     * @return the attributes of the file, <code>null</code> if the server replied with an error or with an entry that
+     * could not be parsed
+     * @throws IOException if an error occurred while communicating with the server
+     */
+    private static org.apache.commons.net.ftp.FTPFile getMLSTFile(FTPConnectionHandler connHandler, FileURL fileURL) throws IOException {
+        try {
+            org.apache.commons.net.ftp.FTPFile file = connHandler.ftpClient.mlistEntry(fileURL.getPath());
+            // The name is the path that was given to the server, or the absolute path of the file
+            if(file!=null)
+                file.setName(fileURL.getFilename());
+            return file;
+        }
+        catch(IOException e) {
+            // Checks if the IOException corresponds to a socket error and in that case, closes the connection
+            connHandler.checkSocketException(e);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the period of time during which directory listings are cached to resolve the files they contain.
+     * Listings are cached when a directory is listed, and are removed when one of the files they contain is modified
+     * by an {@link FTPFile}. They will however not reflect the changes made by another process for up to
+     * <code>period</code> milliseconds. A value of <code>0</code> disables the cache.
+     *
+     * @param period time period during which directory listings are cached, in milliseconds
+     */
+    public static void setListingCachingPeriod(long period) {
+        FTPListingCache.getInstance().setTimeToLive(period);
     }
 
 
@@ -211,8 +265,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
     /**
      * Lists and returns the contents of the given path on the server using the given connection handler.
-     * The directory contents is listed by issuing a CWD followed by a LIST so after this method is called, the current
-     * working directory is left to the specified path.
+     * The directory contents is listed by issuing a CWD followed by an MLSD if the server supports it, a LIST otherwise,
+     * so after this method is called, the current working directory is left to the specified path.
      *
      * @param connHandler the connection handler to use for communicating with the server
      * @param absPath absolute path to the directory to list
@@ -246,7 +300,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             // Throw an IOException if server replied with an error
             connHandler.checkServerReply();
 
-            files = connHandler.ftpClient.listFiles();
+            files = connHandler.mlsxSupported ? connHandler.ftpClient.mlistDirectory() : connHandler.ftpClient.listFiles();
             // Throw an IOException if server replied with an error
             connHandler.checkServerReply();
 
@@ -355,6 +409,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             throw e;
         }
         finally {
+            FTPListingCache.getInstance().invalidate(fileURL);
+
             // Release the lock on the ConnectionHandler
             if(connHandler!=null)
                 connHandler.releaseLock();
@@ -542,6 +598,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             throw e;
         }
         finally {
+            FTPListingCache.getInstance().invalidate(fileURL);
+
             // Release the lock on the ConnectionHandler
             connHandler.releaseLock();
         }
@@ -564,7 +622,10 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             connHandler.releaseLock();
         }
 
-        if(files==null || files.length==0)
+        // Spare listing this directory again to resolve its files
+        FTPListingCache.getInstance().put(fileURL, files);
+
+        if(files.length==0)
             return new AbstractFile[] {};
 
         AbstractFile children[] = new AbstractFile[files.length];
@@ -631,6 +692,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             throw e;
         }
         finally {
+            FTPListingCache.getInstance().invalidate(fileURL);
+
             // Release the lock on the ConnectionHandler
             connHandler.releaseLock();
         }
@@ -722,6 +785,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             throw e;
         }
         finally {
+            FTPListingCache.getInstance().invalidate(fileURL);
+
             // Release the lock on the ConnectionHandler
             if(connHandler!=null)
                 connHandler.releaseLock();
@@ -729,14 +794,117 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
     }
 
     /**
-     * Implementation notes: always throws an {@link UnsupportedFileOperationException}.
+     * Implementation notes: the file is copied with a server to server (FXP) transfer if {@link #FXP_PROPERTY_NAME} is
+     * enabled for both files: the source server is put in passive mode and the destination server connects to it, so
+     * that the file's contents do not travel through the client. Many servers refuse such transfers, in which case
+     * an {@link UnsupportedFileOperationException} is thrown and the file has to be copied through the client.
      *
-     * @throws UnsupportedFileOperationException always
+     * @throws UnsupportedFileOperationException if FXP is not enabled, or was refused by the destination server
+     * @throws IOException if the transfer failed
      */
     @Override
-    @UnsupportedFileOperation
-    public void copyRemotelyTo(AbstractFile destFile) throws UnsupportedFileOperationException {
-        throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+    public void copyRemotelyTo(AbstractFile destFile) throws IOException {
+        if(!Boolean.parseBoolean(fileURL.getProperty(FXP_PROPERTY_NAME)) || !Boolean.parseBoolean(destFile.getURL().getProperty(FXP_PROPERTY_NAME)))
+            throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+
+        // Files can be transferred between different servers
+        checkCopyRemotelyPrerequisites(destFile, false, true);
+
+        // Directories are copied recursively by the caller
+        if(isDirectory())
+            throw new IOException();
+
+        FTPFile destFTPFile = destFile.getAncestor(FTPFile.class);
+        FTPConnectionHandler sourceConnHandler = null;
+        FTPConnectionHandler destConnHandler = null;
+        // True while a transfer is pending on the control connections
+        boolean pending = false;
+        try {
+            // Retrieve a ConnectionHandler for each server and lock them
+            sourceConnHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
+            sourceConnHandler.checkConnection();
+            destConnHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(destFTPFile, destFile.getURL(), true);
+            destConnHandler.checkConnection();
+
+            if(!destConnHandler.fxpSupported)
+                throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+
+            if(!FTPReply.isPositiveCompletion(sourceConnHandler.ftpClient.pasv()))
+                throw new IOException(sourceConnHandler.ftpClient.getReplyString());
+            InetSocketAddress address = getPassiveAddress(sourceConnHandler.ftpClient.getReplyString(), sourceConnHandler.ftpClient.getRemoteAddress());
+
+            // Servers that do not allow data connections to a third party refuse the PORT command
+            if(!FTPReply.isPositiveCompletion(destConnHandler.ftpClient.port(address.getAddress(), address.getPort()))) {
+                LOGGER.info("FXP refused by {}: {}", destFile.getURL().getHost(), destConnHandler.ftpClient.getReplyString());
+                destConnHandler.fxpSupported = false;
+                throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+            }
+
+            pending = true;
+            if(!FTPReply.isPositivePreliminary(destConnHandler.ftpClient.stor(destFile.getURL().getPath())))
+                throw new IOException(destConnHandler.ftpClient.getReplyString());
+            if(!FTPReply.isPositivePreliminary(sourceConnHandler.ftpClient.retr(absPath)))
+                throw new IOException(sourceConnHandler.ftpClient.getReplyString());
+
+            // Wait for both servers to report the end of the transfer
+            boolean retrieved = sourceConnHandler.ftpClient.completePendingCommand();
+            boolean stored = destConnHandler.ftpClient.completePendingCommand();
+            pending = false;
+            if(!retrieved || !stored)
+                throw new IOException((retrieved ? destConnHandler : sourceConnHandler).ftpClient.getReplyString());
+        }
+        catch(IOException e) {
+            // Checks if the IOException corresponds to a socket error and in that case, closes the connection
+            if(sourceConnHandler!=null)
+                sourceConnHandler.checkSocketException(e);
+            if(destConnHandler!=null)
+                destConnHandler.checkSocketException(e);
+
+            throw e;
+        }
+        finally {
+            // A transfer that was interrupted leaves replies to be read on the control connections, close them
+            // rather than letting the next commands read those replies
+            if(pending) {
+                sourceConnHandler.closeConnection();
+                destConnHandler.closeConnection();
+            }
+
+            FTPListingCache.getInstance().invalidate(destFile.getURL());
+
+            // Release the locks on the ConnectionHandlers
+            if(sourceConnHandler!=null)
+                sourceConnHandler.releaseLock();
+            if(destConnHandler!=null)
+                destConnHandler.releaseLock();
+        }
+    }
+
+    /**
+     * Returns the address that the server listens to for a data connection, as given in its reply to a PASV command.
+     * Like FTP clients do, the address of the server's control connection is used instead of a private address
+     * that the server returns from behind a NAT.
+     *
+     * @param reply the reply of the server to a PASV command
+     * @param serverAddress the address of the server's control connection
+     * @return the address that the server listens to
+     * @throws IOException if the reply cannot be parsed
+     */
+    static InetSocketAddress getPassiveAddress(String reply, InetAddress serverAddress) throws IOException {
+        Matcher matcher = PASSIVE_REPLY_PATTERN.matcher(reply);
+        if(!matcher.find())
+            throw new IOException("Could not parse passive reply: "+reply);
+
+        byte[] host = new byte[4];
+        for(int i=0; i<4; i++)
+            host[i] = (byte)Integer.parseInt(matcher.group(i+1));
+        int port = (Integer.parseInt(matcher.group(5))<<8) | Integer.parseInt(matcher.group(6));
+
+        InetAddress address = InetAddress.getByAddress(host);
+        if(address.isSiteLocalAddress() && !serverAddress.isSiteLocalAddress())
+            address = serverAddress;
+
+        return new InetSocketAddress(address, port);
     }
     
     /**
@@ -766,6 +934,9 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             throw e;
         }
         finally {
+            FTPListingCache.getInstance().invalidate(fileURL);
+            FTPListingCache.getInstance().invalidate(destFile.getURL());
+
             // Release the lock on the ConnectionHandler
             if(connHandler!=null)
                 connHandler.releaseLock();
@@ -952,9 +1123,6 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             if(isClosed)
                 return;
 
-            // we need to refresh the file after an update
-            // otherwise the displayed size of archive files is incorrect
-            file = getFTPFile(getURL());
             isClosed = true;
 
             try {
@@ -1109,6 +1277,10 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 // Release the lock on the ConnectionHandler
                 connHandler.releaseLock();
             }
+
+            // We need to refresh the file after an update, otherwise the displayed size of archive files is incorrect
+            FTPListingCache.getInstance().invalidate(fileURL);
+            file = getFTPFile(getURL());
         }
     }
 
@@ -1118,7 +1290,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
      */
     private static class FTPConnectionHandler extends ConnectionHandler {
 
-        private FTPClient ftpClient;
+        private MLSxFTPClient ftpClient;
 //        private CustomFTPClient ftpClient;
 
         /** Controls whether passive mode should be used for data transfers (default is true) */
@@ -1139,6 +1311,12 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         /** False if SITE CHMOD command is not supported by the remote server (once tried and failed) */
         private boolean chmodCommandSupported = true;
 
+        /** False if the remote server refuses server to server transfers (once tried and failed) */
+        private boolean fxpSupported = true;
+
+        /** True if the remote server supports the MLSD and MLST commands, as reported by the FEAT command */
+        private boolean mlsxSupported;
+
         /** Controls how ofter should keepAlive() be called by ConnectionPool */
         private final static long KEEP_ALIVE_PERIOD = 60;
 
@@ -1246,7 +1424,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             LOGGER.info("connecting to {}", getRealm().getHost());
 
 //            this.ftpClient = new CustomFTPClient();
-            this.ftpClient = new FTPClient();
+            this.ftpClient = new MLSxFTPClient();
 
             int retriesLeft = nbConnectionRetries;
             int retryDelay = connectionRetryDelay *1000;
@@ -1313,6 +1491,10 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 	                    ftpClient.sendCommand("OPTS UTF8 ON");
 	                }
 
+	                // Use machine-readable listings if the server supports them, the FEAT command is only sent once
+	                mlsxSupported = ftpClient.hasFeature("MLST");
+	                LOGGER.info("mlsxSupported={}", mlsxSupported);
+
 	                break;
 	            }
 	            catch(IOException e) {
@@ -0,0 +1,155 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.ftp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mucommander.commons.file.Credentials;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.PathUtils;
+
+/**
+ * A cache of the directory listings of FTP servers, shared by all the connections to a server. {@link FTPFile} uses
+ * it to resolve a file from the listing of its parent directory, so that a directory that has just been listed
+ * does not have to be listed again for each of its files.
+ *
+ * <p>Listings expire after a period of time, and are removed when a file they contain is modified through
+ * {@link FTPFile}. The cache is bounded and evicts the listings that were least recently used.</p>
+ */
+class FTPListingCache {
+
+    /** Maximum number of directory listings in the cache */
+    final static int MAX_LISTINGS = 100;
+
+    /** Default period of time during which a listing is valid, in milliseconds */
+    final static long DEFAULT_TTL = 10000;
+
+    private final static FTPListingCache instance = new FTPListingCache(MAX_LISTINGS);
+
+    /** Period of time during which a listing is valid, in milliseconds */
+    private long ttl = DEFAULT_TTL;
+
+    /** Listings by key, in access order */
+    private final LinkedHashMap<String, Listing> listings;
+
+    FTPListingCache(int maxListings) {
+        listings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size()>maxListings;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all FTP files.
+     */
+    static FTPListingCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the key of the directory at the given location: the user and server followed by the path.
+     */
+    private static String getKey(FileURL url) {
+        Credentials credentials = url.getCredentials();
+        return (credentials==null ? "" : credentials.getLogin())+"@"+url.getHost()+":"+url.getPort()
+                +PathUtils.removeTrailingSeparator(url.getPath());
+    }
+
+    /**
+     * Sets the period of time during which a listing is valid. <code>0</code> disables the cache.
+     *
+     * @param ttl period of time during which a listing is valid, in milliseconds
+     */
+    synchronized void setTimeToLive(long ttl) {
+        this.ttl = ttl;
+        if(ttl<=0)
+            listings.clear();
+    }
+
+    /**
+     * Returns the listing of the directory at the given location, <code>null</code> if it is not cached or has expired.
+     *
+     * @param url the location of the directory
+     * @return the files contained by the directory, <code>null</code> if the listing is not cached
+     */
+    synchronized org.apache.commons.net.ftp.FTPFile[] get(FileURL url) {
+        String key = getKey(url);
+        Listing listing = listings.get(key);
+        if(listing==null)
+            return null;
+
+        if(System.currentTimeMillis()-listing.time>ttl) {
+            listings.remove(key);
+            return null;
+        }
+
+        return listing.files;
+    }
+
+    /**
+     * Caches the listing of the directory at the given location.
+     *
+     * @param url the location of the directory
+     * @param files the files contained by the directory
+     */
+    synchronized void put(FileURL url, org.apache.commons.net.ftp.FTPFile[] files) {
+        if(ttl>0)
+            listings.put(getKey(url), new Listing(files));
+    }
+
+    /**
+     * Removes the listings that a modification of the file at the given location makes stale: the listing of its
+     * parent directory, and the listings of the file and of the directories under it if it is a directory.
+     *
+     * @param url the location of the file that is modified
+     */
+    synchronized void invalidate(FileURL url) {
+        FileURL parentURL = url.getParent();
+        if(parentURL!=null)
+            listings.remove(getKey(parentURL));
+
+        String key = getKey(url);
+        String prefix = key+'/';
+        Iterator<String> iterator = listings.keySet().iterator();
+        while(iterator.hasNext()) {
+            String listingKey = iterator.next();
+            if(listingKey.equals(key) || listingKey.startsWith(prefix))
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of listings in the cache.
+     */
+    synchronized int size() {
+        return listings.size();
+    }
+
+    private static class Listing {
+        private final org.apache.commons.net.ftp.FTPFile[] files;
+        private final long time = System.currentTimeMillis();
+
+        private Listing(org.apache.commons.net.ftp.FTPFile[] files) {
+            this.files = files;
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class FTPPanel extends ServerPanel implements ActionListener, EncodingLis
     private EncodingSelectBox encodingSelectBox;
     private JCheckBox passiveCheckBox;
     private JCheckBox anonymousCheckBox;
+    private JCheckBox fxpCheckBox;
 	
     private static String lastServer = "";
     private static String lastUsername = "";
@@ -69,6 +70,8 @@ public class FTPPanel extends ServerPanel implements ActionListener, EncodingLis
     /** Passive mode is enabled by default because of firewall restrictions */
     private static boolean passiveMode = true;
     private static boolean anonymousUser;
+    /** FXP is disabled by default as most servers refuse it */
+    private static boolean fxp;
 
 
     FTPPanel(ServerPanelListener listener, JFrame mainFrame) {
@@ -123,7 +126,12 @@ public class FTPPanel extends ServerPanel implements ActionListener, EncodingLis
         // Passive mode checkbox
         passiveCheckBox = new JCheckBox(Translator.get("ftp_connect.passive_mode"), passiveMode);
         passiveCheckBox.addActionListener(this);
-        addRow("", passiveCheckBox, 0);
+        addRow("", passiveCheckBox, 5);
+
+        // FXP checkbox
+        fxpCheckBox = new JCheckBox(Translator.get("ftp_connect.fxp"), fxp);
+        fxpCheckBox.addActionListener(this);
+        addRow("", fxpCheckBox, 0);
     }
 
 	
@@ -169,6 +177,10 @@ public class FTPPanel extends ServerPanel implements ActionListener, EncodingLis
         url.setProperty(FTPFile.NB_CONNECTION_RETRIES_PROPERTY_NAME, ""+nbRetriesSpinner.getValue());
         url.setProperty(FTPFile.CONNECTION_RETRY_DELAY_PROPERTY_NAME, ""+retryDelaySpinner.getValue());
 
+        // Set FXP property if server to server transfers are enabled
+        if(fxp)
+            url.setProperty(FTPFile.FXP_PROPERTY_NAME, "true");
+
         return url;
     }
 
@@ -198,6 +210,9 @@ public class FTPPanel extends ServerPanel implements ActionListener, EncodingLis
         if(source == passiveCheckBox) {
             passiveMode = passiveCheckBox.isSelected();
         }
+        else if(source == fxpCheckBox) {
+            fxp = fxpCheckBox.isSelected();
+        }
         else if (source == anonymousCheckBox) {
             updateValues();
             anonymousUser = anonymousCheckBox.isSelected();
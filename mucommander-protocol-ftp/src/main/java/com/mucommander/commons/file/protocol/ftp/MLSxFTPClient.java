@@ -0,0 +1,134 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.ftp;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Locale;
+
+import org.apache.commons.net.MalformedServerReplyException;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParserImpl;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+
+/**
+ * An FTP client that can list files with the MLSD and MLST commands (RFC 3659). Their replies have a
+ * machine-readable format. The format of LIST replies varies with the server's system type and locale.
+ *
+ * <p>Entries are parsed by {@link MLSxEntryParser}. Some servers use an <code>OS.unix=slink:target</code> type for
+ * symbolic links, which that parser rejects. This class turns such entries into symbolic links. It also drops the
+ * entries for the listed directory and its parent.</p>
+ */
+class MLSxFTPClient extends FTPClient {
+
+    /** Prefix of the operating system specific types, e.g. <code>type=OS.unix=slink:/target</code> */
+    private final static String OS_TYPE = "type=os.";
+
+    /** Prefix of the type of symbolic links, followed by the target of the link */
+    private final static String SYMLINK_TYPE = "type=os.unix=slink:";
+
+    private final static FTPFileEntryParserImpl ENTRY_PARSER = new FTPFileEntryParserImpl() {
+        @Override
+        public FTPFile parseFTPEntry(String entry) {
+            return parseEntry(entry);
+        }
+    };
+
+    /**
+     * Lists the current working directory with the MLSD command.
+     *
+     * @return the files contained by the directory, <code>null</code> if the server replied with an error
+     * @throws IOException if an error occurred while communicating with the server
+     */
+    FTPFile[] mlistDirectory() throws IOException {
+        Socket socket = _openDataConnection_(FTPCmd.MLSD, null);
+        if(socket==null)
+            return null;
+
+        FTPListParseEngine engine = new FTPListParseEngine(ENTRY_PARSER);
+        try {
+            engine.readServerList(socket.getInputStream(), getControlEncoding());
+        }
+        finally {
+            socket.close();
+        }
+        completePendingCommand();
+
+        return engine.getFiles();
+    }
+
+    /**
+     * Returns the attributes of the file at the given path with the MLST command.
+     *
+     * @param pathname the path of the file
+     * @return the attributes of the file, <code>null</code> if the server replied with an error, e.g. if the file does
+     * not exist
+     * @throws IOException if an error occurred while communicating with the server
+     */
+    FTPFile mlistEntry(String pathname) throws IOException {
+        if(!FTPReply.isPositiveCompletion(sendCommand(FTPCmd.MLST, pathname)))
+            return null;
+
+        // The entry is on the second line of the reply, after a space
+        String[] replyStrings = getReplyStrings();
+        if(replyStrings.length<3)
+            throw new MalformedServerReplyException("Invalid server reply (MLST): '"+getReplyString()+"'");
+
+        return parseEntry(replyStrings[1].replaceAll("^\\s+", ""));
+    }
+
+    /**
+     * Parses an entry of an MLSD or MLST reply.
+     *
+     * @param entry the facts of the file followed by a space and its name
+     * @return the attributes of the file, <code>null</code> if the entry is not valid or is the listed directory or
+     * its parent
+     */
+    static FTPFile parseEntry(String entry) {
+        int nameIndex = entry.indexOf(' ');
+        if(nameIndex<0)
+            return MLSxEntryParser.parseEntry(entry);
+
+        String facts = entry.substring(0, nameIndex).toLowerCase(Locale.ENGLISH);
+        if(facts.startsWith("type=cdir;") || facts.contains(";type=cdir;")
+        || facts.startsWith("type=pdir;") || facts.contains(";type=pdir;"))
+            return null;
+
+        int typeIndex = facts.indexOf(OS_TYPE);
+        if(typeIndex<0 || (typeIndex>0 && facts.charAt(typeIndex-1)!=';'))
+            return MLSxEntryParser.parseEntry(entry);
+
+        int typeEnd = facts.indexOf(';', typeIndex);
+        if(typeEnd<0)
+            return null;
+
+        // Parse the entry as a regular file, then turn it into a symbolic link if it is one
+        FTPFile file = MLSxEntryParser.parseEntry(entry.substring(0, typeIndex)+"type=file"+entry.substring(typeEnd));
+        if(file!=null && facts.startsWith(SYMLINK_TYPE, typeIndex) && typeEnd>typeIndex+SYMLINK_TYPE.length()) {
+            file.setType(FTPFile.SYMBOLIC_LINK_TYPE);
+            file.setLink(entry.substring(typeIndex+SYMLINK_TYPE.length(), typeEnd));
+            file.setRawListing(entry);
+        }
+
+        return file;
+    }
+}
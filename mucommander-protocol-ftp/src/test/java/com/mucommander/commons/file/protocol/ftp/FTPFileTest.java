@@ -70,6 +70,7 @@ public class FTPFileTest extends AbstractFileTest {
             FileOperation.LIST_CHILDREN,
             FileOperation.DELETE,
             FileOperation.RENAME,
+            FileOperation.COPY_REMOTELY,
             FileOperation.CHANGE_DATE,
             FileOperation.CHANGE_PERMISSION
         };
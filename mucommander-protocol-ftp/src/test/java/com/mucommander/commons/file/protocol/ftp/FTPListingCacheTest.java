@@ -0,0 +1,86 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.protocol.ftp;
+
+import java.net.MalformedURLException;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.Credentials;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link FTPListingCache}.
+ */
+public class FTPListingCacheTest {
+
+    private static FileURL url(String path) throws MalformedURLException {
+        FileURL url = FileURL.getFileURL("ftp://server" + path);
+        url.setCredentials(new Credentials("user", "password"));
+        return url;
+    }
+
+    private static FTPFile[] listing() {
+        return new FTPFile[] { new FTPFile() };
+    }
+
+    /**
+     * Asserts that listings are found by user, server and path, and that they expire.
+     */
+    @Test
+    public void testGet() throws MalformedURLException, InterruptedException {
+        FTPListingCache cache = new FTPListingCache(2);
+        FTPFile[] files = listing();
+        cache.put(url("/dir/"), files);
+        assert cache.get(url("/dir")) == files;
+
+        FileURL otherUser = url("/dir");
+        otherUser.setCredentials(new Credentials("other", "password"));
+        assert cache.get(otherUser) == null;
+
+        cache.put(url("/a"), listing());
+        cache.put(url("/b"), listing());
+        assert cache.size() == 2;
+        assert cache.get(url("/dir")) == null;
+
+        cache.setTimeToLive(50);
+        Thread.sleep(100);
+        assert cache.get(url("/a")) == null;
+    }
+
+    /**
+     * Asserts that modifying a file removes the listing of its parent, and the listings under it.
+     */
+    @Test
+    public void testInvalidate() throws MalformedURLException {
+        FTPListingCache cache = new FTPListingCache(10);
+        cache.put(url("/"), listing());
+        cache.put(url("/dir"), listing());
+        cache.put(url("/dir/sub"), listing());
+        cache.put(url("/directory"), listing());
+
+        cache.invalidate(url("/dir/sub/file"));
+        assert cache.get(url("/dir/sub")) == null;
+        assert cache.size() == 3;
+
+        cache.invalidate(url("/dir"));
+        assert cache.get(url("/")) == null;
+        assert cache.get(url("/dir")) == null;
+        assert cache.get(url("/directory")) != null;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.protocol.ftp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for the parsing of the replies to the PASV command, which server to server transfers rely on.
+ */
+public class FTPPassiveAddressTest {
+
+    /**
+     * Asserts that the host and port given by the server are returned.
+     */
+    @Test
+    public void testPublicAddress() throws IOException {
+        InetAddress server = InetAddress.getByName("198.51.100.7");
+        InetSocketAddress address = FTPFile.getPassiveAddress("227 Entering Passive Mode (203,0,113,5,195,80).", server);
+        assert address.getAddress().equals(InetAddress.getByName("203.0.113.5"));
+        assert address.getPort() == 195 * 256 + 80;
+    }
+
+    /**
+     * Asserts that a private address given by a server behind a NAT is replaced by the server's public address, and
+     * that a reply that cannot be parsed is rejected.
+     */
+    @Test
+    public void testPrivateAddress() throws IOException {
+        InetAddress server = InetAddress.getByName("198.51.100.7");
+        InetSocketAddress address = FTPFile.getPassiveAddress("227 Entering Passive Mode (192,168,1,2,4,1)", server);
+        assert address.getAddress().equals(server);
+        assert address.getPort() == 1025;
+
+        InetAddress lanServer = InetAddress.getByName("192.168.1.1");
+        assert FTPFile.getPassiveAddress("227 =192,168,1,2,4,1", lanServer).getAddress().equals(InetAddress.getByName("192.168.1.2"));
+
+        try {
+            FTPFile.getPassiveAddress("500 Unknown command", server);
+            assert false;
+        }
+        catch (IOException e) {
+            // The reply holds no address
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.protocol.ftp;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.testng.annotations.Test;
+
+/**
+ * A test case for the parsing of MLSD and MLST entries by {@link MLSxFTPClient}.
+ */
+public class MLSxFTPClientTest {
+
+    /**
+     * Asserts that the facts of files and directories are parsed, and that the entries of the listed directory and
+     * its parent are dropped.
+     */
+    @Test
+    public void testParseEntry() {
+        FTPFile file = MLSxFTPClient.parseEntry("type=file;size=1234;modify=20200102030405;UNIX.mode=0644; a file.txt");
+        assert file.isFile();
+        assert file.getName().equals("a file.txt");
+        assert file.getSize() == 1234;
+        assert file.getTimestamp().getTimeInMillis() == 1577934245000L;
+        assert file.hasPermission(FTPFile.USER_ACCESS, FTPFile.WRITE_PERMISSION);
+        assert !file.hasPermission(FTPFile.GROUP_ACCESS, FTPFile.WRITE_PERMISSION);
+
+        assert MLSxFTPClient.parseEntry("Type=dir;modify=20200102030405; sub").isDirectory();
+        assert MLSxFTPClient.parseEntry("type=cdir;modify=20200102030405; .") == null;
+        assert MLSxFTPClient.parseEntry("modify=20200102030405;type=pdir; ..") == null;
+    }
+
+    /**
+     * Asserts that symbolic links reported with an operating system specific type are parsed.
+     */
+    @Test
+    public void testParseSymlink() {
+        FTPFile link = MLSxFTPClient.parseEntry("modify=20200102030405;type=OS.unix=slink:/home/user/Target;size=9; link");
+        assert link.isSymbolicLink();
+        assert link.getLink().equals("/home/user/Target");
+        assert link.getName().equals("link");
+
+        FTPFile device = MLSxFTPClient.parseEntry("type=OS.unix=chr-123/456;modify=20200102030405; tty");
+        assert device.isFile();
+        assert device.getName().equals("tty");
+    }
+}
@@ -17,7 +17,14 @@
 
 package com.mucommander.commons.file.protocol.gdrive;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
 
 public class Files {
 
@@ -27,6 +34,12 @@ public class Files {
     public final static String PRESENTATION_MIME_TYPE = "application/vnd.google-apps.presentation";
     public final static String DRAWING_MIME_TYPE = "application/vnd.google-apps.drawing";
 
+    /** Fields that are retrieved for each file */
+    public final static String FILE_FIELDS = "id,name,parents,size,modifiedTime,mimeType,trashed";
+
+    /** Maximum number of files per page of a listing, the highest value that Google Drive accepts */
+    private final static int PAGE_SIZE = 1000;
+
     public static boolean isNotFolder(File file) {
         return !isFolder(file);
     }
@@ -36,6 +49,70 @@ public class Files {
     }
 
     public static boolean isNotTrashed(File file) {
-        return !file.getTrashed();
+        return !Boolean.TRUE.equals(file.getTrashed());
+    }
+
+    /**
+     * Lists the files that match the given query, passing them to the given consumer one page at a time as they
+     * are retrieved, until all pages have been retrieved.
+     *
+     * @param drive the connection to Google Drive
+     * @param query the query that the files match
+     * @param pageConsumer receives each page of files
+     * @throws IOException if a page could not be retrieved
+     */
+    public static void list(Drive drive, String query, Consumer<List<File>> pageConsumer) throws IOException {
+        String pageToken = null;
+        do {
+            FileList result = drive.files().list()
+                    .setFields("nextPageToken,files(" + FILE_FIELDS + ")")
+                    .setQ(query)
+                    .setPageSize(PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .execute();
+            List<File> files = result.getFiles();
+            if (files != null && !files.isEmpty())
+                pageConsumer.accept(files);
+            pageToken = result.getNextPageToken();
+        } while (pageToken != null);
+    }
+
+    /**
+     * Returns all the files that match the given query.
+     *
+     * @param drive the connection to Google Drive
+     * @param query the query that the files match
+     * @return the files that match the query
+     * @throws IOException if the files could not be listed
+     */
+    public static List<File> list(Drive drive, String query) throws IOException {
+        List<File> files = new ArrayList<>();
+        list(drive, query, files::addAll);
+        return files;
+    }
+
+    /**
+     * Returns the first file that matches the given query, <code>null</code> if there is none.
+     *
+     * @param drive the connection to Google Drive
+     * @param query the query that the file matches
+     * @return the file, <code>null</code> if there is none
+     * @throws IOException if the file could not be looked up
+     */
+    public static File find(Drive drive, String query) throws IOException {
+        FileList result = drive.files().list()
+                .setFields("files(" + FILE_FIELDS + ")")
+                .setQ(query)
+                .setPageSize(1)
+                .execute();
+        List<File> files = result.getFiles();
+        return files == null || files.isEmpty() ? null : files.get(0);
+    }
+
+    /**
+     * Escapes the given value so that it can be quoted in a query.
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("'", "\\'");
     }
 }
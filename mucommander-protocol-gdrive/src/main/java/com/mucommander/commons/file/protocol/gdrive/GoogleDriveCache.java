@@ -0,0 +1,156 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.api.services.drive.model.File;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.PathUtils;
+
+/**
+ * A cache of the metadata of Google Drive files by path, shared by all {@link GoogleDriveFile} instances, which spares
+ * resolving the id of a file by listing the folders of its path.
+ *
+ * <p>Files are added to the cache when they are listed, created or looked up, and removed when they are deleted,
+ * renamed or reported as changed by {@link GoogleDriveChanges}. The cache is bounded and evicts the files that were
+ * least recently used.</p>
+ */
+public class GoogleDriveCache {
+
+    /** Maximum number of files in the cache */
+    final static int MAX_FILES = 10000;
+
+    private final static GoogleDriveCache instance = new GoogleDriveCache(MAX_FILES);
+
+    /** Files by key, in access order */
+    private final LinkedHashMap<String, File> files;
+
+    /** Keys of the files by id */
+    private final Map<String, String> keysById = new HashMap<>();
+
+    GoogleDriveCache(int maxFiles) {
+        files = new LinkedHashMap<String, File>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+                if (size() <= maxFiles)
+                    return false;
+                keysById.remove(eldest.getValue().getId());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all Google Drive files.
+     *
+     * @return the cache shared by all Google Drive files
+     */
+    public static GoogleDriveCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the key of the file at the given location: the account followed by the path.
+     */
+    private static String getKey(FileURL url) {
+        return url.getHost() + PathUtils.removeTrailingSeparator(url.getPath());
+    }
+
+    /**
+     * Returns the cached metadata of the file at the given location, <code>null</code> if it is not cached.
+     *
+     * @param url the location of the file
+     * @return the metadata of the file, <code>null</code> if it is not cached
+     */
+    public synchronized File get(FileURL url) {
+        return files.get(getKey(url));
+    }
+
+    /**
+     * Returns the cached metadata of the file that has the given id, <code>null</code> if it is not cached.
+     *
+     * @param id the id of the file
+     * @return the metadata of the file, <code>null</code> if it is not cached
+     */
+    public synchronized File getById(String id) {
+        String key = keysById.get(id);
+        return key != null ? files.get(key) : null;
+    }
+
+    /**
+     * Caches the metadata of the file at the given location.
+     *
+     * @param url the location of the file
+     * @param file the metadata of the file
+     */
+    public synchronized void put(FileURL url, File file) {
+        String key = getKey(url);
+        File previous = files.put(key, file);
+        if (previous != null && !previous.getId().equals(file.getId()))
+            keysById.remove(previous.getId());
+        // The file may have been moved or renamed since it was cached
+        String previousKey = keysById.put(file.getId(), key);
+        if (previousKey != null && !previousKey.equals(key))
+            files.remove(previousKey);
+    }
+
+    /**
+     * Removes the file at the given location and the files under it from the cache.
+     *
+     * @param url the location of the file
+     */
+    public synchronized void remove(FileURL url) {
+        remove(getKey(url));
+    }
+
+    /**
+     * Removes the file that has the given id and the files under it from the cache.
+     *
+     * @param id the id of the file
+     */
+    public synchronized void removeById(String id) {
+        String key = keysById.get(id);
+        if (key != null)
+            remove(key);
+    }
+
+    private void remove(String key) {
+        String prefix = key + '/';
+        Iterator<Map.Entry<String, File>> iterator = files.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, File> entry = iterator.next();
+            if (entry.getKey().equals(key) || entry.getKey().startsWith(prefix)) {
+                keysById.remove(entry.getValue().getId());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files in the cache.
+     *
+     * @return the number of files in the cache
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+}
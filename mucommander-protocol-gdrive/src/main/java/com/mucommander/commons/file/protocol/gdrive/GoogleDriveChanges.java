@@ -0,0 +1,152 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+
+/**
+ * Tracks the changes made to the files of a Google Drive account through the changes feed of Google Drive, which
+ * tells whether the content of a folder has changed without listing the folder.
+ *
+ * <p>The page token of the feed is stored on the first poll, and each poll then retrieves the changes made since the
+ * previous one. The folders that contained or now contain a changed file are recorded along with the time at which
+ * the change was noticed, and the changed files are removed from the {@link GoogleDriveCache}.</p>
+ */
+public class GoogleDriveChanges {
+
+    /** Alias of the id of the 'My Drive' folder */
+    final static String ROOT_ALIAS = "root";
+
+    /** Minimum number of milliseconds between two polls of the changes feed */
+    private final static long MIN_POLL_INTERVAL = 2000;
+
+    /** Maximum number of folders whose last change is recorded */
+    private final static int MAX_FOLDERS = 10000;
+
+    /** Maximum number of changes per page of the feed, the highest value that Google Drive accepts */
+    private final static int PAGE_SIZE = 1000;
+
+    private final static Map<String, GoogleDriveChanges> instances = new HashMap<>();
+
+    private final GoogleDriveCache cache;
+
+    /** Token of the page of the feed from which the next poll starts, <code>null</code> until the first poll */
+    private String pageToken;
+
+    /** Actual id of the 'My Drive' folder */
+    private String rootId;
+
+    private long lastPoll;
+
+    /** Times at which changes in folders were noticed, by folder id */
+    private final Map<String, Long> lastChanges = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_FOLDERS;
+        }
+    };
+
+    GoogleDriveChanges(GoogleDriveCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the tracker of the changes made to the files of the given account.
+     *
+     * @param account the account, as the host of the URLs of its files
+     * @return the tracker of the changes made to the files of the account
+     */
+    public static synchronized GoogleDriveChanges getInstance(String account) {
+        return instances.computeIfAbsent(account, key -> new GoogleDriveChanges(GoogleDriveCache.getInstance()));
+    }
+
+    /**
+     * Returns the time at which a change in the given folder was last noticed, polling the changes feed if it has
+     * not been polled recently. Returns 0 if no change has been noticed since the first poll.
+     *
+     * @param drive the connection to Google Drive
+     * @param folderId the id of the folder
+     * @return the time at which a change in the folder was last noticed, 0 if none was noticed
+     * @throws IOException if the changes feed could not be polled
+     */
+    public synchronized long getLastChange(Drive drive, String folderId) throws IOException {
+        if (System.currentTimeMillis() - lastPoll >= MIN_POLL_INTERVAL)
+            poll(drive);
+
+        return lastChanges.getOrDefault(folderId, 0L);
+    }
+
+    /**
+     * Retrieves the changes made since the previous poll.
+     *
+     * @param drive the connection to Google Drive
+     * @throws IOException if the changes feed could not be polled
+     */
+    public synchronized void poll(Drive drive) throws IOException {
+        lastPoll = System.currentTimeMillis();
+        if (pageToken == null) {
+            rootId = drive.files().get(ROOT_ALIAS).setFields("id").execute().getId();
+            pageToken = drive.changes().getStartPageToken().execute().getStartPageToken();
+            return;
+        }
+
+        String token = pageToken;
+        while (token != null) {
+            ChangeList result = drive.changes().list(token)
+                    .setFields("nextPageToken,newStartPageToken,changes(fileId,removed,file(" + Files.FILE_FIELDS + "))")
+                    .setPageSize(PAGE_SIZE)
+                    .execute();
+            if (result.getChanges() != null)
+                result.getChanges().forEach(this::record);
+
+            // The last page holds the token from which the next poll starts
+            if (result.getNewStartPageToken() != null)
+                pageToken = result.getNewStartPageToken();
+            token = result.getNextPageToken();
+        }
+    }
+
+    private void record(Change change) {
+        List<String> folderIds = new ArrayList<>();
+        // The folders that contained the file, as it may have been moved or removed
+        File previous = cache.getById(change.getFileId());
+        if (previous != null && previous.getParents() != null)
+            folderIds.addAll(previous.getParents());
+        if (change.getFile() != null && change.getFile().getParents() != null)
+            folderIds.addAll(change.getFile().getParents());
+
+        long now = System.currentTimeMillis();
+        for (String folderId : folderIds) {
+            lastChanges.put(folderId, now);
+            if (folderId.equals(rootId))
+                lastChanges.put(ROOT_ALIAS, now);
+        }
+
+        cache.removeById(change.getFileId());
+    }
+}
@@ -22,18 +22,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.api.client.http.InputStreamContent;
+import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.About;
 import com.google.api.services.drive.model.File;
-import com.google.api.services.drive.model.FileList;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
@@ -67,6 +67,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
 
     protected GoogleDriveFile(FileURL url) {
         super(url);
+        this.file = GoogleDriveCache.getInstance().get(url);
     }
 
     protected GoogleDriveConnHandler getConnHandler() throws IOException {
@@ -137,14 +138,21 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
         if (parent == null || !parent.exists())
             return false;
 
-        try {
-            Stream.of(parent.ls()).filter(this::equals).findFirst().ifPresent(other -> this.file = other.file);
+        file = GoogleDriveCache.getInstance().get(fileURL);
+        if (file != null)
+            return true;
+
+        try (GoogleDriveConnHandler connHandler = getConnHandler()) {
+            file = parent.findChild(connHandler.getConnection(), getName());
         } catch (IOException e) {
-            LOGGER.warn("failed to list {}", parent);
+            LOGGER.warn("failed to look up {}", this);
             return false;
         }
 
-        return file != null;
+        if (file == null)
+            return false;
+        GoogleDriveCache.getInstance().put(fileURL, file);
+        return true;
     }
 
     @Override
@@ -200,31 +208,40 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
 
     @Override
     public GoogleDriveFile[] ls() throws IOException, UnsupportedFileOperationException {
-        try (GoogleDriveConnHandler connHandler = getConnHandler()) {
-            FileList result = connHandler.getConnection().files().list()
-                    .setFields("files(id,name,parents,size,modifiedTime,mimeType,trashed)")
-                    .setQ(String.format("'%s' in parents", getId()))
-                    .setPageSize(1000)
-                    .execute();
-            List<File> files = result.getFiles();
-            if (files == null || files.isEmpty()) {
-                LOGGER.info("No files found.");
-                return new GoogleDriveFile[0];
-            }
+        return ls(String.format("'%s' in parents and trashed = false", Files.escape(getId())));
+    }
 
-            return files.stream()
-                    .filter(Files::isNotTrashed)
+    /**
+     * Returns the child of this folder that has the given name, <code>null</code> if there is none.
+     */
+    protected File findChild(Drive drive, String name) throws IOException {
+        return Files.find(drive, String.format("'%s' in parents and name = '%s' and trashed = false",
+                Files.escape(getId()), Files.escape(name)));
+    }
+
+    /**
+     * Lists the files that match the given query as children of this folder, retrieving them page by page.
+     */
+    protected GoogleDriveFile[] ls(String query) throws IOException {
+        List<GoogleDriveFile> children = new ArrayList<>();
+        try (GoogleDriveConnHandler connHandler = getConnHandler()) {
+            Files.list(connHandler.getConnection(), query, page -> page.stream()
                     .map(this::toFile)
-                    .toArray(GoogleDriveFile[]::new);
+                    .forEach(children::add));
         }
+        return children.toArray(new GoogleDriveFile[0]);
     }
 
+    /**
+     * Returns the child of this folder that has the given metadata, and caches that metadata.
+     */
     protected GoogleDriveFile toFile(File file) {
         FileURL url = (FileURL) getURL().clone();
         String parentPath = PathUtils.removeTrailingSeparator(url.getPath()) + AbstractFile.DEFAULT_SEPARATOR;
         url.setPath(parentPath + file.getName());
         GoogleDriveFile result = new GoogleDriveFile(url, file);
         result.setParent(this);
+        GoogleDriveCache.getInstance().put(url, file);
         return result;
     }
 
@@ -237,8 +254,9 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
             fileMetadata.setName(filename);
             fileMetadata.setMimeType(Files.FOLDER_MIME_TYPE);
             file = connHandler.getConnection().files().create(fileMetadata)
-                    .setFields("id,name,parents,size,modifiedTime,mimeType")
+                    .setFields(Files.FILE_FIELDS)
                     .execute();
+            GoogleDriveCache.getInstance().put(fileURL, file);
         }
     }
 
@@ -284,8 +302,9 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
                 try {
                     file = connHandler.getConnection().files()
                             .create(fileMetadata, in)
-                            .setFields("id,name,parents,size,modifiedTime,mimeType")
+                            .setFields(Files.FILE_FIELDS)
                             .execute();
+                    GoogleDriveCache.getInstance().put(fileURL, file);
                 } catch (IOException e) {
                     LOGGER.error("failed to copy to Google Drive", e);
                 }
@@ -327,6 +346,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
         try (GoogleDriveConnHandler connHandler = getConnHandler()) {
             connHandler.getConnection().files().delete(file.getId()).execute();
         }
+        GoogleDriveCache.getInstance().remove(fileURL);
     }
 
     @Override
@@ -335,6 +355,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
             connHandler.getConnection().files().update(file.getId(), new File().setName(destFile.getName())).execute();
             file.setName(destFile.getName());
         }
+        GoogleDriveCache.getInstance().remove(fileURL);
     }
 
     @Override
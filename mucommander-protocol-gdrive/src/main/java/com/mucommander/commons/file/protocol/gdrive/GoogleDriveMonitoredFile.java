@@ -21,9 +21,6 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.api.client.util.DateTime;
-import com.google.api.services.drive.model.File;
-import com.google.api.services.drive.model.FileList;
 import com.mucommander.commons.file.ModificationDateBasedMonitoredFile;
 import com.mucommander.commons.file.MonitoredFile;
 
@@ -31,9 +28,8 @@ import com.mucommander.commons.file.MonitoredFile;
  * This class is an implementation of {@link MonitoredFile} that enables
  * to detect changes to a folder in Google Drive. In Google Drive, the modification date
  * of a folder does not change when files are added to or removed from the folder. This
- * mechanism checks the last modification date of the files in this folder and this way
- * can detect when a file is added to the folder or a file in this folder is changed.
- * This mechanism is unable to detect if a file is removed from the folder though.
+ * mechanism polls the changes feed of Google Drive through {@link GoogleDriveChanges} and
+ * this way can detect when a file is added to, changed in or removed from the folder.
  * @author Arik Hadas
  */
 public class GoogleDriveMonitoredFile extends ModificationDateBasedMonitoredFile {
@@ -48,17 +44,10 @@ public class GoogleDriveMonitoredFile extends ModificationDateBasedMonitoredFile
 
     @Override
     public long getDate() {
+        // The changes feed tells whether the content of the folder has changed, without listing it
         try (GoogleDriveConnHandler connHandler = file.getConnHandler()) {
-            FileList result = connHandler.getConnection().files().list()
-                    .setFields("files(id,name,parents,size,modifiedTime,mimeType)")
-                    .setQ(String.format("'%s' in parents", file.getId()))
-                    .execute();
-            return result.getFiles().stream()
-                    .filter(Files::isNotFolder)
-                    .map(File::getModifiedTime)
-                    .map(DateTime::getValue)
-                    .max(Long::compareTo)
-                    .orElse(0l);
+            GoogleDriveChanges changes = GoogleDriveChanges.getInstance(file.getURL().getHost());
+            return Math.max(file.getDate(), changes.getLastChange(connHandler.getConnection(), file.getId()));
         } catch (IOException e) {
             LOGGER.error("failed to retrieve folder modification date", e);
             return 0;
@@ -18,13 +18,12 @@
 package com.mucommander.commons.file.protocol.gdrive;
 
 import java.io.IOException;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.File;
-import com.google.api.services.drive.model.FileList;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.UnsupportedFileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
@@ -45,22 +44,12 @@ public class GoogleDriveTrash extends GoogleDriveFile {
 
     @Override
     public GoogleDriveFile[] ls() throws IOException, UnsupportedFileOperationException {
-        try (GoogleDriveConnHandler connHandler = getConnHandler()) {
-            FileList result = connHandler.getConnection().files().list()
-                    .setFields("files(id,name,parents,size,modifiedTime,mimeType,trashed)")
-                    .setQ("trashed")
-                    .setPageSize(1000)
-                    .execute();
-            List<File> files = result.getFiles();
-            if (files == null || files.isEmpty()) {
-                LOGGER.info("No files found.");
-                return new GoogleDriveFile[0];
-            }
+        return ls("trashed");
+    }
 
-            return files.stream()
-                    .map(this::toFile)
-                    .toArray(GoogleDriveFile[]::new);
-        }
+    @Override
+    protected File findChild(Drive drive, String name) throws IOException {
+        return Files.find(drive, String.format("trashed and name = '%s'", Files.escape(name)));
     }
 
     @Override
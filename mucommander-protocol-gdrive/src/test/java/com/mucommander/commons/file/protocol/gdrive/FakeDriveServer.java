@@ -0,0 +1,104 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that fakes the Google Drive endpoints, answering each path with the JSON that a function
+ * returns for the query parameters of the request.
+ */
+class FakeDriveServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Map<String, Function<Map<String, String>, String>> handlers = new HashMap<>();
+    private final List<Map<String, String>> requests = new ArrayList<>();
+
+    FakeDriveServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Answers requests to the given path with the JSON that the given function returns for their parameters.
+     */
+    void handle(String path, Function<Map<String, String>, String> handler) {
+        handlers.put(path, handler);
+    }
+
+    /**
+     * Returns the parameters of the requests that have been received, along with their path as the
+     * <code>path</code> parameter.
+     */
+    synchronized List<Map<String, String>> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    Drive getDrive() {
+        return new Drive.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+                .setRootUrl("http://localhost:" + server.getAddress().getPort() + "/")
+                .setApplicationName("test")
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int index = param.indexOf('=');
+                params.put(URLDecoder.decode(param.substring(0, index), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(index + 1), StandardCharsets.UTF_8));
+            }
+        }
+        params.put("path", path);
+        synchronized (this) {
+            requests.add(params);
+        }
+
+        Function<Map<String, String>, String> handler = handlers.get(path);
+        byte[] body = (handler != null ? handler.apply(params) : "{}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(handler != null ? 200 : 404, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
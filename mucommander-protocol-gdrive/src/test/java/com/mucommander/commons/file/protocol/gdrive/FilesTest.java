@@ -0,0 +1,76 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * A test case for the listing helpers of {@link Files}, against a {@link FakeDriveServer}.
+ */
+public class FilesTest {
+
+    /**
+     * Asserts that all the pages of a listing are retrieved, and passed on one at a time.
+     */
+    @Test
+    public void testList() throws IOException {
+        try (FakeDriveServer server = new FakeDriveServer()) {
+            server.handle("/drive/v3/files", params -> {
+                String pageToken = params.get("pageToken");
+                if (pageToken == null)
+                    return "{\"nextPageToken\":\"p2\",\"files\":[{\"id\":\"1\",\"name\":\"a\"},{\"id\":\"2\",\"name\":\"b\"}]}";
+                if (pageToken.equals("p2"))
+                    return "{\"nextPageToken\":\"p3\",\"files\":[{\"id\":\"3\",\"name\":\"c\"}]}";
+                return "{\"files\":[{\"id\":\"4\",\"name\":\"d\"}]}";
+            });
+
+            List<Integer> pageSizes = new ArrayList<>();
+            Files.list(server.getDrive(), "'folder' in parents", page -> pageSizes.add(page.size()));
+            assert pageSizes.equals(List.of(2, 1, 1));
+
+            List<File> files = Files.list(server.getDrive(), "'folder' in parents");
+            assert files.stream().map(File::getName).collect(Collectors.toList()).equals(List.of("a", "b", "c", "d"));
+            assert server.getRequests().stream().allMatch(params -> params.get("q").equals("'folder' in parents"));
+        }
+    }
+
+    /**
+     * Asserts that a file is looked up with a single request, and that the values in the query are escaped.
+     */
+    @Test
+    public void testFind() throws IOException {
+        try (FakeDriveServer server = new FakeDriveServer()) {
+            server.handle("/drive/v3/files", params -> params.get("q").contains("missing") ? "{\"files\":[]}"
+                    : "{\"files\":[{\"id\":\"1\",\"name\":\"it's\"}]}");
+
+            String query = String.format("'root' in parents and name = '%s'", Files.escape("it's"));
+            assert query.equals("'root' in parents and name = 'it\\'s'");
+            assert Files.find(server.getDrive(), query).getId().equals("1");
+            assert Files.find(server.getDrive(), "name = 'missing'") == null;
+            assert server.getRequests().size() == 2;
+            assert server.getRequests().get(0).get("pageSize").equals("1");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.net.MalformedURLException;
+
+import org.testng.annotations.Test;
+
+import com.google.api.services.drive.model.File;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link GoogleDriveCache}.
+ */
+public class GoogleDriveCacheTest {
+
+    private static FileURL url(String path) throws MalformedURLException {
+        return FileURL.getFileURL("gdrive://account" + path);
+    }
+
+    private static File file(String id) {
+        return new File().setId(id);
+    }
+
+    /**
+     * Asserts that files are found by path and by id, and that the least recently used ones are evicted.
+     */
+    @Test
+    public void testGet() throws MalformedURLException {
+        GoogleDriveCache cache = new GoogleDriveCache(2);
+        cache.put(url("/My Drive/a"), file("a"));
+        cache.put(url("/My Drive/b/"), file("b"));
+        assert cache.get(url("/My Drive/a/")).getId().equals("a");
+        assert cache.get(url("/My Drive/b")).getId().equals("b");
+        assert cache.getById("a") != null;
+        assert cache.get(url("/My Drive/c")) == null;
+
+        cache.get(url("/My Drive/a"));
+        cache.put(url("/My Drive/c"), file("c"));
+        assert cache.size() == 2;
+        assert cache.get(url("/My Drive/b")) == null;
+        assert cache.getById("b") == null;
+        assert cache.get(url("/My Drive/a")) != null;
+    }
+
+    /**
+     * Asserts that removing a folder removes the files under it, and that a moved file is found at its new path only.
+     */
+    @Test
+    public void testRemove() throws MalformedURLException {
+        GoogleDriveCache cache = new GoogleDriveCache(10);
+        cache.put(url("/My Drive/dir"), file("dir"));
+        cache.put(url("/My Drive/dir/a"), file("a"));
+        cache.put(url("/My Drive/dir/sub/b"), file("b"));
+        cache.put(url("/My Drive/directory"), file("directory"));
+
+        cache.removeById("dir");
+        assert cache.size() == 1;
+        assert cache.getById("b") == null;
+        assert cache.get(url("/My Drive/directory")) != null;
+
+        cache.put(url("/My Drive/directory/a"), file("a"));
+        cache.put(url("/My Drive/a"), file("a"));
+        assert cache.get(url("/My Drive/directory/a")) == null;
+        cache.remove(url("/My Drive/a"));
+        assert cache.getById("a") == null;
+        assert cache.size() == 1;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * A test case for {@link GoogleDriveChanges}, against a {@link FakeDriveServer}.
+ */
+public class GoogleDriveChangesTest {
+
+    /**
+     * Asserts that the changes made since the stored page token are retrieved page by page, that the folders they
+     * affect are recorded and that the changed files are removed from the cache.
+     */
+    @Test
+    public void testPoll() throws IOException {
+        try (FakeDriveServer server = new FakeDriveServer()) {
+            server.handle("/drive/v3/files/root", params -> "{\"id\":\"rootId\"}");
+            server.handle("/drive/v3/changes/startPageToken", params -> "{\"startPageToken\":\"1\"}");
+            server.handle("/drive/v3/changes", params -> {
+                switch (params.get("pageToken")) {
+                case "1":
+                    return "{\"nextPageToken\":\"2\",\"changes\":[{\"fileId\":\"a\",\"file\":{\"id\":\"a\",\"parents\":[\"rootId\"]}}]}";
+                case "2":
+                    return "{\"newStartPageToken\":\"3\",\"changes\":[{\"fileId\":\"b\",\"removed\":true}]}";
+                default:
+                    return "{\"newStartPageToken\":\"3\",\"changes\":[]}";
+                }
+            });
+
+            GoogleDriveCache cache = new GoogleDriveCache(10);
+            cache.put(FileURL.getFileURL("gdrive://account/My Drive/dir/b"),
+                    new File().setId("b").setParents(Collections.singletonList("dir")));
+            GoogleDriveChanges changes = new GoogleDriveChanges(cache);
+            Drive drive = server.getDrive();
+
+            // The first poll only stores the page token
+            changes.poll(drive);
+            assert changes.getLastChange(drive, "dir") == 0;
+            assert cache.size() == 1;
+
+            long before = System.currentTimeMillis();
+            changes.poll(drive);
+            assert changes.getLastChange(drive, "dir") >= before;
+            assert changes.getLastChange(drive, "rootId") >= before;
+            assert changes.getLastChange(drive, GoogleDriveChanges.ROOT_ALIAS) >= before;
+            assert changes.getLastChange(drive, "other") == 0;
+            assert cache.size() == 0;
+
+            // The next poll starts from the token of the last page
+            changes.poll(drive);
+            assert server.getRequests().stream()
+                    .filter(params -> params.get("path").equals("/drive/v3/changes"))
+                    .map(params -> params.get("pageToken"))
+                    .reduce((first, second) -> second)
+                    .get().equals("3");
+        }
+    }
+}
@@ -62,6 +62,15 @@ public abstract class S3File extends ProtocolFile {
     public static String DISABLE_DNS_BUCKETS = "dnsBuckets";
     public static String SECUTRE_HTTP = "secureHttp";
     public static String DEFAULT_BUCKET_LOCATION = "defaultBucketLocation";
+    /** Size in megabytes of the parts of multipart uploads and of the ranges of parallel downloads */
+    public static String PART_SIZE = "partSize";
+    /** Number of parts that are uploaded, or ranges that are downloaded, concurrently */
+    public static String TRANSFER_THREADS = "transferThreads";
+
+    /** Default value of the {@link #PART_SIZE} property */
+    public final static int DEFAULT_PART_SIZE = 16;
+    /** Default value of the {@link #TRANSFER_THREADS} property */
+    public final static int DEFAULT_TRANSFER_THREADS = 4;
 
     protected S3File(FileURL url, S3Service service) {
         super(url);
@@ -83,6 +92,27 @@ public abstract class S3File extends ProtocolFile {
         return new IOException(e);
     }
 
+    /**
+     * Returns the value of the given integer property of this file's URL, or the given default value if the property
+     * is not set or is not a valid integer.
+     *
+     * @param name name of the property
+     * @param defaultValue value returned if the property is not set or is not valid
+     * @return the value of the property
+     */
+    protected int getIntProperty(String name, int defaultValue) {
+        String value = fileURL.getProperty(name);
+        if(value==null)
+            return defaultValue;
+
+        try {
+            return Integer.parseInt(value);
+        }
+        catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     protected static void handleAuthException(ServiceException e, FileURL fileURL) throws AuthException {
         int code = e.getResponseCode();
         if(code==401 || code==403)
@@ -18,13 +18,27 @@
 
 package com.mucommander.commons.file.protocol.s3;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.ServiceException;
+import org.jets3t.service.model.MultipartPart;
+import org.jets3t.service.model.MultipartUpload;
 import org.jets3t.service.model.StorageObject;
 import org.jets3t.service.model.StorageOwner;
 import org.slf4j.Logger;
@@ -33,7 +47,6 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AuthException;
 import com.mucommander.commons.file.FileAttributes;
-import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.FilePermissions;
 import com.mucommander.commons.file.FileURL;
@@ -41,9 +54,9 @@ import com.mucommander.commons.file.SimpleFilePermissions;
 import com.mucommander.commons.file.SyncedFileAttributes;
 import com.mucommander.commons.file.UnsupportedFileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
-import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.FileTransferError;
 import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.StreamUtils;
 
@@ -61,6 +74,15 @@ public class S3Object extends S3File {
     /** Maximum size of an S3 object (5GB) */
     private final static long MAX_OBJECT_SIZE = 5368709120l;
 
+    /** Minimum size of the parts of a multipart upload, except for the last one (5MB) */
+    private final static int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** Maximum size of the parts of a multipart upload, bound by the size of a byte array (1GB) */
+    private final static int MAX_PART_SIZE = 1024 * 1024 * 1024;
+
+    /** Maximum number of parts of a multipart upload */
+    private final static int MAX_PARTS = 10000;
+
     // TODO: add support for ACL ? (would cost an extra request per object)
     /** Default permissions for S3 objects */
     private final static FilePermissions DEFAULT_PERMISSIONS = new SimpleFilePermissions(384);   // rw-------
@@ -91,6 +113,91 @@ public class S3Object extends S3File {
         return wantTrailingSeparator?addTrailingSeparator(objectKey):removeTrailingSeparator(objectKey);
     }
 
+    /**
+     * Returns the size of the parts in which an object of the given length is uploaded, large enough for the object
+     * not to exceed {@link #MAX_PARTS} parts.
+     *
+     * @param objectLength length of the object, -1 if unknown
+     * @return the size of the parts of the object
+     */
+    private int getPartSize(long objectLength) {
+        long partSize = (long)getIntProperty(PART_SIZE, DEFAULT_PART_SIZE) * 1024 * 1024;
+        if(objectLength>0)
+            partSize = Math.max(partSize, (objectLength+MAX_PARTS-1)/MAX_PARTS);
+
+        return (int)Math.min(MAX_PART_SIZE, Math.max(MIN_PART_SIZE, partSize));
+    }
+
+    private int getTransferThreads() {
+        return Math.max(1, getIntProperty(TRANSFER_THREADS, DEFAULT_TRANSFER_THREADS));
+    }
+
+    /**
+     * Creates an executor of the given number of daemon threads, for transferring the parts of this object.
+     */
+    private ExecutorService createExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "S3 transfer " + getObjectKey());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a stream that reads the given range of this object by performing a 'GET Object' request.
+     *
+     * @param start offset of the first byte of the range
+     * @param end offset of the last byte of the range, inclusive
+     * @return a stream that reads the range
+     * @throws IOException if the request failed
+     */
+    private InputStream getRangeInputStream(long start, long end) throws IOException {
+        try {
+            return service.getObject(bucketName, getObjectKey(false), null, null, null, null, start, end).getDataInputStream();
+        }
+        catch(ServiceException e) {
+            throw getIOException(e);
+        }
+    }
+
+    /**
+     * Reads the range of this object that starts at the given offset into the given array, until the array is full or
+     * the end of the object is reached.
+     *
+     * @param start offset of the first byte of the range
+     * @param data the array into which the range is read
+     * @param length the length of the object
+     * @return the number of bytes read, less than the length of the array only if the end of the object was reached
+     * @throws IOException if the range could not be read entirely
+     */
+    private int readRange(long start, byte[] data, long length) throws IOException {
+        // S3 rejects ranges that start past the end of the object
+        int rangeLength = (int)Math.min(data.length, Math.max(0, length-start));
+        if(rangeLength==0)
+            return 0;
+
+        try(InputStream in = getRangeInputStream(start, start+rangeLength-1)) {
+            StreamUtils.readFully(in, data, 0, rangeLength);
+        }
+        return rangeLength;
+    }
+
+    /**
+     * Reads the given stream until the given array is full or the end of the stream is reached.
+     *
+     * @return the number of bytes that have been read, less than the length of the array only if the end of the
+     * stream has been reached
+     * @throws FileTransferException if the stream could not be read
+     */
+    private static int readPart(InputStream in, byte[] part) throws FileTransferException {
+        try {
+            return StreamUtils.readUpTo(in, part, 0, part.length);
+        }
+        catch(IOException e) {
+            throw new FileTransferException(FileTransferError.READING_SOURCE);
+        }
+    }
+
     /**
      * Uploads the object contained in the given input stream to S3 by performing a 'PUT Object' request.
      * The input stream is always closed, whether the operation failed or succeeded.
@@ -126,6 +233,120 @@ public class S3Object extends S3File {
     }
 
 
+    /**
+     * Uploads the object contained in the given input stream to S3 by performing a multipart upload, the given first
+     * part of which has already been read from the stream. The parts are read from the stream one after the other
+     * and uploaded concurrently, with no more parts held in memory than there are transfer threads.
+     * The input stream is not closed.
+     *
+     * @param in the stream that contains the rest of the object to be uploaded
+     * @param firstPart the first part of the object, as long as the part size
+     * @throws FileTransferException if an error occurred during the transfer
+     */
+    private void putObjectMultipart(InputStream in, byte[] firstPart) throws FileTransferException {
+        String objectKey = getObjectKey(false);
+        MultipartUpload upload;
+        try {
+            upload = service.multipartStartUpload(bucketName, new org.jets3t.service.model.S3Object(objectKey));
+        }
+        catch(S3ServiceException e) {
+            throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
+        }
+
+        int partSize = firstPart.length;
+        int threads = getTransferThreads();
+        ExecutorService executor = createExecutor(threads);
+        // Parts are read into these buffers, which are given back once the parts are uploaded
+        BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+        int nbBuffers = 1;
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<MultipartPart>> parts = new ArrayList<>();
+        long objectLength = 0;
+        boolean completed = false;
+        try {
+            byte[] part = firstPart;
+            int partLength = partSize;
+            while(partLength>0) {
+                if(parts.size()==MAX_PARTS)
+                    throw new FileTransferException(FileTransferError.WRITING_DESTINATION);
+
+                int partNumber = parts.size()+1;
+                byte[] partData = part;
+                int partDataLength = partLength;
+                parts.add(executor.submit(() -> {
+                    try {
+                        org.jets3t.service.model.S3Object object = new org.jets3t.service.model.S3Object(objectKey);
+                        object.setDataInputStream(new ByteArrayInputStream(partData, 0, partDataLength));
+                        object.setContentLength(partDataLength);
+                        return service.multipartUploadPart(upload, partNumber, object);
+                    }
+                    catch(Exception e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    }
+                    finally {
+                        freeBuffers.add(partData);
+                    }
+                }));
+                objectLength += partLength;
+
+                // The last part is shorter than the others
+                if(partLength<partSize)
+                    break;
+
+                if(nbBuffers<threads && freeBuffers.isEmpty()) {
+                    part = new byte[partSize];
+                    nbBuffers++;
+                }
+                else {
+                    part = freeBuffers.take();
+                }
+
+                // Do not keep reading the stream if a part failed to upload
+                if(failure.get()!=null)
+                    break;
+
+                partLength = readPart(in, part);
+            }
+
+            List<MultipartPart> uploadedParts = new ArrayList<>(parts.size());
+            for(Future<MultipartPart> uploadedPart : parts)
+                uploadedParts.add(uploadedPart.get());
+
+            service.multipartCompleteUpload(upload, uploadedParts);
+            completed = true;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileTransferException(FileTransferError.WRITING_DESTINATION);
+        }
+        catch(ExecutionException | S3ServiceException e) {
+            LOGGER.info("Failed to upload {}", objectKey, e);
+            throw new FileTransferException(FileTransferError.WRITING_DESTINATION);
+        }
+        finally {
+            executor.shutdownNow();
+            if(!completed) {
+                // Discard the parts that have been uploaded, they would otherwise be stored (and billed) until then
+                try {
+                    service.multipartAbortUpload(upload);
+                }
+                catch(S3ServiceException e) {
+                    LOGGER.info("Failed to abort the upload of {}", objectKey, e);
+                }
+            }
+        }
+
+        // Update local file attributes
+        atts.setExists(true);
+        atts.setDirectory(false);
+        atts.setSize(objectLength);
+        atts.setDate(System.currentTimeMillis());
+        atts.setPermissions(DEFAULT_PERMISSIONS);
+        atts.updateExpirationDate();
+    }
+
+
     ///////////////////////////
     // S3File implementation //
     ///////////////////////////
@@ -241,6 +462,15 @@ public class S3Object extends S3File {
 
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        // Large objects are read with several concurrent GET Range requests, which is much faster over high-latency
+        // connections. The few extra requests cost little compared to the amount of data transferred.
+        long length = getSize();
+        int rangeSize = getPartSize(-1);
+        int threads = getTransferThreads();
+        if(threads>1 && length-offset>2l*rangeSize)
+            return new ParallelRangeInputStream((start, data) -> readRange(start, data, length),
+                    "S3 transfer " + getObjectKey(), offset, length, rangeSize, threads);
+
         try {
             // Note: do *not* use S3ObjectRandomAccessInputStream if the object is to be read sequentially, as it would
             // add unnecessary billing overhead since it reads the object chunk by chunk, each in a separate GET request.
@@ -332,57 +562,30 @@ public class S3Object extends S3File {
 
         // TODO: compute md5 ?
 
-        // If the length is known, we can upload the object directly without having to go through the tedious process
-        // of copying the stream to a temporary file.
-        if(length>=0) {
+        // Objects that fit in a single part are uploaded with a single 'PUT Object' request
+        int partSize = getPartSize(length);
+        if(length>=0 && length<=partSize) {
             putObject(in, length);
+            return;
         }
-        else {
-            // Copy the stream to a temporary file so that we can know the object's length, which has to be declared
-            // in the PUT request's headers (that is before the transfer is started).
-            final AbstractFile tempFile;
-            final OutputStream tempOut;
-            try {
-                tempFile = FileFactory.getTemporaryFile(false);
-                tempOut = tempFile.getOutputStream();
-            }
-            catch(IOException e) {
-                throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
-            }
 
+        // Otherwise the object is uploaded in parts, read from the stream as they are uploaded. The length of the
+        // object doesn't have to be known in advance, which spares copying the stream to a temporary file.
+        try {
+            byte[] firstPart = new byte[partSize];
+            int firstPartLength = readPart(in, firstPart);
+            if(firstPartLength<partSize)
+                putObject(new ByteArrayInputStream(firstPart, 0, firstPartLength), firstPartLength);
+            else
+                putObjectMultipart(in, firstPart);
+        }
+        finally {
+            // Close the InputStream, no matter what
             try {
-                // Copy the stream to the temporary file
-                try {
-                    StreamUtils.copyStream(in, tempOut, IO_BUFFER_SIZE);
-                }
-                finally {
-                    // Close the stream even if copyStream() threw an IOException
-                    try {
-                        tempOut.close();
-                    }
-                    catch(IOException e) {
-                        // Do not re-throw the exception to prevent swallowing the exception thrown in the try block
-                    }
-                }
-
-                InputStream tempIn;
-                try {
-                    tempIn = tempFile.getInputStream();
-                }
-                catch(IOException e) {
-                    throw new FileTransferException(FileTransferError.OPENING_SOURCE);
-                }
-
-                putObject(tempIn, tempFile.getSize());
+                in.close();
             }
-            finally {
-                // Delete the temporary file, no matter what.
-                try {
-                    tempFile.delete();
-                }
-                catch(IOException e) {
-                    // Do not re-throw the exception to prevent exceptions caught in the catch block from being replaced
-                }
+            catch(IOException e) {
+                // Do not re-throw the exception to prevent exceptions caught in the catch block from being replaced
             }
         }
     }
@@ -392,83 +595,81 @@ public class S3Object extends S3File {
     ///////////////////
 
     /**
-     * Provides random read access to an S3 object by using GET Range requests with a start offset and no end.
-     * The connection is closed and a new one opened when seeking is required.
+     * Provides random read access to an S3 object by reading it in blocks with GET Range requests, and keeping the
+     * most recently used blocks in memory.
      *
      * <p>
-     * Note: At the time of this writing, a GET request on Amazon S3 costs the equivalent of 6666 bytes of data
-     * transferred ($0.01 per 10,000 GET requests, $0.15 per GB transferred). If the object is being read and a seek is
-     * requested to an offset that is less than 6666 bytes away from the current position going forward, the bytes
-     * separating the current position to the new one are skipped (read and discarded), instead of closing the current
-     * stream and opening a new one (which would cost 1 GET request). Doing so is cheaper (in $$$) and probably faster.
+     * Note: a GET request on Amazon S3 costs the equivalent of several kilobytes of data transferred, so reading the
+     * object block by block would be expensive if the object is read sequentially. Reads are therefore detected as
+     * sequential when the block that follows the block that was last read has to be fetched. In that case,
+     * the number of blocks that are fetched with a single request is doubled, up to {@link #MAX_READ_AHEAD_BLOCKS}.
+     * Seeking to another location goes back to fetching a single block.
      * </p>
      */
     private class S3ObjectRandomAccessInputStream extends RandomAccessInputStream {
 
+        /** Size of the blocks */
+        private final static int BLOCK_SIZE = 128 * 1024;
+
+        /** Maximum number of blocks that are fetched with a single request */
+        private final static int MAX_READ_AHEAD_BLOCKS = 32;
+
+        /** Maximum number of blocks that are kept in memory */
+        private final static int MAX_CACHED_BLOCKS = 64;
+
         /** Length of the S3 object */
         private long length;
 
         /** Current offset in the object stream */
         private long offset;
 
-        /** Current object stream */
-        private InputStream in;
+        /** Blocks of the object by index, in access order */
+        private final Map<Long, byte[]> blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size()>MAX_CACHED_BLOCKS;
+            }
+        };
+
+        /** Index of the block that was last read */
+        private long lastBlock = -1;
 
-        /** If the object is being read and a seek is requested to an offset that is less than this amount of bytes away
-         * from the current position going forward, the bytes separating the current position to the new one are
-         * skipped. */
-        private final static int SKIP_BYTE_SIZE = 6666;
+        /** Number of blocks that were last fetched with a single request */
+        private int readAhead = 1;
 
         protected S3ObjectRandomAccessInputStream() {
             length = getSize();
         }
 
         /**
-         * Opens an input stream allowing to read the object and starting at the given offset. The current input stream
-         * (if any) is closed.
+         * Returns the block of the given index, fetching it if it is not in memory.
          *
-         * @param offset position at which to start reading the object
+         * @param index index of the block
+         * @return the block
          * @throws IOException on error
          */
-        private synchronized void openStream(long offset) throws IOException {
-            // Nothing to do if the requested offset is the current offset
-            if(in!=null && this.offset==offset)
-                return;
-
-            // If there is an open connection and the offset to reach is located between the current offset and
-            // SKIP_SIZE, move to the said offset by skipping the difference instead of closing the connection and
-            // opening a new one:
-            if(in!=null && offset>this.offset && offset-this.offset< SKIP_BYTE_SIZE) {
-                byte[] skipBuf = BufferPool.getByteArray(SKIP_BYTE_SIZE);    // Use a constant buffer size to always reuse the same instance
-                try {
-                    StreamUtils.readFully(in, skipBuf, 0, (int)(offset-this.offset));
-                    this.offset = offset;
-                }
-                finally {
-                    BufferPool.releaseByteArray(skipBuf);
+        private byte[] getBlock(long index) throws IOException {
+            boolean sequential = index==lastBlock+1;
+            lastBlock = index;
+            byte[] block = blocks.get(index);
+            if(block!=null)
+                return block;
+
+            readAhead = sequential ? Math.min(2*readAhead, MAX_READ_AHEAD_BLOCKS) : 1;
+            long start = index*BLOCK_SIZE;
+            long end = Math.min(length, start+(long)readAhead*BLOCK_SIZE);
+            byte[] firstBlock = null;
+            try(InputStream in = getRangeInputStream(start, end-1)) {
+                for(long blockStart=start; blockStart<end; blockStart+=BLOCK_SIZE) {
+                    block = new byte[(int)Math.min(BLOCK_SIZE, end-blockStart)];
+                    StreamUtils.readFully(in, block);
+                    blocks.put(blockStart/BLOCK_SIZE, block);
+                    if(firstBlock==null)
+                        firstBlock = block;
                 }
             }
-            // If not, close the current connection
-            else {
-                if(in!=null) {
-                    try {
-                        in.close();
-                    }
-                    catch(IOException e) {
-                        // Report the error but don't throw the exception
-                        LOGGER.info("Failed to close connection", e);
-                    }
-                }
 
-                try {
-                    this.in = service.getObject(bucketName, getObjectKey(false), null, null, null, null, offset, null)
-                        .getDataInputStream();
-                    this.offset = offset;
-                }
-                catch(ServiceException e) {
-                    throw getIOException(e);
-                }
-            }
+            return firstBlock;
         }
 
 
@@ -478,26 +679,28 @@ public class S3Object extends S3File {
 
         @Override
         public synchronized int read(byte[] b, int off, int len) throws IOException {
-            if(in==null)
-                openStream(0);
+            if(len==0)
+                return 0;
 
-            int nbRead = in.read(b, off, len);
-            if(nbRead>0)
-                offset += nbRead;
+            if(offset>=length)
+                return -1;
+
+            byte[] block = getBlock(offset/BLOCK_SIZE);
+            int blockOffset = (int)(offset%BLOCK_SIZE);
+            int nbRead = Math.min(len, block.length-blockOffset);
+            System.arraycopy(block, blockOffset, b, off, nbRead);
+            offset += nbRead;
 
             return nbRead;
         }
 
         @Override
         public synchronized int read() throws IOException {
-            if(in==null)
-                openStream(0);
-
-            int i = in.read();
-            if(i!=-1)
-                offset++;
+            if(offset>=length)
+                return -1;
 
-            return i;
+            byte[] block = getBlock(offset/BLOCK_SIZE);
+            return block[(int)(offset++%BLOCK_SIZE)] & 0xFF;
         }
 
         public long getLength() throws IOException {
@@ -509,89 +712,17 @@ public class S3Object extends S3File {
         }
 
         public synchronized void seek(long offset) throws IOException {
-            openStream(offset);
+            // Blocks are fetched lazily, when data is read
+            this.offset = offset;
         }
 
         @Override
         public synchronized void close() throws IOException {
-            if(in!=null) {
-                try {
-                    in.close();
-                    // Let the IOException be thrown
-                }
-                finally {
-                    // Further attempts to close the stream will be no-ops
-                    in = null;
-                    offset = 0;
-                }
-            }
+            blocks.clear();
+            offset = 0;
         }
     }
 
-//    /**
-//     * Reads an S3 object block by block. Each block is read by issuing a GET request with a specified Range.
-//     *
-//     * <p>Note: A GET request on Amazon S3 costs the equivalent of 6KB of data transferred. Setting the block size too
-//     * low will cause extra requests to be performed. Setting it too high will cause extra data to be transferred.</p>
-//     */
-//    private class S3ObjectRandomAccessInputStream extends BlockRandomInputStream {
-//
-//        /** Amount of data returned by each 'GET Object' request */
-//        private final static int BLOCK_SIZE = 8192;
-//
-//        /** Length of the S3 object */
-//        private long length;
-//
-//        protected S3ObjectRandomAccessInputStream() {
-//            super(BLOCK_SIZE);
-//
-//            length = getSize();
-//        }
-//
-//
-//        ///////////////////////////////////////////
-//        // BlockRandomInputStream implementation //
-//        ///////////////////////////////////////////
-//
-//        @Override
-//        protected int readBlock(long fileOffset, byte[] block, int blockLen) throws IOException {
-//            try {
-//                InputStream in = service.getObject(bucketName, getObjectKey(false), null, null, null, null, fileOffset, fileOffset+BLOCK_SIZE)
-//                    .getDataInputStream();
-//
-//                // Read up to blockLen bytes
-//                try {
-//                    int totalRead = 0;
-//                    int read;
-//                    while(totalRead<blockLen) {
-//                        read = in.read(block, totalRead, blockLen-totalRead);
-//                        if(read==-1)
-//                            break;
-//
-//                        totalRead += read;
-//                    }
-//
-//                    return totalRead;
-//                }
-//                finally {
-//                    in.close();
-//                }
-//            }
-//            catch(S3ServiceException e) {
-//                throw getIOException(e);
-//            }
-//        }
-//
-//        public long getLength() throws IOException {
-//            return length;
-//        }
-//
-//        @Override
-//        public void close() throws IOException {
-//            // No-op, the underlying stream is already closed
-//        }
-//    }
-
 
     /**
      * S3ObjectFileAttributes provides getters and setters for S3 object attributes. By extending
@@ -52,6 +52,8 @@ public class S3Panel extends ServerPanel {
     private JTextField locationField;
     private JCheckBox dnsBuckets;
     private JCheckBox secureHttp;
+    private JSpinner partSizeSpinner;
+    private JSpinner transferThreadsSpinner;
 
     private static String lastServer = "s3.amazonaws.com";
     private static String lastUsername = "";
@@ -63,6 +65,8 @@ public class S3Panel extends ServerPanel {
     private static boolean lastDisableDnsBuckets = true;
     private static boolean lastSecureHttp = true;
     private static String lastLocation = "US";
+    private static int lastPartSize = S3File.DEFAULT_PART_SIZE;
+    private static int lastTransferThreads = S3File.DEFAULT_TRANSFER_THREADS;
 
     S3Panel(ServerPanelListener listener, JFrame mainFrame) {
         super(listener, mainFrame);
@@ -110,6 +114,13 @@ public class S3Panel extends ServerPanel {
 
         secureHttp = new JCheckBox(Translator.get("server_connect_dialog.secure_http"), lastSecureHttp);
         addRow("", secureHttp, 15);
+
+        // Multipart uploads require parts of at least 5MB
+        partSizeSpinner = createIntSpinner(lastPartSize, 5, 1024, 1);
+        addRow(Translator.get("server_connect_dialog.part_size"), partSizeSpinner, 5);
+
+        transferThreadsSpinner = createIntSpinner(lastTransferThreads, 1, 32, 1);
+        addRow(Translator.get("server_connect_dialog.transfer_threads"), transferThreadsSpinner, 15);
     }
 
 
@@ -123,6 +134,8 @@ public class S3Panel extends ServerPanel {
         lastDisableDnsBuckets = !dnsBuckets.isSelected();
         lastSecureHttp = secureHttp.isSelected();
         lastLocation = locationField.getText();
+        lastPartSize = (Integer) partSizeSpinner.getValue();
+        lastTransferThreads = (Integer) transferThreadsSpinner.getValue();
     }
 
 
@@ -148,6 +161,8 @@ public class S3Panel extends ServerPanel {
         url.setProperty(S3File.DISABLE_DNS_BUCKETS, String.valueOf(lastDisableDnsBuckets));
         url.setProperty(S3File.SECUTRE_HTTP, String.valueOf(lastSecureHttp));
         url.setProperty(S3File.DEFAULT_BUCKET_LOCATION, lastLocation);
+        url.setProperty(S3File.PART_SIZE, String.valueOf(lastPartSize));
+        url.setProperty(S3File.TRANSFER_THREADS, String.valueOf(lastTransferThreads));
 
         return url;
     }
@@ -163,6 +178,10 @@ public class S3Panel extends ServerPanel {
         // (the spinner value would otherwise not be committed)
         try { portSpinner.commitEdit(); }
         catch(ParseException e) { }
+        try { partSizeSpinner.commitEdit(); }
+        catch(ParseException e) { }
+        try { transferThreadsSpinner.commitEdit(); }
+        catch(ParseException e) { }
 
         updateValues();
     }
@@ -0,0 +1,260 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.s3;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * A local HTTP server that stands in for an S3-compatible service, with path-style bucket addressing. It supports
+ * the requests that are needed to upload objects, in one piece or in parts, and to read them, in full or by range.
+ *
+ * <p>HTTP is implemented on plain sockets, as the S3 client expects response headers to be named exactly as S3
+ * names them.</p>
+ */
+class FakeS3Server implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    /** Content of the objects by path */
+    private final Map<String, byte[]> objects = new HashMap<>();
+
+    /** Parts of the multipart uploads that are in progress, by upload id and part number */
+    private final Map<String, TreeMap<Integer, byte[]>> uploads = new HashMap<>();
+
+    /** Method, path and query of the requests that have been received */
+    private final List<String> requests = new ArrayList<>();
+
+    /** Tells whether the upload of a part, by number, fails */
+    private IntPredicate failingParts = partNumber -> false;
+
+    private int uploadCount;
+
+    FakeS3Server() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(this::accept, "FakeS3Server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    synchronized byte[] getObject(String path) {
+        return objects.get(path);
+    }
+
+    synchronized List<String> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    synchronized void setFailingParts(IntPredicate failingParts) {
+        this.failingParts = failingParts;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serve(socket), "FakeS3Server connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // The server has been closed
+            }
+        }
+    }
+
+    /**
+     * Answers the requests sent over the given connection until it is closed.
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null && !requestLine.isEmpty()) {
+                Map<String, String> headers = new HashMap<>();
+                for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                    int index = line.indexOf(':');
+                    headers.put(line.substring(0, index).trim().toLowerCase(Locale.ROOT), line.substring(index + 1).trim());
+                }
+
+                if ("100-continue".equalsIgnoreCase(headers.get("expect"))) {
+                    out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+                int length = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+                byte[] body = in.readNBytes(length);
+
+                String[] parts = requestLine.split(" ");
+                Response response = handle(parts[0], parts[1], headers, body);
+                StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.code).append(" Status\r\n");
+                response.headers.forEach((name, value) -> head.append(name).append(": ").append(value).append("\r\n"));
+                if (!response.headers.containsKey("Content-Length"))
+                    head.append("Content-Length: ").append(response.body.length).append("\r\n");
+                head.append("\r\n");
+                out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+                if (!parts[0].equals("HEAD"))
+                    out.write(response.body);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The connection has been closed
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1)
+                return line.size() > 0 ? line.toString(StandardCharsets.US_ASCII) : null;
+            if (b != '\r')
+                line.write(b);
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private synchronized Response handle(String method, String uri, Map<String, String> headers, byte[] body) {
+        requests.add(method + " " + uri);
+        int queryIndex = uri.indexOf('?');
+        String path = queryIndex < 0 ? uri : uri.substring(0, queryIndex);
+        Map<String, String> params = new HashMap<>();
+        if (queryIndex >= 0) {
+            for (String param : uri.substring(queryIndex + 1).split("&")) {
+                int index = param.indexOf('=');
+                params.put(index < 0 ? param : param.substring(0, index), index < 0 ? "" : param.substring(index + 1));
+            }
+        }
+
+        if (method.equals("POST") && params.containsKey("uploads")) {
+            String uploadId = "upload" + ++uploadCount;
+            uploads.put(uploadId, new TreeMap<>());
+            String key = path.substring(path.indexOf('/', 1) + 1);
+            return new Response(200, "<InitiateMultipartUploadResult><Bucket>bucket</Bucket><Key>" + key
+                    + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+        }
+        if (method.equals("PUT") && params.containsKey("uploadId")) {
+            int partNumber = Integer.parseInt(params.get("partNumber"));
+            if (failingParts.test(partNumber))
+                return new Response(400, "<Error><Code>InvalidPart</Code><Message>Failing part</Message></Error>");
+
+            uploads.get(params.get("uploadId")).put(partNumber, body);
+            Response response = new Response(200, "");
+            response.headers.put("ETag", "\"etag" + partNumber + "\"");
+            return response;
+        }
+        if (method.equals("POST") && params.containsKey("uploadId")) {
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            for (byte[] part : uploads.remove(params.get("uploadId")).values())
+                object.writeBytes(part);
+            objects.put(path, object.toByteArray());
+            return new Response(200, "<CompleteMultipartUploadResult><Location>" + path + "</Location>"
+                    + "<Bucket>bucket</Bucket><Key>key</Key><ETag>\"etag\"</ETag></CompleteMultipartUploadResult>");
+        }
+        if (method.equals("DELETE") && params.containsKey("uploadId")) {
+            uploads.remove(params.get("uploadId"));
+            return new Response(204, "");
+        }
+        if (method.equals("PUT")) {
+            objects.put(path, body);
+            // The client checks that the ETag of an object uploaded in one piece is the MD5 hash of its content
+            Response response = new Response(200, "");
+            response.headers.put("ETag", "\"" + md5(body) + "\"");
+            return response;
+        }
+        if (method.equals("HEAD") || method.equals("GET")) {
+            byte[] object = objects.get(path);
+            if (object == null)
+                return new Response(404, "<Error><Code>NoSuchKey</Code><Message>No such key</Message></Error>");
+
+            int start = 0;
+            int end = object.length - 1;
+            String range = headers.get("range");
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                if (bounds.length > 1)
+                    end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            byte[] content = new byte[end - start + 1];
+            System.arraycopy(object, start, content, 0, content.length);
+            Response response = new Response(range != null ? 206 : 200, content);
+            response.headers.put("Content-Type", "application/octet-stream");
+            if (method.equals("HEAD"))
+                response.headers.put("Content-Length", String.valueOf(object.length));
+            return response;
+        }
+        return new Response(400, "<Error><Code>NotImplemented</Code><Message>Not implemented</Message></Error>");
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(data)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Response {
+        private final int code;
+        private final byte[] body;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        private Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+            headers.put("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+            headers.put("ETag", "\"etag\"");
+        }
+
+        private Response(int code, String xml) {
+            this(code, xml.getBytes(StandardCharsets.UTF_8));
+            if (!xml.isEmpty())
+                headers.put("Content-Type", "application/xml");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.Credentials;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+/**
+ * A test case for the transfers of {@link S3Object}, against a {@link FakeS3Server}.
+ */
+public class S3ObjectTest {
+
+    /** Size of the parts of the transfers, in megabytes (the minimum size of a part) */
+    private final static int PART_SIZE = 5;
+
+    private static S3Object getObject(FakeS3Server server, String path) throws IOException {
+        FileURL url = FileURL.getFileURL("s3://localhost" + path);
+        url.setCredentials(new Credentials("key", "secret"));
+        url.setPort(server.getPort());
+        url.setProperty(S3File.STORAGE_TYPE, "AWS");
+        url.setProperty(S3File.SECUTRE_HTTP, "false");
+        url.setProperty(S3File.DISABLE_DNS_BUCKETS, "true");
+        url.setProperty(S3File.DEFAULT_BUCKET_LOCATION, "US");
+        url.setProperty(S3File.PART_SIZE, String.valueOf(PART_SIZE));
+        url.setProperty(S3File.TRANSFER_THREADS, "3");
+        return (S3Object) new S3ProtocolProvider().getFile(url, Collections.emptyMap());
+    }
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Returns a stream of the given data that does not tell its length, like a stream being compressed.
+     */
+    private static InputStream unknownLengthStream(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+    }
+
+    private static long countRequests(FakeS3Server server, String prefix) {
+        return server.getRequests().stream().filter(request -> request.startsWith(prefix)).count();
+    }
+
+    /**
+     * Asserts that a stream of unknown length that is larger than a part is uploaded in parts, and that an object
+     * larger than two parts is read back with ranged requests.
+     */
+    @Test
+    public void testMultipartUpload() throws IOException {
+        try (FakeS3Server server = new FakeS3Server()) {
+            byte[] data = createData(2 * PART_SIZE * 1024 * 1024 + 12345);
+            S3Object object = getObject(server, "/bucket/dir/large");
+            object.copyStream(unknownLengthStream(data), false, -1);
+
+            assert Arrays.equals(server.getObject("/bucket/dir/large"), data);
+            assert countRequests(server, "PUT /bucket/dir/large?") == 3;
+            assert countRequests(server, "POST /bucket/dir/large?uploadId") == 1;
+            assert object.getSize() == data.length;
+
+            byte[] read;
+            try (InputStream in = getObject(server, "/bucket/dir/large").getInputStream()) {
+                read = in.readAllBytes();
+            }
+            assert Arrays.equals(read, data);
+            assert countRequests(server, "GET /bucket/dir/large") == 3;
+
+            try (InputStream in = getObject(server, "/bucket/dir/large").getInputStream(data.length - 10)) {
+                assert Arrays.equals(in.readAllBytes(), Arrays.copyOfRange(data, data.length - 10, data.length));
+            }
+        }
+    }
+
+    /**
+     * Asserts that a stream of unknown length that fits in a part is uploaded with a single request.
+     */
+    @Test
+    public void testSmallUpload() throws IOException {
+        try (FakeS3Server server = new FakeS3Server()) {
+            byte[] data = createData(1000);
+            getObject(server, "/bucket/small").copyStream(unknownLengthStream(data), false, -1);
+
+            assert Arrays.equals(server.getObject("/bucket/small"), data);
+            assert server.getRequests().stream().noneMatch(request -> request.contains("upload"));
+        }
+    }
+
+    /**
+     * Asserts that a multipart upload that fails is aborted.
+     */
+    @Test
+    public void testFailedUpload() throws IOException {
+        try (FakeS3Server server = new FakeS3Server()) {
+            server.setFailingParts(partNumber -> partNumber == 2);
+            byte[] data = createData(3 * PART_SIZE * 1024 * 1024);
+            try {
+                getObject(server, "/bucket/failed").copyStream(unknownLengthStream(data), false, -1);
+                assert false;
+            }
+            catch (FileTransferException e) {
+                // The upload of the second part failed
+            }
+
+            assert server.getObject("/bucket/failed") == null;
+            assert countRequests(server, "DELETE /bucket/failed?uploadId") == 1;
+        }
+    }
+
+    /**
+     * Asserts that random reads return the right data, and that sequential reads fetch more and more data with
+     * each request.
+     */
+    @Test
+    public void testRandomAccess() throws IOException {
+        try (FakeS3Server server = new FakeS3Server()) {
+            byte[] data = createData(3 * 1024 * 1024 + 7);
+            AbstractFile object = getObject(server, "/bucket/random");
+            object.copyStream(new ByteArrayInputStream(data), false, data.length);
+
+            try (RandomAccessInputStream in = getObject(server, "/bucket/random").getRandomAccessInputStream()) {
+                assert in.getLength() == data.length;
+
+                Random random = new Random(0);
+                byte[] buffer = new byte[1000];
+                for (int i = 0; i < 100; i++) {
+                    int offset = random.nextInt(data.length - buffer.length);
+                    in.seek(offset);
+                    in.readFully(buffer);
+                    assert Arrays.equals(buffer, Arrays.copyOfRange(data, offset, offset + buffer.length));
+                }
+
+                in.seek(data.length - 1);
+                assert in.read() == (data[data.length - 1] & 0xFF);
+                assert in.read() == -1;
+
+                long requests = countRequests(server, "GET /bucket/random");
+                in.seek(0);
+                byte[] read = new byte[data.length];
+                in.readFully(read);
+                assert Arrays.equals(read, data);
+                // Blocks of 128KB fetched 1, 2, 4, 8, 16 then 32 at a time, some of which may have been cached
+                assert countRequests(server, "GET /bucket/random") - requests <= 6;
+            }
+        }
+    }
+}
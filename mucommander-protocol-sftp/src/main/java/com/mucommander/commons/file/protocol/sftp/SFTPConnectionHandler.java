@@ -18,11 +18,16 @@
 
 package com.mucommander.commons.file.protocol.sftp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
@@ -44,9 +49,28 @@ class SFTPConnectionHandler extends ConnectionHandler implements AutoCloseable {
     Session session;
     ChannelSftp channelSftp;
 
+    /** False if the server could not run the 'cp' command (once tried and failed), e.g. because it has no shell */
+    volatile boolean copyCommandSupported = true;
+
     /** 'Public key' SSH authentication method, not supported at the moment */
     private final static String PUBLIC_KEY_AUTH_METHOD = "publickey";
 
+    /** Exit status of a shell command that could not be found */
+    private final static int COMMAND_NOT_FOUND_EXIT_STATUS = 127;
+
+    /** Period of time between two checks of whether a remote command has completed, in milliseconds */
+    private final static long COMMAND_POLL_PERIOD = 50;
+
+    /** Time a copy command is given to complete on top of the time it takes to copy the file, in milliseconds */
+    private final static long COPY_TIMEOUT = 30*1000;
+
+    /** Minimum rate at which the server is expected to copy files, in bytes per millisecond (10 MB/s) */
+    private final static long MIN_COPY_RATE = 10*1024;
+
+    /** Printed by the shell once the copy has succeeded: servers that run no shell, such as those that force the
+     * 'internal-sftp' command, exit without printing it */
+    private final static String COPY_DONE_MARKER = "copied";
+
 
     SFTPConnectionHandler(FileURL location) {
         super(location);
@@ -92,6 +116,8 @@ class SFTPConnectionHandler extends ConnectionHandler implements AutoCloseable {
             // Init SFTP connections
             channelSftp = (ChannelSftp) session.openChannel("sftp");
             channelSftp.connect(5*1000);
+            // Keep several read requests in flight so that the throughput is not limited by the latency
+            channelSftp.setBulkRequests(SFTPFile.getIntProperty(realm, SFTPFile.REQUEST_DEPTH_PROPERTY_NAME, SFTPFile.DEFAULT_REQUEST_DEPTH));
             LOGGER.info("authentication complete");
         }
         catch(IOException e) {
@@ -138,6 +164,70 @@ class SFTPConnectionHandler extends ConnectionHandler implements AutoCloseable {
         // maintain connections open without limit.
     }
 
+    /**
+     * Copies a file to another location of the server by running <code>cp</code> in an exec channel of the current
+     * SSH session, so that the file's contents do not travel through the client. If the server cannot run the command
+     * or does not complete it in time, the channel is disconnected and remote copy is considered unsupported by this
+     * connection.
+     *
+     * @param sourcePath the absolute path of the file to copy
+     * @param destPath the absolute path of the copy
+     * @param size the size of the file, which the time the command is given to complete depends on
+     * @throws IOException if the command could not be run, failed or timed out
+     */
+    void copy(String sourcePath, String destPath, long size) throws IOException {
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec) session.openChannel("exec");
+            channel.setCommand("cp -- " + quote(sourcePath) + " " + quote(destPath) + " && echo " + COPY_DONE_MARKER);
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            channel.setErrStream(err);
+            InputStream in = channel.getInputStream();
+            channel.connect(5*1000);
+            // The command reads nothing: without EOF on its input, a subsystem started instead of the shell would wait forever
+            channel.getOutputStream().close();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long deadline = System.currentTimeMillis() + COPY_TIMEOUT + Math.max(0, size) / MIN_COPY_RATE;
+            while (!channel.isClosed() || in.available() > 0) {
+                while (in.available() > 0)
+                    out.write(in.read());
+
+                if (System.currentTimeMillis() >= deadline) {
+                    copyCommandSupported = false;
+                    throw new IOException("cp timed out");
+                }
+                Thread.sleep(COMMAND_POLL_PERIOD);
+            }
+
+            int exitStatus = channel.getExitStatus();
+            if (exitStatus != 0) {
+                if (exitStatus == COMMAND_NOT_FOUND_EXIT_STATUS)
+                    copyCommandSupported = false;
+                throw new IOException("cp failed with status " + exitStatus + ": " + err.toString(StandardCharsets.UTF_8).trim());
+            }
+
+            if (!out.toString(StandardCharsets.UTF_8).trim().equals(COPY_DONE_MARKER)) {
+                copyCommandSupported = false;
+                throw new IOException("cp could not be run by the server");
+            }
+        } catch (JSchException e) {
+            throw new IOException(e);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            if (channel != null)
+                channel.disconnect();
+        }
+    }
+
+    /**
+     * Returns the given path quoted for a POSIX shell.
+     */
+    static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
     private class PasswordAuthentication implements UserInfo, UIKeyboardInteractive {
 
     	@Override
@@ -26,6 +26,7 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,8 +54,10 @@ import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.file.protocol.ProtocolFile;
 import com.mucommander.commons.io.ByteUtils;
 import com.mucommander.commons.io.FilteredOutputStream;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.StreamUtils;
 
 
 /**
@@ -110,6 +113,26 @@ public class SFTPFile extends ProtocolFile {
      * authentication is used. */
     public final static String PRIVATE_KEY_PATH_PROPERTY_NAME = "privateKeyPath";
 
+    /** Name of the property that enables copying files on the server with the remote shell's <code>cp</code> command,
+     * <code>"true"</code> to enable it. SFTP has no standard way to copy a file, so this requires shell access. */
+    public final static String REMOTE_COPY_PROPERTY_NAME = "remoteCopy";
+
+    /** Name of the property that holds the number of read requests that are kept in flight on a file being read.
+     * Writes are not limited: their replies are only checked as they arrive. */
+    public final static String REQUEST_DEPTH_PROPERTY_NAME = "requestDepth";
+
+    /** Default value if {@link #REQUEST_DEPTH_PROPERTY_NAME} is not set */
+    public final static int DEFAULT_REQUEST_DEPTH = 32;
+
+    /** Name of the property that holds the number of pooled connections over which a large file is read concurrently */
+    public final static String TRANSFER_CONNECTIONS_PROPERTY_NAME = "transferConnections";
+
+    /** Default value if {@link #TRANSFER_CONNECTIONS_PROPERTY_NAME} is not set */
+    public final static int DEFAULT_TRANSFER_CONNECTIONS = 1;
+
+    /** Size of the ranges of a large file that are read concurrently over several connections */
+    private final static int RANGE_SIZE = 8 * 1024 * 1024;
+
     private final static String SEPARATOR = DEFAULT_SEPARATOR;
 
 
@@ -353,7 +376,7 @@ public class SFTPFile extends ProtocolFile {
 
     @Override
     public RandomAccessInputStream getRandomAccessInputStream() throws IOException {
-        return new SFTPRandomAccessInputStream();
+        return new SFTPRandomAccessInputStream(this::openInputStream, this::getSize);
     }
 
     @Override
@@ -502,14 +525,41 @@ public class SFTPFile extends ProtocolFile {
     }
 
     /**
-     * Always throws {@link UnsupportedFileOperationException} when called.
+     * Implementation notes: server-side copy is only performed if {@link #REMOTE_COPY_PROPERTY_NAME} is enabled, and if
+     * the destination file is a regular file located on the same server. The copy is made by the remote shell's
+     * <code>cp</code> command, so that the file's contents are not downloaded and uploaded back.
      *
-     * @throws UnsupportedFileOperationException, always
+     * @throws UnsupportedFileOperationException if remote copy is not enabled, or not available on the server
+     * @throws IOException if the copy failed
      */
     @Override
-    @UnsupportedFileOperation
-    public void copyRemotelyTo(AbstractFile destFile) throws UnsupportedFileOperationException {
-        throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+    public void copyRemotelyTo(AbstractFile destFile) throws IOException {
+        if(!Boolean.parseBoolean(fileURL.getProperty(REMOTE_COPY_PROPERTY_NAME)))
+            throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+
+        checkCopyRemotelyPrerequisites(destFile, false, false);
+
+        // Directories are copied recursively by the caller
+        if(isDirectory() || destFile.getURL().getPort()!=fileURL.getPort())
+            throw new IOException();
+
+        try (SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(connHandlerFactory, fileURL, true)) {
+            if(!connHandler.copyCommandSupported)
+                throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+
+            // Makes sure the connection is started, if not starts it
+            connHandler.checkConnection();
+
+            connHandler.copy(absPath, destFile.getURL().getPath(), getSize());
+        } catch (IOException e) {
+            LOGGER.info("failed to copy {} on the server", getURL(), e);
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        // Update destination file attributes by fetching them from the server
+        ((SFTPFileAttributes)destFile.getUnderlyingFileObject()).fetchAttributes();
     }
 
     /**
@@ -557,13 +607,27 @@ public class SFTPFile extends ProtocolFile {
 
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        // Large files may be read over several connections at once, which multiplies the number of requests in flight.
+        // The size may be stale, so it is only used as a hint: the file is read until its actual end.
+        long length = getSize();
+        int connections = Math.min(getIntProperty(fileURL, TRANSFER_CONNECTIONS_PROPERTY_NAME, DEFAULT_TRANSFER_CONNECTIONS), ConnectionPool.getMaxConnectionsPerRealm());
+        if(connections>1 && length-offset>2L*RANGE_SIZE)
+            return new ParallelRangeInputStream(this::readRange, "SFTP transfer " + absPath, offset, length, RANGE_SIZE, connections);
+
+        return openInputStream(offset);
+    }
+
+    /**
+     * Opens a stream that reads this file from the given offset over a single connection. The server is asked to
+     * start reading at the offset, and the stream keeps {@link #REQUEST_DEPTH_PROPERTY_NAME} read requests in flight.
+     */
+    private InputStream openInputStream(long offset) throws IOException {
         SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(connHandlerFactory, fileURL, true);
         try {
             // Makes sure the connection is started, if not starts it
             connHandler.checkConnection();
 
-            InputStream in = connHandler.channelSftp.get(absPath);
-            in.skip(offset);
+            InputStream in = connHandler.channelSftp.get(absPath, null, offset);
             return new FilterInputStream(in) {
                 @Override
                 public void close() throws IOException {
@@ -584,6 +648,33 @@ public class SFTPFile extends ProtocolFile {
         }
     }
 
+    /**
+     * Reads the range of this file that starts at the given offset over a pooled connection, which is released as soon
+     * as the range has been read.
+     */
+    private int readRange(long offset, byte[] buffer) throws IOException {
+        try (InputStream in = openInputStream(offset)) {
+            return StreamUtils.readUpTo(in, buffer);
+        }
+    }
+
+    /**
+     * Returns the value of the given integer property of the given URL, or the default value if the property is not
+     * set or is not a valid number.
+     */
+    static int getIntProperty(FileURL url, String name, int defaultValue) {
+        String value = url.getProperty(name);
+        if(value==null)
+            return defaultValue;
+
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        }
+        catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     @Override
     public String getCanonicalPath() {
         if(isSymlink()) {
@@ -749,34 +840,92 @@ public class SFTPFile extends ProtocolFile {
         }
     }
 
+    /**
+     * Opens a stream that reads a file from a given offset.
+     */
+    interface StreamOpener {
+        InputStream open(long offset) throws IOException;
+    }
+
     /**
      * SFTPRandomAccessInputStream extends RandomAccessInputStream to provide random read access to an SFTPFile.
+     * Seeking is lazy: the stream is only repositioned when data is read. Seeking forward by a short distance reads
+     * through the data that has most likely been requested already, otherwise the file is read again from the new
+     * offset, which the server seeks to.
      */
-    private class SFTPRandomAccessInputStream extends RandomAccessInputStream {
+    static class SFTPRandomAccessInputStream extends RandomAccessInputStream {
+
+        /** Maximum distance of a forward seek that is performed by skipping data */
+        final static int MAX_SKIP = 256 * 1024;
 
+        private final StreamOpener opener;
+
+        /** Returns the size of the file */
+        private final LongSupplier size;
+
+        /** Stream positioned at {@link #streamOffset}, <code>null</code> if it hasn't been opened yet */
         private InputStream in;
+
+        /** Current offset of the underlying stream */
+        private long streamOffset;
+
+        /** Current offset in the file */
         private long offset;
 
-        private SFTPRandomAccessInputStream() throws IOException {
-            this.in = getInputStream();
+        SFTPRandomAccessInputStream(StreamOpener opener, LongSupplier size) throws IOException {
+            this.opener = opener;
+            this.size = size;
+            this.in = opener.open(0);
+        }
+
+        /**
+         * Moves the underlying stream to the current offset, if it isn't there already.
+         */
+        private void position() throws IOException {
+            if(in!=null) {
+                long distance = offset-streamOffset;
+                if(distance==0)
+                    return;
+
+                if(distance>0 && distance<=MAX_SKIP && offset<=size.getAsLong()) {
+                    StreamUtils.skipFully(in, distance);
+                    streamOffset = offset;
+                    return;
+                }
+
+                try {
+                    in.close();
+                }
+                catch(IOException e) {}
+                in = null;
+            }
+
+            in = opener.open(offset);
+            streamOffset = offset;
         }
 
         @Override
         public int read(byte b[], int off, int len) throws IOException {
+            position();
             int nbRead = in.read(b, off, len);
 
-            if(nbRead!=-1)
+            if(nbRead!=-1) {
                 offset += nbRead;
+                streamOffset += nbRead;
+            }
 
             return nbRead;
         }
 
         @Override
         public int read() throws IOException {
+            position();
             int read = in.read();
 
-            if(read!=-1)
+            if(read!=-1) {
                 offset += 1;
+                streamOffset += 1;
+            }
 
             return read;
         }
@@ -786,22 +935,17 @@ public class SFTPFile extends ProtocolFile {
         }
 
         public long getLength() throws IOException {
-            return getSize();
+            return size.getAsLong();
         }
 
         public void seek(long offset) throws IOException {
-            try {
-                in.close();
-            }
-            catch(IOException e) {}
-
-            in = getInputStream(offset);
             this.offset = offset;
         }
 
         @Override
         public void close() throws IOException {
-            in.close();
+            if(in!=null)
+                in.close();
         }
     }
 }
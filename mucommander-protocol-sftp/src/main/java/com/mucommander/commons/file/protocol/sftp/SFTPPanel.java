@@ -30,6 +30,7 @@ import java.net.MalformedURLException;
 import java.text.ParseException;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -39,6 +40,7 @@ import javax.swing.JTextField;
 
 import com.mucommander.commons.file.Credentials;
 import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.protocol.ui.ServerPanel;
@@ -55,6 +57,9 @@ public class SFTPPanel extends ServerPanel {
     private JPasswordField passwordField;
     private JTextField initialDirField;
     private JSpinner portSpinner;
+    private JSpinner requestDepthSpinner;
+    private JSpinner transferConnectionsSpinner;
+    private JCheckBox remoteCopyCheckBox;
 
     private static String lastServer = "";
     private static String lastKeyPath = "";
@@ -63,6 +68,9 @@ public class SFTPPanel extends ServerPanel {
     private String lastPassword = "";
     private static String lastInitialDir = "/";
     private static int lastPort = STANDARD_PORT;
+    private static int lastRequestDepth = SFTPFile.DEFAULT_REQUEST_DEPTH;
+    private static int lastTransferConnections = SFTPFile.DEFAULT_TRANSFER_CONNECTIONS;
+    private static boolean lastRemoteCopy;
 
 
     SFTPPanel(ServerPanelListener listener, JFrame mainFrame) {
@@ -120,7 +128,18 @@ public class SFTPPanel extends ServerPanel {
 
         // Port field, initialized to last port (default is 22)
         portSpinner = createPortSpinner(lastPort);
-        addRow(Translator.get("server_connect_dialog.port"), portSpinner, 15);
+        addRow(Translator.get("server_connect_dialog.port"), portSpinner, 5);
+
+        // Transfer settings, initialized to last values
+        requestDepthSpinner = createIntSpinner(lastRequestDepth, 1, 256, 1);
+        addRow(Translator.get("server_connect_dialog.request_depth"), requestDepthSpinner, 5);
+
+        transferConnectionsSpinner = createIntSpinner(lastTransferConnections, 1, ConnectionPool.getMaxConnectionsPerRealm(), 1);
+        addRow(Translator.get("server_connect_dialog.transfer_connections"), transferConnectionsSpinner, 15);
+
+        // Remote copy checkbox, initialized to last value (disabled by default as it requires shell access)
+        remoteCopyCheckBox = new JCheckBox(Translator.get("server_connect_dialog.remote_copy"), lastRemoteCopy);
+        addRow("", remoteCopyCheckBox, 0);
     }
 
 
@@ -131,6 +150,9 @@ public class SFTPPanel extends ServerPanel {
         lastPassword = new String(passwordField.getPassword());
         lastInitialDir = initialDirField.getText();
         lastPort = (Integer) portSpinner.getValue();
+        lastRequestDepth = (Integer) requestDepthSpinner.getValue();
+        lastTransferConnections = (Integer) transferConnectionsSpinner.getValue();
+        lastRemoteCopy = remoteCopyCheckBox.isSelected();
     }
 
 
@@ -150,6 +172,12 @@ public class SFTPPanel extends ServerPanel {
         url.setCredentials(new Credentials(lastUsername, lastPassword));
         if(!"".equals(lastKeyPath.trim()))
             url.setProperty(SFTPFile.PRIVATE_KEY_PATH_PROPERTY_NAME, lastKeyPath);
+        if(lastRemoteCopy)
+            url.setProperty(SFTPFile.REMOTE_COPY_PROPERTY_NAME, "true");
+
+        // Set transfer properties
+        url.setProperty(SFTPFile.REQUEST_DEPTH_PROPERTY_NAME, String.valueOf(lastRequestDepth));
+        url.setProperty(SFTPFile.TRANSFER_CONNECTIONS_PROPERTY_NAME, String.valueOf(lastTransferConnections));
 
         // Set port
         url.setPort(lastPort);
@@ -168,6 +196,10 @@ public class SFTPPanel extends ServerPanel {
         // (the spinner value would otherwise not be committed)
         try { portSpinner.commitEdit(); }
         catch(ParseException e) { }
+        try { requestDepthSpinner.commitEdit(); }
+        catch(ParseException e) { }
+        try { transferConnectionsSpinner.commitEdit(); }
+        catch(ParseException e) { }
 
         updateValues();
     }
@@ -0,0 +1,35 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.protocol.sftp;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link SFTPConnectionHandler}.
+ */
+public class SFTPConnectionHandlerTest {
+
+    /**
+     * Asserts that paths given to the remote shell are quoted so that no character is interpreted by the shell.
+     */
+    @Test
+    public void testQuote() {
+        assert SFTPConnectionHandler.quote("/home/user/file").equals("'/home/user/file'");
+        assert SFTPConnectionHandler.quote("/tmp/a b $(rm -rf ~)").equals("'/tmp/a b $(rm -rf ~)'");
+        assert SFTPConnectionHandler.quote("/tmp/it's").equals("'/tmp/it'\\''s'");
+    }
+}
@@ -69,6 +69,7 @@ public class SFTPFileTest extends AbstractFileTest {
             FileOperation.LIST_CHILDREN,
             FileOperation.DELETE,
             FileOperation.RENAME,
+            FileOperation.COPY_REMOTELY,
             FileOperation.CHANGE_DATE,
             FileOperation.CHANGE_PERMISSION,
         };
@@ -0,0 +1,106 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.sftp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for {@link SFTPFile.SFTPRandomAccessInputStream}, over streams that are opened in memory.
+ */
+public class SFTPRandomAccessInputStreamTest {
+
+    private static byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++)
+            content[i] = (byte) (i * 31 + i / 251);
+        return content;
+    }
+
+    /**
+     * Returns an opener of streams over the given content, which adds the offsets of the streams it opens to the
+     * given list.
+     */
+    private static SFTPFile.StreamOpener createOpener(byte[] content, List<Long> offsets) {
+        return offset -> {
+            offsets.add(offset);
+            int start = (int) Math.min(offset, content.length);
+            return new ByteArrayInputStream(content, start, content.length - start);
+        };
+    }
+
+    /**
+     * Asserts that the underlying stream is only repositioned when data is read, skipping data to seek forward by a
+     * short distance.
+     */
+    @Test
+    public void testLazySeek() throws IOException {
+        byte[] content = createContent(SFTPFile.SFTPRandomAccessInputStream.MAX_SKIP * 3);
+        List<Long> offsets = new ArrayList<>();
+        try (SFTPFile.SFTPRandomAccessInputStream in = new SFTPFile.SFTPRandomAccessInputStream(createOpener(content, offsets), () -> content.length)) {
+            assert offsets.equals(List.of(0L));
+
+            // Seeks without reads don't reopen the stream
+            in.seek(10);
+            in.seek(2L * SFTPFile.SFTPRandomAccessInputStream.MAX_SKIP);
+            in.seek(20);
+            assert offsets.equals(List.of(0L));
+            assert in.getOffset() == 20;
+
+            // Seeking forward by a short distance skips data
+            assert in.read() == (content[20] & 0xFF);
+            assert offsets.equals(List.of(0L));
+
+            // Seeking backward reopens the stream at the new offset
+            in.seek(5);
+            assert in.read() == (content[5] & 0xFF);
+            assert offsets.equals(List.of(0L, 5L));
+
+            // So does seeking forward by a long distance
+            long far = 6 + SFTPFile.SFTPRandomAccessInputStream.MAX_SKIP + 1;
+            in.seek(far);
+            byte[] b = new byte[10];
+            in.readFully(b);
+            assert Arrays.equals(Arrays.copyOfRange(content, (int) far, (int) far + 10), b);
+            assert offsets.equals(List.of(0L, 5L, far));
+            assert in.getOffset() == far + 10;
+            assert in.getLength() == content.length;
+        }
+    }
+
+    /**
+     * Asserts that seeking past the end of the file reopens the stream there rather than skipping, and that reading
+     * then returns the end of the file.
+     */
+    @Test
+    public void testSeekPastEnd() throws IOException {
+        byte[] content = createContent(1000);
+        List<Long> offsets = new ArrayList<>();
+        try (SFTPFile.SFTPRandomAccessInputStream in = new SFTPFile.SFTPRandomAccessInputStream(createOpener(content, offsets), () -> content.length)) {
+            in.seek(content.length + 10);
+            assert in.read() == -1;
+            assert offsets.equals(List.of(0L, content.length + 10L));
+            assert in.getOffset() == content.length + 10;
+        }
+    }
+}
@@ -118,6 +118,11 @@ class BinaryBase {
                 }
             }
 
+            @Override
+            public void setProgress(int percent) {
+                binaryComponent.setStatusText("Searching... " + percent + "%");
+            }
+
             @Override
             public void clearStatus() {
                 updateFindStatus();
@@ -423,6 +423,7 @@ class BinaryEditor extends BinaryBase implements FileEditor {
             throw new CloseCancelledException();
         }
 
+        binarySearchService.cancelSearch();
         PagedData data = Objects.requireNonNull((PagedData) binaryComponent.getCodeArea().getContentData());
         data.dispose();
     }
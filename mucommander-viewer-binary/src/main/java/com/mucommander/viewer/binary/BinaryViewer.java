@@ -111,6 +111,7 @@ class BinaryViewer extends BinaryBase implements FileViewer {
 
     @Override
     public void close() {
+        binarySearchService.cancelSearch();
         Objects.requireNonNull(((FileBinaryData) binaryComponent.getCodeArea().getContentData())).close();
     }
 
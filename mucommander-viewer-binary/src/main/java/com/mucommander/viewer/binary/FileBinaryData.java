@@ -19,37 +19,100 @@ package com.mucommander.viewer.binary;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.exbin.auxiliary.binary_data.BinaryData;
 import org.exbin.auxiliary.binary_data.paged.PagedData;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.io.RandomAccess;
 import com.mucommander.commons.io.StreamUtils;
 
 /**
  * Class for direct binary access to abstract file.
+ * <p>
+ * The file is read in pages which are kept in a least recently used cache. When pages are requested in sequence, the
+ * following pages in the same direction are read ahead along with the requested one, so that scrolling through a file
+ * reads it in large sequential chunks. A single stream is kept open on the file: it is a random access stream when the
+ * file supports {@link FileOperation#RANDOM_READ_FILE}, otherwise it has to be reopened when reading backward.
  */
 @ParametersAreNonnullByDefault
 public class FileBinaryData implements BinaryData {
 
     public static final String BROKEN_ABSTRACT_FILE = "Broken abstract file";
-    public static final int PAGE_SIZE = 4096;
+    /** Default size of the cached pages */
+    public static final int PAGE_SIZE = 64 * 1024;
+    /** Default maximum number of cached pages */
+    public static final int CACHE_PAGES = 128;
+    /** Default maximum number of pages read ahead */
+    public static final int READ_AHEAD_PAGES = 16;
 
     private final AbstractFile file;
+    private final int pageSize;
+    private final int cachePages;
+    private final int readAheadPages;
 
     private InputStream cacheInputStream = null;
     private long cachePosition = 0;
-    private final DataPage[] cachePages = new DataPage[] { new DataPage(), new DataPage() };
-    private int nextCachePage = 0;
+    /** Cached pages by page index, in access order */
+    private final LinkedHashMap<Long, DataPage> cache;
+    /** Most recently accessed page, checked first as consecutive bytes are usually requested */
+    @Nullable
+    private DataPage lastPage;
+    /** Page evicted from the cache, whose buffer can be reused */
+    @Nullable
+    private DataPage freePage;
 
     public FileBinaryData(AbstractFile file) {
+        this(file, PAGE_SIZE, CACHE_PAGES, READ_AHEAD_PAGES);
+    }
+
+    /**
+     * Creates binary data backed by the given file, with the given cache settings.
+     *
+     * @param file file to read
+     * @param pageSize size of the pages the file is read by
+     * @param cachePages maximum number of pages kept in memory, at least 2
+     * @param readAheadPages maximum number of pages read at once on sequential access, 1 to disable read-ahead
+     */
+    public FileBinaryData(AbstractFile file, int pageSize, int cachePages, int readAheadPages) {
+        if (pageSize <= 0 || cachePages < 2 || readAheadPages < 1) {
+            throw new IllegalArgumentException("Invalid cache settings");
+        }
+
         this.file = file;
+        this.pageSize = pageSize;
+        this.cachePages = cachePages;
+        // Pages read ahead must not evict the requested one
+        this.readAheadPages = Math.min(readAheadPages, cachePages - 1);
+        cache = new LinkedHashMap<Long, DataPage>(cachePages * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DataPage> eldest) {
+                if (size() > FileBinaryData.this.cachePages) {
+                    freePage = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the file this data is read from.
+     *
+     * @return file
+     */
+    @Nonnull
+    public AbstractFile getFile() {
+        return file;
     }
 
     @Override
@@ -64,36 +127,29 @@ public class FileBinaryData implements BinaryData {
 
     @Override
     public synchronized byte getByte(long position) {
-        long pageIndex = position / PAGE_SIZE;
-        int pageOffset = (int) (position % PAGE_SIZE);
+        long pageIndex = position / pageSize;
+        int pageOffset = (int) (position % pageSize);
 
-        if (cachePages[0].pageIndex == pageIndex) {
-            return cachePages[0].page[pageOffset];
-        }
-        if (cachePages[1].pageIndex == pageIndex) {
-            return cachePages[1].page[pageOffset];
-        }
-        int usedPage = loadPage(pageIndex);
-        return cachePages[usedPage].page[pageOffset];
+        return getPage(pageIndex).page[pageOffset];
     }
 
     @Nonnull
     @Override
     public BinaryData copy() {
-        return new FileBinaryData(file);
+        return new FileBinaryData(file, pageSize, cachePages, readAheadPages);
     }
 
     @Nonnull
     @Override
     public synchronized BinaryData copy(long startFrom, long length) {
-        long pageIndex = startFrom / PAGE_SIZE;
-        int pageOffset = (int) (startFrom % PAGE_SIZE);
+        long pageIndex = startFrom / pageSize;
+        int pageOffset = (int) (startFrom % pageSize);
 
         PagedData data = new PagedData();
         long dataPosition = 0;
         while (length > 0) {
-            int pageLength = length > PAGE_SIZE - pageOffset ? PAGE_SIZE - pageOffset : (int) length;
-            copyTo(data, dataPosition, pageIndex, pageOffset, pageLength);
+            int pageLength = length > pageSize - pageOffset ? pageSize - pageOffset : (int) length;
+            data.insert(dataPosition, getPage(pageIndex).page, pageOffset, pageLength);
             pageIndex++;
             pageOffset = 0;
             dataPosition += pageLength;
@@ -103,26 +159,15 @@ public class FileBinaryData implements BinaryData {
         return data;
     }
 
-    private void copyTo(PagedData data, long dataPosition, long pageIndex, int pageOffset, int pageLength) {
-        if (cachePages[0].pageIndex == pageIndex) {
-            data.insert(dataPosition, cachePages[0].page, pageOffset, pageLength);
-        } else if (cachePages[1].pageIndex == pageIndex) {
-            data.insert(dataPosition, cachePages[1].page, pageOffset, pageLength);
-        } else {
-            int usedPage = loadPage(pageIndex);
-            data.insert(dataPosition, cachePages[usedPage].page, pageOffset, pageLength);
-        }
-    }
-
     @Override
     public synchronized void copyToArray(long startFrom, byte[] target, int offset, int length) {
-        long pageIndex = startFrom / PAGE_SIZE;
-        int pageOffset = (int) (startFrom % PAGE_SIZE);
+        long pageIndex = startFrom / pageSize;
+        int pageOffset = (int) (startFrom % pageSize);
 
         int dataPosition = offset;
         while (length > 0) {
-            int pageLength = Math.min(length, PAGE_SIZE - pageOffset);
-            copyTo(target, dataPosition, pageIndex, pageOffset, pageLength);
+            int pageLength = Math.min(length, pageSize - pageOffset);
+            System.arraycopy(getPage(pageIndex).page, pageOffset, target, dataPosition, pageLength);
             pageIndex++;
             pageOffset = 0;
             dataPosition += pageLength;
@@ -130,17 +175,6 @@ public class FileBinaryData implements BinaryData {
         }
     }
 
-    private void copyTo(byte[] data, int dataPosition, long pageIndex, int pageOffset, int pageLength) {
-        if (cachePages[0].pageIndex == pageIndex) {
-            System.arraycopy(cachePages[0].page, pageOffset, data, dataPosition, pageLength);
-        } else if (cachePages[1].pageIndex == pageIndex) {
-            System.arraycopy(cachePages[1].page, pageOffset, data, dataPosition, pageLength);
-        } else {
-            int usedPage = loadPage(pageIndex);
-            System.arraycopy(cachePages[usedPage].page, pageOffset, data, dataPosition, pageLength);
-        }
-    }
-
     @Override
     public void saveToStream(OutputStream outputStream) throws IOException {
         try (InputStream inputStream = file.getInputStream()) {
@@ -163,7 +197,7 @@ public class FileBinaryData implements BinaryData {
         resetCache();
     }
 
-    public void resetCache() {
+    public synchronized void resetCache() {
         if (cacheInputStream != null) {
             try {
                 cacheInputStream.close();
@@ -173,14 +207,92 @@ public class FileBinaryData implements BinaryData {
             cacheInputStream = null;
         }
 
-        cachePages[0].pageIndex = -1;
-        cachePages[1].pageIndex = -1;
+        cache.clear();
+        lastPage = null;
+        freePage = null;
     }
 
     public synchronized void close() {
         resetCache();
     }
 
+    @Nonnull
+    private DataPage getPage(long pageIndex) {
+        if (lastPage != null && lastPage.pageIndex == pageIndex) {
+            return lastPage;
+        }
+
+        DataPage page = cache.get(pageIndex);
+        if (page == null) {
+            page = loadPages(pageIndex);
+        }
+        lastPage = page;
+
+        return page;
+    }
+
+    /**
+     * Loads the given page, along with the following or preceding ones if the page is adjacent to a cached one, that
+     * is if pages are being read in sequence.
+     *
+     * @param pageIndex index of the requested page
+     * @return requested page
+     */
+    @Nonnull
+    private DataPage loadPages(long pageIndex) {
+        long firstIndex = pageIndex;
+        long lastIndex = pageIndex;
+        if (cache.containsKey(pageIndex - 1)) {
+            lastIndex = Math.min((getDataSize() - 1) / pageSize, pageIndex + readAheadPages - 1);
+        } else if (cache.containsKey(pageIndex + 1)) {
+            firstIndex = Math.max(0, pageIndex - readAheadPages + 1);
+        }
+
+        try {
+            // Pages are read in ascending order so that the stream does not need to be repositioned between pages.
+            // When reading forward, the requested page is read first and thus cannot be evicted by the following ones.
+            DataPage requestedPage = null;
+            for (long index = firstIndex; index <= lastIndex; index++) {
+                if (index == pageIndex) {
+                    requestedPage = loadPage(index);
+                } else if (!cache.containsKey(index)) {
+                    loadPage(index);
+                }
+            }
+
+            return requestedPage;
+        } catch (IOException e) {
+            throw new IllegalStateException(BROKEN_ABSTRACT_FILE, e);
+        }
+    }
+
+    @Nonnull
+    private DataPage loadPage(long pageIndex) throws IOException {
+        long position = pageIndex * pageSize;
+        int length = (int) Math.min(pageSize, getDataSize() - position);
+        InputStream inputStream = getInputStream(position);
+
+        DataPage page = freePage != null ? freePage : new DataPage(pageSize);
+        freePage = null;
+        // Mark the page as invalid until it has been fully read
+        page.pageIndex = -1;
+        int done = 0;
+        while (done < length) {
+            int copied = inputStream.read(page.page, done, length - done);
+            if (copied < 0) {
+                cachePosition += done;
+                throw new IllegalStateException(BROKEN_ABSTRACT_FILE);
+            }
+            done += copied;
+        }
+        cachePosition += done;
+
+        page.pageIndex = pageIndex;
+        cache.put(pageIndex, page);
+
+        return page;
+    }
+
     @Nonnull
     private InputStream getInputStream(long position) throws IOException {
         if (cacheInputStream != null && position == cachePosition) {
@@ -195,10 +307,11 @@ public class FileBinaryData implements BinaryData {
             if (cacheInputStream != null) {
                 cacheInputStream.close();
             }
-            cacheInputStream = file.getInputStream();
-            if (cacheInputStream instanceof RandomAccess) {
+            if (file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+                cacheInputStream = file.getRandomAccessInputStream();
                 ((RandomAccess) cacheInputStream).seek(position);
             } else {
+                cacheInputStream = file.getInputStream();
                 StreamUtils.skipFully(cacheInputStream, position);
             }
             cachePosition = position;
@@ -207,36 +320,12 @@ public class FileBinaryData implements BinaryData {
         return cacheInputStream;
     }
 
-    private int loadPage(long pageIndex) {
-        int usedPage = nextCachePage;
-        long position = pageIndex * PAGE_SIZE;
-        long dataSize = getDataSize();
-        try {
-            InputStream inputStream = getInputStream(position);
-
-            int done = 0;
-            int remains = position + PAGE_SIZE > dataSize ? (int) (dataSize - position) : PAGE_SIZE;
-            while (remains > 0) {
-                int copied = inputStream.read(cachePages[usedPage].page, done, remains);
-                if (copied < 0) {
-                    throw new IllegalStateException(BROKEN_ABSTRACT_FILE);
-                }
-                cachePosition += copied;
-                remains -= copied;
-                done += copied;
-            }
-
-            cachePages[usedPage].pageIndex = pageIndex;
-            nextCachePage = 1 - nextCachePage;
-        } catch (IOException e) {
-            throw new IllegalStateException(BROKEN_ABSTRACT_FILE, e);
-        }
-
-        return usedPage;
-    }
-
     private static class DataPage {
         long pageIndex = -1;
-        byte[] page = new byte[PAGE_SIZE];
+        final byte[] page;
+
+        DataPage(int pageSize) {
+            page = new byte[pageSize];
+        }
     }
 }
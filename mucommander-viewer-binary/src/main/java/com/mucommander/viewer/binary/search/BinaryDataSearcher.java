@@ -0,0 +1,303 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.viewer.binary.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.RandomAccess;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.search.BytePattern;
+import com.mucommander.viewer.binary.FileBinaryData;
+
+/**
+ * Finds the occurrences of a {@link BytePattern} in binary data.
+ * <p>
+ * The data is scanned block by block with the Boyer-Moore-Horspool algorithm, consecutive blocks overlapping by the
+ * length of the pattern minus one byte so that matches spanning two blocks are found. Data backed by a local file is
+ * memory-mapped, data backed by other files is read in large blocks from a stream of its own, and other data is copied
+ * block by block. This avoids going through {@link BinaryData#getByte(long)}, which is slow for file-backed data.
+ */
+@ParametersAreNonnullByDefault
+class BinaryDataSearcher {
+
+    /** Size of the blocks that are read from streams or copied from the data */
+    static final int BLOCK_SIZE = 1024 * 1024;
+    /** Size of the regions of local files that are mapped at once */
+    static final int MAPPED_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Receives the matches and the progress of a search.
+     */
+    interface MatchListener {
+
+        /**
+         * Called for every match, in the order of the search direction.
+         *
+         * @param position position of the match
+         * @return false to stop the search
+         */
+        boolean matchFound(long position);
+
+        /**
+         * Called after each block of data has been scanned.
+         *
+         * @param processed number of bytes scanned so far
+         * @param total number of bytes to scan
+         */
+        void progress(long processed, long total);
+    }
+
+    private final BinaryData data;
+    private final BytePattern pattern;
+
+    BinaryDataSearcher(BinaryData data, BytePattern pattern) {
+        this.data = data;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Searches for the pattern, starting from the given position.
+     *
+     * @param startPosition position of the first match to consider: matches are reported from this position to the
+     * end of the data when searching forward, and from this position to the beginning when searching backward
+     * @param direction search direction
+     * @param listener listener receiving the matches
+     * @param cancelled tells whether the search has been cancelled, checked after each block
+     * @throws IOException if the data could not be read
+     */
+    void search(long startPosition, SearchParameters.SearchDirection direction, MatchListener listener,
+            BooleanSupplier cancelled) throws IOException {
+        int length = pattern.getLength();
+        long dataSize = data.getDataSize();
+        if (length == 0 || dataSize < length) {
+            return;
+        }
+
+        try (BlockSource source = openBlockSource()) {
+            int blockSize = Math.max(source.getBlockSize(), length * 2);
+            if (direction == SearchParameters.SearchDirection.FORWARD) {
+                long rangeStart = Math.max(0, startPosition);
+                long total = dataSize - rangeStart;
+                long blockStart = rangeStart;
+                while (blockStart + length <= dataSize && !cancelled.getAsBoolean()) {
+                    int blockLength = (int) Math.min(blockSize, dataSize - blockStart);
+                    ByteBuffer block = source.read(blockStart, blockLength);
+                    int limit = blockLength - length;
+                    int i = 0;
+                    while (i <= limit) {
+                        byte last = block.get(i + length - 1);
+                        if (pattern.matches(block, i) && !listener.matchFound(blockStart + i)) {
+                            return;
+                        }
+                        i += pattern.getShift(last);
+                    }
+
+                    long blockEnd = blockStart + blockLength;
+                    listener.progress(blockEnd - rangeStart, total);
+                    blockStart = blockEnd - length + 1;
+                }
+            } else {
+                long rangeEnd = Math.min(dataSize, startPosition + length);
+                long blockEnd = rangeEnd;
+                while (blockEnd >= length && !cancelled.getAsBoolean()) {
+                    long blockStart = Math.max(0, blockEnd - blockSize);
+                    int blockLength = (int) (blockEnd - blockStart);
+                    ByteBuffer block = source.read(blockStart, blockLength);
+
+                    // Matches are found forward within the block, and reported backward
+                    int[] matches = new int[16];
+                    int nbMatches = 0;
+                    int limit = blockLength - length;
+                    int i = 0;
+                    while (i <= limit) {
+                        byte last = block.get(i + length - 1);
+                        if (pattern.matches(block, i)) {
+                            if (nbMatches == matches.length) {
+                                matches = Arrays.copyOf(matches, nbMatches * 2);
+                            }
+                            matches[nbMatches++] = i;
+                        }
+                        i += pattern.getShift(last);
+                    }
+                    for (int m = nbMatches - 1; m >= 0; m--) {
+                        if (!listener.matchFound(blockStart + matches[m])) {
+                            return;
+                        }
+                    }
+
+                    listener.progress(rangeEnd - blockStart, rangeEnd);
+                    if (blockStart == 0) {
+                        break;
+                    }
+                    blockEnd = blockStart + length - 1;
+                }
+            }
+        }
+    }
+
+    private BlockSource openBlockSource() throws IOException {
+        if (data instanceof FileBinaryData) {
+            AbstractFile file = ((FileBinaryData) data).getFile();
+            InputStream in = file.getInputStream();
+            FileChannel channel = StreamUtils.getFileChannel(in);
+            if (channel != null) {
+                return new MappedBlockSource(in, channel);
+            }
+            return new StreamBlockSource(file, in);
+        }
+
+        return new BinaryDataBlockSource(data);
+    }
+
+    /**
+     * Provides blocks of data to scan.
+     */
+    private interface BlockSource extends Closeable {
+
+        int getBlockSize();
+
+        /**
+         * Returns the given range of data, in a buffer whose absolute index 0 corresponds to the start of the range.
+         */
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * Maps regions of a local file into memory.
+     */
+    private static class MappedBlockSource implements BlockSource {
+
+        private final InputStream in;
+        private final FileChannel channel;
+
+        MappedBlockSource(InputStream in, FileChannel channel) {
+            this.in = in;
+            this.channel = channel;
+        }
+
+        @Override
+        public int getBlockSize() {
+            return MAPPED_BLOCK_SIZE;
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads blocks from a stream of the file, reopening the stream when a block located before the current position
+     * is requested from a stream that cannot seek.
+     */
+    private static class StreamBlockSource implements BlockSource {
+
+        private final AbstractFile file;
+        private InputStream in;
+        private long streamPosition;
+        @Nullable
+        private byte[] buffer;
+
+        StreamBlockSource(AbstractFile file, InputStream in) {
+            this.file = file;
+            this.in = in;
+        }
+
+        @Override
+        public int getBlockSize() {
+            return BLOCK_SIZE;
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            if (position != streamPosition) {
+                if (in instanceof RandomAccess) {
+                    ((RandomAccess) in).seek(position);
+                } else {
+                    if (position < streamPosition) {
+                        in.close();
+                        in = file.getInputStream();
+                        streamPosition = 0;
+                    }
+                    StreamUtils.skipFully(in, position - streamPosition);
+                }
+                streamPosition = position;
+            }
+
+            if (buffer == null || buffer.length < length) {
+                buffer = new byte[Math.max(length, BLOCK_SIZE)];
+            }
+            StreamUtils.readFully(in, buffer, 0, length);
+            streamPosition += length;
+
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Copies blocks from in-memory data.
+     */
+    private static class BinaryDataBlockSource implements BlockSource {
+
+        private final BinaryData data;
+        @Nullable
+        private byte[] buffer;
+
+        BinaryDataBlockSource(BinaryData data) {
+            this.data = data;
+        }
+
+        @Override
+        public int getBlockSize() {
+            return BLOCK_SIZE;
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) {
+            if (buffer == null || buffer.length < length) {
+                buffer = new byte[Math.max(length, BLOCK_SIZE)];
+            }
+            data.copyToArray(position, buffer, 0, length);
+
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
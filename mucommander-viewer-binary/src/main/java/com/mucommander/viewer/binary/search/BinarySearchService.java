@@ -36,11 +36,23 @@ public interface BinarySearchService {
 
     void clearMatches();
 
+    /**
+     * Cancels the search in progress, if any. Matches of a cancelled search are not reported.
+     */
+    void cancelSearch();
+
     @ParametersAreNonnullByDefault
     public interface SearchStatusListener {
 
         void setStatus(FoundMatches foundMatches);
 
+        /**
+         * Reports the progress of a search in progress.
+         *
+         * @param percent percentage of the data searched so far
+         */
+        void setProgress(int percent);
+
         void clearStatus();
     }
 
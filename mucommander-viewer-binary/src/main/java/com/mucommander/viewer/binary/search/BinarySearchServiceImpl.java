@@ -16,25 +16,43 @@
  */
 package com.mucommander.viewer.binary.search;
 
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.SwingWorker;
 import org.exbin.auxiliary.binary_data.BinaryData;
 import org.exbin.auxiliary.binary_data.EditableBinaryData;
 import org.exbin.bined.CodeAreaUtils;
 import org.exbin.bined.highlight.swing.HighlightCodeAreaPainter;
 import org.exbin.bined.swing.basic.CodeArea;
 
+import com.mucommander.search.BytePattern;
+
 /**
  * Binary search service.
+ * <p>
+ * Searches are performed in the background by a {@link BinaryDataSearcher}, and their progress is reported to the
+ * {@link SearchStatusListener}. A search is cancelled when another one is started or when matches are cleared.
+ * Editable data is searched in a snapshot taken when the search is started, as it may be edited in the meantime.
  */
 @ParametersAreNonnullByDefault
 public class BinarySearchServiceImpl implements BinarySearchService {
 
+    private static final Logger LOGGER = Logger.getLogger(BinarySearchServiceImpl.class.getName());
+
+    /** Maximum number of matches that are highlighted */
+    public static final int MAX_MATCHES = 100_000;
+
     private final CodeArea codeArea;
+    @Nullable
+    private SearchWorker searchWorker;
 
     public BinarySearchServiceImpl(CodeArea codeArea) {
         this.codeArea = codeArea;
@@ -42,6 +60,8 @@ public class BinarySearchServiceImpl implements BinarySearchService {
 
     @Override
     public void performFind(SearchParameters searchParameters, SearchStatusListener searchStatusListener) {
+        cancelSearch();
+
         HighlightCodeAreaPainter painter = (HighlightCodeAreaPainter) codeArea.getPainter();
         SearchCondition condition = searchParameters.getCondition();
         searchStatusListener.clearStatus();
@@ -54,6 +74,11 @@ public class BinarySearchServiceImpl implements BinarySearchService {
         long position;
         if (searchParameters.isSearchFromCursor()) {
             position = codeArea.getCaretPosition().getDataPosition();
+            HighlightCodeAreaPainter.SearchMatch currentMatch = painter.getCurrentMatch();
+            if (currentMatch != null && currentMatch.getPosition() == position) {
+                // Skip the match the cursor is on, so that repeated searches move on to the next match
+                position += searchParameters.getSearchDirection() == SearchParameters.SearchDirection.FORWARD ? 1 : -1;
+            }
         } else {
             switch (searchParameters.getSearchDirection()) {
             case FORWARD: {
@@ -69,68 +94,53 @@ public class BinarySearchServiceImpl implements BinarySearchService {
             }
         }
         searchParameters.setStartPosition(position);
+        painter.clearMatches();
 
+        BytePattern pattern;
         switch (condition.getSearchMode()) {
         case TEXT: {
-            searchForText(searchParameters, searchStatusListener);
+            pattern = BytePattern.forText(condition.getSearchText(), codeArea.getCharset(),
+                    searchParameters.isMatchCase());
             break;
         }
         case BINARY: {
-            searchForBinaryData(searchParameters, searchStatusListener);
+            BinaryData binaryData = Objects.requireNonNull(condition.getBinaryData());
+            byte[] bytes = new byte[(int) binaryData.getDataSize()];
+            binaryData.copyToArray(0, bytes, 0, bytes.length);
+            pattern = BytePattern.forBytes(bytes);
             break;
         }
         default:
             throw CodeAreaUtils.getInvalidTypeException(condition.getSearchMode());
         }
-    }
 
-    /**
-     * Performs search by binary data.
-     */
-    private void searchForBinaryData(SearchParameters searchParameters, SearchStatusListener searchStatusListener) {
-        HighlightCodeAreaPainter painter = (HighlightCodeAreaPainter) codeArea.getPainter();
-        SearchCondition condition = searchParameters.getCondition();
-        long position = codeArea.getCaretPosition().getDataPosition();
-        HighlightCodeAreaPainter.SearchMatch currentMatch = painter.getCurrentMatch();
-
-        if (currentMatch != null) {
-            if (currentMatch.getPosition() == position) {
-                position++;
-            }
-            painter.clearMatches();
-        } else if (!searchParameters.isSearchFromCursor()) {
-            position = 0;
+        if (pattern == null) {
+            // The text cannot be represented in the current charset
+            showMatches(Collections.emptyList(), searchStatusListener);
+            return;
         }
 
-        BinaryData searchData = condition.getBinaryData();
+        // The worker must not read data that the event dispatch thread may edit while it runs
         BinaryData data = codeArea.getContentData();
+        boolean snapshot = data instanceof EditableBinaryData;
+        searchWorker = new SearchWorker(snapshot ? data.copy() : data, snapshot, pattern, searchParameters,
+                searchStatusListener);
+        searchWorker.execute();
+    }
 
-        List<HighlightCodeAreaPainter.SearchMatch> foundMatches = new ArrayList<>();
-
-        long dataSize = data.getDataSize();
-        while (position < dataSize - searchData.getDataSize()) {
-            int matchLength = 0;
-            while (matchLength < searchData.getDataSize()) {
-                if (data.getByte(position + matchLength) != searchData.getByte(matchLength)) {
-                    break;
-                }
-                matchLength++;
-            }
-
-            if (matchLength == searchData.getDataSize()) {
-                HighlightCodeAreaPainter.SearchMatch match = new HighlightCodeAreaPainter.SearchMatch();
-                match.setPosition(position);
-                match.setLength(searchData.getDataSize());
-                foundMatches.add(match);
-
-                if (foundMatches.size() == 100 || !searchParameters.isMultipleMatches()) {
-                    break;
-                }
-            }
-
-            position++;
+    @Override
+    public void cancelSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(false);
+            searchWorker = null;
         }
+    }
 
+    /**
+     * Highlights the given matches and reveals the first one.
+     */
+    private void showMatches(List<HighlightCodeAreaPainter.SearchMatch> foundMatches, SearchStatusListener searchStatusListener) {
+        HighlightCodeAreaPainter painter = (HighlightCodeAreaPainter) codeArea.getPainter();
         painter.setMatches(foundMatches);
         if (!foundMatches.isEmpty()) {
             painter.setCurrentMatchIndex(0);
@@ -142,91 +152,89 @@ public class BinarySearchServiceImpl implements BinarySearchService {
     }
 
     /**
-     * Performs search by text/characters.
+     * Searches the data in the background, reporting the progress of the search, and highlights the matches once
+     * the search is complete.
      */
-    private void searchForText(SearchParameters searchParameters, SearchStatusListener searchStatusListener) {
-        HighlightCodeAreaPainter painter = (HighlightCodeAreaPainter) codeArea.getPainter();
-        SearchCondition condition = searchParameters.getCondition();
+    private class SearchWorker extends SwingWorker<List<HighlightCodeAreaPainter.SearchMatch>, Integer> {
 
-        long position = searchParameters.getStartPosition();
-        String findText;
-        if (searchParameters.isMatchCase()) {
-            findText = condition.getSearchText();
-        } else {
-            findText = condition.getSearchText().toLowerCase();
+        private final BinaryData data;
+        private final boolean snapshot;
+        private final BinaryDataSearcher searcher;
+        private final BytePattern pattern;
+        private final SearchParameters searchParameters;
+        private final SearchStatusListener searchStatusListener;
+
+        SearchWorker(BinaryData data, boolean snapshot, BytePattern pattern, SearchParameters searchParameters,
+                SearchStatusListener searchStatusListener) {
+            this.data = data;
+            this.snapshot = snapshot;
+            this.searcher = new BinaryDataSearcher(data, pattern);
+            this.pattern = pattern;
+            this.searchParameters = searchParameters;
+            this.searchStatusListener = searchStatusListener;
         }
-        BinaryData data = codeArea.getContentData();
 
-        List<HighlightCodeAreaPainter.SearchMatch> foundMatches = new ArrayList<>();
+        @Override
+        protected List<HighlightCodeAreaPainter.SearchMatch> doInBackground() throws IOException {
+            List<HighlightCodeAreaPainter.SearchMatch> foundMatches = new ArrayList<>();
+            int maxMatches = searchParameters.isMultipleMatches() ? MAX_MATCHES : 1;
+            try {
+                searcher.search(searchParameters.getStartPosition(), searchParameters.getSearchDirection(),
+                        new BinaryDataSearcher.MatchListener() {
+                            private int lastPercent = -1;
 
-        Charset charset = codeArea.getCharset();
-        int maxBytesPerChar;
-        try {
-            CharsetEncoder encoder = charset.newEncoder();
-            maxBytesPerChar = (int) encoder.maxBytesPerChar();
-        } catch (UnsupportedOperationException ex) {
-            maxBytesPerChar = 8; // CharsetStreamTranslator.DEFAULT_MAX_BYTES_PER_CHAR;
-        }
-        byte[] charData = new byte[maxBytesPerChar];
-        long dataSize = data.getDataSize();
-        while (position <= dataSize - findText.length()) {
-            int matchCharLength = 0;
-            int matchLength = 0;
-            while (matchCharLength < findText.length()) {
-                long searchPosition = position + matchLength;
-                int bytesToUse = maxBytesPerChar;
-                if (searchPosition + bytesToUse > dataSize) {
-                    bytesToUse = (int) (dataSize - searchPosition);
-                }
-                data.copyToArray(searchPosition, charData, 0, bytesToUse);
-                char singleChar = new String(charData, charset).charAt(0);
-                String singleCharString = String.valueOf(singleChar);
-                int characterLength = singleCharString.getBytes(charset).length;
+                            @Override
+                            public boolean matchFound(long position) {
+                                HighlightCodeAreaPainter.SearchMatch match = new HighlightCodeAreaPainter.SearchMatch();
+                                match.setPosition(position);
+                                match.setLength(pattern.getLength());
+                                foundMatches.add(match);
+                                return foundMatches.size() < maxMatches;
+                            }
 
-                if (searchParameters.isMatchCase()) {
-                    if (singleChar != findText.charAt(matchCharLength)) {
-                        break;
-                    }
-                } else if (singleCharString.toLowerCase().charAt(0) != findText.charAt(matchCharLength)) {
-                    break;
+                            @Override
+                            public void progress(long processed, long total) {
+                                int percent = (int) (processed * 100 / Math.max(1, total));
+                                if (percent != lastPercent) {
+                                    lastPercent = percent;
+                                    publish(percent);
+                                }
+                            }
+                        }, this::isCancelled);
+            } finally {
+                if (snapshot) {
+                    data.dispose();
                 }
-                matchCharLength++;
-                matchLength += characterLength;
             }
 
-            if (matchCharLength == findText.length()) {
-                HighlightCodeAreaPainter.SearchMatch match = new HighlightCodeAreaPainter.SearchMatch();
-                match.setPosition(position);
-                match.setLength(matchLength);
-                foundMatches.add(match);
+            return foundMatches;
+        }
 
-                if (foundMatches.size() == 100 || !searchParameters.isMultipleMatches()) {
-                    break;
-                }
+        @Override
+        protected void process(List<Integer> chunks) {
+            if (!isCancelled()) {
+                searchStatusListener.setProgress(chunks.get(chunks.size() - 1));
             }
+        }
 
-            switch (searchParameters.getSearchDirection()) {
-            case FORWARD: {
-                position++;
-                break;
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
             }
-            case BACKWARD: {
-                position--;
-                break;
+            if (searchWorker == this) {
+                searchWorker = null;
             }
-            default:
-                throw CodeAreaUtils.getInvalidTypeException(searchParameters.getSearchDirection());
-            }
-        }
 
-        painter.setMatches(foundMatches);
-        if (!foundMatches.isEmpty()) {
-            painter.setCurrentMatchIndex(0);
-            HighlightCodeAreaPainter.SearchMatch firstMatch = painter.getCurrentMatch();
-            codeArea.revealPosition(firstMatch.getPosition(), 0, codeArea.getActiveSection());
+            List<HighlightCodeAreaPainter.SearchMatch> foundMatches;
+            try {
+                foundMatches = get();
+            } catch (InterruptedException | ExecutionException ex) {
+                LOGGER.log(Level.WARNING, "binary search failed", ex);
+                foundMatches = Collections.emptyList();
+            }
+            showMatches(foundMatches, searchStatusListener);
         }
-        searchStatusListener.setStatus(new FoundMatches(foundMatches.size(), foundMatches.isEmpty() ? -1 : 0));
-        codeArea.repaint();
     }
 
     @Override
@@ -271,6 +279,7 @@ public class BinarySearchServiceImpl implements BinarySearchService {
 
     @Override
     public void clearMatches() {
+        cancelSearch();
         HighlightCodeAreaPainter painter = (HighlightCodeAreaPainter) codeArea.getPainter();
         painter.clearMatches();
     }
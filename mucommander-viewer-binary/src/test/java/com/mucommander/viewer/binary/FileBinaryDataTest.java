@@ -0,0 +1,89 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.viewer.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * A test case for {@link FileBinaryData}.
+ */
+public class FileBinaryDataTest {
+
+    private AbstractFile file;
+    private byte[] content;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        content = new byte[100_000];
+        new Random(0).nextBytes(content);
+
+        file = FileFactory.getTemporaryFile(getClass().getName(), true);
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(content);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Asserts that bytes read forward, backward and at random positions match the file's content, with a cache much
+     * smaller than the file so that pages get evicted and read again.
+     */
+    @Test
+    public void testRead() {
+        FileBinaryData data = new FileBinaryData(file, 1000, 8, 4);
+        try {
+            for (int i = 0; i < content.length; i++) {
+                assert data.getByte(i) == content[i];
+            }
+            for (int i = content.length - 1; i >= 0; i--) {
+                assert data.getByte(i) == content[i];
+            }
+
+            Random random = new Random(0);
+            for (int i = 0; i < 1000; i++) {
+                int position = random.nextInt(content.length);
+                int length = random.nextInt(Math.min(5000, content.length - position));
+                byte[] target = new byte[length];
+                data.copyToArray(position, target, 0, length);
+                assert Arrays.equals(target, 0, length, content, position, position + length);
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Asserts that the cache settings are validated.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSettings() {
+        new FileBinaryData(file, 1000, 1, 4);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.viewer.binary.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.testng.annotations.Test;
+
+import com.mucommander.search.BytePattern;
+
+/**
+ * A test case for {@link BinaryDataSearcher}.
+ */
+public class BinaryDataSearcherTest {
+
+    private static List<Long> search(byte[] data, BytePattern pattern, long startPosition,
+            SearchParameters.SearchDirection direction) throws IOException {
+        List<Long> matches = new ArrayList<>();
+        new BinaryDataSearcher(new ByteArrayData(data), pattern).search(startPosition, direction,
+                new BinaryDataSearcher.MatchListener() {
+                    @Override
+                    public boolean matchFound(long position) {
+                        matches.add(position);
+                        return true;
+                    }
+
+                    @Override
+                    public void progress(long processed, long total) {
+                    }
+                }, () -> false);
+        return matches;
+    }
+
+    private static List<Long> naiveSearch(byte[] data, byte[] pattern) {
+        List<Long> matches = new ArrayList<>();
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                matches.add((long) i);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Asserts that all matches are found in both directions, including the ones spanning two blocks.
+     */
+    @Test
+    public void testBinarySearch() throws IOException {
+        Random random = new Random(0);
+        byte[] data = new byte[BinaryDataSearcher.BLOCK_SIZE * 3 + 123];
+        // Use few distinct values so that the pattern occurs often
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(4);
+        }
+        byte[] pattern = new byte[] { 1, 2, 3, 0, 1, 2, 3, 0 };
+        System.arraycopy(pattern, 0, data, BinaryDataSearcher.BLOCK_SIZE - 3, pattern.length);
+        System.arraycopy(pattern, 0, data, data.length - pattern.length, pattern.length);
+
+        BytePattern searchPattern = BytePattern.forBytes(pattern);
+        List<Long> expected = naiveSearch(data, pattern);
+        assert expected.contains((long) BinaryDataSearcher.BLOCK_SIZE - 3);
+
+        assert search(data, searchPattern, 0, SearchParameters.SearchDirection.FORWARD).equals(expected);
+
+        List<Long> reversed = new ArrayList<>(expected);
+        Collections.reverse(reversed);
+        assert search(data, searchPattern, data.length, SearchParameters.SearchDirection.BACKWARD).equals(reversed);
+
+        // Searches starting from a match include it
+        long start = expected.get(expected.size() / 2);
+        assert search(data, searchPattern, start, SearchParameters.SearchDirection.FORWARD).get(0) == start;
+        assert search(data, searchPattern, start, SearchParameters.SearchDirection.BACKWARD).get(0) == start;
+    }
+
+    /**
+     * Asserts that text is matched regardless of case only when required.
+     */
+    @Test
+    public void testTextSearch() throws IOException {
+        byte[] data = "Größe, GRÖSSE, größe, gRÖßE".getBytes(StandardCharsets.UTF_8);
+
+        BytePattern caseSensitive = BytePattern.forText("größe", StandardCharsets.UTF_8, true);
+        assert search(data, caseSensitive, 0, SearchParameters.SearchDirection.FORWARD).size() == 1;
+
+        // "GRÖSSE" does not match as "SS" is not a case variant of a single character
+        BytePattern caseInsensitive = BytePattern.forText("größe", StandardCharsets.UTF_8, false);
+        assert search(data, caseInsensitive, 0, SearchParameters.SearchDirection.FORWARD)
+                .equals(Arrays.asList(0L, 18L, 27L));
+    }
+}
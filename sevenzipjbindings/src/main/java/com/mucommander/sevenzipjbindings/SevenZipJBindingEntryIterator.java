@@ -0,0 +1,311 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sevenzipjbindings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryIterator;
+import com.mucommander.commons.io.FailSafePipedInputStream;
+
+import net.sf.sevenzipjbinding.ExtractAskMode;
+import net.sf.sevenzipjbinding.ExtractOperationResult;
+import net.sf.sevenzipjbinding.IArchiveExtractCallback;
+import net.sf.sevenzipjbinding.ICryptoGetTextPassword;
+import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.ISequentialOutStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * An <code>ArchiveEntryIterator</code> that iterates through the entries of a {@link SevenZipJBindingROArchiveFile}
+ * and extracts them in a single pass when they are read in the iterator's order, as done when unpacking the archive.
+ *
+ * <p>Extracting the entries one at a time decompresses a solid block again for each of the entries it contains. When
+ * the content of the current entry is requested with {@link #getEntryInputStream(ArchiveEntry)}, this iterator
+ * instead starts extracting the remaining entries in a separate thread, with one
+ * {@link IInArchive#extract(int[], boolean, IArchiveExtractCallback)} call on an archive that is opened once. The
+ * extraction of an entry waits until the iterator reaches it: its data is then written to the stream that was
+ * returned for it, or discarded if it was not requested. Entry streams are backed by a bounded pipe, so the extraction
+ * does not get ahead of the reader.</p>
+ *
+ * <p>As with other entry iterators, the stream of an entry must be read before moving to the next entry.</p>
+ *
+ * @see SevenZipJBindingROArchiveFile#getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)
+ */
+class SevenZipJBindingEntryIterator implements ArchiveEntryIterator, IArchiveExtractCallback, ICryptoGetTextPassword {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SevenZipJBindingEntryIterator.class);
+
+    /** Size of the buffer between the extraction and the reader of an entry */
+    private final static int PIPE_SIZE = 1024 * 1024;
+
+    /** The archive whose entries are iterated */
+    private final SevenZipJBindingROArchiveFile archiveFile;
+
+    /** The archive's entries, in the archive's order: an entry's position is its index in the archive */
+    private final List<ArchiveEntry> entries;
+
+    /** Index of the current entry, -1 before the first call to {@link #nextEntry()} */
+    private int position = -1;
+
+    /** Index of the last entry whose content was requested, -1 if none */
+    private int requested = -1;
+
+    /** Stream to which the last requested entry is extracted */
+    private PipedOutputStream requestedOut;
+
+    /** Stream from which the last requested entry is read */
+    private FailSafePipedInputStream requestedIn;
+
+    /** Stream to which the entry that is being extracted is written, <code>null</code> if it is discarded */
+    private PipedOutputStream extractedOut;
+
+    /** Stream from which the entry that is being extracted is read */
+    private FailSafePipedInputStream extractedIn;
+
+    /** Thread in which the entries are extracted, <code>null</code> until an entry is requested */
+    private Thread extractionThread;
+
+    /** <code>true</code> once the extraction thread is finished */
+    private boolean extractionDone;
+
+    /** <code>true</code> once this iterator is closed */
+    private boolean closed;
+
+    /**
+     * Creates a new iterator that iterates through the given entries of the given archive.
+     *
+     * @param archiveFile the archive file that contains the entries
+     * @param entries the archive's entries, in the archive's order
+     */
+    SevenZipJBindingEntryIterator(SevenZipJBindingROArchiveFile archiveFile, List<ArchiveEntry> entries) {
+        this.archiveFile = archiveFile;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns a stream to the content of the given entry if it is the current entry of this iterator and its content
+     * was not requested already, <code>null</code> otherwise. The first request starts the extraction of the entries.
+     *
+     * @param entry an entry of the archive
+     * @return a stream to the content of the entry, <code>null</code> if it cannot be extracted by this iterator
+     */
+    synchronized InputStream getEntryInputStream(ArchiveEntry entry) throws IOException {
+        if (closed || extractionDone || position < 0 || position >= entries.size())
+            return null;
+
+        // The entry must be the current one: entries that come before it may have been extracted or discarded already
+        ArchiveEntry currentEntry = entries.get(position);
+        if (entry.isDirectory() || !currentEntry.getEntryObject().equals(entry.getEntryObject()))
+            return null;
+
+        if (position <= requested)
+            return null;
+
+        if (extractionThread == null)
+            startExtraction();
+
+        requestedIn = new FailSafePipedInputStream(PIPE_SIZE);
+        requestedOut = new PipedOutputStream(requestedIn);
+        requested = position;
+        notifyAll();
+
+        return requestedIn;
+    }
+
+    /**
+     * Starts extracting the entries that follow the current one, in a separate thread.
+     */
+    private void startExtraction() {
+        int[] indices = entries.stream()
+                .skip(position)
+                .filter(entry -> !entry.isDirectory())
+                .mapToInt(entry -> (Integer) entry.getEntryObject())
+                .toArray();
+
+        extractionThread = new Thread(() -> {
+            try (IInArchive inArchive = archiveFile.newInArchive()) {
+                inArchive.extract(indices, false, this);
+            } catch (IOException e) {
+                if (!isClosed()) {
+                    LOGGER.warn("failed to extract entries from archive: " + e.getMessage());
+                    LOGGER.debug("failed to extract entries from archive", e);
+                }
+
+                failRequestedEntry(e);
+            } finally {
+                synchronized (this) {
+                    extractionDone = true;
+                }
+                failRequestedEntry(new IOException("Entry could not be extracted from " + archiveFile.getName()));
+            }
+        }, "Extraction of " + archiveFile.getName());
+        extractionThread.setDaemon(true);
+        extractionThread.start();
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Fails the stream of the last requested entry, unless its extraction was completed.
+     */
+    private synchronized void failRequestedEntry(IOException e) {
+        if (requestedOut != null) {
+            requestedIn.setExternalFailure(e);
+            requestedOut = null;
+        }
+    }
+
+
+    /////////////////////////////////////////
+    // ArchiveEntryIterator implementation //
+    /////////////////////////////////////////
+
+    @Override
+    public synchronized ArchiveEntry nextEntry() throws IOException {
+        // The stream of the previous entry is not to be read anymore, let the extraction move on
+        if (requestedIn != null && requested == position)
+            requestedIn.close();
+
+        if (position < entries.size())
+            position++;
+        notifyAll();
+
+        return position < entries.size() ? entries.get(position) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            if (requestedIn != null)
+                requestedIn.close();
+            notifyAll();
+            thread = extractionThread;
+        }
+
+        // Wait for the extraction to be aborted, so that the archive is closed when this method returns
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    ////////////////////////////////////////////
+    // IArchiveExtractCallback implementation //
+    ////////////////////////////////////////////
+
+    @Override
+    public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) throws SevenZipException {
+        if (extractAskMode != ExtractAskMode.EXTRACT)
+            return null;
+
+        synchronized (this) {
+            // Wait until the entry is requested or the iterator moves past it
+            while (!closed && requested < index && position <= index) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new SevenZipException(e);
+                }
+            }
+
+            if (closed)
+                throw new SevenZipException("Iterator closed, extraction aborted");
+
+            // Discard the entry if it was not requested
+            if (requested != index)
+                return null;
+
+            extractedOut = requestedOut;
+            extractedIn = requestedIn;
+        }
+
+        final PipedOutputStream out = extractedOut;
+        return data -> {
+            try {
+                out.write(data);
+                out.flush();
+            } catch (IOException e) {
+                // The entry's stream was closed before it was read entirely, discard the rest of the entry
+                if (isClosed())
+                    throw new SevenZipException(e);
+            }
+            return data.length;
+        };
+    }
+
+    @Override
+    public void prepareOperation(ExtractAskMode extractAskMode) {
+    }
+
+    @Override
+    public synchronized void setOperationResult(ExtractOperationResult extractOperationResult) {
+        if (extractedOut == null)
+            return;
+
+        if (extractOperationResult == ExtractOperationResult.OK) {
+            try {
+                extractedOut.close();
+            } catch (IOException e) {
+                LOGGER.debug("failed to close entry stream", e);
+            }
+        } else {
+            extractedIn.setExternalFailure(new IOException("Failed to extract entry: " + extractOperationResult));
+        }
+
+        if (requestedOut == extractedOut)
+            requestedOut = null;
+        extractedOut = null;
+        extractedIn = null;
+    }
+
+    @Override
+    public void setTotal(long total) {
+    }
+
+    @Override
+    public void setCompleted(long complete) throws SevenZipException {
+        // Abort the extraction of discarded entries as well
+        if (isClosed())
+            throw new SevenZipException("Iterator closed, extraction aborted");
+    }
+
+
+    ///////////////////////////////////////////
+    // ICryptoGetTextPassword implementation //
+    ///////////////////////////////////////////
+
+    @Override
+    public String cryptoGetTextPassword() {
+        String password = archiveFile.getPassword();
+        return password == null ? "" : password;
+    }
+}
@@ -17,6 +17,8 @@
 
 package com.mucommander.sevenzipjbindings;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,7 +34,6 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
-import com.mucommander.commons.file.archive.WrapperArchiveEntryIterator;
 import com.mucommander.commons.util.CircularByteBuffer;
 import com.mucommander.commons.util.StringUtils;
 import com.mucommander.sevenzipjbindings.multivolume.InArchiveWrapper;
@@ -88,30 +89,39 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
     }
 
     private IInArchive openInArchive() throws IOException {
-        if (inArchive == null) {
-            boolean multiPartRar = MULTI_PART_RAR_PATTERN.matcher(file.getName()).find();
-            boolean multiPartSevenZip = file.getName().toLowerCase().endsWith(MULTI_PART_7Z_EXT);
-
-            if (multiPartRar) {
-                SevenZipRarMultiVolumeCallbackHandler handler = new SevenZipRarMultiVolumeCallbackHandler(formatSignature, password);
-                IInStream firstStream = handler.getStream(file.getAbsolutePath());
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, firstStream, handler);
-                inArchive = new InArchiveWrapper(tmpInArchive, handler);
-            } else if (multiPartSevenZip) {
-                SevenZipMultiVolumeCallbackHandler handler = new SevenZipMultiVolumeCallbackHandler(formatSignature, file, password);
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, new VolumedArchiveInStream(handler));
-                if (isEnc(tmpInArchive) && password == null) {
-                    // Throwing this exception to trigger password dialog
-                    throw new IOException(String.format("Password protected file but password is null [file = %s]", file.getName()));
-                }
-                inArchive = new InArchiveWrapper(tmpInArchive, handler);
-            } else {
-                SignatureCheckedRandomAccessFile in = new SignatureCheckedRandomAccessFile(file, formatSignature);
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, in, password);
-                inArchive = new InArchiveWrapper(tmpInArchive, in);
+        if (inArchive == null)
+            inArchive = newInArchive();
+        return inArchive;
+    }
+
+    /**
+     * Opens the archive. The returned archive is not shared with other callers and must be closed by the caller.
+     *
+     * @return the opened archive
+     * @throws IOException in case the file cannot be opened or its signature differs from the specified signature
+     */
+    IInArchive newInArchive() throws IOException {
+        boolean multiPartRar = MULTI_PART_RAR_PATTERN.matcher(file.getName()).find();
+        boolean multiPartSevenZip = file.getName().toLowerCase().endsWith(MULTI_PART_7Z_EXT);
+
+        if (multiPartRar) {
+            SevenZipRarMultiVolumeCallbackHandler handler = new SevenZipRarMultiVolumeCallbackHandler(formatSignature, password);
+            IInStream firstStream = handler.getStream(file.getAbsolutePath());
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, firstStream, handler);
+            return new InArchiveWrapper(tmpInArchive, handler);
+        } else if (multiPartSevenZip) {
+            SevenZipMultiVolumeCallbackHandler handler = new SevenZipMultiVolumeCallbackHandler(formatSignature, file, password);
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, new VolumedArchiveInStream(handler));
+            if (isEnc(tmpInArchive) && password == null) {
+                // Throwing this exception to trigger password dialog
+                throw new IOException(String.format("Password protected file but password is null [file = %s]", file.getName()));
             }
+            return new InArchiveWrapper(tmpInArchive, handler);
+        } else {
+            SignatureCheckedRandomAccessFile in = new SignatureCheckedRandomAccessFile(file, formatSignature);
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, in, password);
+            return new InArchiveWrapper(tmpInArchive, in);
         }
-        return inArchive;
     }
 
     private boolean isEnc(IInArchive archive) {
@@ -140,7 +150,7 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
                 for (int i = 0; i < nbEntries; i++) {
                     entries.add(createArchiveEntry(i, sevenZipFile));
                 }
-                return new WrapperArchiveEntryIterator(entries.iterator());
+                return new SevenZipJBindingEntryIterator(this, entries);
             }
         } catch (SevenZipException e) {
             LOGGER.warn("failed to list archive: " + e.getMessage());
@@ -155,7 +165,15 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
     }
 
     @Override
-    public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) {
+    public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
+        // Optimization: when the entries are read in the iterator's order (unpack operation), the iterator extracts
+        // them in a single pass instead of decompressing the archive again for each of them
+        if (entryIterator instanceof SevenZipJBindingEntryIterator) {
+            InputStream in = ((SevenZipJBindingEntryIterator) entryIterator).getEntryInputStream(entry);
+            if (in != null)
+                return in;
+        }
+
         final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
         new Thread(() -> {
             synchronized (SevenZipJBindingROArchiveFile.this) {
@@ -195,6 +213,33 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
         return cbb.getInputStream();
     }
 
+    /**
+     * Returns <code>true</code> for single-volume archives that are not password-protected: entries are extracted by
+     * index, which is cached along with them. The listing of a multi-volume archive may change without the first
+     * volume being modified, and listings that are protected by a password must not be disclosed without it.
+     */
+    @Override
+    protected boolean isEntryCacheSupported() {
+        String name = file.getName();
+        return password == null
+                && !MULTI_PART_RAR_PATTERN.matcher(name).find()
+                && !name.toLowerCase().endsWith(MULTI_PART_7Z_EXT);
+    }
+
+    @Override
+    protected void writeCachedEntry(ArchiveEntry entry, DataOutput out) throws IOException {
+        out.writeInt((Integer) entry.getEntryObject());
+        super.writeCachedEntry(entry, out);
+    }
+
+    @Override
+    protected ArchiveEntry readCachedEntry(DataInput in) throws IOException {
+        int index = in.readInt();
+        ArchiveEntry entry = super.readCachedEntry(in);
+        entry.setEntryObject(index);
+        return entry;
+    }
+
     /**
      * Creates and return an {@link ArchiveEntry()} whose attributes are fetched from the given {@link com.mucommander.commons.file.impl.sevenzip.provider.SevenZip.Archive.SevenZipEntry}
      *
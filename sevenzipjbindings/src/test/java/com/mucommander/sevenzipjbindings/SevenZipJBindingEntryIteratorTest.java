@@ -0,0 +1,187 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sevenzipjbindings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryIterator;
+
+import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.IOutCreateArchive7z;
+import net.sf.sevenzipjbinding.IOutCreateCallback;
+import net.sf.sevenzipjbinding.IOutItem7z;
+import net.sf.sevenzipjbinding.ISequentialInStream;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.impl.OutItemFactory;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileOutStream;
+import net.sf.sevenzipjbinding.util.ByteArrayStream;
+
+/**
+ * A test case for {@link SevenZipJBindingEntryIterator}, which extracts the entries of a solid 7z archive.
+ */
+public class SevenZipJBindingEntryIteratorTest {
+
+    private static final byte[] SIGNATURE = { 0x37, 0x7A, (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C };
+
+    private static final int NB_FILES = 20;
+
+    /** Content of the files, the first entry of the archive being a directory */
+    private byte[][] contents;
+
+    private File tempFile;
+
+    @BeforeClass
+    public void createArchive() throws IOException {
+        contents = new byte[NB_FILES][];
+        for (int i = 0; i < NB_FILES; i++) {
+            // Some of the files are larger than the buffer between the extraction and the reader
+            contents[i] = new byte[i % 5 == 0 ? 3 * 1024 * 1024 + i : 10000 + i];
+            for (int j = 0; j < contents[i].length; j++)
+                contents[i][j] = (byte) (i * 31 + j / 7);
+        }
+
+        tempFile = File.createTempFile("SevenZipJBindingEntryIteratorTest", ".7z");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+             IOutCreateArchive7z outArchive = SevenZip.openOutArchive7z()) {
+            outArchive.setSolid(true);
+            outArchive.createArchive(new RandomAccessFileOutStream(raf), NB_FILES + 1, new IOutCreateCallback<IOutItem7z>() {
+                @Override
+                public IOutItem7z getItemInformation(int index, OutItemFactory<IOutItem7z> outItemFactory) {
+                    IOutItem7z item = outItemFactory.createOutItem();
+                    item.setPropertyLastModificationTime(new Date());
+                    if (index == 0) {
+                        item.setPropertyPath("dir");
+                        item.setPropertyIsDir(true);
+                    } else {
+                        item.setPropertyPath(String.format("dir/file%02d", index));
+                        item.setDataSize((long) contents[index - 1].length);
+                    }
+                    return item;
+                }
+
+                @Override
+                public ISequentialInStream getStream(int index) {
+                    return index == 0 ? null : new ByteArrayStream(contents[index - 1], false);
+                }
+
+                @Override
+                public void setOperationResult(boolean operationResultOk) {
+                }
+
+                @Override
+                public void setTotal(long total) {
+                }
+
+                @Override
+                public void setCompleted(long complete) {
+                }
+            });
+        }
+    }
+
+    @AfterClass
+    public void deleteArchive() {
+        tempFile.delete();
+    }
+
+    private SevenZipJBindingROArchiveFile getArchiveFile() throws IOException {
+        return new SevenZipJBindingROArchiveFile(FileFactory.getFile(tempFile.getAbsolutePath()), ArchiveFormat.SEVEN_ZIP, SIGNATURE);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Asserts that the entries that are read in the iterator's order have the expected content, whether or not the
+     * entries before them were read.
+     */
+    @Test
+    public void testExtractInOrder() throws IOException {
+        SevenZipJBindingROArchiveFile archiveFile = getArchiveFile();
+        try (ArchiveEntryIterator iterator = archiveFile.getEntryIterator()) {
+            assert iterator instanceof SevenZipJBindingEntryIterator;
+
+            ArchiveEntry entry = iterator.nextEntry();
+            assert entry.isDirectory();
+
+            int index = 0;
+            while ((entry = iterator.nextEntry()) != null) {
+                byte[] expected = contents[index++];
+                if (index % 3 == 0)
+                    continue;
+
+                InputStream in = archiveFile.getEntryInputStream(entry, iterator);
+                if (index % 4 == 0) {
+                    // Leave the stream without reading it entirely
+                    byte[] start = new byte[100];
+                    assert in.read(start) > 0;
+                    continue;
+                }
+
+                assert Arrays.equals(expected, readFully(in)) : entry.getPath();
+            }
+            assert index == NB_FILES;
+        }
+    }
+
+    /**
+     * Asserts that an entry that was already extracted is extracted again when it is requested a second time, as done
+     * when retrying a failed copy.
+     */
+    @Test
+    public void testExtractTwice() throws IOException {
+        SevenZipJBindingROArchiveFile archiveFile = getArchiveFile();
+        try (ArchiveEntryIterator iterator = archiveFile.getEntryIterator()) {
+            iterator.nextEntry();
+            ArchiveEntry entry = iterator.nextEntry();
+
+            assert Arrays.equals(contents[0], readFully(archiveFile.getEntryInputStream(entry, iterator)));
+            assert Arrays.equals(contents[0], readFully(archiveFile.getEntryInputStream(entry, iterator)));
+
+            entry = iterator.nextEntry();
+            assert Arrays.equals(contents[1], readFully(archiveFile.getEntryInputStream(entry, iterator)));
+        }
+    }
+
+    /**
+     * Asserts that closing the iterator while an entry is being extracted does not block.
+     */
+    @Test(timeOut = 10000)
+    public void testClose() throws IOException {
+        SevenZipJBindingROArchiveFile archiveFile = getArchiveFile();
+        ArchiveEntryIterator iterator = archiveFile.getEntryIterator();
+        iterator.nextEntry();
+        InputStream in = archiveFile.getEntryInputStream(iterator.nextEntry(), iterator);
+        assert in.read() == (contents[0][0] & 0xFF);
+        iterator.close();
+    }
+}